@@ -26,12 +26,14 @@ import javax.sql.DataSource;
 
 import org.apache.openjpa.conf.OpenJPAConfigurationImpl;
 import org.apache.openjpa.jdbc.identifier.DBIdentifierUtil;
+import org.apache.openjpa.jdbc.instrumentation.jmx.JDBCJMXProvider;
 import org.apache.openjpa.jdbc.kernel.BatchingConstraintUpdateManager;
 import org.apache.openjpa.jdbc.kernel.BatchingOperationOrderUpdateManager;
 import org.apache.openjpa.jdbc.kernel.EagerFetchModes;
 import org.apache.openjpa.jdbc.kernel.JDBCBrokerFactory;
 import org.apache.openjpa.jdbc.kernel.LRSSizes;
 import org.apache.openjpa.jdbc.kernel.PessimisticLockManager;
+import org.apache.openjpa.jdbc.kernel.ParallelConstraintUpdateManager;
 import org.apache.openjpa.jdbc.kernel.UpdateManager;
 import org.apache.openjpa.jdbc.meta.MappingDefaults;
 import org.apache.openjpa.jdbc.meta.MappingRepository;
@@ -239,6 +241,8 @@ public class JDBCConfigurationImpl
             BatchingConstraintUpdateManager.class.getName(),
             "batching-operation-order",
             BatchingOperationOrderUpdateManager.class.getName(),
+            "parallel-constraint",
+            ParallelConstraintUpdateManager.class.getName(),
         };
         updateManagerPlugin.setAliases(aliases);
         updateManagerPlugin.setDefault(aliases[0]);
@@ -308,6 +312,9 @@ public class JDBCConfigurationImpl
         lockManagerPlugin.setDefault("pessimistic");
         lockManagerPlugin.setString("pessimistic");
 
+        // jmx provider with the jdbc instruments
+        instrumentationProviders.setAlias("jmx", JDBCJMXProvider.class.getName());
+
         // native savepoint manager options
         savepointManagerPlugin.setAlias("jdbc",
             "org.apache.openjpa.jdbc.kernel.JDBC3SavepointManager");
@@ -0,0 +1,72 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.instrumentation;
+
+import java.util.Set;
+
+/**
+ * Interface for providing the batch limits chosen by adaptive statement
+ * batching.
+ *
+ * @since 3.2.1
+ */
+public interface BatchLimitInstrument {
+
+    /**
+     * Returns the statements whose batch limit is being tuned.
+     */
+    Set<String> statements();
+
+    /**
+     * Returns the batch limit currently used for the specified statement.
+     */
+    int getBatchLimit(String sql);
+
+    /**
+     * Returns number of batches of the specified statement executed since
+     * start or last reset.
+     */
+    long getBatchCount(String sql);
+
+    /**
+     * Returns the rows per second written by the last measured batches of
+     * the specified statement, or -1 if not measured yet.
+     */
+    double getThroughput(String sql);
+
+    /**
+     * Returns number of batch limit changes since start or last reset.
+     */
+    long getAdjustmentCount();
+
+    /**
+     * Returns the smallest batch limit the tuner may choose.
+     */
+    int getMinBatchLimit();
+
+    /**
+     * Returns the largest batch limit the tuner may choose.
+     */
+    int getMaxBatchLimit();
+
+    /**
+     * Forgets all measurements, so that limits are tuned from scratch.
+     */
+    void reset();
+}
@@ -0,0 +1,62 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.instrumentation;
+
+import java.util.Date;
+
+/**
+ * Interface for providing the statistics of the cache of rendered select
+ * SQL of the DBDictionary.
+ *
+ * @since 3.2.1
+ */
+public interface SelectSQLCacheInstrument {
+
+    /**
+     * Returns number of selects whose shape was found in the cache since
+     * start or last reset.
+     */
+    long getHitCount();
+
+    /**
+     * Returns number of selects whose shape was not found in the cache, or
+     * was found uncacheable, since start or last reset.
+     */
+    long getMissCount();
+
+    /**
+     * Returns the fraction of selects whose shape was found in the cache.
+     */
+    double getHitRatio();
+
+    /**
+     * Returns number of select shapes currently cached.
+     */
+    int getSize();
+
+    /**
+     * Resets cache statistics.
+     */
+    void reset();
+
+    /**
+     * Returns date since cache statistics collection were last reset.
+     */
+    Date sinceDate();
+}
@@ -0,0 +1,182 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.instrumentation.jmx;
+
+import java.util.Collections;
+import java.util.Set;
+
+import javax.management.ObjectName;
+
+import org.apache.openjpa.instrumentation.jmx.JMXInstrument;
+import org.apache.openjpa.instrumentation.jmx.JMXProvider;
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.kernel.BatchLimitTuner;
+import org.apache.openjpa.lib.instrumentation.AbstractInstrument;
+import org.apache.openjpa.lib.instrumentation.InstrumentationLevel;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * A JMX-specific instrument for the batch limits chosen by adaptive
+ * statement batching. Requires the <code>adaptiveBatchLimit</code> property
+ * of the DBDictionary to be enabled.
+ *
+ * @since 3.2.1
+ */
+public class BatchLimitJMXInstrument extends AbstractInstrument
+    implements JMXInstrument, BatchLimitJMXInstrumentMBean {
+
+    private static Localizer _loc = Localizer.forPackage(BatchLimitJMXInstrument.class);
+
+    public static final long NO_STATS = -1;
+
+    private static final String MBEAN_TYPE = "BatchLimit";
+
+    private BatchLimitTuner _tuner;
+    private String _configID = null;
+    private String _configRef = null;
+    private ObjectName _objName = null;
+
+    @Override
+    public String getName() {
+        return MBEAN_TYPE;
+    }
+
+    @Override
+    public InstrumentationLevel getLevel() {
+        return InstrumentationLevel.FACTORY;
+    }
+
+    @Override
+    public void initialize() {
+        JDBCConfiguration conf = (JDBCConfiguration) getProvider().getConfiguration();
+        BatchLimitTuner tuner = conf.getDBDictionaryInstance().getBatchLimitTuner();
+
+        if (tuner == null) {
+            throw new UserException(_loc.get("batch-limit-tuner-not-found"));
+        }
+
+        setBatchLimitTuner(tuner);
+        setConfigId(conf.getId());
+        setContextRef(Integer.toString(System.identityHashCode(getContext())));
+    }
+
+    public void setBatchLimitTuner(BatchLimitTuner tuner) {
+        _tuner = tuner;
+    }
+
+    @Override
+    public void setConfigId(String cid) {
+        _configID = cid;
+    }
+
+    @Override
+    public void setContextRef(String cref) {
+        _configRef = cref;
+    }
+
+    @Override
+    public String getConfigId() {
+        return _configID;
+    }
+
+    @Override
+    public String getContextRef() {
+        return _configRef;
+    }
+
+    @Override
+    public Set<String> statements() {
+        if (_tuner == null)
+            return Collections.emptySet();
+        return _tuner.getStatements();
+    }
+
+    @Override
+    public int getBatchLimit(String sql) {
+        if (_tuner == null)
+            return (int) NO_STATS;
+        return _tuner.getBatchLimit(sql);
+    }
+
+    @Override
+    public long getBatchCount(String sql) {
+        if (_tuner == null)
+            return NO_STATS;
+        return _tuner.getBatchCount(sql);
+    }
+
+    @Override
+    public double getThroughput(String sql) {
+        if (_tuner == null)
+            return NO_STATS;
+        return _tuner.getThroughput(sql);
+    }
+
+    @Override
+    public long getAdjustmentCount() {
+        if (_tuner == null)
+            return NO_STATS;
+        return _tuner.getAdjustmentCount();
+    }
+
+    @Override
+    public int getMinBatchLimit() {
+        if (_tuner == null)
+            return (int) NO_STATS;
+        return _tuner.getMinBatchLimit();
+    }
+
+    @Override
+    public int getMaxBatchLimit() {
+        if (_tuner == null)
+            return (int) NO_STATS;
+        return _tuner.getMaxBatchLimit();
+    }
+
+    @Override
+    public void reset() {
+        if (_tuner != null)
+            _tuner.reset();
+    }
+
+    @Override
+    public ObjectName getObjectName() {
+        if (_objName != null) {
+            return _objName;
+        }
+
+        try {
+            _objName = JMXProvider.createObjectName(this, null);
+            return _objName;
+        } catch (Throwable t) {
+            throw new UserException(_loc.get("unable-to-create-object-name", getName()), t);
+        }
+    }
+
+    @Override
+    public void start() {
+        getProvider().startInstrument(this);
+    }
+
+    @Override
+    public void stop() {
+        getProvider().stopInstrument(this);
+    }
+}
@@ -0,0 +1,54 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.instrumentation.jmx;
+
+import org.apache.openjpa.instrumentation.jmx.JMXProvider;
+
+/**
+ * The JMX Platform MBean provider of the JDBC back-end. Adds the aliases of
+ * the JDBC-specific instruments to the built-in ones.
+ *
+ * @since 3.2.1
+ */
+public class JDBCJMXProvider
+    extends JMXProvider {
+
+    // Aliases for built-in JMX Instrumentation, including the JDBC ones
+    public static final String[] JDBC_JMX_INSTRUMENT_ALIASES;
+
+    static {
+        String[] jdbc = {
+            "BatchLimit", BatchLimitJMXInstrument.class.getName(),
+            "SelectSQLCache", SelectSQLCacheJMXInstrument.class.getName()
+        };
+        JDBC_JMX_INSTRUMENT_ALIASES = new String[JMX_INSTRUMENT_ALIASES.length + jdbc.length];
+        System.arraycopy(JMX_INSTRUMENT_ALIASES, 0, JDBC_JMX_INSTRUMENT_ALIASES, 0,
+            JMX_INSTRUMENT_ALIASES.length);
+        System.arraycopy(jdbc, 0, JDBC_JMX_INSTRUMENT_ALIASES, JMX_INSTRUMENT_ALIASES.length,
+            jdbc.length);
+    }
+
+    /**
+     * Returns aliases for built-in instruments.
+     */
+    @Override
+    public String[] getInstrumentAliases() {
+        return JDBC_JMX_INSTRUMENT_ALIASES;
+    }
+}
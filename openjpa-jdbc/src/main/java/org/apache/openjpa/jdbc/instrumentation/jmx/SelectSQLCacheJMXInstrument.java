@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.instrumentation.jmx;
+
+import java.util.Date;
+
+import javax.management.ObjectName;
+
+import org.apache.openjpa.instrumentation.jmx.JMXInstrument;
+import org.apache.openjpa.instrumentation.jmx.JMXProvider;
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.sql.SelectSQLCache;
+import org.apache.openjpa.lib.instrumentation.AbstractInstrument;
+import org.apache.openjpa.lib.instrumentation.InstrumentationLevel;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * A JMX-specific instrument for the cache of rendered select SQL. Requires
+ * the <code>selectSQLCacheSize</code> property of the DBDictionary to be
+ * positive.
+ *
+ * @since 3.2.1
+ */
+public class SelectSQLCacheJMXInstrument extends AbstractInstrument
+    implements JMXInstrument, SelectSQLCacheJMXInstrumentMBean {
+
+    private static Localizer _loc = Localizer.forPackage(SelectSQLCacheJMXInstrument.class);
+
+    public static final long NO_STATS = -1;
+
+    private static final String MBEAN_TYPE = "SelectSQLCache";
+
+    private SelectSQLCache _cache;
+    private String _configID = null;
+    private String _configRef = null;
+    private ObjectName _objName = null;
+
+    @Override
+    public String getName() {
+        return MBEAN_TYPE;
+    }
+
+    @Override
+    public InstrumentationLevel getLevel() {
+        return InstrumentationLevel.FACTORY;
+    }
+
+    @Override
+    public void initialize() {
+        JDBCConfiguration conf = (JDBCConfiguration) getProvider().getConfiguration();
+        SelectSQLCache cache = conf.getDBDictionaryInstance().getSelectSQLCache();
+
+        if (cache == null) {
+            throw new UserException(_loc.get("select-sql-cache-not-found"));
+        }
+
+        setSelectSQLCache(cache);
+        setConfigId(conf.getId());
+        setContextRef(Integer.toString(System.identityHashCode(getContext())));
+    }
+
+    public void setSelectSQLCache(SelectSQLCache cache) {
+        _cache = cache;
+    }
+
+    @Override
+    public void setConfigId(String cid) {
+        _configID = cid;
+    }
+
+    @Override
+    public void setContextRef(String cref) {
+        _configRef = cref;
+    }
+
+    @Override
+    public String getConfigId() {
+        return _configID;
+    }
+
+    @Override
+    public String getContextRef() {
+        return _configRef;
+    }
+
+    @Override
+    public long getHitCount() {
+        if (_cache == null)
+            return NO_STATS;
+        return _cache.getHitCount();
+    }
+
+    @Override
+    public long getMissCount() {
+        if (_cache == null)
+            return NO_STATS;
+        return _cache.getMissCount();
+    }
+
+    @Override
+    public double getHitRatio() {
+        if (_cache == null)
+            return NO_STATS;
+        return _cache.getHitRatio();
+    }
+
+    @Override
+    public int getSize() {
+        if (_cache == null)
+            return (int) NO_STATS;
+        return _cache.size();
+    }
+
+    @Override
+    public void reset() {
+        if (_cache != null)
+            _cache.resetStatistics();
+    }
+
+    @Override
+    public Date sinceDate() {
+        if (_cache == null)
+            return null;
+        return _cache.getStatisticsResetDate();
+    }
+
+    @Override
+    public ObjectName getObjectName() {
+        if (_objName != null) {
+            return _objName;
+        }
+
+        try {
+            _objName = JMXProvider.createObjectName(this, null);
+            return _objName;
+        } catch (Throwable t) {
+            throw new UserException(_loc.get("unable-to-create-object-name", getName()), t);
+        }
+    }
+
+    @Override
+    public void start() {
+        getProvider().startInstrument(this);
+    }
+
+    @Override
+    public void stop() {
+        getProvider().stopInstrument(this);
+    }
+}
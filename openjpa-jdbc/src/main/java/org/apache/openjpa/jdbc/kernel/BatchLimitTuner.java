@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Localizer;
+
+/**
+ * Tunes the JDBC batch limit of each SQL statement from the observed
+ * <code>executeBatch</code> throughput. Starting from an initial limit, the
+ * limit of a statement is doubled or halved after every few full batches for
+ * as long as the rows written per second improve; when a step makes things
+ * worse, the previous limit is restored and kept for a while before probing
+ * in the other direction. Batches that take longer than the maximum batch
+ * time always shrink the limit. Limits stay within the configured bounds.
+ *
+ * A single tuner is shared by all the brokers of a factory, so that what is
+ * learned by one transaction benefits the next. At most
+ * {@link #MAX_STATEMENTS} statements are tuned at a time; beyond that, the
+ * statement measured least recently is forgotten.
+ *
+ * @since 3.2.1
+ */
+public class BatchLimitTuner {
+
+    private static final Localizer _loc = Localizer.forPackage(BatchLimitTuner.class);
+
+    /**
+     * Number of full batches measured before the limit is changed.
+     */
+    public static final int SAMPLE_BATCHES = 4;
+
+    /**
+     * Number of measurement windows a limit is kept after a step back.
+     */
+    public static final int HOLD_WINDOWS = 8;
+
+    /**
+     * Relative throughput loss that counts as a step in the wrong direction,
+     * so that noise does not make the limit wander.
+     */
+    public static final double TOLERANCE = 0.05;
+
+    /**
+     * Upper bound of the statements tuned at a time, so that dynamically
+     * built SQL cannot grow the tuner without limit.
+     */
+    public static final int MAX_STATEMENTS = 1000;
+
+    private final int _initialLimit;
+    private final int _minLimit;
+    private final int _maxLimit;
+    private final long _maxBatchNanos;
+    private final Log _log;
+    private final ConcurrentMap<String, Tuning> _tunings = new ConcurrentHashMap<>();
+    private final AtomicLong _adjustments = new AtomicLong();
+
+    /**
+     * Constructor.
+     *
+     * @param initialLimit the limit of statements that were not measured
+     * yet, or -1 to start from the maximum
+     * @param minLimit the smallest limit
+     * @param maxLimit the largest limit
+     * @param maxBatchMillis the longest a single batch may take, or 0 for
+     * no limit
+     * @param log the log to trace limit changes to, or null
+     */
+    public BatchLimitTuner(int initialLimit, int minLimit, int maxLimit, long maxBatchMillis, Log log) {
+        _minLimit = Math.max(2, minLimit);
+        _maxLimit = Math.max(_minLimit, maxLimit);
+        _initialLimit = clamp((initialLimit < 0) ? _maxLimit : initialLimit);
+        _maxBatchNanos = maxBatchMillis * 1000000L;
+        _log = log;
+    }
+
+    public int getMinBatchLimit() {
+        return _minLimit;
+    }
+
+    public int getMaxBatchLimit() {
+        return _maxLimit;
+    }
+
+    /**
+     * Return the batch limit to use for the given statement.
+     */
+    public int getBatchLimit(String sql) {
+        Tuning tuning = _tunings.get(sql);
+        return (tuning == null) ? _initialLimit : tuning.getLimit();
+    }
+
+    /**
+     * Record the execution of a batch of the given statement.
+     *
+     * @param sql the batched statement
+     * @param rows the number of rows in the batch
+     * @param nanos the time <code>executeBatch</code> took
+     */
+    public void batchExecuted(String sql, int rows, long nanos) {
+        Tuning tuning = _tunings.get(sql);
+        if (tuning == null) {
+            tuning = _tunings.computeIfAbsent(sql, s -> new Tuning(_initialLimit));
+            evict(sql);
+        }
+        int limit = tuning.batchExecuted(rows, Math.max(1, nanos));
+        if (limit != 0) {
+            _adjustments.incrementAndGet();
+            if (_log != null && _log.isTraceEnabled())
+                _log.trace(_loc.get("batch-limit-tuned", sql, String.valueOf(limit)));
+        }
+    }
+
+    /**
+     * The statements the tuner has measured.
+     */
+    public Set<String> getStatements() {
+        return new HashSet<>(_tunings.keySet());
+    }
+
+    /**
+     * The number of batches of the given statement measured so far.
+     */
+    public long getBatchCount(String sql) {
+        Tuning tuning = _tunings.get(sql);
+        return (tuning == null) ? 0 : tuning.getBatchCount();
+    }
+
+    /**
+     * The rows per second written by the last measurement window of the given
+     * statement, or -1 if none completed yet.
+     */
+    public double getThroughput(String sql) {
+        Tuning tuning = _tunings.get(sql);
+        return (tuning == null) ? -1 : tuning.getThroughput();
+    }
+
+    /**
+     * The number of times a batch limit was changed.
+     */
+    public long getAdjustmentCount() {
+        return _adjustments.get();
+    }
+
+    /**
+     * Forget all measurements.
+     */
+    public void reset() {
+        _tunings.clear();
+        _adjustments.set(0);
+    }
+
+    /**
+     * Forget the statements measured least recently other than the given one
+     * while more than the maximum number of statements are tuned.
+     */
+    private void evict(String sql) {
+        while (_tunings.size() > MAX_STATEMENTS) {
+            String lru = null;
+            long used = 0;
+            for (Map.Entry<String, Tuning> entry : _tunings.entrySet()) {
+                if (!entry.getKey().equals(sql)
+                    && (lru == null || entry.getValue()._used - used < 0)) {
+                    lru = entry.getKey();
+                    used = entry.getValue()._used;
+                }
+            }
+            if (lru == null)
+                return;
+            _tunings.remove(lru);
+        }
+    }
+
+    private int clamp(int limit) {
+        return Math.min(_maxLimit, Math.max(_minLimit, limit));
+    }
+
+    /**
+     * Hill climbing state of a single statement.
+     */
+    private class Tuning {
+
+        private int _limit;
+        private int _direction = 1;
+        private int _hold = 0;
+        private int _previousLimit = 0;
+        private double _previousThroughput = -1;
+        private double _throughput = -1;
+        private int _samples = 0;
+        private long _rows = 0;
+        private long _nanos = 0;
+        private long _batches = 0;
+        private volatile long _used = System.nanoTime();
+
+        Tuning(int limit) {
+            _limit = limit;
+        }
+
+        synchronized int getLimit() {
+            return _limit;
+        }
+
+        synchronized long getBatchCount() {
+            return _batches;
+        }
+
+        synchronized double getThroughput() {
+            return _throughput;
+        }
+
+        /**
+         * Record a batch and return the new limit if it changed, or 0.
+         */
+        synchronized int batchExecuted(int rows, long nanos) {
+            _used = System.nanoTime();
+            _batches++;
+            // partial batches are the tail of a flush and say nothing about
+            // the current limit
+            if (rows < _limit)
+                return 0;
+            _rows += rows;
+            _nanos += nanos;
+            if (++_samples < SAMPLE_BATCHES)
+                return 0;
+
+            double throughput = _rows * 1e9 / _nanos;
+            long batchNanos = _nanos / _samples;
+            _samples = 0;
+            _rows = 0;
+            _nanos = 0;
+            _throughput = throughput;
+
+            int limit = _limit;
+            if (_maxBatchNanos > 0 && batchNanos > _maxBatchNanos) {
+                _direction = -1;
+                _hold = 0;
+                limit = clamp(_limit / 2);
+            } else if (_previousLimit != 0 && _previousLimit != _limit
+                && throughput < _previousThroughput * (1 - TOLERANCE)) {
+                // the last step made things worse; go back and stay there
+                _direction = -_direction;
+                _hold = HOLD_WINDOWS;
+                limit = _previousLimit;
+            } else if (_hold > 0) {
+                _hold--;
+            } else {
+                limit = clamp((_direction > 0) ? _limit * 2 : _limit / 2);
+                if (limit == _limit) {
+                    // reached a bound; probe the other way next time
+                    _direction = -_direction;
+                }
+            }
+
+            _previousLimit = _limit;
+            _previousThroughput = throughput;
+            if (limit == _limit)
+                return 0;
+            _limit = limit;
+            return limit;
+        }
+    }
+}
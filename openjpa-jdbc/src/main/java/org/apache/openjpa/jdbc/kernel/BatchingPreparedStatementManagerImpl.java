@@ -54,6 +54,7 @@ public class BatchingPreparedStatementManagerImpl extends
     private List<RowImpl> _batchedRows = new ArrayList<>();
     private int _batchLimit;
     private boolean _disableBatch = false;
+    private BatchLimitTuner _tuner = null;
 
     /**
      * Constructor. Supply connection.
@@ -62,6 +63,8 @@ public class BatchingPreparedStatementManagerImpl extends
         Connection conn, int batchLimit) {
         super(store, conn);
         _batchLimit = batchLimit;
+        if (_batchLimit != 1)
+            _tuner = _dict.getBatchLimitTuner();
         if (_log.isTraceEnabled())
             _log.trace(_loc.get("batch_limit", String.valueOf(_batchLimit)));
     }
@@ -147,6 +150,16 @@ public class BatchingPreparedStatementManagerImpl extends
             return;
 
         int batchSize = batchedRows.size();
+        if (batchedSql != null && batchSize > 1
+            && _dict.canMultiRowInsert(batchedRows.get(0), batchedSql)) {
+            try {
+                flushMultiRowInsert(batchedSql, batchedRows);
+            } finally {
+                _batchedSql = null;
+                batchedRows.clear();
+            }
+            return;
+        }
         if (batchedSql != null &&  batchSize > 0) {
             PreparedStatement ps = null;
             try {
@@ -160,23 +173,25 @@ public class BatchingPreparedStatementManagerImpl extends
                     // cache has more than one rows, execute as batch.
                     int count = 0;
                     int batchedRowsBaseIndex = 0;
+                    int batchLimit = (_tuner == null) ? _batchLimit
+                        : _tuner.getBatchLimit(batchedSql);
                     Iterator<RowImpl> itr = batchedRows.iterator();
                     while (itr.hasNext()) {
                         onerow = itr.next();
-                        if (_batchLimit == 1) {
+                        if (batchLimit == 1) {
                             flushSingleRow(onerow, ps);
                         } else {
-                            if (count < _batchLimit || _batchLimit == -1) {
+                            if (count < batchLimit || batchLimit == -1) {
                                 if (ps != null)
                                     onerow.flush(ps, _dict, _store);
                                 addBatch(ps, onerow, count);
                                 count++;
                             } else {
                                 // reach the batchLimit, execute the batch
-                                int[] rtn = executeBatch(ps);
+                                int[] rtn = executeBatch(ps, batchedSql, count);
                                 checkUpdateCount(rtn, batchedRowsBaseIndex, ps);
 
-                                batchedRowsBaseIndex += _batchLimit;
+                                batchedRowsBaseIndex += batchLimit;
 
                                 if (ps != null)
                                     onerow.flush(ps, _dict, _store);
@@ -187,7 +202,7 @@ public class BatchingPreparedStatementManagerImpl extends
                         }
                     }
                     // end of the loop, execute the batch
-                    int[] rtn = executeBatch(ps);
+                    int[] rtn = executeBatch(ps, batchedSql, count);
                     checkUpdateCount(rtn, batchedRowsBaseIndex, ps);
                 }
             } catch (SQLException se) {
@@ -245,6 +260,70 @@ public class BatchingPreparedStatementManagerImpl extends
         }
     }
 
+    /*
+     * Execute the given inserts as multi-row insert statements of at most
+     * as many rows as the dictionary and the batch limit allow.
+     */
+    private void flushMultiRowInsert(String sql, List<RowImpl> rows)
+        throws SQLException {
+        int limit = _dict.getMultiRowInsertLimit(sql);
+        int batchLimit = (_tuner == null) ? _batchLimit
+            : _tuner.getBatchLimit(sql);
+        if (batchLimit > 1)
+            limit = Math.min(limit, batchLimit);
+        String fullSql = null;
+        for (int start = 0; start < rows.size(); start += limit) {
+            int size = Math.min(limit, rows.size() - start);
+            String multiSql;
+            if (size == 1)
+                multiSql = sql;
+            else if (size == limit) {
+                if (fullSql == null)
+                    fullSql = _dict.getMultiRowInsertSQL(sql, size);
+                multiSql = fullSql;
+            } else
+                multiSql = _dict.getMultiRowInsertSQL(sql, size);
+            PreparedStatement ps = null;
+            try {
+                ps = prepareStatement(multiSql);
+                if (size == 1) {
+                    flushSingleRow(rows.get(start), ps);
+                    continue;
+                }
+
+                int idx = 1;
+                for (int i = 0; i < size; i++) {
+                    RowImpl row = rows.get(start + i);
+                    if (ps != null)
+                        idx = row.flushValues(ps, idx, _dict, _store);
+                }
+                long begin = (_tuner == null) ? 0 : System.nanoTime();
+                int count = executeUpdate(ps, multiSql, rows.get(start));
+                if (_tuner != null)
+                    _tuner.batchExecuted(sql, size, System.nanoTime() - begin);
+                if (count != size && count != Statement.SUCCESS_NO_INFO) {
+                    logSQLWarnings(ps);
+                    throw new SQLException(_loc.get(
+                        "update-failed-no-failed-obj", String.valueOf(count),
+                        multiSql).getMessage());
+                }
+            } catch (SQLException se) {
+                // the failed row of a multi-row insert is unknown
+                SQLException sqex = se.getNextException();
+                throw SQLExceptions.getStore((sqex == null) ? se : sqex, ps,
+                    _dict);
+            } finally {
+                if (ps != null) {
+                    try {
+                        ps.close();
+                    } catch (SQLException sqex) {
+                        throw SQLExceptions.getStore(sqex, ps, _dict);
+                    }
+                }
+            }
+        }
+    }
+
     /*
      * Execute an update of a single row.
      */
@@ -347,6 +426,26 @@ public class BatchingPreparedStatementManagerImpl extends
         _batchLimit = batchLimit;
     }
 
+    /**
+     * Return the tuner adapting the batch limit of each statement, or null
+     * if the static batch limit is used.
+     *
+     * @since 3.2.1
+     */
+    public BatchLimitTuner getBatchLimitTuner() {
+        return _tuner;
+    }
+
+    /**
+     * Set the tuner adapting the batch limit of each statement, or null to
+     * use the static batch limit.
+     *
+     * @since 3.2.1
+     */
+    public void setBatchLimitTuner(BatchLimitTuner tuner) {
+        _tuner = tuner;
+    }
+
     public List<RowImpl> getBatchedRows() {
         return _batchedRows;
     }
@@ -364,4 +463,18 @@ public class BatchingPreparedStatementManagerImpl extends
     throws SQLException {
         return ps.executeBatch();
     }
+
+    /*
+     * Execute a batch of the given number of rows, feeding its timing to the
+     * batch limit tuner if adaptive batching is enabled.
+     */
+    private int[] executeBatch(PreparedStatement ps, String sql, int rows)
+        throws SQLException {
+        if (_tuner == null)
+            return executeBatch(ps);
+        long start = System.nanoTime();
+        int[] rtn = executeBatch(ps);
+        _tuner.batchExecuted(sql, rows, System.nanoTime() - start);
+        return rtn;
+    }
 }
@@ -414,7 +414,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
                         // setInverseRelation() when the sm owner is fully
                         // initialized.
                         int index = mappedByFieldMapping.getIndex();
-                        if (sm.getLoaded().get(index)) {
+                        if (sm.isFieldLoaded(index)) {
                             sm.setImplData(index, mappedByObject);
                         } else {
                             sm.setIntermediate(index, mappedByObject);
@@ -659,7 +659,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
 
             // if the instance is hollow and there's a customized
             // get by id method, use it
-            if (sm.getLoaded().length() == 0
+            if (sm.getLoadedCount() == 0
                 && mapping.customLoad(sm, this, null, jfetch))
                 removeLoadedFields(sm, fields);
 
@@ -693,7 +693,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
             // now allow the fields to load themselves individually too
             FieldMapping[] fms = mapping.getFieldMappings();
             for (int i = 0; i < fms.length; i++)
-                if (fields.get(i) && (!sm.getLoaded().get(i) || sm.isDelayed(i))) {
+                if (fields.get(i) && (!sm.isFieldLoaded(i) || sm.isDelayed(i))) {
                     if (_log.isTraceEnabled()) {
                         _log.trace("load field: '"+ fms[i].getName() + "' for oid="+sm.getObjectId()
                             +" "+mapping.getDescribedType());
@@ -717,7 +717,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
         FieldMapping[] fms = mapping.getFieldMappings();
         for (int i = 0; i < fms.length; i++) {
             if (fields.get(i)) {
-                if (!(fms[i].isDelayCapable() && (!sm.getLoaded().get(i) || sm.isDelayed(i)))) {
+                if (!(fms[i].isDelayCapable() && (!sm.isFieldLoaded(i) || sm.isDelayed(i)))) {
                     return false;
                 }
             }
@@ -730,7 +730,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
      */
     private void removeLoadedFields(OpenJPAStateManager sm, BitSet fields) {
         for (int i = 0, len = fields.length(); i < len; i++)
-            if (fields.get(i) && sm.getLoaded().get(i))
+            if (fields.get(i) && sm.isFieldLoaded(i))
                 fields.clear(i);
     }
 
@@ -1133,7 +1133,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
         FieldMapping[] fms = mapping.getDefinedFieldMappings();
         Object eres, processed;
         for (FieldMapping fm : fms) {
-            if (fm.isPrimaryKey() || sm.getLoaded().get(fm.getIndex()))
+            if (fm.isPrimaryKey() || sm.isFieldLoaded(fm.getIndex()))
                 continue;
 
             // check for eager result, and if not present do standard load
@@ -1324,7 +1324,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
         if (fields != null)
             return fields.get(fm.getIndex());
         if (sm != null && sm.getPCState() != PCState.TRANSIENT
-            && sm.getLoaded().get(fm.getIndex()))
+            && sm.isFieldLoaded(fm.getIndex()))
             return false;
         return fetch.requiresFetch(fm) == FetchConfiguration.FETCH_LOAD;
     }
@@ -1454,7 +1454,7 @@ public class JDBCStoreManager implements StoreManager, JDBCStore {
             fetch.getIgnoreDfgForFkSelect() ||
                 !fm.isInDefaultFetchGroup() && !fm.isDefaultFetchGroupExplicit();
 
-        return dfg && (sm == null || sm.getPCState() == PCState.TRANSIENT || !sm.getLoaded().get(fm.getIndex()))
+        return dfg && (sm == null || sm.getPCState() == PCState.TRANSIENT || !sm.isFieldLoaded(fm.getIndex()))
             && fm.supportsSelect(sel, Select.TYPE_TWO_PART, sm, this, fetch) > 0;
     }
 
@@ -0,0 +1,413 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import java.sql.Connection;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Future;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.openjpa.event.AbstractTransactionListener;
+import org.apache.openjpa.event.TransactionEvent;
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.schema.ForeignKey;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.jdbc.sql.Row;
+import org.apache.openjpa.jdbc.sql.RowManager;
+import org.apache.openjpa.jdbc.sql.RowManagerImpl;
+import org.apache.openjpa.jdbc.sql.SQLExceptions;
+import org.apache.openjpa.kernel.Broker;
+import org.apache.openjpa.kernel.StoreContext;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Closeable;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.OpenJPAException;
+import org.apache.openjpa.util.StoreException;
+
+/**
+ * <P>Batching constraint update manager meant for bulk loads. The tables of
+ * the rows to flush are split into groups that are not connected by any
+ * foreign key. Groups that only receive inserts and hold at least
+ * {@link #setMinRows MinRows} rows are flushed concurrently, each on a
+ * connection of its own; everything else is flushed on the connection of the
+ * broker as usual.</P>
+ * <P>The additional connections are committed at the end of the flush when
+ * all groups succeeded, and rolled back otherwise. Their rows therefore do
+ * not take part in the transaction of the broker: they are visible to others
+ * before it commits and stay when it rolls back later on. Flushes involving
+ * auto-assigned columns are never split.</P>
+ * <P>Groups containing or referencing a table that an earlier flush of the
+ * transaction wrote on the connection of the broker stay on that connection,
+ * since another connection would not see or would wait for those uncommitted
+ * rows.</P>
+ * <PRE>
+ *   &lt;property name="openjpa.jdbc.UpdateManager"
+ *     value="parallel-constraint(MaxThreads=4)" /&gt;
+ * </PRE>
+ *
+ * @since 3.2.1
+ */
+public class ParallelConstraintUpdateManager
+    extends BatchingConstraintUpdateManager
+    implements Closeable {
+
+    private static final Localizer _loc = Localizer.forPackage
+        (ParallelConstraintUpdateManager.class);
+
+    private int _maxThreads = Runtime.getRuntime().availableProcessors();
+    private int _minRows = 1000;
+    private ExecutorService _executor = null;
+    private Log _log = null;
+
+    /**
+     * The largest number of connections used by a single flush, including
+     * the connection of the broker. Defaults to the number of processors.
+     */
+    public int getMaxThreads() {
+        return _maxThreads;
+    }
+
+    public void setMaxThreads(int maxThreads) {
+        _maxThreads = maxThreads;
+    }
+
+    /**
+     * The smallest number of rows worth a connection of its own. Defaults
+     * to 1000.
+     */
+    public int getMinRows() {
+        return _minRows;
+    }
+
+    public void setMinRows(int minRows) {
+        _minRows = minRows;
+    }
+
+    @Override
+    public void endConfiguration() {
+        super.endConfiguration();
+        _log = conf.getLog(JDBCConfiguration.LOG_JDBC);
+    }
+
+    @Override
+    protected Collection flush(RowManager rowMgr,
+        PreparedStatementManager psMgr, Collection exceps) {
+        RowManagerImpl rmimpl = (RowManagerImpl) rowMgr;
+        if (_maxThreads <= 1 || !(psMgr instanceof PreparedStatementManagerImpl))
+            return super.flush(rowMgr, psMgr, exceps);
+        JDBCStore store = ((PreparedStatementManagerImpl) psMgr)._store;
+        Set<Table> written = getWrittenTables(store);
+        if (written == null)
+            return super.flush(rowMgr, psMgr, exceps);
+
+        List<Set<Table>> groups = null;
+        if (!rmimpl.hasAutoAssignConstraints())
+            groups = group(rmimpl, written);
+        if (groups == null)
+            return flushOnBroker(rmimpl, psMgr, exceps, written);
+
+        // get all connections before splitting the rows, so that we can
+        // still flush serially if the database refuses more connections
+        List<Connection> conns = new ArrayList<>(groups.size());
+        try {
+            for (int i = 0; i < groups.size(); i++) {
+                Connection conn = store.getNewConnection();
+                conns.add(conn);
+                conn.setAutoCommit(false);
+            }
+        } catch (SQLException | OpenJPAException e) {
+            if (_log.isWarnEnabled())
+                _log.warn(_loc.get("parallel-flush-no-connection"), e);
+            end(conns, true, null);
+            return flushOnBroker(rmimpl, psMgr, exceps, written);
+        }
+        if (_log.isTraceEnabled())
+            _log.trace(_loc.get("parallel-flush", String.valueOf(groups.size())));
+
+        ExecutorService executor = getExecutor();
+        List<Future<Collection>> futures = new ArrayList<>(groups.size());
+        for (int i = 0; i < groups.size(); i++) {
+            final RowManagerImpl group = rmimpl.split(groups.get(i));
+            final PreparedStatementManager groupMgr =
+                newPreparedStatementManager(store, conns.get(i));
+            futures.add(executor.submit(() -> ParallelConstraintUpdateManager.super
+                .flush(group, groupMgr, groupMgr.getExceptions())));
+        }
+
+        // flush the rest on the connection of the broker in the meantime
+        exceps = flushOnBroker(rmimpl, psMgr, exceps, written);
+
+        boolean failed = exceps != null && !exceps.isEmpty();
+        for (Future<Collection> future : futures) {
+            try {
+                Collection groupExceps = future.get();
+                if (groupExceps != null && !groupExceps.isEmpty()) {
+                    failed = true;
+                    for (Object e : groupExceps)
+                        exceps = addException(exceps, (Exception) e);
+                }
+            } catch (ExecutionException ee) {
+                failed = true;
+                Throwable cause = ee.getCause();
+                exceps = addException(exceps, (cause instanceof OpenJPAException)
+                    ? (OpenJPAException) cause : new StoreException(cause));
+            } catch (InterruptedException ie) {
+                failed = true;
+                exceps = addException(exceps, new StoreException(ie));
+            }
+        }
+        return end(conns, failed, exceps);
+    }
+
+    /**
+     * Flush the given rows on the connection of the broker, recording their
+     * tables as written in the current transaction.
+     */
+    private Collection flushOnBroker(RowManagerImpl rowMgr,
+        PreparedStatementManager psMgr, Collection exceps, Set<Table> written) {
+        Map<Table, Integer> rows = new HashMap<>();
+        count(rowMgr, new HashMap<>(), rows, new HashSet<>());
+        written.addAll(rows.keySet());
+        return super.flush(rowMgr, psMgr, exceps);
+    }
+
+    /**
+     * Return the tables written on the connection of the broker of the given
+     * store earlier in its current transaction, or null if unknown.
+     */
+    private static Set<Table> getWrittenTables(JDBCStore store) {
+        StoreContext ctx = store.getContext();
+        if (!(ctx instanceof Broker))
+            return null;
+        Broker broker = (Broker) ctx;
+        WrittenTables written = (WrittenTables) broker.getUserObject(WrittenTables.class);
+        if (written == null) {
+            written = new WrittenTables();
+            broker.putUserObject(WrittenTables.class, written);
+            broker.addTransactionListener(written);
+        }
+        return written.tables;
+    }
+
+    /**
+     * Commit or roll back the additional connections and close them.
+     */
+    private Collection end(List<Connection> conns, boolean failed,
+        Collection exceps) {
+        for (Connection conn : conns) {
+            try {
+                if (failed)
+                    conn.rollback();
+                else
+                    conn.commit();
+            } catch (SQLException se) {
+                if (!failed)
+                    exceps = addException(exceps,
+                        SQLExceptions.getStore(se, dict));
+            } finally {
+                try { conn.close(); } catch (SQLException se) {}
+            }
+        }
+        return exceps;
+    }
+
+    /**
+     * Return the groups of tables of the given rows to flush on connections
+     * of their own, or null if none. Groups only receive inserts, are not
+     * connected to any other table by a foreign key, and neither contain nor
+     * reference any of the given tables written earlier on the connection
+     * of the broker.
+     */
+    List<Set<Table>> group(RowManagerImpl rowMgr, Set<Table> written) {
+        // join tables connected by foreign keys
+        Map<Table, Table> parents = new HashMap<>();
+        Map<Table, Integer> rows = new HashMap<>();
+        Set<Table> pinned = new HashSet<>();
+        count(rowMgr, parents, rows, pinned);
+
+        Map<Table, Set<Table>> components = new HashMap<>();
+        for (Table table : rows.keySet())
+            components.computeIfAbsent(find(parents, table),
+                t -> new HashSet<>()).add(table);
+
+        // pick the large components that only insert
+        List<Set<Table>> candidates = new ArrayList<>();
+        final Map<Set<Table>, Integer> sizes = new HashMap<>();
+        for (Set<Table> component : components.values()) {
+            int size = 0;
+            boolean insertOnly = true;
+            for (Table table : component) {
+                size += rows.get(table);
+                insertOnly &= !pinned.contains(table) && !isWritten(table, written);
+            }
+            if (insertOnly && size >= _minRows) {
+                candidates.add(component);
+                sizes.put(component, size);
+            }
+        }
+        candidates.sort((c1, c2) -> sizes.get(c2) - sizes.get(c1));
+
+        // the connection of the broker keeps at least one component
+        if (candidates.size() == components.size() && !candidates.isEmpty())
+            candidates.remove(candidates.size() - 1);
+        if (candidates.isEmpty())
+            return null;
+
+        // spread the components over the available connections, largest
+        // first, adding each to the group with the fewest rows
+        int connections = Math.min(_maxThreads - 1, candidates.size());
+        List<Set<Table>> groups = new ArrayList<>(connections);
+        int[] groupSizes = new int[connections];
+        for (Set<Table> candidate : candidates) {
+            if (groups.size() < connections) {
+                groupSizes[groups.size()] = sizes.get(candidate);
+                groups.add(new HashSet<>(candidate));
+                continue;
+            }
+            int smallest = 0;
+            for (int i = 1; i < connections; i++)
+                if (groupSizes[i] < groupSizes[smallest])
+                    smallest = i;
+            groups.get(smallest).addAll(candidate);
+            groupSizes[smallest] += sizes.get(candidate);
+        }
+        return groups;
+    }
+
+    /**
+     * Whether the given table or a table it references was written earlier
+     * in the transaction.
+     */
+    private static boolean isWritten(Table table, Set<Table> written) {
+        if (written.isEmpty())
+            return false;
+        if (written.contains(table))
+            return true;
+        for (ForeignKey fk : table.getForeignKeys())
+            if (written.contains(fk.getPrimaryKeyTable()))
+                return true;
+        return false;
+    }
+
+    /**
+     * Count all rows of the given manager by table.
+     */
+    private static void count(RowManagerImpl rowMgr, Map<Table, Table> parents,
+        Map<Table, Integer> rows, Set<Table> pinned) {
+        count(rowMgr.getInserts(), parents, rows, pinned);
+        count(rowMgr.getSecondaryUpdates(), parents, rows, pinned);
+        count(rowMgr.getUpdates(), parents, rows, pinned);
+        count(rowMgr.getDeletes(), parents, rows, pinned);
+        count(rowMgr.getSecondaryDeletes(), parents, rows, pinned);
+        count(rowMgr.getAllRowUpdates(), parents, rows, pinned);
+        count(rowMgr.getAllRowDeletes(), parents, rows, pinned);
+    }
+
+    /**
+     * Count the given rows by table, joining the tables of foreign keys
+     * and recording the tables of rows other than inserts.
+     */
+    private static void count(Collection<? extends Row> rows,
+        Map<Table, Table> parents, Map<Table, Integer> counts,
+        Set<Table> pinned) {
+        for (Row row : rows) {
+            Table table = row.getTable();
+            Integer count = counts.get(table);
+            counts.put(table, (count == null) ? 1 : count + 1);
+            if (count == null) {
+                for (ForeignKey fk : table.getForeignKeys())
+                    union(parents, table, fk.getPrimaryKeyTable());
+            }
+            if (row.getAction() != Row.ACTION_INSERT)
+                pinned.add(table);
+        }
+    }
+
+    private static Table find(Map<Table, Table> parents, Table table) {
+        Table parent = parents.get(table);
+        if (parent == null || parent == table)
+            return table;
+        Table root = find(parents, parent);
+        parents.put(table, root);
+        return root;
+    }
+
+    private static void union(Map<Table, Table> parents, Table t1, Table t2) {
+        Table r1 = find(parents, t1);
+        Table r2 = find(parents, t2);
+        if (r1 != r2)
+            parents.put(r1, r2);
+    }
+
+    /**
+     * The tables written on the connection of a broker in its current
+     * transaction.
+     */
+    private static class WrittenTables extends AbstractTransactionListener {
+
+        final Set<Table> tables = new HashSet<>();
+
+        @Override
+        public void afterCommit(TransactionEvent event) {
+            tables.clear();
+        }
+
+        @Override
+        public void afterRollback(TransactionEvent event) {
+            tables.clear();
+        }
+    }
+
+    private synchronized ExecutorService getExecutor() {
+        if (_executor == null) {
+            final AtomicInteger count = new AtomicInteger();
+            int threads = Math.max(1, _maxThreads - 1);
+            ThreadPoolExecutor executor = new ThreadPoolExecutor(threads,
+                threads, 60, TimeUnit.SECONDS, new LinkedBlockingQueue<>(),
+                r -> {
+                    Thread thread = new Thread(r, "OpenJPA parallel flush "
+                        + count.incrementAndGet());
+                    thread.setDaemon(true);
+                    return thread;
+                });
+            executor.allowCoreThreadTimeOut(true);
+            _executor = executor;
+        }
+        return _executor;
+    }
+
+    @Override
+    public synchronized void close() {
+        if (_executor != null)
+            _executor.shutdown();
+        _executor = null;
+    }
+}
@@ -18,13 +18,20 @@
  */
 package org.apache.openjpa.jdbc.kernel;
 
+import java.util.ArrayDeque;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Deque;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
 import java.util.Objects;
 import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CopyOnWriteArrayList;
 import java.util.concurrent.locks.Lock;
 import java.util.concurrent.locks.ReentrantReadWriteLock;
 
@@ -40,10 +47,15 @@ import org.apache.openjpa.lib.conf.Configuration;
 import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.lib.util.StringUtil;
-import org.apache.openjpa.util.CacheMap;
 
 /**
  * An implementation of the cache of {@link PreparedQuery prepared queries}.
+ * Lookups take no locks; only changes to the cache are serialized. Each
+ * lookup marks the query as used. When the cache exceeds its maximum size,
+ * the oldest query not used since it was last passed over is evicted, and
+ * used queries get a second chance at the end of the queue.
+ * The exclusion pattern matching an identifier is computed once and
+ * remembered until the exclusion patterns change.
  *
  * @author Pinaki Poddar
  *
@@ -52,13 +64,27 @@ import org.apache.openjpa.util.CacheMap;
  */
 public class PreparedQueryCacheImpl implements PreparedQueryCache {
 	private static final String PATTERN_SEPARATOR = "\\;";
+	private static final int DEFAULT_CACHE_SIZE = 1000;
+	// upper bound of remembered pattern matches, to bound dynamic queries
+	private static final int MAX_MATCHES = 10000;
+	// upper bound of remembered uncachable identifiers, for the same reason
+	private static final int MAX_UNCACHABLES = 10000;
+	private static final Exclusion NO_MATCH = new WeakExclusion(null, null);
 	// Key: Query identifier
-	private final Map<String, PreparedQuery> _delegate;
+	private final Map<String, CachedQuery> _delegate;
+	// The cached queries in eviction order, guarded by the write lock
+	private final Map<String, CachedQuery> _queue;
 	// Key: Query identifier Value: Reason why excluded
 	private final Map<String, Exclusion> _uncachables;
+	// The uncachable identifiers in the order they were marked, guarded by
+	// the write lock
+	private final Deque<String> _uncachableOrder;
 	private final List<Exclusion> _exclusionPatterns;
+	// Key: Query identifier Value: Matched exclusion pattern or NO_MATCH
+	private volatile Map<String, Exclusion> _matches;
 	private QueryStatistics<String> _stats;
 	private boolean _statsEnabled;
+	private int _maxSize = DEFAULT_CACHE_SIZE;
 
 	private Lock _writeLock;
 	private Lock _readLock;
@@ -66,9 +92,12 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
     private static Localizer _loc = Localizer.forPackage(PreparedQueryCacheImpl.class);
 
 	public PreparedQueryCacheImpl() {
-		_delegate = new CacheMap();
-		_uncachables = new CacheMap();
-		_exclusionPatterns = new ArrayList<>();
+		_delegate = new ConcurrentHashMap<>();
+		_queue = new LinkedHashMap<>();
+		_uncachables = new ConcurrentHashMap<>();
+		_uncachableOrder = new ArrayDeque<>();
+		_exclusionPatterns = new CopyOnWriteArrayList<>();
+		_matches = new ConcurrentHashMap<>();
 
 		ReentrantReadWriteLock _rwl = new ReentrantReadWriteLock();
         _writeLock = _rwl.writeLock();
@@ -96,15 +125,10 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
 
 	@Override
     public Map<String,String> getMapView() {
-		lock(false);
-		try {
-            Map<String, String> view = new TreeMap<>();
-            for (Map.Entry<String, PreparedQuery> entry : _delegate.entrySet())
-                view.put(entry.getKey(), entry.getValue().getTargetQuery());
-			return view;
-		} finally {
-			unlock(false);
-		}
+        Map<String, String> view = new TreeMap<>();
+        for (Map.Entry<String, CachedQuery> entry : _delegate.entrySet())
+            view.put(entry.getKey(), entry.getValue().query.getTargetQuery());
+        return view;
 	}
 
 	/**
@@ -135,9 +159,12 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
 				markUncachable(id, exclusion);
 				return false;
 			}
-			_delegate.put(id, q);
+			CachedQuery cached = new CachedQuery(q);
+			_delegate.put(id, cached);
+			_queue.put(id, cached);
 			if (_log != null && _log.isTraceEnabled())
 				_log.trace(_loc.get("prepared-query-cached", id));
+			evict(id);
 			return true;
 		} finally {
 			unlock(false);
@@ -165,6 +192,7 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
 			if (_log != null && _log.isTraceEnabled())
                 _log.trace(_loc.get("prepared-query-invalidate", id));
 			boolean rc = _delegate.remove(id) != null;
+			_queue.remove(id);
 			if (_statsEnabled && rc) {
 			    _stats.recordEviction(id);
 			}
@@ -174,28 +202,55 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
 		}
 	}
 
+    /**
+     * Drop queries other than the given one from the head of the eviction
+     * queue while this cache holds more than its maximum size. A query used
+     * since it was queued is moved to the end of the queue instead, at most
+     * once per query in each call. Must be called with the write lock held.
+     */
+    private void evict(String id) {
+        if (_maxSize < 0)
+            return;
+        int chances = _queue.size();
+        while (_delegate.size() > _maxSize && !_queue.isEmpty()) {
+            Iterator<Map.Entry<String, CachedQuery>> itr =
+                _queue.entrySet().iterator();
+            Map.Entry<String, CachedQuery> eldest = itr.next();
+            String key = eldest.getKey();
+            CachedQuery cached = eldest.getValue();
+            boolean keep = key.equals(id);
+            if (keep && _queue.size() == 1)
+                return;
+            if (keep || (cached.used && chances-- > 0)) {
+                itr.remove();
+                cached.used = false;
+                _queue.put(key, cached);
+                continue;
+            }
+            itr.remove();
+            _delegate.remove(key);
+            if (_statsEnabled)
+                _stats.recordEviction(key);
+        }
+    }
+
     @Override
     public PreparedQuery get(String id) {
-        lock(true);
-        try {
-            return _delegate.get(id);
-        } finally {
-            unlock(true);
-        }
+        CachedQuery cached = _delegate.get(id);
+        if (cached == null)
+            return null;
+        if (!cached.used)
+            cached.used = true;
+        return cached.query;
     }
 
 	@Override
     public Boolean isCachable(String id) {
-		lock(true);
-		try {
-			if (_uncachables.containsKey(id))
-				return Boolean.FALSE;
-			if (_delegate.containsKey(id))
-				return Boolean.TRUE;
-			return null;
-		} finally {
-			unlock(true);
-		}
+		if (_uncachables.containsKey(id))
+			return Boolean.FALSE;
+		if (_delegate.containsKey(id))
+			return Boolean.TRUE;
+		return null;
 	}
 
 	@Override
@@ -203,14 +258,20 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
 		lock(false);
 		try {
 			if (_uncachables.put(id, exclusion) == null) {
+			    _uncachableOrder.addLast(id);
+			    if (_uncachableOrder.size() > MAX_UNCACHABLES)
+			        _uncachables.remove(_uncachableOrder.removeFirst());
 			    if (_log != null && _log.isTraceEnabled())
 			        _log.trace(_loc.get("prepared-query-uncache", id, exclusion));
 			}
-			PreparedQuery pq = _delegate.remove(id);
-            if (_statsEnabled && pq != null) {
+			_queue.remove(id);
+			CachedQuery cached = _delegate.remove(id);
+            if (cached == null)
+                return null;
+            if (_statsEnabled) {
                 _stats.recordEviction(id);
             }
-            return pq;
+            return cached.query;
 		} finally {
 			unlock(false);
 		}
@@ -251,6 +312,7 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
 		    String reason = _loc.get("prepared-query-excluded-by-user", pattern).getMessage();
 			Exclusion exclusion = new WeakExclusion(pattern, reason);
 			_exclusionPatterns.add(exclusion);
+			_matches = new ConcurrentHashMap<>();
             Collection<String> invalidKeys = getMatchedKeys(pattern, _delegate.keySet());
 			for (String invalidKey : invalidKeys) {
 			    Exclusion invalid = new WeakExclusion(invalidKey, reason);
@@ -272,12 +334,15 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
 		try {
             Exclusion exclusion = new WeakExclusion(pattern, null);
 			_exclusionPatterns.remove(exclusion);
+			_matches = new ConcurrentHashMap<>();
             Collection<String> reborns = getMatchedKeys(pattern, _uncachables);
 			for (String rebornKey : reborns) {
                 _uncachables.remove(rebornKey);
 	            if (_log != null && _log.isTraceEnabled())
 	                _log.trace(_loc.get("prepared-query-remove-pattern", pattern, rebornKey));
 			}
+			if (!reborns.isEmpty())
+			    _uncachableOrder.removeAll(new HashSet<>(reborns));
 		} finally {
 			unlock(false);
 		}
@@ -289,13 +354,28 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
 	}
 
 	/**
-	 * Gets the pattern that matches the given identifier.
+	 * Gets the pattern that matches the given identifier. The match is
+	 * remembered until the patterns change, which replaces the remembered
+	 * matches only after the patterns themselves.
 	 */
 	private Exclusion getMatchedExclusionPattern(String id) {
-		for (Exclusion pattern : _exclusionPatterns)
-			if (pattern.matches(id))
-				return pattern;
-		return null;
+		if (id == null || _exclusionPatterns.isEmpty())
+			return null;
+		Map<String, Exclusion> matches = _matches;
+		Exclusion match = matches.get(id);
+		if (match == null) {
+			match = NO_MATCH;
+			for (Exclusion pattern : _exclusionPatterns) {
+				if (pattern.matches(id)) {
+					match = pattern;
+					break;
+				}
+			}
+			if (matches.size() >= MAX_MATCHES)
+				matches.clear();
+			matches.put(id, match);
+		}
+		return (match == NO_MATCH) ? null : match;
 	}
 
 	/**
@@ -366,8 +446,14 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
 
     @Override
     public void clear() {
-        _delegate.clear();
-        _stats.clear();
+        lock(false);
+        try {
+            _delegate.clear();
+            _queue.clear();
+            _stats.clear();
+        } finally {
+            unlock(false);
+        }
     }
 
     @Override
@@ -380,8 +466,22 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
         return _statsEnabled;
     }
 
+    /**
+     * The maximum number of cached queries, or -1 for no limit. Defaults to
+     * 1000.
+     */
     public void setMaxCacheSize(int size) {
-        ((CacheMap)_delegate).setCacheSize(size);
+        lock(false);
+        try {
+            _maxSize = size;
+            evict(null);
+        } finally {
+            unlock(false);
+        }
+    }
+
+    public int getMaxCacheSize() {
+        return _maxSize;
     }
 
     public int getCacheSize() {
@@ -406,6 +506,19 @@ public class PreparedQueryCacheImpl implements PreparedQueryCache {
                                  new QueryStatistics.None<>();
     }
 
+    /**
+     * A cached query and whether it was used since it was queued for
+     * eviction.
+     */
+    private static class CachedQuery {
+        final PreparedQuery query;
+        volatile boolean used;
+
+        CachedQuery(PreparedQuery query) {
+            this.query = query;
+        }
+    }
+
     /**
      * An immutable abstract pattern for exclusion.
      *
@@ -25,10 +25,13 @@ import java.util.Map;
 
 import org.apache.openjpa.jdbc.kernel.JDBCStoreQuery;
 import org.apache.openjpa.jdbc.meta.ClassMapping;
+import org.apache.openjpa.jdbc.schema.Column;
 import org.apache.openjpa.jdbc.sql.DBDictionary;
 import org.apache.openjpa.jdbc.sql.Joins;
 import org.apache.openjpa.jdbc.sql.SQLBuffer;
 import org.apache.openjpa.jdbc.sql.Select;
+import org.apache.openjpa.kernel.KeysetToken;
+import org.apache.openjpa.kernel.QueryHints;
 import org.apache.openjpa.kernel.exps.AbstractExpressionVisitor;
 import org.apache.openjpa.kernel.exps.Constant;
 import org.apache.openjpa.kernel.exps.Context;
@@ -38,6 +41,7 @@ import org.apache.openjpa.kernel.exps.Subquery;
 import org.apache.openjpa.kernel.exps.Value;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.util.UnsupportedException;
+import org.apache.openjpa.util.UserException;
 
 /**
  * Turns parsed queries into selects.
@@ -317,6 +321,44 @@ public class SelectConstructor
         return where.append(")");
     }
 
+    /**
+     * Add the seek condition of the {@link QueryHints#HINT_KEYSET_AFTER}
+     * token of the fetch configuration, if any.
+     */
+    private void whereAfter(Select sel, ExpContext ctx, QueryExpressions exps,
+        QueryExpressionsState state) {
+        KeysetToken after = KeysetToken.valueOf(ctx.fetch.getHint(
+            QueryHints.HINT_KEYSET_AFTER), ctx.store.getContext().getClassLoader());
+        if (after == null)
+            return;
+        Object[] values = after.getValues();
+        if (values.length != exps.ordering.length)
+            throw new UserException(_loc.get("keyset-bad-ordering", after,
+                exps.ordering.length));
+        if (sel.getFromSelect() != null)
+            throw new UnsupportedException(_loc.get("keyset-from-select"));
+
+        DBDictionary dict = ctx.store.getDBDictionary();
+        SQLBuffer[] orders = new SQLBuffer[values.length];
+        Column[] cols = new Column[values.length];
+        Val val;
+        for (int i = 0; i < values.length; i++) {
+            val = (Val) exps.ordering[i];
+            // nulls sort differently across databases, so cannot seek on them
+            if (values[i] == null
+                || val.length(sel, ctx, state.ordering[i]) != 1)
+                throw new UnsupportedException(_loc.get("keyset-bad-order",
+                    exps.orderingClauses[i], values[i]));
+            orders[i] = new SQLBuffer(dict);
+            val.appendTo(sel, ctx, state.ordering[i], orders[i], 0);
+            values[i] = val.toDataStoreValue(sel, ctx, state.ordering[i],
+                values[i]);
+            if (val instanceof PCPath)
+                cols[i] = ((PCPath) val).getColumns(state.ordering[i])[0];
+        }
+        sel.whereAfter(orders, exps.ascending, values, cols);
+    }
+
     /**
      * Select the data for this query.
      */
@@ -336,6 +378,8 @@ public class SelectConstructor
         for (int i = 0; i < exps.ordering.length; i++)
             ((Val) exps.ordering[i]).orderBy(sel, ctx, state.ordering[i],
                 exps.ascending[i]);
+        if (sel.getParent() == null)
+            whereAfter(sel, ctx, exps, state);
 
         // if no result string set, select matching objects like normal
         if (exps.projections.length == 0 && sel.getParent() == null) {
@@ -231,8 +231,8 @@ public class EmbedFieldStrategy
         rm = new EmbeddedRowManager(rm, row);
         FieldMapping[] fields = field.getEmbeddedMapping().getFieldMappings();
         for (int i = 0; i < fields.length; i++)
-            if (em.getDirty().get(i)
-                && !em.getFlushed().get(i)
+            if (em.isFieldDirty(i)
+                && !em.isFieldFlushed(i)
                 && !Boolean.TRUE.equals(fields[i].isCustomUpdate(em, store)))
                 fields[i].update(em, store, rm);
 
@@ -244,7 +244,7 @@ public class EmbedFieldStrategy
     public void delete(OpenJPAStateManager sm, JDBCStore store, RowManager rm)
         throws SQLException {
         OpenJPAStateManager em = null;
-        if (sm.getLoaded().get(field.getIndex()))
+        if (sm.isFieldLoaded(field.getIndex()))
             em = store.getContext().getStateManager(sm.fetchObject
                 (field.getIndex()));
         Row row = field.getRow(sm, store, rm, Row.ACTION_DELETE);
@@ -373,8 +373,8 @@ public class EmbedFieldStrategy
             em = new NullEmbeddedStateManager(sm, field);
         FieldMapping[] fields = field.getEmbeddedMapping().getFieldMappings();
         for (int i = 0; i < fields.length; i++)
-            if (em.getDirty().get(i)
-                && !em.getFlushed().get(i)
+            if (em.isFieldDirty(i)
+                && !em.isFieldFlushed(i)
                 && !Boolean.FALSE.equals(fields[i].isCustomUpdate(em, store)))
                 fields[i].customUpdate(em, store);
     }
@@ -533,7 +533,7 @@ public class EmbedFieldStrategy
                 } else {
                     fields[i].load(em, store, fetch, res);
                 }
-                needsLoad = needsLoad || (!em.getLoaded().get(i) &&
+                needsLoad = needsLoad || (!em.isFieldLoaded(i) &&
                     fetch.requiresFetch(fields[i])
                         == FetchConfiguration.FETCH_LOAD);
             } finally {
@@ -854,6 +854,11 @@ public class EmbedFieldStrategy
             return EMPTY_BITSET;
         }
 
+        @Override
+        public boolean isFieldFlushed(int field) {
+            return false;
+        }
+
         @Override
         public BitSet getUnloaded(FetchConfiguration fetch) {
             throw new InternalException();
@@ -78,6 +78,7 @@ import org.apache.openjpa.jdbc.identifier.DBIdentifier.DBIdentifierType;
 import org.apache.openjpa.jdbc.identifier.DBIdentifierRule;
 import org.apache.openjpa.jdbc.identifier.DBIdentifierUtil;
 import org.apache.openjpa.jdbc.identifier.Normalizer;
+import org.apache.openjpa.jdbc.kernel.BatchLimitTuner;
 import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
 import org.apache.openjpa.jdbc.kernel.JDBCStore;
 import org.apache.openjpa.jdbc.kernel.exps.ExpContext;
@@ -513,6 +514,26 @@ public class DBDictionary
     // any positive number = batch limit
     public int batchLimit = NO_BATCH;
 
+    // adaptive batching tunes the limit of each statement between
+    // minBatchLimit and maxBatchLimit, starting from batchLimit
+    public boolean adaptiveBatchLimit = false;
+    public int minBatchLimit = 10;
+    public int maxBatchLimit = 1000;
+    public long maxBatchMillis = 0;
+    private BatchLimitTuner _batchLimitTuner = null;
+
+    // multi-row inserts fold batched inserts of the same statement into
+    // INSERT ... VALUES (...), (...) statements
+    public boolean supportsMultiRowInsert = false;
+    public boolean multiRowInsert = false;
+    public int maxMultiRowInsertRows = 100;
+    public int maxParameterCount = Integer.MAX_VALUE;
+
+    // rendered select SQL is cached for up to selectSQLCacheSize select
+    // shapes; the default of 0 disables the cache
+    public int selectSQLCacheSize = 0;
+    private volatile SelectSQLCache _selectSQLCache = null;
+
     public final Map<Integer,Set<String>> sqlStateCodes =
         new HashMap<>();
 
@@ -2559,6 +2580,37 @@ public class DBDictionary
         JDBCFetchConfiguration fetch) {
         sel.addJoinClassConditions();
         boolean update = forUpdate && sel.getFromSelect() == null;
+        SelectSQLCache cache = (fetch == null) ? null : getSelectSQLCache();
+        if (cache != null) {
+            SelectSQLCache.Key key = SelectSQLCache.newKey(sel, forUpdate,
+                update, getSelectOperation(fetch),
+                getForUpdateClause(fetch, forUpdate, sel));
+            Object cached = (key == null) ? null : cache.get(key);
+            if (cached instanceof SelectSQLCache.Entry)
+                return ((SelectSQLCache.Entry) cached).toSQL(sel.getWhere(),
+                    this);
+            if (key != null && cached == null) {
+                // render the new shape around a marker in place of the where
+                SQLBuffer where = sel.getWhere();
+                SQLBuffer marker = null;
+                if (where != null && !where.isEmpty())
+                    marker = new SQLBuffer(this).append(
+                        SelectSQLCache.WHERE_MARKER);
+                SQLBuffer sql = cache.put(key, toSelect(sel, forUpdate, fetch,
+                    update, marker), where, this);
+                if (sql != null)
+                    return sql;
+            }
+        }
+        return toSelect(sel, forUpdate, fetch, update, null);
+    }
+
+    /**
+     * Create a SELECT statement for the given instance, with the given
+     * buffer in place of its where clause if not null.
+     */
+    private SQLBuffer toSelect(Select sel, boolean forUpdate,
+        JDBCFetchConfiguration fetch, boolean update, SQLBuffer where) {
         SQLBuffer select = getSelects(sel, false, update);
         SQLBuffer ordering = null;
         if (!sel.isAggregate() || sel.getGrouping() != null)
@@ -2568,7 +2620,8 @@ public class DBDictionary
             from = getFromSelect(sel, forUpdate);
         else
             from = getFrom(sel, update);
-        SQLBuffer where = getWhere(sel, update);
+        if (where == null)
+            where = getWhere(sel, update);
         return toSelect(select, fetch, from, where, sel.getGrouping(),
             sel.getHaving(), ordering, sel.isDistinct(), forUpdate,
             sel.getStartIndex(), sel.getEndIndex(), sel);
@@ -5565,6 +5618,124 @@ public class DBDictionary
         batchLimit = limit;
     }
 
+    /**
+     * Return the tuner that adapts the batch limit of each statement, or
+     * null if adaptive batching is disabled or batching is disabled
+     * altogether.
+     *
+     * @since 3.2.1
+     */
+    public synchronized BatchLimitTuner getBatchLimitTuner() {
+        int limit = getBatchLimit();
+        if (!adaptiveBatchLimit || limit == NO_BATCH || limit == 1)
+            return null;
+        if (_batchLimitTuner == null)
+            _batchLimitTuner = new BatchLimitTuner(limit,
+                minBatchLimit, maxBatchLimit, maxBatchMillis, log);
+        return _batchLimitTuner;
+    }
+
+    /**
+     * Return the cache of rendered select SQL, or null if disabled.
+     *
+     * @since 3.2.1
+     */
+    public SelectSQLCache getSelectSQLCache() {
+        if (selectSQLCacheSize <= 0)
+            return null;
+        SelectSQLCache cache = _selectSQLCache;
+        if (cache == null) {
+            synchronized (this) {
+                cache = _selectSQLCache;
+                if (cache == null) {
+                    cache = new SelectSQLCache(selectSQLCacheSize);
+                    _selectSQLCache = cache;
+                }
+            }
+        }
+        return cache;
+    }
+
+    /**
+     * Return true if batched inserts of the given row should be folded into
+     * multi-row insert statements. Requires the <code>multiRowInsert</code>
+     * option to be enabled on a dictionary that supports multi-row inserts.
+     *
+     * @param row the first of the batched rows
+     * @param sql the statement of the batched rows
+     * @since 3.2.1
+     */
+    public boolean canMultiRowInsert(RowImpl row, String sql) {
+        return multiRowInsert && supportsMultiRowInsert
+            && maxMultiRowInsertRows > 1
+            && row.getAction() == Row.ACTION_INSERT
+            && getValuesIndex(sql) != -1;
+    }
+
+    /**
+     * Return the largest number of rows a single multi-row insert of the
+     * given single-row insert statement may hold without going past
+     * <code>maxMultiRowInsertRows</code> or <code>maxParameterCount</code>.
+     *
+     * @since 3.2.1
+     */
+    public int getMultiRowInsertLimit(String sql) {
+        int params = 0;
+        int values = getValuesIndex(sql);
+        if (values != -1) {
+            boolean quoted = false;
+            for (int i = values; i < sql.length(); i++) {
+                char c = sql.charAt(i);
+                if (c == '\'')
+                    quoted = !quoted;
+                else if (c == '?' && !quoted)
+                    params++;
+            }
+        }
+        int limit = maxMultiRowInsertRows;
+        if (params > 0)
+            limit = Math.min(limit, maxParameterCount / params);
+        return Math.max(1, limit);
+    }
+
+    /**
+     * Return the statement inserting the given number of rows at once,
+     * given the statement inserting a single row as generated by
+     * {@link RowImpl#getSQL}. The parameters of the rows follow each other.
+     *
+     * @since 3.2.1
+     */
+    public String getMultiRowInsertSQL(String sql, int rows) {
+        String values = sql.substring(getValuesIndex(sql));
+        StringBuilder buf = new StringBuilder(sql.length()
+            + (values.length() + 2) * (rows - 1));
+        buf.append(sql);
+        for (int i = 1; i < rows; i++)
+            buf.append(", ").append(values);
+        return buf.toString();
+    }
+
+    /**
+     * Return the index of the parenthesized values of the given single-row
+     * insert statement, or -1 if it has no values list. Delimited
+     * identifiers and string literals are skipped, so that column names
+     * containing <code>VALUES</code> do not confuse the search.
+     */
+    private static int getValuesIndex(String sql) {
+        char quote = 0;
+        for (int i = 0; i < sql.length(); i++) {
+            char c = sql.charAt(i);
+            if (quote != 0) {
+                if (c == quote)
+                    quote = 0;
+            } else if (c == '"' || c == '\'' || c == '`')
+                quote = c;
+            else if (c == ')' && sql.startsWith(") VALUES (", i))
+                return i + ") VALUES ".length();
+        }
+        return -1;
+    }
+
     /**
      * Validate the batch process. In some cases, we can't batch the statements
      * due to some restrictions. For example, if the GeneratedType=IDENTITY,
@@ -70,6 +70,11 @@ public class DerbyDictionary
 
         supportsComments = true;
 
+        // a multi-row VALUES clause is compiled into nested unions, so keep
+        // statements small
+        supportsMultiRowInsert = true;
+        maxMultiRowInsertRows = 50;
+
         // Derby does still not support 'WITH TIMEZONE' from the SQL92 standard
 
         fixedSizeTypeNameSet.addAll(Arrays.asList(new String[]{
@@ -889,6 +889,12 @@ public class LogicalUnion
             sel.where(sql, joins);
         }
 
+        @Override
+        public void whereAfter(SQLBuffer[] orders, boolean[] asc,
+            Object[] values, Column[] cols) {
+            sel.whereAfter(orders, asc, values, cols);
+        }
+
         @Override
         public void where(String sql) {
             sel.where(sql);
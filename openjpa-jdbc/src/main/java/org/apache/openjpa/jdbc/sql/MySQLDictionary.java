@@ -98,6 +98,8 @@ public class MySQLDictionary
         requiresTargetForDelete = true;
         supportsSelectStartIndex = true;
         supportsSelectEndIndex = true;
+        supportsMultiRowInsert = true;
+        maxParameterCount = 65535;
 
         datePrecision = MICRO;
 
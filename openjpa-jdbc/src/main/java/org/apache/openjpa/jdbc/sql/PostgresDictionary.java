@@ -135,6 +135,10 @@ public class PostgresDictionary extends DBDictionary {
         supportsSelectStartIndex = true;
         supportsSelectEndIndex = true;
 
+        // the driver sends parameter counts as a 16 bit value
+        supportsMultiRowInsert = true;
+        maxParameterCount = 32767;
+
         maxTableNameLength = 63;
         maxColumnNameLength = 63;
         maxIndexNameLength = 63;
@@ -850,7 +850,7 @@ public class RowImpl
      * Return the SQL for a prepared statement update on this row.
      */
     private String getUpdateSQL(DBDictionary dict) {
-        StringBuilder buf = new StringBuilder();
+        StringBuilder buf = SQLBuilderPool.take();
         buf.append("UPDATE ").append(dict.getFullName(getTable(), false)).
             append(" SET ");
 
@@ -872,48 +872,56 @@ public class RowImpl
         }
 
         appendWhere(buf, dict);
-        return buf.toString();
+        return SQLBuilderPool.release(buf);
     }
 
     /**
      * Return the SQL for a prepared statement insert on this row.
      */
     private String getInsertSQL(DBDictionary dict) {
-        StringBuilder buf = new StringBuilder();
-        StringBuilder vals = new StringBuilder();
+        StringBuilder buf = SQLBuilderPool.take();
         buf.append("INSERT INTO ").
             append(dict.getFullName(getTable(), false)).append(" (");
 
+        // append the column names, then their values in a second pass
         boolean hasVal = false;
         for (int i = 0; i < _cols.length; i++) {
             if (_vals[i] == null)
                 continue;
 
-            if (hasVal) {
+            if (hasVal)
                 buf.append(", ");
-                vals.append(", ");
-            }
             buf.append(dict.getColumnDBName(_cols[i]));
+            hasVal = true;
+        }
+
+        buf.append(") VALUES (");
+        hasVal = false;
+        for (int i = 0; i < _cols.length; i++) {
+            if (_vals[i] == null)
+                continue;
+
+            if (hasVal)
+                buf.append(", ");
             if (_types[i] == RAW)
-                vals.append(_vals[i]);
+                buf.append(_vals[i]);
             else
-                vals.append(dict.getMarkerForInsertUpdate(_cols[i], _vals[i]));
+                buf.append(dict.getMarkerForInsertUpdate(_cols[i], _vals[i]));
             hasVal = true;
         }
-
-        buf.append(") VALUES (").append(vals.toString()).append(")");
-        return buf.toString();
+        buf.append(")");
+        return SQLBuilderPool.release(buf);
     }
 
     /**
      * Return the SQL for a prepared statement delete on this row.
      */
     private String getDeleteSQL(DBDictionary dict) {
-        StringBuilder buf = new StringBuilder();
+        StringBuilder buf = SQLBuilderPool.take();
         buf.append("DELETE FROM ").
             append(dict.getFullName(getTable(), false));
         appendWhere(buf, dict);
-        return buf.toString();
+        return SQLBuilderPool.release(buf);
     }
 
     /**
@@ -968,6 +976,19 @@ public class RowImpl
     public void flush(PreparedStatement stmnt, int idx, DBDictionary dict,
         JDBCStore store)
         throws SQLException {
+        flushValues(stmnt, idx, dict, store);
+    }
+
+    /**
+     * Flush the row's values to the given prepared statement, starting at
+     * the given parameter index.
+     *
+     * @return the index of the parameter following the last one set
+     * @since 3.2.1
+     */
+    public int flushValues(PreparedStatement stmnt, int idx, DBDictionary dict,
+        JDBCStore store)
+        throws SQLException {
 
         // this simple method works because the SQL is always prepared
         // based on the indexing of the columns in the table object -- the
@@ -1004,6 +1025,7 @@ public class RowImpl
             }
         }
         setFlushed(true);
+        return idx;
     }
 
     /**
@@ -22,6 +22,7 @@ import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.Iterator;
 import java.util.LinkedHashMap;
 import java.util.List;
 import java.util.Map;
@@ -173,6 +174,75 @@ public class RowManagerImpl
 
     }
 
+    /**
+     * Move the rows of the given tables to a new row manager, which is
+     * returned.
+     *
+     * @since 3.2.1
+     */
+    public RowManagerImpl split(Collection<Table> tables) {
+        RowManagerImpl split = new RowManagerImpl(_primaryOrder != null);
+        split._inserts = split(_inserts, tables);
+        split._updates = split(_updates, tables);
+        split._deletes = split(_deletes, tables);
+        split._secondaryUpdates = split(_secondaryUpdates, tables);
+        split._secondaryDeletes = split(_secondaryDeletes, tables);
+        split._allRowUpdates = split(_allRowUpdates, tables);
+        split._allRowDeletes = split(_allRowDeletes, tables);
+        if (_primaryOrder != null) {
+            for (Iterator<PrimaryRow> itr = _primaryOrder.iterator(); itr.hasNext();) {
+                PrimaryRow row = itr.next();
+                if (tables.contains(row.getTable())) {
+                    split._primaryOrder.add(row);
+                    itr.remove();
+                }
+            }
+        }
+        for (PrimaryRow row : split.getInserts()) {
+            if (row.getTable().getAutoAssignedColumns().length > 0) {
+                split._auto = true;
+                break;
+            }
+        }
+        _key = null;
+        _row = null;
+        return split;
+    }
+
+    private static Map<Key, PrimaryRow> split(Map<Key, PrimaryRow> rows,
+        Collection<Table> tables) {
+        if (rows == null)
+            return null;
+        Map<Key, PrimaryRow> split = null;
+        for (Iterator<Map.Entry<Key, PrimaryRow>> itr = rows.entrySet().iterator(); itr.hasNext();) {
+            Map.Entry<Key, PrimaryRow> entry = itr.next();
+            if (tables.contains(entry.getKey().table)) {
+                if (split == null)
+                    split = new LinkedHashMap<>();
+                split.put(entry.getKey(), entry.getValue());
+                itr.remove();
+            }
+        }
+        return split;
+    }
+
+    private static <T extends Row> Collection<T> split(Collection<T> rows,
+        Collection<Table> tables) {
+        if (rows == null)
+            return null;
+        Collection<T> split = null;
+        for (Iterator<T> itr = rows.iterator(); itr.hasNext();) {
+            T row = itr.next();
+            if (tables.contains(row.getTable())) {
+                if (split == null)
+                    split = new ArrayList<>();
+                split.add(row);
+                itr.remove();
+            }
+        }
+        return split;
+    }
+
     @Override
     public Row getSecondaryRow(Table table, int action) {
         return new SecondaryRow(table, action);
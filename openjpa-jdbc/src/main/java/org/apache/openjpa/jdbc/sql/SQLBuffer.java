@@ -64,6 +64,8 @@ public final class SQLBuffer
 
     private final DBDictionary _dict;
     private final StringBuilder _sql = new StringBuilder();
+    // string of _sql returned by getSQL, until the next change
+    private transient String _str = null;
     private List _subsels = null;
     private List _params = null;
     private List _cols = null;
@@ -141,17 +143,19 @@ public final class SQLBuffer
         }
 
         if (!paramOnly) {
+            // copy straight from the other builder, without an interim string
+            _str = null;
             if (sqlIndex == _sql.length())
-                _sql.append(buf._sql.toString());
+                _sql.append(buf._sql);
             else
-                _sql.insert(sqlIndex, buf._sql.toString());
+                _sql.insert(sqlIndex, buf._sql);
         }
 
         if (buf._params != null) {
             if (_params == null)
-                _params = new ArrayList();
+                _params = new ArrayList(buf._params.size());
             if (_cols == null && buf._cols != null) {
-                _cols = new ArrayList();
+                _cols = new ArrayList(_params.size() + buf._cols.size());
                 while (_cols.size() < _params.size())
                     _cols.add(null);
             }
@@ -221,26 +225,31 @@ public final class SQLBuffer
     }
 
     public SQLBuffer append(DBIdentifier name) {
+        _str = null;
         _sql.append(_dict.toDBName(name));
         return this;
     }
 
     public SQLBuffer append(Table table) {
+        _str = null;
         _sql.append(_dict.getFullName(table, false));
         return this;
     }
 
     public SQLBuffer append(Sequence seq) {
+        _str = null;
         _sql.append(_dict.getFullName(seq));
         return this;
     }
 
     public SQLBuffer append(Column col) {
+        _str = null;
         _sql.append(_dict.getColumnDBName(col));
         return this;
     }
 
     public SQLBuffer append(String s) {
+        _str = null;
         _sql.append(s);
         return this;
     }
@@ -264,6 +273,7 @@ public final class SQLBuffer
      */
     private SQLBuffer append(Select sel, JDBCFetchConfiguration fetch,
         boolean count) {
+        _str = null;
         _sql.append("(");
         Subselect sub = new Subselect();
         sub.select = sel;
@@ -323,6 +333,7 @@ public final class SQLBuffer
     }
 
     public SQLBuffer appendValue(Object o, Column col, Parameter userParam, boolean useParamToken) {
+        _str = null;
         if (o == null)
             _sql.append("NULL");
         else if (o instanceof Raw)
@@ -362,13 +373,13 @@ public final class SQLBuffer
                     _cols.add(col);
             } else {
                 if (type == String.class) {
-                    _sql.append("'" + o.toString().replace("'", "''") + "'");
+                    appendLiteral(o.toString());
 
                 } else if ( type == Character.class ) {
                     if (_dict.storeCharsAsNumbers) {
                         _sql.append(Integer.toString((Character) o));
                     } else {
-                        _sql.append("'" + o.toString().replace("'", "''") + "'");
+                        appendLiteral(o.toString());
                     }
                 } else if (type == Boolean.class) {
                     Boolean b = (Boolean) o;
@@ -382,6 +393,18 @@ public final class SQLBuffer
         return this;
     }
 
+    /**
+     * Append the given string as a quoted SQL literal.
+     */
+    private void appendLiteral(String str) {
+        _sql.append('\'');
+        if (str.indexOf('\'') == -1)
+            _sql.append(str);
+        else
+            _sql.append(str.replace("'", "''"));
+        _sql.append('\'');
+    }
+
     private boolean validParamLiteralType(Class<?> type) {
         boolean ret = type == String.class
                 || type == Integer.class
@@ -429,7 +452,9 @@ public final class SQLBuffer
      */
     public String getSQL(boolean replaceParams) {
         resolveSubselects();
-        String sql = _sql.toString();
+        if (_str == null)
+            _str = _sql.toString();
+        String sql = _str;
         if (!replaceParams || _params == null || _params.isEmpty())
             return sql;
 
@@ -624,7 +649,7 @@ public final class SQLBuffer
      * parameters.
      */
     public boolean sqlEquals(String sql) {
-        return _sql.toString().equals(sql);
+        return sql != null && sql.contentEquals(_sql);
     }
 
     @Override
@@ -647,8 +672,10 @@ public final class SQLBuffer
     public void addCastForParam(String oper, Val val) {
         if (_sql.charAt(_sql.length() - 1) == '?') {
             String castString = _dict.addCastAsType(oper, val);
-            if (castString != null)
+            if (castString != null) {
+                _str = null;
                 _sql.replace(_sql.length() - 1, _sql.length(), castString);
+            }
         }
     }
 
@@ -660,6 +687,7 @@ public final class SQLBuffer
      * @param newString
      */
     public void replaceSqlString(int start, int end, String newString) {
+        _str = null;
         _sql.replace(start, end, newString);
     }
 
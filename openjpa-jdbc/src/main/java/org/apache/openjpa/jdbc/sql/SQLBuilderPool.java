@@ -0,0 +1,83 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+/**
+ * Thread-local pool of the scratch builders SQL strings are generated in.
+ * Generating the SQL of a statement only allocates the resulting string
+ * rather than a builder and its growing arrays. Builders are taken with
+ * {@link #take} and must be given back with {@link #release} once their
+ * contents were copied out; a builder taken while all the builders of the
+ * thread are in use is simply not pooled.
+ *
+ * @since 3.2.1
+ */
+final class SQLBuilderPool {
+
+    /**
+     * The number of builders pooled per thread, enough for the builders
+     * nested in a single statement generation.
+     */
+    private static final int SIZE = 2;
+
+    /**
+     * Builders that grew larger are dropped rather than pooled, so that a
+     * single huge statement does not stay referenced by its thread.
+     */
+    private static final int MAX_CAPACITY = 8 * 1024;
+
+    private static final ThreadLocal<StringBuilder[]> _pool =
+        ThreadLocal.withInitial(() -> new StringBuilder[SIZE]);
+
+    private SQLBuilderPool() {
+    }
+
+    /**
+     * Return an empty builder.
+     */
+    static StringBuilder take() {
+        StringBuilder[] pool = _pool.get();
+        for (int i = 0; i < SIZE; i++) {
+            if (pool[i] != null) {
+                StringBuilder buf = pool[i];
+                pool[i] = null;
+                return buf;
+            }
+        }
+        return new StringBuilder(128);
+    }
+
+    /**
+     * Return the contents of the given builder and give it back to the pool.
+     */
+    static String release(StringBuilder buf) {
+        String str = buf.toString();
+        if (buf.capacity() > MAX_CAPACITY)
+            return str;
+        buf.setLength(0);
+        StringBuilder[] pool = _pool.get();
+        for (int i = 0; i < SIZE; i++) {
+            if (pool[i] == null) {
+                pool[i] = buf;
+                break;
+            }
+        }
+        return str;
+    }
+}
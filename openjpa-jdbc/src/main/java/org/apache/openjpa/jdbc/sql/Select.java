@@ -553,6 +553,19 @@ public interface Select
      */
     void where(String sql, Joins joins);
 
+    /**
+     * Add a seek condition matching the rows ordered after the row with the
+     * given values of the given ordering expressions, for keyset pagination.
+     *
+     * @param orders the SQL of the ordering expressions
+     * @param asc the direction of each ordering expression
+     * @param values the datastore values of the row to seek after
+     * @param cols the column of each value, or null if not a column
+     * @since 3.2.1
+     */
+    void whereAfter(SQLBuffer[] orders, boolean[] asc, Object[] values,
+        Column[] cols);
+
     /**
      * Add the given having conditions.
      */
@@ -52,6 +52,8 @@ import org.apache.openjpa.jdbc.meta.strats.RelationStrategies;
 import org.apache.openjpa.jdbc.schema.Column;
 import org.apache.openjpa.jdbc.schema.ForeignKey;
 import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.kernel.Filters;
+import org.apache.openjpa.kernel.QueryHints;
 import org.apache.openjpa.kernel.StoreContext;
 import org.apache.openjpa.kernel.exps.Context;
 import org.apache.openjpa.kernel.exps.Value;
@@ -95,6 +97,9 @@ public class SelectImpl
     private static final Object[] NULL_IDS = new Object[16];
     private static final Object[] PLACEHOLDERS = new Object[50];
 
+    // driver fetch size of streamed results without a fetch batch size
+    private static final int DEFAULT_STREAM_FETCH_SIZE = 100;
+
     private static final Localizer _loc = Localizer.forPackage(Select.class);
 
     static {
@@ -440,7 +445,8 @@ public class SelectImpl
         logEagerRelations();
         SQLBuffer sql = toSelect(forUpdate, fetch);
         boolean isLRS = isLRS();
-        int rsType = (isLRS && supportsRandomAccess(forUpdate))
+        boolean stream = isLRS && isStreaming(fetch);
+        int rsType = (isLRS && !stream && supportsRandomAccess(forUpdate))
             ? -1 : ResultSet.TYPE_FORWARD_ONLY;
         Connection conn = store.getConnection();
         PreparedStatement stmnt = null;
@@ -450,6 +456,9 @@ public class SelectImpl
                 stmnt = prepareStatement(conn, sql, fetch, rsType, -1, true);
             else
                 stmnt = prepareStatement(conn, sql, null, rsType, -1, false);
+            if (stream && fetch.getFetchBatchSize() <= 0)
+                stmnt.setFetchSize(_dict.getBatchFetchSize(
+                    DEFAULT_STREAM_FETCH_SIZE));
 
             _dict.setTimeouts(stmnt, fetch, forUpdate);
 
@@ -464,6 +473,16 @@ public class SelectImpl
         return getEagerResult(conn, stmnt, rs, store, fetch, forUpdate, sql);
     }
 
+    /**
+     * Whether the results are streamed, in which case they are read once
+     * and in order, so that a forward-only result set is enough.
+     */
+    private static boolean isStreaming(JDBCFetchConfiguration fetch) {
+        Object hint = fetch.getHint(QueryHints.HINT_STREAM_RESULTS);
+        return hint != null
+            && (Boolean) Filters.convert(hint, Boolean.class);
+    }
+
     /**
      * Execute our eager selects, adding the results under the same keys
      * to the given result.
@@ -1577,6 +1596,37 @@ public class SelectImpl
         _where.append(sql);
     }
 
+    /**
+     * Add the condition <code>(o1 &gt; v1) OR (o1 = v1 AND o2 &gt; v2) OR
+     * ...</code> on the given ordering expressions, comparing with
+     * <code>&lt;</code> for descending orderings, so that the datastore can
+     * seek to the first row after the given values through an index on the
+     * ordering.
+     */
+    @Override
+    public void whereAfter(SQLBuffer[] orders, boolean[] asc, Object[] values,
+        Column[] cols) {
+        if (orders.length == 0)
+            return;
+
+        SQLBuffer seek = new SQLBuffer(_dict);
+        seek.append("(");
+        for (int i = 0; i < orders.length; i++) {
+            if (i > 0)
+                seek.append(" OR ");
+            seek.append("(");
+            for (int j = 0; j < i; j++) {
+                seek.append(orders[j]).append(" = ").
+                    appendValue(values[j], cols[j]).append(" AND ");
+            }
+            seek.append(orders[i]).append((asc[i]) ? " > " : " < ").
+                appendValue(values[i], cols[i]);
+            seek.append(")");
+        }
+        seek.append(")");
+        where(seek);
+    }
+
     @Override
     public void where(String sql) {
         where(sql, (Joins) null);
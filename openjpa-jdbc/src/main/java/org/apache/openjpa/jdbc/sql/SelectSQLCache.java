@@ -0,0 +1,287 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Date;
+import java.util.Iterator;
+import java.util.List;
+import java.util.concurrent.atomic.LongAdder;
+
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.ForeignKey;
+import org.apache.openjpa.util.StripedCacheMap;
+
+/**
+ * Cache of the SQL text a {@link DBDictionary} renders for the shape of a
+ * select: its select list, tables, joins, ordering and options. Selects of
+ * the same shape only differ by the parameters of their WHERE clause, such
+ * as the selects loading the fields of different instances, so the SQL
+ * around the WHERE clause is rendered once per shape and only the WHERE
+ * clause and its parameters are appended on later executions. Selects
+ * whose other clauses have parameters, ranges, subselects or literal
+ * select values are not cached.
+ *
+ * @since 3.2.1
+ */
+public class SelectSQLCache {
+
+    /**
+     * Marker rendered in place of the WHERE clause of a new shape.
+     */
+    static final String WHERE_MARKER = "\u0000";
+
+    /**
+     * Value of the shapes whose rendered SQL turned out not to be
+     * cacheable.
+     */
+    static final Object UNCACHEABLE = new Object();
+
+    private final StripedCacheMap _cache;
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private volatile Date _since = new Date();
+
+    /**
+     * Create a cache of the given number of shapes.
+     */
+    public SelectSQLCache(int size) {
+        _cache = new StripedCacheMap(true, size, 16);
+        _cache.setSoftReferenceSize(0);
+    }
+
+    /**
+     * Return the key of the shape of the given select, or null if the SQL
+     * of the select cannot be cached.
+     *
+     * @param update whether the tables are locked for update
+     * @param op the select operation of the fetch configuration
+     * @param forUpdateClause the trailing locking clause, or null
+     */
+    static Key newKey(Select sel, boolean forUpdate, boolean update,
+        String op, String forUpdateClause) {
+        if (sel.getParent() != null || sel.getFromSelect() != null
+            || sel.getStartIndex() != 0
+            || sel.getEndIndex() != Long.MAX_VALUE
+            || sel.getGrouping() != null || sel.getHaving() != null)
+            return null;
+        SQLBuffer ordering = sel.getOrdering();
+        if (ordering != null && !ordering.getParameters().isEmpty())
+            return null;
+        boolean joins = sel.getJoins() != null && !sel.getJoins().isEmpty();
+        if (joins && sel.getJoinSyntax() != JoinSyntaxes.SYNTAX_SQL92)
+            return null;
+
+        // select lists of anything but columns are rendered with their values
+        for (Object id : sel.getSelects())
+            if (!(id instanceof Column) && !(id instanceof String))
+                return null;
+        List<Object> parts = new ArrayList<>();
+        parts.add(op);
+        parts.add(forUpdateClause);
+        parts.add(forUpdate);
+        parts.add(update);
+        parts.add(sel.isDistinct());
+        parts.add(sel.isAggregate());
+        parts.add(sel.getJoinSyntax());
+        parts.add(sel.getExpectedResultCount());
+        parts.add(sel.getWhere() == null || sel.getWhere().isEmpty());
+        parts.add((ordering == null) ? null : ordering.getSQL());
+
+        List<?> aliases = sel.getSelectAliases();
+        parts.add(aliases.size());
+        for (Object alias : aliases) {
+            if (!(alias instanceof String))
+                return null;
+            parts.add(alias);
+        }
+        parts.add(sel.getTableAliases().size());
+        parts.addAll(sel.getTableAliases());
+
+        Join join;
+        ForeignKey fk;
+        for (Iterator<?> itr = sel.getJoinIterator(); itr.hasNext();) {
+            join = (Join) itr.next();
+            fk = join.getForeignKey();
+            // correlated joins add to the WHERE clause and constant joins
+            // have parameters
+            if (join.isCorrelated() || (fk != null
+                && (fk.getConstantColumns().length > 0
+                || fk.getConstantPrimaryKeyColumns().length > 0)))
+                return null;
+            parts.add(join.getType());
+            parts.add(join.getIndex1());
+            parts.add(join.getIndex2());
+            parts.add(join.getTable1());
+            parts.add(join.getTable2());
+            parts.add(fk);
+            parts.add(join.isForeignKeyInversed());
+        }
+        return new Key(parts.toArray());
+    }
+
+    /**
+     * Return the rendered SQL of the given shape: an {@link Entry}, the
+     * {@link #UNCACHEABLE} marker, or null if not cached. Shapes marked
+     * uncacheable count as misses, since they are rendered in full.
+     */
+    Object get(Key key) {
+        Object val = _cache.get(key);
+        if (val == null || val == UNCACHEABLE)
+            _misses.increment();
+        else
+            _hits.increment();
+        return val;
+    }
+
+    /**
+     * Cache the given SQL rendered for the given shape, with the
+     * {@link #WHERE_MARKER} in place of its WHERE clause. Return the
+     * rendered SQL with the given WHERE clause, or null if the SQL cannot be
+     * cached.
+     */
+    SQLBuffer put(Key key, SQLBuffer rendered, SQLBuffer where,
+        DBDictionary dict) {
+        String sql = rendered.getSQL();
+        int idx = sql.indexOf(WHERE_MARKER);
+        boolean hasWhere = where != null && !where.isEmpty();
+        if (!rendered.getParameters().isEmpty() || (idx == -1) == hasWhere
+            || (hasWhere && sql.indexOf(WHERE_MARKER, idx + 1) != -1)) {
+            _cache.put(key, UNCACHEABLE);
+            return null;
+        }
+
+        Entry entry = (hasWhere) ? new Entry(sql.substring(0, idx),
+            sql.substring(idx + WHERE_MARKER.length())) : new Entry(sql, "");
+        _cache.put(key, entry);
+        return entry.toSQL(where, dict);
+    }
+
+    /**
+     * The number of shapes found in the cache since the last reset.
+     */
+    public long getHitCount() {
+        return _hits.sum();
+    }
+
+    /**
+     * The number of shapes not found in the cache or found uncacheable
+     * since the last reset.
+     */
+    public long getMissCount() {
+        return _misses.sum();
+    }
+
+    /**
+     * The fraction of lookups that found their shape, or 0 if there were
+     * none.
+     */
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+    /**
+     * The time of the last reset of the statistics.
+     */
+    public Date getStatisticsResetDate() {
+        return _since;
+    }
+
+    /**
+     * Reset the statistics.
+     */
+    public void resetStatistics() {
+        _hits.reset();
+        _misses.reset();
+        _since = new Date();
+    }
+
+    /**
+     * The number of cached shapes.
+     */
+    public int size() {
+        return _cache.size();
+    }
+
+    /**
+     * Drop all cached shapes.
+     */
+    public void clear() {
+        _cache.clear();
+    }
+
+    /**
+     * The structure of a select that determines its rendered SQL.
+     */
+    static class Key {
+
+        private final Object[] _parts;
+        private final int _hash;
+
+        Key(Object[] parts) {
+            _parts = parts;
+            _hash = Arrays.hashCode(parts);
+        }
+
+        @Override
+        public int hashCode() {
+            return _hash;
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this)
+                return true;
+            if (!(other instanceof Key))
+                return false;
+            Key key = (Key) other;
+            return _hash == key._hash && Arrays.equals(_parts, key._parts);
+        }
+    }
+
+    /**
+     * The SQL rendered before and after the WHERE clause of a shape.
+     */
+    static class Entry {
+
+        private final String _before;
+        private final String _after;
+
+        Entry(String before, String after) {
+            _before = before;
+            _after = after;
+        }
+
+        /**
+         * Return the SQL of this shape with the given WHERE clause.
+         */
+        SQLBuffer toSQL(SQLBuffer where, DBDictionary dict) {
+            SQLBuffer buf = new SQLBuffer(dict);
+            buf.append(_before);
+            if (where != null && !where.isEmpty())
+                buf.append(where);
+            if (!_after.isEmpty())
+                buf.append(_after);
+            return buf;
+        }
+    }
+}
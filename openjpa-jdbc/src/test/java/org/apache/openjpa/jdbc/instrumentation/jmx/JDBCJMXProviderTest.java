@@ -0,0 +1,58 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.instrumentation.jmx;
+
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.openjpa.instrumentation.jmx.JMXProvider;
+import org.apache.openjpa.jdbc.conf.JDBCConfigurationImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of the JDBC instrument aliases of {@link JDBCJMXProvider}.
+ */
+public class JDBCJMXProviderTest {
+
+    @Test
+    public void jdbcInstrumentsAreRegisteredByTheJDBCProvider() {
+        List<String> kernel = Arrays.asList(JMXProvider.JMX_INSTRUMENT_ALIASES);
+        Assert.assertFalse(kernel.contains("BatchLimit"));
+        Assert.assertFalse(kernel.contains("SelectSQLCache"));
+
+        List<String> jdbc = Arrays.asList(new JDBCJMXProvider().getInstrumentAliases());
+        Assert.assertTrue(jdbc.containsAll(kernel));
+        Assert.assertEquals(BatchLimitJMXInstrument.class.getName(),
+            jdbc.get(jdbc.indexOf("BatchLimit") + 1));
+        Assert.assertEquals(SelectSQLCacheJMXInstrument.class.getName(),
+            jdbc.get(jdbc.indexOf("SelectSQLCache") + 1));
+    }
+
+    @Test
+    public void jmxAliasResolvesToTheJDBCProvider() {
+        JDBCConfigurationImpl conf = new JDBCConfigurationImpl(false, false);
+        try {
+            Assert.assertEquals(JDBCJMXProvider.class.getName(),
+                conf.instrumentationProviders.unalias("jmx"));
+        } finally {
+            conf.close();
+        }
+    }
+}
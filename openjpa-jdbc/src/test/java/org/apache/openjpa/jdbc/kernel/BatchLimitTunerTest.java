@@ -0,0 +1,117 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of the limit decisions of {@link BatchLimitTuner}.
+ */
+public class BatchLimitTunerTest {
+
+    private static final String SQL = "INSERT INTO T (A) VALUES (?)";
+
+    @Test
+    public void growsWhileThroughputImproves() {
+        BatchLimitTuner tuner = new BatchLimitTuner(4, 2, 64, 0, null);
+        Assert.assertEquals(4, tuner.getBatchLimit(SQL));
+
+        // every batch takes the same time, so larger batches are faster
+        window(tuner, 1000000);
+        Assert.assertEquals(8, tuner.getBatchLimit(SQL));
+        window(tuner, 1000000);
+        Assert.assertEquals(16, tuner.getBatchLimit(SQL));
+        Assert.assertEquals(2, tuner.getAdjustmentCount());
+        Assert.assertEquals(2 * BatchLimitTuner.SAMPLE_BATCHES, tuner.getBatchCount(SQL));
+        Assert.assertTrue(tuner.getThroughput(SQL) > 0);
+    }
+
+    @Test
+    public void stepsBackAndHoldsWhenThroughputDrops() {
+        BatchLimitTuner tuner = new BatchLimitTuner(4, 2, 64, 0, null);
+        window(tuner, 1000000);
+        Assert.assertEquals(8, tuner.getBatchLimit(SQL));
+
+        // the larger batches are slower per row
+        window(tuner, 4000000);
+        Assert.assertEquals(4, tuner.getBatchLimit(SQL));
+
+        // the limit is kept for a while even though nothing changes
+        for (int i = 0; i < BatchLimitTuner.HOLD_WINDOWS; i++) {
+            window(tuner, 1000000);
+            Assert.assertEquals(4, tuner.getBatchLimit(SQL));
+        }
+        // then the other direction is probed
+        window(tuner, 1000000);
+        Assert.assertEquals(2, tuner.getBatchLimit(SQL));
+    }
+
+    @Test
+    public void shrinksBatchesThatTakeTooLong() {
+        BatchLimitTuner tuner = new BatchLimitTuner(32, 2, 64, 10, null);
+        window(tuner, 20000000);
+        Assert.assertEquals(16, tuner.getBatchLimit(SQL));
+        window(tuner, 20000000);
+        Assert.assertEquals(8, tuner.getBatchLimit(SQL));
+    }
+
+    @Test
+    public void staysWithinBounds() {
+        BatchLimitTuner tuner = new BatchLimitTuner(-1, 2, 16, 0, null);
+        Assert.assertEquals(16, tuner.getBatchLimit(SQL));
+        window(tuner, 1000000);
+        Assert.assertEquals(16, tuner.getBatchLimit(SQL));
+
+        tuner = new BatchLimitTuner(2, 2, 16, 1, null);
+        window(tuner, 20000000);
+        Assert.assertEquals(2, tuner.getBatchLimit(SQL));
+    }
+
+    @Test
+    public void partialBatchesAreNotMeasured() {
+        BatchLimitTuner tuner = new BatchLimitTuner(4, 2, 64, 0, null);
+        for (int i = 0; i < 2 * BatchLimitTuner.SAMPLE_BATCHES; i++)
+            tuner.batchExecuted(SQL, 3, 1000000);
+        Assert.assertEquals(4, tuner.getBatchLimit(SQL));
+        Assert.assertEquals(-1, tuner.getThroughput(SQL), 0);
+        Assert.assertEquals(2 * BatchLimitTuner.SAMPLE_BATCHES, tuner.getBatchCount(SQL));
+    }
+
+    @Test
+    public void statementsAreBounded() {
+        BatchLimitTuner tuner = new BatchLimitTuner(4, 2, 64, 0, null);
+        for (int i = 0; i <= BatchLimitTuner.MAX_STATEMENTS; i++)
+            tuner.batchExecuted(SQL + i, 4, 1000000);
+        Assert.assertEquals(BatchLimitTuner.MAX_STATEMENTS, tuner.getStatements().size());
+        Assert.assertTrue(tuner.getStatements().contains(SQL + BatchLimitTuner.MAX_STATEMENTS));
+
+        tuner.reset();
+        Assert.assertTrue(tuner.getStatements().isEmpty());
+        Assert.assertEquals(0, tuner.getAdjustmentCount());
+    }
+
+    /**
+     * Execute one measurement window of full batches of the current limit.
+     */
+    private static void window(BatchLimitTuner tuner, long nanosPerBatch) {
+        for (int i = 0; i < BatchLimitTuner.SAMPLE_BATCHES; i++)
+            tuner.batchExecuted(SQL, tuner.getBatchLimit(SQL), nanosPerBatch);
+    }
+}
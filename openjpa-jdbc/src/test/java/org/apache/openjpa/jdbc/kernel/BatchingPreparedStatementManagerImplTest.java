@@ -0,0 +1,174 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.jdbc.sql.DBDictionary;
+import org.apache.openjpa.jdbc.sql.Row;
+import org.apache.openjpa.jdbc.sql.RowImpl;
+import org.apache.openjpa.lib.log.NoneLogFactory.NoneLog;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of the multi-row inserts of
+ * {@link BatchingPreparedStatementManagerImpl}.
+ */
+public class BatchingPreparedStatementManagerImplTest {
+
+    private static final String SQL = "INSERT INTO T (A) VALUES (?)";
+
+    private DBDictionary dict;
+    private Table table;
+    private Column col;
+    private final List<String> statements = new ArrayList<>();
+    private final List<Integer> params = new ArrayList<>();
+
+    @Before
+    public void setUp() {
+        dict = new DBDictionary();
+        dict.supportsMultiRowInsert = true;
+        dict.multiRowInsert = true;
+        table = new Table("T", null);
+        col = table.addColumn("A");
+    }
+
+    @Test
+    public void foldsInsertsIntoOneStatement() throws SQLException {
+        insert(-1, 5);
+        Assert.assertEquals(Arrays.asList(multi(5)), statements);
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5), params);
+    }
+
+    @Test
+    public void respectsTheDictionaryLimit() throws SQLException {
+        dict.maxMultiRowInsertRows = 3;
+        insert(-1, 5);
+        Assert.assertEquals(Arrays.asList(multi(3), multi(2)), statements);
+    }
+
+    @Test
+    public void respectsTheBatchLimit() throws SQLException {
+        insert(2, 5);
+        Assert.assertEquals(Arrays.asList(multi(2), multi(2), SQL), statements);
+        Assert.assertEquals(Arrays.asList(1, 2, 3, 4, 5), params);
+    }
+
+    @Test
+    public void respectsTheTunedLimit() throws SQLException {
+        BatchLimitTuner tuner = new BatchLimitTuner(4, 2, 64, 0, null);
+        insert(100, 6, tuner);
+        Assert.assertEquals(Arrays.asList(multi(4), multi(2)), statements);
+        // the full statement is measured like a batch
+        Assert.assertEquals(2, tuner.getBatchCount(SQL));
+    }
+
+    @Test
+    public void batchesWhenDisabled() throws SQLException {
+        dict.multiRowInsert = false;
+        insert(-1, 3);
+        Assert.assertEquals(Arrays.asList(SQL), statements);
+    }
+
+    private void insert(int batchLimit, int rows) throws SQLException {
+        insert(batchLimit, rows, null);
+    }
+
+    private void insert(int batchLimit, int rows, BatchLimitTuner tuner)
+        throws SQLException {
+        BatchingPreparedStatementManagerImpl psMgr =
+            new BatchingPreparedStatementManagerImpl(newStore(), newConnection(),
+                batchLimit);
+        psMgr.setBatchLimitTuner(tuner);
+        for (int i = 1; i <= rows; i++) {
+            RowImpl row = new RowImpl(table, Row.ACTION_INSERT);
+            row.setInt(col, i);
+            psMgr.flush(row);
+        }
+        psMgr.flushBatch();
+        Assert.assertTrue(psMgr.getExceptions().isEmpty());
+    }
+
+    private static String multi(int rows) {
+        StringBuilder buf = new StringBuilder(SQL);
+        for (int i = 1; i < rows; i++)
+            buf.append(", (?)");
+        return buf.toString();
+    }
+
+    private JDBCStore newStore() {
+        final JDBCConfiguration conf = (JDBCConfiguration) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { JDBCConfiguration.class },
+            (proxy, method, args) -> "getLog".equals(method.getName())
+                ? NoneLog.getInstance() : null);
+        return (JDBCStore) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { JDBCStore.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getDBDictionary":
+                        return dict;
+                    case "getConfiguration":
+                        return conf;
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    private Connection newConnection() {
+        return (Connection) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { Connection.class },
+            (proxy, method, args) -> "prepareStatement".equals(method.getName())
+                ? newStatement((String) args[0]) : null);
+    }
+
+    private PreparedStatement newStatement(String sql) {
+        statements.add(sql);
+        final int[] rows = new int[1];
+        return (PreparedStatement) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "setInt":
+                        params.add((Integer) args[1]);
+                        rows[0]++;
+                        return null;
+                    case "executeUpdate":
+                        return rows[0];
+                    case "executeBatch":
+                        int[] counts = new int[rows[0]];
+                        Arrays.fill(counts, 1);
+                        return counts;
+                    default:
+                        return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,388 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import java.lang.reflect.Proxy;
+import java.sql.Connection;
+import java.sql.PreparedStatement;
+import java.sql.SQLException;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.CopyOnWriteArrayList;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.jdbc.sql.DBDictionary;
+import org.apache.openjpa.jdbc.sql.Row;
+import org.apache.openjpa.jdbc.sql.RowImpl;
+import org.apache.openjpa.jdbc.sql.RowManagerImpl;
+import org.apache.openjpa.event.TransactionListener;
+import org.apache.openjpa.kernel.Broker;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.lib.log.NoneLogFactory.NoneLog;
+import org.apache.openjpa.meta.JavaTypes;
+import org.junit.After;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of the partitioning and the commit or rollback of the additional
+ * connections of {@link ParallelConstraintUpdateManager}.
+ */
+public class ParallelConstraintUpdateManagerTest {
+
+    private DBDictionary dict;
+    private ParallelConstraintUpdateManager updateMgr;
+    private Table a;
+    private Table b;
+    private Table c;
+    private Table d;
+    private Table e;
+    private Table failing;
+    private final List<RecordingConnection> connections = new CopyOnWriteArrayList<>();
+    private final Map<Object, Object> userObjects = new HashMap<>();
+    private final List<TransactionListener> listeners = new ArrayList<>();
+    private Broker broker;
+
+    @Before
+    public void setUp() {
+        dict = new DBDictionary();
+        final JDBCConfiguration conf = (JDBCConfiguration) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { JDBCConfiguration.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getDBDictionaryInstance":
+                        return dict;
+                    case "getLog":
+                        return NoneLog.getInstance();
+                    default:
+                        return null;
+                }
+            });
+        updateMgr = new ParallelConstraintUpdateManager() {
+            @Override
+            protected PreparedStatementManager newPreparedStatementManager(
+                JDBCStore store, Connection conn) {
+                return new BatchingPreparedStatementManagerImpl(store, conn, 100) {
+                    @Override
+                    protected void flushAndUpdate(RowImpl row) throws SQLException {
+                        // the rows of proxied instances can always be batched
+                        batchOrExecuteRow(row);
+                    }
+                };
+            }
+        };
+        updateMgr.setConfiguration(conf);
+        updateMgr.setMaxThreads(3);
+        updateMgr.setMinRows(50);
+        updateMgr.endConfiguration();
+
+        a = newTable("A");
+        b = newTable("B");
+        b.addForeignKey().join(b.getColumns()[0], a.getColumns()[0]);
+        c = newTable("C");
+        d = newTable("D");
+        e = newTable("E");
+
+        broker = (Broker) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { Broker.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getUserObject":
+                        return userObjects.get(args[0]);
+                    case "putUserObject":
+                        return userObjects.put(args[0], args[1]);
+                    case "addTransactionListener":
+                        listeners.add((TransactionListener) args[0]);
+                        return null;
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    @After
+    public void tearDown() {
+        updateMgr.close();
+    }
+
+    @Test
+    public void groupsTablesJoinedByForeignKeys() {
+        RowManagerImpl rowMgr = new RowManagerImpl(false);
+        addRows(rowMgr, a, Row.ACTION_INSERT, 100);
+        addRows(rowMgr, b, Row.ACTION_INSERT, 50);
+        addRows(rowMgr, c, Row.ACTION_INSERT, 100);
+        addRows(rowMgr, d, Row.ACTION_UPDATE, 10);
+        addRows(rowMgr, e, Row.ACTION_INSERT, 100);
+
+        // the largest component gets a connection of its own, and the others
+        // share the other one; the updates stay on the broker connection
+        List<Set<Table>> groups = updateMgr.group(rowMgr, Collections.<Table> emptySet());
+        Assert.assertEquals(2, groups.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(a, b)), groups.get(0));
+        Assert.assertEquals(new HashSet<>(Arrays.asList(c, e)), groups.get(1));
+    }
+
+    @Test
+    public void brokerKeepsOneGroup() {
+        RowManagerImpl rowMgr = new RowManagerImpl(false);
+        addRows(rowMgr, c, Row.ACTION_INSERT, 100);
+        addRows(rowMgr, e, Row.ACTION_INSERT, 60);
+        List<Set<Table>> groups = updateMgr.group(rowMgr, Collections.<Table> emptySet());
+        Assert.assertEquals(1, groups.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(c)), groups.get(0));
+    }
+
+    @Test
+    public void smallOrUpdatedGroupsAreNotSplit() {
+        RowManagerImpl rowMgr = new RowManagerImpl(false);
+        addRows(rowMgr, a, Row.ACTION_INSERT, 100);
+        addRows(rowMgr, b, Row.ACTION_UPDATE, 1);
+        addRows(rowMgr, c, Row.ACTION_INSERT, 10);
+        Assert.assertNull(updateMgr.group(rowMgr, Collections.<Table> emptySet()));
+    }
+
+    @Test
+    public void commitsTheAdditionalConnections() {
+        RowManagerImpl rowMgr = new RowManagerImpl(false);
+        addRows(rowMgr, a, Row.ACTION_INSERT, 100);
+        addRows(rowMgr, b, Row.ACTION_INSERT, 50);
+        addRows(rowMgr, d, Row.ACTION_UPDATE, 10);
+
+        RecordingConnection broker = new RecordingConnection();
+        Collection<?> exceps = flush(rowMgr, broker.proxy);
+        Assert.assertTrue(String.valueOf(exceps), exceps == null || exceps.isEmpty());
+
+        // the rows of a and b went to the additional connection
+        Assert.assertEquals(1, connections.size());
+        RecordingConnection side = connections.get(0);
+        Assert.assertEquals(new HashSet<>(Arrays.asList("A", "B")), side.tables());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("D")), broker.tables());
+        Assert.assertEquals(1, side.commits);
+        Assert.assertEquals(0, side.rollbacks);
+        Assert.assertTrue(side.closed);
+        // the broker connection is left to the transaction
+        Assert.assertEquals(0, broker.commits + broker.rollbacks);
+    }
+
+    @Test
+    public void rollsBackAllAdditionalConnectionsOnFailure() {
+        failing = c;
+        RowManagerImpl rowMgr = new RowManagerImpl(false);
+        addRows(rowMgr, a, Row.ACTION_INSERT, 100);
+        addRows(rowMgr, c, Row.ACTION_INSERT, 100);
+        addRows(rowMgr, d, Row.ACTION_UPDATE, 10);
+
+        RecordingConnection broker = new RecordingConnection();
+        Collection<?> exceps = flush(rowMgr, broker.proxy);
+        Assert.assertNotNull(exceps);
+        Assert.assertFalse(exceps.isEmpty());
+
+        Assert.assertEquals(2, connections.size());
+        for (RecordingConnection side : connections) {
+            Assert.assertEquals(0, side.commits);
+            Assert.assertEquals(1, side.rollbacks);
+            Assert.assertTrue(side.closed);
+        }
+    }
+
+    @Test
+    public void tablesWrittenOnTheBrokerConnectionAreNotSplit() {
+        // the parents are written on the broker connection by a first flush
+        RowManagerImpl rowMgr = new RowManagerImpl(false);
+        addRows(rowMgr, a, Row.ACTION_INSERT, 10);
+        addRows(rowMgr, c, Row.ACTION_INSERT, 100);
+        RecordingConnection brokerConn = new RecordingConnection();
+        Assert.assertTrue(isEmpty(flush(rowMgr, brokerConn.proxy)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("A")), brokerConn.tables());
+        Assert.assertEquals(1, connections.size());
+
+        // their children in a later flush must see the uncommitted parents,
+        // while the committed rows of c do not keep it on the broker
+        rowMgr = new RowManagerImpl(false);
+        addRows(rowMgr, b, Row.ACTION_INSERT, 100);
+        addRows(rowMgr, c, Row.ACTION_INSERT, 100);
+        addRows(rowMgr, e, Row.ACTION_INSERT, 100);
+        brokerConn = new RecordingConnection();
+        connections.clear();
+        Assert.assertTrue(isEmpty(flush(rowMgr, brokerConn.proxy)));
+        Assert.assertEquals(new HashSet<>(Arrays.asList("B")), brokerConn.tables());
+        Set<String> sideTables = new HashSet<>();
+        for (RecordingConnection side : connections)
+            sideTables.addAll(side.tables());
+        Assert.assertEquals(2, connections.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("C", "E")), sideTables);
+
+        // a new transaction may split them again
+        Assert.assertEquals(1, listeners.size());
+        listeners.get(0).afterCommit(null);
+        rowMgr = new RowManagerImpl(false);
+        addRows(rowMgr, b, Row.ACTION_INSERT, 100);
+        addRows(rowMgr, d, Row.ACTION_UPDATE, 10);
+        brokerConn = new RecordingConnection();
+        connections.clear();
+        Assert.assertTrue(isEmpty(flush(rowMgr, brokerConn.proxy)));
+        Assert.assertEquals(1, connections.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList("B")), connections.get(0).tables());
+    }
+
+    private static boolean isEmpty(Collection<?> exceps) {
+        return exceps == null || exceps.isEmpty();
+    }
+
+    private Collection<?> flush(RowManagerImpl rowMgr, Connection broker) {
+        JDBCStore store = (JDBCStore) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { JDBCStore.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getDBDictionary":
+                        return dict;
+                    case "getConfiguration":
+                        return updateMgr.conf;
+                    case "getContext":
+                        return this.broker;
+                    case "getNewConnection":
+                        RecordingConnection conn = new RecordingConnection();
+                        connections.add(conn);
+                        return conn.proxy;
+                    default:
+                        return null;
+                }
+            });
+        PreparedStatementManager psMgr =
+            updateMgr.newPreparedStatementManager(store, broker);
+        return updateMgr.flush(rowMgr, psMgr, psMgr.getExceptions());
+    }
+
+    private static Table newTable(String name) {
+        Table table = new Table(name, null);
+        Column col = table.addColumn("ID");
+        col.setJavaType(JavaTypes.INT);
+        return table;
+    }
+
+    private static void addRows(RowManagerImpl rowMgr, Table table, int action,
+        int count) {
+        for (int i = 0; i < count; i++) {
+            Row row = rowMgr.getRow(table, action, newStateManager(), true);
+            try {
+                row.setInt(table.getColumns()[0], i);
+            } catch (SQLException se) {
+                throw new AssertionError(se);
+            }
+        }
+    }
+
+    private static OpenJPAStateManager newStateManager() {
+        return (OpenJPAStateManager) Proxy.newProxyInstance(
+            ParallelConstraintUpdateManagerTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAStateManager.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "hashCode":
+                        return System.identityHashCode(proxy);
+                    case "equals":
+                        return proxy == args[0];
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    /**
+     * Connection recording the tables of its statements and its outcome.
+     */
+    private class RecordingConnection {
+
+        final Connection proxy;
+        final List<String> sql = new CopyOnWriteArrayList<>();
+        int commits;
+        int rollbacks;
+        boolean closed;
+
+        RecordingConnection() {
+            proxy = (Connection) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] { Connection.class },
+                (p, method, args) -> {
+                    switch (method.getName()) {
+                        case "prepareStatement":
+                            sql.add((String) args[0]);
+                            return newStatement((String) args[0]);
+                        case "commit":
+                            commits++;
+                            return null;
+                        case "rollback":
+                            rollbacks++;
+                            return null;
+                        case "close":
+                            closed = true;
+                            return null;
+                        default:
+                            return null;
+                    }
+                });
+        }
+
+        Set<String> tables() {
+            Set<String> tables = new HashSet<>();
+            for (String s : sql) {
+                String[] words = s.split(" ");
+                tables.add(words[0].equals("UPDATE") ? words[1] : words[2]);
+            }
+            return tables;
+        }
+
+        private PreparedStatement newStatement(final String sql) {
+            final boolean fail = failing != null
+                && sql.contains(" " + failing.getIdentifier().getName() + " ");
+            final List<Integer> batch = new ArrayList<>();
+            return (PreparedStatement) Proxy.newProxyInstance(
+                getClass().getClassLoader(), new Class<?>[] { PreparedStatement.class },
+                (p, method, args) -> {
+                    switch (method.getName()) {
+                        case "addBatch":
+                            batch.add(1);
+                            return null;
+                        case "executeBatch":
+                            if (fail)
+                                throw new SQLException("failed");
+                            int[] counts = new int[batch.size()];
+                            Arrays.fill(counts, 1);
+                            batch.clear();
+                            return counts;
+                        case "executeUpdate":
+                            if (fail)
+                                throw new SQLException("failed");
+                            return 1;
+                        default:
+                            return null;
+                    }
+                });
+        }
+    }
+}
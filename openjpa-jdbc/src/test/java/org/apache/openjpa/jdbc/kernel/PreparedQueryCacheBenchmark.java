@@ -0,0 +1,130 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openjpa.kernel.PreparedQuery;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the throughput of {@link PreparedQueryCacheImpl} lookups, the
+ * work done for every executed JPQL query. The <code>locked</code> variant
+ * takes the read lock around each lookup as the cache used to. Run
+ * {@link #main} to execute the benchmark with 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class PreparedQueryCacheBenchmark {
+
+    private static final int QUERIES = 500;
+
+    @Param({ "false", "true" })
+    public boolean locked;
+
+    @Param({ "", "select e from Excluded.*" })
+    public String excludes;
+
+    private PreparedQueryCacheImpl cache;
+    private String[] ids;
+
+    @Setup
+    public void setUp() {
+        cache = locked ? new LockedPreparedQueryCache()
+            : new PreparedQueryCacheImpl();
+        cache.setExcludes(excludes);
+        cache.endConfiguration();
+        ids = new String[QUERIES];
+        for (int i = 0; i < QUERIES; i++) {
+            ids[i] = "select e from Entity" + i + " e where e.id = :id";
+            cache.cache(new PreparedQueryImpl(ids[i], null));
+        }
+    }
+
+    @Benchmark
+    public PreparedQuery get() {
+        return cache.get(ids[ThreadLocalRandom.current().nextInt(QUERIES)]);
+    }
+
+    /**
+     * The checks of a query that is about to be executed.
+     */
+    @Benchmark
+    public Object isCachableAndExcluded() {
+        String id = ids[ThreadLocalRandom.current().nextInt(QUERIES)];
+        Boolean cachable = cache.isCachable(id);
+        return (cachable == null) ? cache.isExcluded(id) : cachable;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Options opts = new OptionsBuilder()
+                .include(PreparedQueryCacheBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build();
+            new Runner(opts).run();
+        }
+    }
+
+    /**
+     * Serializes lookups through the read lock.
+     */
+    public static class LockedPreparedQueryCache
+        extends PreparedQueryCacheImpl {
+
+        @Override
+        public PreparedQuery get(String id) {
+            lock(true);
+            try {
+                return super.get(id);
+            } finally {
+                unlock(true);
+            }
+        }
+
+        @Override
+        public Boolean isCachable(String id) {
+            lock(true);
+            try {
+                return super.isCachable(id);
+            } finally {
+                unlock(true);
+            }
+        }
+    }
+}
@@ -0,0 +1,164 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.kernel;
+
+import org.apache.openjpa.kernel.PreparedQuery;
+import org.apache.openjpa.kernel.PreparedQueryCache;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of the eviction and invalidation of
+ * {@link PreparedQueryCacheImpl}.
+ */
+public class PreparedQueryCacheImplTest {
+
+    private PreparedQueryCacheImpl cache;
+
+    @Before
+    public void setUp() {
+        cache = new PreparedQueryCacheImpl();
+        cache.setEnableStatistics(true);
+        cache.endConfiguration();
+    }
+
+    @Test
+    public void evictsLeastRecentlyUsedQuery() {
+        cache.setMaxCacheSize(3);
+        cache("a");
+        cache("b");
+        cache("c");
+        // make a and c more recently used than b
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("c"));
+
+        cache("d");
+        Assert.assertEquals(3, cache.getCacheSize());
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("c"));
+        Assert.assertNotNull(cache.get("d"));
+        Assert.assertEquals(1, cache.getStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void usedQueryIsEvictedOnceNotUsedAgain() {
+        cache.setMaxCacheSize(2);
+        cache("a");
+        cache("b");
+        Assert.assertNotNull(cache.get("a"));
+        // a is passed over once, then evicted as the oldest unused query
+        cache("c");
+        Assert.assertNull(cache.get("b"));
+        Assert.assertNotNull(cache.get("c"));
+        cache("d");
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("c"));
+        Assert.assertNotNull(cache.get("d"));
+        Assert.assertEquals(2, cache.getStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void shrinkingMaxSizeEvicts() {
+        for (int i = 0; i < 10; i++)
+            cache("q" + i);
+        Assert.assertNotNull(cache.get("q0"));
+        cache.setMaxCacheSize(3);
+        Assert.assertEquals(3, cache.getCacheSize());
+        Assert.assertNotNull(cache.get("q0"));
+        Assert.assertNotNull(cache.get("q9"));
+        Assert.assertEquals(7, cache.getStatistics().getEvictionCount());
+    }
+
+    @Test
+    public void newQueryIsNeverEvicted() {
+        cache.setMaxCacheSize(1);
+        cache("a");
+        cache("b");
+        Assert.assertEquals(1, cache.getCacheSize());
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNotNull(cache.get("b"));
+    }
+
+    @Test
+    public void unboundedCache() {
+        cache.setMaxCacheSize(-1);
+        for (int i = 0; i < 2000; i++)
+            cache("q" + i);
+        Assert.assertEquals(2000, cache.getCacheSize());
+    }
+
+    @Test
+    public void invalidateRemovesQuery() {
+        cache("a");
+        Assert.assertEquals(Boolean.TRUE, cache.isCachable("a"));
+        Assert.assertTrue(cache.invalidate("a"));
+        Assert.assertNull(cache.get("a"));
+        Assert.assertNull(cache.isCachable("a"));
+        Assert.assertFalse(cache.invalidate("a"));
+        // an invalidated query may be cached again
+        Assert.assertTrue(cache("a"));
+    }
+
+    @Test
+    public void uncachableQueryIsNotCachedAgain() {
+        PreparedQuery pq = cacheQuery("a");
+        Assert.assertSame(pq, cache.markUncachable("a",
+            new PreparedQueryCacheImpl.StrongExclusion("a", "test")));
+        Assert.assertNull(cache.get("a"));
+        Assert.assertEquals(Boolean.FALSE, cache.isCachable("a"));
+        Assert.assertFalse(cache("a"));
+    }
+
+    @Test
+    public void exclusionPatternInvalidatesMatchingQueries() {
+        cache("select e from Excluded e");
+        cache("select e from Kept e");
+        cache.addExclusionPattern("select e from Excluded.*");
+        Assert.assertNull(cache.get("select e from Excluded e"));
+        Assert.assertNotNull(cache.get("select e from Kept e"));
+        Assert.assertFalse(cache("select e from Excluded e"));
+
+        cache.removeExclusionPattern("select e from Excluded.*");
+        Assert.assertTrue(cache("select e from Excluded e"));
+    }
+
+    @Test
+    public void uncachablesStayBounded() {
+        PreparedQueryCache.Exclusion exclusion =
+            new PreparedQueryCacheImpl.StrongExclusion(null, "test");
+        for (int i = 0; i < 25000; i++)
+            cache.markUncachable("q" + i, exclusion);
+        // only the oldest exclusions are forgotten
+        for (int i = 0; i < 25000; i++)
+            Assert.assertEquals(i < 15000 ? null : Boolean.FALSE,
+                cache.isCachable("q" + i));
+    }
+
+    private boolean cache(String id) {
+        return cache.cache(new PreparedQueryImpl(id, null));
+    }
+
+    private PreparedQuery cacheQuery(String id) {
+        PreparedQuery pq = new PreparedQueryImpl(id, null);
+        Assert.assertTrue(cache.cache(pq));
+        return pq;
+    }
+}
@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of the keyset pagination seek condition of {@link SelectImpl}.
+ */
+public class KeysetSeekTest {
+
+    private DBDictionary dict;
+    private Table table;
+
+    @Before
+    public void setUp() {
+        dict = new DBDictionary();
+        table = new Table("T", null);
+    }
+
+    @Test
+    public void seeksAfterASingleColumn() {
+        SelectImpl sel = newSelect();
+        sel.whereAfter(orders("t0.ID"), new boolean[] { true },
+            new Object[] { 5L }, columns("ID"));
+        Assert.assertEquals("((t0.ID > ?))", sel.getWhere().getSQL());
+        Assert.assertEquals(Arrays.asList(5L), sel.getWhere().getParameters());
+    }
+
+    @Test
+    public void seeksAfterSeveralColumnsInMixedDirections() {
+        SelectImpl sel = newSelect();
+        sel.whereAfter(orders("t0.A", "t0.B", "t0.ID"),
+            new boolean[] { true, false, true },
+            new Object[] { "a", 2, 3L }, columns("A", "B", "ID"));
+        Assert.assertEquals("((t0.A > ?)"
+            + " OR (t0.A = ? AND t0.B < ?)"
+            + " OR (t0.A = ? AND t0.B = ? AND t0.ID > ?))",
+            sel.getWhere().getSQL());
+        Assert.assertEquals(Arrays.asList("a", "a", 2, "a", 2, 3L),
+            sel.getWhere().getParameters());
+    }
+
+    @Test
+    public void seeksAfterDescendingOrder() {
+        SelectImpl sel = newSelect();
+        sel.whereAfter(orders("t0.A", "t0.ID"), new boolean[] { false, false },
+            new Object[] { 1, 2 }, columns("A", "ID"));
+        Assert.assertEquals("((t0.A < ?) OR (t0.A = ? AND t0.ID < ?))",
+            sel.getWhere().getSQL());
+    }
+
+    @Test
+    public void isAndedToTheFilter() {
+        SelectImpl sel = newSelect();
+        sel.where("t0.X = 1");
+        sel.whereAfter(orders("t0.ID"), new boolean[] { true },
+            new Object[] { 5L }, columns("ID"));
+        Assert.assertEquals("t0.X = 1 AND ((t0.ID > ?))", sel.getWhere().getSQL());
+    }
+
+    @Test
+    public void nullableColumnsAreComparedLikeOthers() {
+        // the seek condition has no IS NULL branch, so rows whose sort key
+        // is null never follow a token; keyset queries must order on values
+        // that are not null
+        Column[] cols = columns("A", "ID");
+        cols[0].setNotNull(false);
+        cols[1].setNotNull(true);
+        SelectImpl sel = newSelect();
+        sel.whereAfter(orders("t0.A", "t0.ID"), new boolean[] { true, true },
+            new Object[] { "a", 1L }, cols);
+        Assert.assertEquals("((t0.A > ?) OR (t0.A = ? AND t0.ID > ?))",
+            sel.getWhere().getSQL());
+        Assert.assertFalse(sel.getWhere().getSQL().contains("NULL"));
+    }
+
+    @Test
+    public void expressionsWithoutColumnsAreParameters() {
+        SelectImpl sel = newSelect();
+        sel.whereAfter(orders("UPPER(t0.A)"), new boolean[] { true },
+            new Object[] { "A" }, new Column[1]);
+        Assert.assertEquals("((UPPER(t0.A) > ?))", sel.getWhere().getSQL());
+        Assert.assertEquals(Arrays.asList("A"), sel.getWhere().getParameters());
+    }
+
+    @Test
+    public void noOrderingAddsNoCondition() {
+        SelectImpl sel = newSelect();
+        sel.whereAfter(new SQLBuffer[0], new boolean[0], new Object[0],
+            new Column[0]);
+        Assert.assertNull(sel.getWhere());
+    }
+
+    private SelectImpl newSelect() {
+        JDBCConfiguration conf = (JDBCConfiguration) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { JDBCConfiguration.class },
+            (proxy, method, args) -> "getDBDictionaryInstance".equals(method.getName())
+                ? dict : null);
+        return new SelectImpl(conf);
+    }
+
+    private SQLBuffer[] orders(String... sql) {
+        SQLBuffer[] orders = new SQLBuffer[sql.length];
+        for (int i = 0; i < sql.length; i++)
+            orders[i] = new SQLBuffer(dict).append(sql[i]);
+        return orders;
+    }
+
+    private Column[] columns(String... names) {
+        Column[] cols = new Column[names.length];
+        for (int i = 0; i < names.length; i++)
+            cols[i] = table.addColumn(names[i]);
+        return cols;
+    }
+}
@@ -0,0 +1,98 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import org.apache.openjpa.jdbc.schema.Table;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of the multi-row insert statements of {@link DBDictionary}.
+ */
+public class MultiRowInsertTest {
+
+    private static final String SQL = "INSERT INTO T (A, B) VALUES (?, ?)";
+
+    private DBDictionary dict;
+
+    @Before
+    public void setUp() {
+        dict = new DBDictionary();
+        dict.supportsMultiRowInsert = true;
+        dict.multiRowInsert = true;
+    }
+
+    @Test
+    public void repeatsTheValues() {
+        Assert.assertEquals(SQL, dict.getMultiRowInsertSQL(SQL, 1));
+        Assert.assertEquals("INSERT INTO T (A, B) VALUES (?, ?), (?, ?), (?, ?)",
+            dict.getMultiRowInsertSQL(SQL, 3));
+    }
+
+    @Test
+    public void keepsLiteralValues() {
+        String sql = "INSERT INTO T (A, B) VALUES (?, 'x?y')";
+        Assert.assertEquals("INSERT INTO T (A, B) VALUES (?, 'x?y'), (?, 'x?y')",
+            dict.getMultiRowInsertSQL(sql, 2));
+
+        // the literal question mark is no parameter
+        dict.maxParameterCount = 10;
+        Assert.assertEquals(10, dict.getMultiRowInsertLimit(sql));
+    }
+
+    @Test
+    public void skipsColumnsNamedLikeTheValuesClause() {
+        String sql = "INSERT INTO T (\"X) VALUES (Y\", B) VALUES (?, ?)";
+        Assert.assertEquals(
+            "INSERT INTO T (\"X) VALUES (Y\", B) VALUES (?, ?), (?, ?)",
+            dict.getMultiRowInsertSQL(sql, 2));
+        dict.maxParameterCount = 10;
+        Assert.assertEquals(5, dict.getMultiRowInsertLimit(sql));
+
+        sql = "INSERT INTO T (VALUES_A, B) VALUES (?, ?)";
+        Assert.assertEquals("INSERT INTO T (VALUES_A, B) VALUES (?, ?), (?, ?)",
+            dict.getMultiRowInsertSQL(sql, 2));
+    }
+
+    @Test
+    public void limitsRowsAndParameters() {
+        dict.maxMultiRowInsertRows = 100;
+        Assert.assertEquals(100, dict.getMultiRowInsertLimit(SQL));
+        dict.maxParameterCount = 101;
+        Assert.assertEquals(50, dict.getMultiRowInsertLimit(SQL));
+        dict.maxParameterCount = 1;
+        Assert.assertEquals(1, dict.getMultiRowInsertLimit(SQL));
+    }
+
+    @Test
+    public void onlyInsertsAreFolded() {
+        Table table = new Table();
+        Assert.assertTrue(dict.canMultiRowInsert(
+            new RowImpl(table, Row.ACTION_INSERT), SQL));
+        Assert.assertFalse(dict.canMultiRowInsert(
+            new RowImpl(table, Row.ACTION_UPDATE), "UPDATE T SET A = ?"));
+        Assert.assertFalse(dict.canMultiRowInsert(
+            new RowImpl(table, Row.ACTION_INSERT), "INSERT INTO T SELECT * FROM S"));
+
+        dict.multiRowInsert = false;
+        Assert.assertFalse(dict.canMultiRowInsert(
+            new RowImpl(table, Row.ACTION_INSERT), SQL));
+    }
+}
@@ -0,0 +1,92 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.sql.SQLException;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfigurationImpl;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.Schema;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test of the insert, update and delete SQL of {@link RowImpl}.
+ */
+public class RowImplTest {
+
+    private DBDictionary dict;
+    private Table table;
+    private Column id;
+    private Column name;
+    private Column code;
+    private Column created;
+
+    @Before
+    public void setUp() {
+        dict = new DBDictionary();
+        dict.setConfiguration(new JDBCConfigurationImpl());
+        table = new Table("ITEM", new Schema("APP", null));
+        id = table.addColumn("ID");
+        name = table.addColumn("NAME");
+        code = table.addColumn("CODE");
+        created = table.addColumn("CREATED");
+        table.addPrimaryKey().addColumn(id);
+    }
+
+    @Test
+    public void insertListsTheSetColumns() throws SQLException {
+        RowImpl row = new RowImpl(table, Row.ACTION_INSERT);
+        row.setObject(id, 1L);
+        row.setObject(code, "c");
+        row.setRaw(created, "CURRENT_TIMESTAMP");
+        Assert.assertEquals("INSERT INTO APP.ITEM (ID, CODE, CREATED) "
+            + "VALUES (?, ?, CURRENT_TIMESTAMP)", row.getSQL(dict));
+
+        // the pooled builders do not leak into the next statement
+        row = new RowImpl(table, Row.ACTION_INSERT);
+        row.setObject(id, 2L);
+        row.setNull(name, true);
+        Assert.assertEquals("INSERT INTO APP.ITEM (ID, NAME) VALUES (?, ?)",
+            row.getSQL(dict));
+    }
+
+    @Test
+    public void updateSetsColumnsWhereKeysMatch() throws SQLException {
+        RowImpl row = new RowImpl(table, Row.ACTION_UPDATE);
+        row.setObject(name, "n");
+        row.setRaw(created, "CURRENT_TIMESTAMP");
+        row.whereObject(id, 1L);
+        row.whereNull(code);
+        Assert.assertEquals("UPDATE APP.ITEM SET NAME = ?, "
+            + "CREATED = CURRENT_TIMESTAMP WHERE ID = ? AND CODE IS NULL",
+            row.getSQL(dict));
+    }
+
+    @Test
+    public void deleteMatchesTheKeys() throws SQLException {
+        RowImpl row = new RowImpl(table, Row.ACTION_DELETE);
+        row.whereObject(id, 1L);
+        row.whereObject(code, "c");
+        Assert.assertEquals("DELETE FROM APP.ITEM WHERE ID = ? AND CODE = ?",
+            row.getSQL(dict));
+    }
+}
@@ -0,0 +1,120 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.sql.SQLException;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfigurationImpl;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.Schema;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.profile.GCProfiler;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the generation of the SQL of typical insert, update and select
+ * statements. Run {@link #main} to execute the benchmark with the GC
+ * profiler, whose <code>gc.alloc.rate.norm</code> results are the bytes
+ * allocated per statement.
+ */
+@State(Scope.Thread)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class SQLBufferBenchmark {
+
+    private static final int COLUMNS = 8;
+
+    private DBDictionary dict;
+    private Table table;
+    private Column[] cols;
+    private Column pk;
+
+    @Setup
+    public void setUp() {
+        dict = new H2Dictionary();
+        dict.setConfiguration(new JDBCConfigurationImpl());
+        table = new Table("ENTITY", new Schema("APP", null));
+        cols = new Column[COLUMNS];
+        for (int i = 0; i < COLUMNS; i++)
+            cols[i] = table.addColumn("COL" + i);
+        pk = cols[0];
+        table.addPrimaryKey().addColumn(pk);
+    }
+
+    @Benchmark
+    public String insert() throws SQLException {
+        RowImpl row = new RowImpl(table, Row.ACTION_INSERT);
+        for (int i = 0; i < COLUMNS; i++)
+            row.setObject(cols[i], "value" + i);
+        return row.getSQL(dict);
+    }
+
+    @Benchmark
+    public String update() throws SQLException {
+        RowImpl row = new RowImpl(table, Row.ACTION_UPDATE);
+        for (int i = 1; i < COLUMNS; i++)
+            row.setObject(cols[i], "value" + i);
+        row.whereObject(pk, 1L);
+        return row.getSQL(dict);
+    }
+
+    /**
+     * The select of an instance by primary key, built from its clauses as
+     * the dictionary does.
+     */
+    @Benchmark
+    public String select() {
+        SQLBuffer selects = new SQLBuffer(dict);
+        for (int i = 0; i < COLUMNS; i++) {
+            if (i > 0)
+                selects.append(", ");
+            selects.append("t0.").append(cols[i]);
+        }
+        SQLBuffer from = new SQLBuffer(dict).append(table).append(" t0");
+        SQLBuffer where = new SQLBuffer(dict).append("t0.").append(pk)
+            .append(" = ").appendValue(1L, pk);
+        return dict.toSelect(selects, null, from, where, null, null, null,
+            false, false, 0, Long.MAX_VALUE).getSQL();
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opts = new OptionsBuilder()
+            .include(SQLBufferBenchmark.class.getSimpleName())
+            .addProfiler(GCProfiler.class)
+            .build();
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,125 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.lang.reflect.Proxy;
+
+import org.apache.openjpa.jdbc.kernel.exps.Val;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test that the SQL cached by {@link SQLBuffer#getSQL} follows the
+ * changes to the buffer.
+ */
+public class SQLBufferTest {
+
+    private DBDictionary dict;
+
+    @Before
+    public void setUp() {
+        dict = new DBDictionary() {
+            @Override
+            public String addCastAsType(String func, Val val) {
+                return "CAST(? AS VARCHAR(10))";
+            }
+        };
+    }
+
+    @Test
+    public void appendsRefreshTheSQL() {
+        SQLBuffer buf = new SQLBuffer(dict).append("SELECT A");
+        Assert.assertEquals("SELECT A", buf.getSQL());
+        Assert.assertSame(buf.getSQL(), buf.getSQL());
+
+        buf.append(" FROM T");
+        Assert.assertEquals("SELECT A FROM T", buf.getSQL());
+
+        buf.append(new SQLBuffer(dict).append(" WHERE A = ").appendValue("x"));
+        Assert.assertEquals("SELECT A FROM T WHERE A = ?", buf.getSQL());
+        Assert.assertEquals("SELECT A FROM T WHERE A = 'x'", buf.getSQL(true));
+
+        buf.appendValue(1);
+        Assert.assertEquals("SELECT A FROM T WHERE A = ??", buf.getSQL());
+    }
+
+    @Test
+    public void replaceRefreshesTheSQL() {
+        SQLBuffer buf = new SQLBuffer(dict).append("SELECT A FROM T");
+        Assert.assertEquals("SELECT A FROM T", buf.getSQL());
+        buf.replaceSqlString(7, 8, "B, C");
+        Assert.assertEquals("SELECT B, C FROM T", buf.getSQL());
+    }
+
+    @Test
+    public void castRefreshesTheSQL() {
+        SQLBuffer buf = new SQLBuffer(dict).append("UPPER(").appendValue("x");
+        Assert.assertEquals("UPPER(?", buf.getSQL());
+        buf.addCastForParam("UPPER", null);
+        Assert.assertEquals("UPPER(CAST(? AS VARCHAR(10))", buf.getSQL());
+        buf.append(")");
+        Assert.assertEquals("UPPER(CAST(? AS VARCHAR(10)))", buf.getSQL());
+    }
+
+    @Test
+    public void subselectsAreResolvedIntoTheSQL() {
+        SQLBuffer buf = new SQLBuffer(dict).append("SELECT A FROM T WHERE B IN ");
+        buf.append(newSelect("SELECT B FROM U"), null);
+        Assert.assertEquals("SELECT A FROM T WHERE B IN (SELECT B FROM U)",
+            buf.getSQL());
+
+        SQLBuffer count = new SQLBuffer(dict).append("SELECT ");
+        count.appendCount(newSelect("SELECT B FROM U"), null);
+        count.append(" FROM T");
+        Assert.assertEquals("SELECT (SELECT COUNT(*) FROM U) FROM T",
+            count.getSQL());
+
+        // a buffer with a subselect keeps it when appended to another
+        SQLBuffer outer = new SQLBuffer(dict).append("SELECT * FROM V WHERE ");
+        SQLBuffer where = new SQLBuffer(dict).append("C = ");
+        where.append(newSelect("SELECT C FROM W"), null);
+        outer.append(where);
+        Assert.assertEquals("SELECT * FROM V WHERE C = (SELECT C FROM W)",
+            outer.getSQL());
+        outer.append(" AND D = 1");
+        Assert.assertEquals("SELECT * FROM V WHERE C = (SELECT C FROM W) AND D = 1",
+            outer.getSQL());
+    }
+
+    /**
+     * Return a select whose SQL is the given string, and whose count
+     * replaces the selected column with <code>COUNT(*)</code>.
+     */
+    private Select newSelect(final String sql) {
+        return (Select) Proxy.newProxyInstance(getClass().getClassLoader(),
+            new Class<?>[] { Select.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "toSelect":
+                        return new SQLBuffer(dict).append(sql);
+                    case "toSelectCount":
+                        return new SQLBuffer(dict).append(
+                            sql.replaceFirst("SELECT \\w+", "SELECT COUNT(*)"));
+                    default:
+                        throw new UnsupportedOperationException(method.getName());
+                }
+            });
+    }
+}
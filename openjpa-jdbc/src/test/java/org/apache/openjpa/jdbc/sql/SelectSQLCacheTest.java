@@ -0,0 +1,252 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.jdbc.sql;
+
+import java.lang.reflect.Proxy;
+
+import org.apache.openjpa.jdbc.conf.JDBCConfiguration;
+import org.apache.openjpa.jdbc.conf.JDBCConfigurationImpl;
+import org.apache.openjpa.jdbc.kernel.JDBCFetchConfiguration;
+import org.apache.openjpa.jdbc.kernel.JDBCFetchConfigurationImpl;
+import org.apache.openjpa.jdbc.schema.Column;
+import org.apache.openjpa.jdbc.schema.ForeignKey;
+import org.apache.openjpa.jdbc.schema.Table;
+import org.apache.openjpa.meta.JavaTypes;
+import org.junit.Assert;
+import org.junit.Before;
+import org.junit.Test;
+
+/**
+ * Unit test that the select SQL rebuilt from a {@link SelectSQLCache} entry
+ * matches the SQL rendered without the cache.
+ */
+public class SelectSQLCacheTest {
+
+    private DBDictionary plain;
+    private DBDictionary cached;
+    private SelectSQLCache cache;
+    private JDBCFetchConfiguration fetch;
+    private Table item;
+    private Table parent;
+    private Column id;
+    private Column name;
+    private Column parentId;
+    private Column parentName;
+    private ForeignKey fk;
+
+    @Before
+    public void setUp() {
+        plain = new DBDictionary();
+        plain.setConfiguration(new JDBCConfigurationImpl());
+        cached = new DBDictionary();
+        cached.setConfiguration(new JDBCConfigurationImpl());
+        cached.selectSQLCacheSize = 100;
+        cache = cached.getSelectSQLCache();
+        fetch = new JDBCFetchConfigurationImpl();
+
+        parent = new Table("PARENT", null);
+        Column pid = newColumn(parent, "ID");
+        parentName = newColumn(parent, "NAME");
+        parent.addPrimaryKey().addColumn(pid);
+        item = new Table("ITEM", null);
+        id = newColumn(item, "ID");
+        name = newColumn(item, "NAME");
+        parentId = newColumn(item, "PARENT_ID");
+        item.addPrimaryKey().addColumn(id);
+        fk = item.addForeignKey();
+        fk.join(parentId, pid);
+    }
+
+    @Test
+    public void cachedSQLMatchesRenderedSQL() {
+        Shape byId = (sel, arg) -> {
+            sel.select(new Column[] { id, name });
+            sel.where(new SQLBuffer(sel.getDictionary())
+                .append(sel.getColumnAlias(id)).append(" = ").appendValue(arg));
+            sel.orderBy(name, true, false);
+        };
+        assertCached(byId, false, 1);
+        assertCached(byId, false, 2);
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(1, cache.getHitCount());
+        Assert.assertEquals(1, cache.getMissCount());
+
+        // without a where clause
+        Shape all = (sel, arg) -> {
+            sel.select(name);
+            sel.orderBy(name, true, false);
+        };
+        assertCached(all, false, null);
+        assertCached(all, false, null);
+        Assert.assertEquals(2, cache.size());
+        Assert.assertEquals(2, cache.getHitCount());
+
+        // with a join
+        Shape joined = (sel, arg) -> {
+            sel.select(id);
+            Joins joins = sel.newJoins().join(fk, false, false);
+            sel.select(parentName, joins);
+            sel.where(new SQLBuffer(sel.getDictionary())
+                .append(sel.getColumnAlias(parentName, joins)).append(" = ")
+                .appendValue(arg));
+        };
+        assertCached(joined, false, "a");
+        assertCached(joined, false, "b");
+        Assert.assertEquals(3, cache.size());
+        Assert.assertEquals(3, cache.getHitCount());
+    }
+
+    @Test
+    public void differentShapesHaveDifferentKeys() {
+        Shape one = (sel, arg) -> sel.select(id);
+        Shape two = (sel, arg) -> sel.select(new Column[] { id, name });
+        Shape joined = (sel, arg) -> {
+            sel.select(id);
+            sel.select(parentName, sel.newJoins().join(fk, false, false));
+        };
+        Shape outer = (sel, arg) -> {
+            sel.select(id);
+            sel.select(parentName, sel.newJoins().outerJoin(fk, false, false));
+        };
+        Shape single = (sel, arg) -> {
+            sel.select(id);
+            sel.setExpectedResultCount(1, true);
+        };
+        Shape distinct = (sel, arg) -> {
+            sel.select(id);
+            sel.setDistinct(true);
+        };
+        Shape[] shapes = { one, two, joined, outer, single, distinct };
+        for (int i = 0; i < shapes.length; i++) {
+            assertCached(shapes[i], false, null);
+            Assert.assertEquals(i + 1, cache.size());
+        }
+        assertCached(one, true, null);
+        Assert.assertEquals(shapes.length + 1, cache.size());
+
+        // all were new
+        Assert.assertEquals(0, cache.getHitCount());
+        for (Shape shape : shapes)
+            assertCached(shape, false, null);
+        Assert.assertEquals(shapes.length, cache.getHitCount());
+    }
+
+    @Test
+    public void uncacheableShapesAreRenderedInFull() {
+        Shape ranged = (sel, arg) -> {
+            sel.select(id);
+            sel.setRange(10, 20);
+        };
+        Shape grouped = (sel, arg) -> {
+            sel.select(name);
+            sel.groupBy(name);
+        };
+        Shape traditional = (sel, arg) -> {
+            sel.setJoinSyntax(JoinSyntaxes.SYNTAX_TRADITIONAL);
+            sel.select(id);
+            sel.select(parentName, sel.newJoins().join(fk, false, false));
+        };
+        Shape paramOrder = (sel, arg) -> {
+            sel.select(id);
+            sel.orderBy(new SQLBuffer(sel.getDictionary()).append("ABS(")
+                .append(sel.getColumnAlias(id)).append(" - ").appendValue(arg)
+                .append(")"), true, false, null);
+        };
+        Shape subselect = (sel, arg) -> {
+            sel.setParent(newSelect(sel.getDictionary()), null);
+            sel.select(id);
+        };
+        for (Shape shape : new Shape[] { ranged, grouped, traditional,
+            paramOrder, subselect }) {
+            assertCached(shape, false, 5);
+            assertCached(shape, false, 6);
+        }
+        Assert.assertEquals(0, cache.size());
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(0, cache.getMissCount());
+    }
+
+    @Test
+    public void constantJoinsAreRenderedInFull() {
+        ForeignKey constant = item.addForeignKey();
+        constant.join(parentId, parent.getColumns()[0]);
+        constant.joinConstant(parentName, "x");
+        Shape shape = (sel, arg) -> {
+            sel.select(id);
+            sel.select(parentName, sel.newJoins().join(constant, false, false));
+        };
+        assertCached(shape, false, null);
+        assertCached(shape, false, null);
+        Assert.assertEquals(0, cache.size());
+    }
+
+    @Test
+    public void uncacheableMarkersCountAsMisses() {
+        // rendered SQL with parameters outside the where clause is marked
+        SelectSQLCache.Key key = new SelectSQLCache.Key(new Object[] { "shape" });
+        Assert.assertNull(cache.get(key));
+        SQLBuffer rendered = new SQLBuffer(cached).append("SELECT ")
+            .appendValue(1).append(" FROM ITEM t0");
+        Assert.assertNull(cache.put(key, rendered, null, cached));
+        Assert.assertSame(SelectSQLCache.UNCACHEABLE, cache.get(key));
+        Assert.assertEquals(1, cache.size());
+        Assert.assertEquals(0, cache.getHitCount());
+        Assert.assertEquals(2, cache.getMissCount());
+        Assert.assertEquals(0, cache.getHitRatio(), 0);
+    }
+
+    /**
+     * Assert that the given shape renders the same SQL and parameters with
+     * and without the cache.
+     */
+    private void assertCached(Shape shape, boolean forUpdate, Object arg) {
+        SQLBuffer expected = render(plain, shape, forUpdate, arg);
+        SQLBuffer actual = render(cached, shape, forUpdate, arg);
+        Assert.assertEquals(expected.getSQL(), actual.getSQL());
+        Assert.assertEquals(expected.getParameters(), actual.getParameters());
+    }
+
+    private SQLBuffer render(DBDictionary dict, Shape shape, boolean forUpdate,
+        Object arg) {
+        SelectImpl sel = newSelect(dict);
+        shape.build(sel, arg);
+        return dict.toSelect(sel, forUpdate, fetch);
+    }
+
+    private SelectImpl newSelect(DBDictionary dict) {
+        JDBCConfiguration conf = (JDBCConfiguration) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { JDBCConfiguration.class },
+            (proxy, method, args) -> "getDBDictionaryInstance".equals(method.getName())
+                ? dict : null);
+        return new SelectImpl(conf);
+    }
+
+    private static Column newColumn(Table table, String name) {
+        Column col = table.addColumn(name);
+        col.setJavaType(JavaTypes.INT);
+        return col;
+    }
+
+    /**
+     * Builds a select of a given shape with the given where argument.
+     */
+    private interface Shape {
+        void build(SelectImpl sel, Object arg);
+    }
+}
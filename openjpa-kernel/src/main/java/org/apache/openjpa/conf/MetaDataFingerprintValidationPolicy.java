@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.conf;
+
+import java.nio.charset.StandardCharsets;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Comparator;
+import java.util.List;
+
+import org.apache.openjpa.conf.CacheMarshaller.ValidationPolicy;
+import org.apache.openjpa.lib.conf.Configurable;
+import org.apache.openjpa.lib.conf.Configuration;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.InternalException;
+
+/**
+ * Compute validity based on a fingerprint of the persistent types, their
+ * fields and the declared types of the fields, in addition to the OpenJPA
+ * version and configuration type. Cached data that was stored against
+ * different metadata is discarded.
+ *
+ * @since 3.2.1
+ */
+public class MetaDataFingerprintValidationPolicy
+    implements ValidationPolicy, Configurable {
+
+    private static final Localizer _loc = Localizer.forPackage
+        (MetaDataFingerprintValidationPolicy.class);
+
+    private OpenJPAConfiguration _conf;
+    private String _fingerprint;
+
+    @Override
+    public Object getCacheableData(Object o) {
+        return new Object[] {
+            OpenJPAVersion.VERSION_ID,
+            getFingerprint(),
+            o,
+        };
+    }
+
+    @Override
+    public Object getValidData(Object o) {
+        Object[] array = (Object[]) o;
+        if (array.length != 3)
+            return null;
+
+        if (OpenJPAVersion.VERSION_ID.equals(array[0])
+            && getFingerprint().equals(array[1]))
+            return array[2];
+
+        Log log = _conf.getConfigurationLog();
+        if (log.isInfoEnabled())
+            log.info(_loc.get("cache-marshaller-fingerprint-mismatch"));
+        return null;
+    }
+
+    /**
+     * The fingerprint of the persistent types of the configuration, computed
+     * once.
+     */
+    public String getFingerprint() {
+        if (_fingerprint == null)
+            _fingerprint = computeFingerprint();
+        return _fingerprint;
+    }
+
+    /**
+     * Compute the fingerprint from the metadata of all persistent types,
+     * in the order of their names.
+     */
+    protected String computeFingerprint() {
+        MetaDataRepository repos = _conf.getMetaDataRepositoryInstance();
+        ClassLoader loader = _conf.getClassResolverInstance().
+            getClassLoader(getClass(), null);
+        Collection<Class<?>> types = repos.loadPersistentTypes(false, loader);
+        List<Class<?>> sorted = new ArrayList<>(types);
+        sorted.sort(Comparator.comparing(Class::getName));
+
+        StringBuilder buf = new StringBuilder(_conf.getClass().getName());
+        for (Class<?> type : sorted) {
+            buf.append(';').append(type.getName());
+            ClassMetaData meta = repos.getMetaData(type, loader, false);
+            if (meta == null)
+                continue;
+            if (meta.getPCSuperclass() != null)
+                buf.append('<').append(meta.getPCSuperclass().getName());
+            buf.append('/').append(meta.getIdentityType());
+            for (FieldMetaData fmd : meta.getDeclaredFields()) {
+                buf.append(',').append(fmd.getName()).append(':')
+                    .append(fmd.getDeclaredType().getName()).append(':')
+                    .append(fmd.getManagement());
+                if (fmd.isPrimaryKey())
+                    buf.append('!');
+            }
+        }
+        return digest(buf.toString());
+    }
+
+    /**
+     * Return the hex digest of the given fingerprint source.
+     */
+    protected static String digest(String source) {
+        try {
+            MessageDigest md = MessageDigest.getInstance("SHA-256");
+            byte[] bytes = md.digest(source.getBytes(StandardCharsets.UTF_8));
+            StringBuilder hex = new StringBuilder(bytes.length * 2);
+            for (byte b : bytes)
+                hex.append(Character.forDigit((b >> 4) & 0xF, 16))
+                    .append(Character.forDigit(b & 0xF, 16));
+            return hex.toString();
+        } catch (NoSuchAlgorithmException nsae) {
+            throw new InternalException(nsae);
+        }
+    }
+
+    @Override
+    public void setConfiguration(Configuration conf) {
+        _conf = (OpenJPAConfiguration) conf;
+    }
+
+    @Override
+    public void startConfiguration() {
+    }
+
+    @Override
+    public void endConfiguration() {
+    }
+}
@@ -450,6 +450,29 @@ public interface OpenJPAConfiguration
      */
     void setDynamicDataStructs(Boolean dynamic);
 
+    /**
+     * Return whether to compile the filters of queries executed in memory
+     * to bytecode rather than interpreting them.
+     *
+     * @since 3.2.1
+     */
+    boolean getCompileInMemoryQueries();
+
+    /**
+     * Set whether to compile the filters of queries executed in memory
+     * to bytecode rather than interpreting them.
+     *
+     * @since 3.2.1
+     */
+    void setCompileInMemoryQueries(boolean compile);
+
+    /**
+     * Wrapper for JCA usage of {@link #setCompileInMemoryQueries(boolean)}.
+     *
+     * @since 3.2.1
+     */
+    void setCompileInMemoryQueries(Boolean compile);
+
     /**
      * The plugin to use for datastore lock management.
      *
@@ -31,6 +31,7 @@ import org.apache.openjpa.datacache.ConcurrentDataCache;
 import org.apache.openjpa.datacache.ConcurrentQueryCache;
 import org.apache.openjpa.datacache.DataCacheManager;
 import org.apache.openjpa.datacache.DataCacheManagerImpl;
+import org.apache.openjpa.datacache.OffHeapDataCache;
 import org.apache.openjpa.datacache.PartitionedDataCache;
 import org.apache.openjpa.ee.ManagedRuntime;
 import org.apache.openjpa.enhance.RuntimeUnenhancedClassesModes;
@@ -107,6 +108,7 @@ public class OpenJPAConfigurationImpl
     public IntValue dataCacheTimeout;
     public ObjectValue queryCachePlugin;
     public BooleanValue dynamicDataStructs;
+    public BooleanValue compileInMemoryQueries;
     public ObjectValue managedRuntimePlugin;
     public BooleanValue transactionMode;
     public IntValue connectionRetainMode;
@@ -269,6 +271,7 @@ public class OpenJPAConfigurationImpl
             "true", ConcurrentDataCache.class.getName(),
             "concurrent", ConcurrentDataCache.class.getName(),
             "partitioned", PartitionedDataCache.class.getName(),
+            "offheap", OffHeapDataCache.class.getName(),
         };
         dataCachePlugin.setAliases(aliases);
         dataCachePlugin.setDefault(aliases[0]);
@@ -298,6 +301,10 @@ public class OpenJPAConfigurationImpl
         dynamicDataStructs.setDefault("false");
         dynamicDataStructs.set(false);
 
+        compileInMemoryQueries = addBoolean("CompileInMemoryQueries");
+        compileInMemoryQueries.setDefault("false");
+        compileInMemoryQueries.set(false);
+
         lockManagerPlugin = addPlugin("LockManager", false);
         aliases =
             new String[] {
@@ -887,6 +894,21 @@ public class OpenJPAConfigurationImpl
         setDynamicDataStructs(dynamic.booleanValue());
     }
 
+    @Override
+    public boolean getCompileInMemoryQueries() {
+        return compileInMemoryQueries.get();
+    }
+
+    @Override
+    public void setCompileInMemoryQueries(boolean compile) {
+        compileInMemoryQueries.set(compile);
+    }
+
+    @Override
+    public void setCompileInMemoryQueries(Boolean compile) {
+        setCompileInMemoryQueries(compile.booleanValue());
+    }
+
     @Override
     public void setLockManager(String lockManager) {
         lockManagerPlugin.setString(lockManager);
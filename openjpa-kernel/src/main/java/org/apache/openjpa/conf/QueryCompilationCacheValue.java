@@ -27,6 +27,7 @@ import org.apache.openjpa.lib.conf.Configuration;
 import org.apache.openjpa.lib.conf.PluginValue;
 import org.apache.openjpa.lib.util.ParseException;
 import org.apache.openjpa.util.CacheMap;
+import org.apache.openjpa.util.QueryCompilationCacheMap;
 
 /**
  * A cache of compiled queries.
@@ -40,6 +41,7 @@ public class QueryCompilationCacheValue
     public static final String[] ALIASES = {
         "true", CacheMap.class.getName(),
         "all", ConcurrentHashMap.class.getName(),
+        "bounded", QueryCompilationCacheMap.class.getName(),
         "false", null,
     };
 
@@ -29,7 +29,8 @@ import org.apache.openjpa.lib.util.StringUtil;
 /**
  * Value type used to represent a {@link RemoteCommitProvider}. This
  * plugin allows users to specify whether to transmit the ids of added objects
- * in the remote commit events distributed.
+ * in the remote commit events distributed, and whether to batch the events
+ * of several commits together.
  *
  * @author Abe White
  */
@@ -44,6 +45,8 @@ public class RemoteCommitProviderValue
 
     private Options _opts = null;
     private Boolean _transmitPersIds = null;
+    private Long _batchWindow = null;
+    private Integer _batchSize = null;
 
     public RemoteCommitProviderValue() {
         super("RemoteCommitProvider", true);
@@ -53,15 +56,20 @@ public class RemoteCommitProviderValue
     @Override
     public void setProperties(String props) {
         super.setProperties(props);
-        _opts = null;
-        _transmitPersIds = null;
+        reset();
     }
 
     @Override
     public void setString(String str) {
         super.setString(str);
+        reset();
+    }
+
+    private void reset() {
         _opts = null;
         _transmitPersIds = null;
+        _batchWindow = null;
+        _batchSize = null;
     }
 
     /**
@@ -115,6 +123,10 @@ public class RemoteCommitProviderValue
         parseOptions();
         if (_transmitPersIds != null)
             mgr.setTransmitPersistedObjectIds(_transmitPersIds);
+        if (_batchWindow != null)
+            mgr.setBatchWindowMillis(_batchWindow);
+        if (_batchSize != null)
+            mgr.setBatchSize(_batchSize);
     }
 
     /**
@@ -138,5 +150,13 @@ public class RemoteCommitProviderValue
             ("transmitPersistedObjectIds", "TransmitPersistedObjectIds", null));
         if (transmit != null)
             _transmitPersIds = Boolean.valueOf (transmit);
+        String window = StringUtil.trimToNull(_opts.removeProperty
+            ("batchWindowMillis", "BatchWindowMillis", null));
+        if (window != null)
+            _batchWindow = Long.valueOf(window);
+        String size = StringUtil.trimToNull(_opts.removeProperty
+            ("batchSize", "BatchSize", null));
+        if (size != null)
+            _batchSize = Integer.valueOf(size);
 	}
 }
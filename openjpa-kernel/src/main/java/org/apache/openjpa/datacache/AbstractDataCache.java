@@ -41,7 +41,9 @@ import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.util.Localizer;
 import org.apache.openjpa.lib.util.StringUtil;
 import org.apache.openjpa.lib.util.concurrent.AbstractConcurrentEventManager;
+import org.apache.openjpa.util.CacheEvictionPolicy;
 import org.apache.openjpa.util.GeneralException;
+import org.apache.openjpa.util.OpenJPAId;
 
 
 /**
@@ -80,6 +82,7 @@ public abstract class AbstractDataCache extends AbstractConcurrentEventManager
     protected Set<String> _includedTypes = new HashSet<>();
     protected Set<String> _excludedTypes = new HashSet<>();
     protected boolean _evictOnBulkUpdate = true;
+    private String _evictionPolicy = null;
 
     @Override
     public String getName() {
@@ -99,6 +102,31 @@ public abstract class AbstractDataCache extends AbstractConcurrentEventManager
         _stats.isEnabled();
     }
 
+    /**
+     * The policy used to choose between new and existing entries once the
+     * cache is full: <code>lru</code> (the default), <code>tinylfu</code>
+     * or the class name of a {@link CacheEvictionPolicy}.
+     *
+     * @since 3.2.1
+     */
+    public void setCacheEvictionPolicy(String policy) {
+        _evictionPolicy = policy;
+    }
+
+    public String getCacheEvictionPolicy() {
+        return _evictionPolicy;
+    }
+
+    /**
+     * Create the {@link CacheEvictionPolicy} configured for this cache, or
+     * null if none.
+     *
+     * @since 3.2.1
+     */
+    protected CacheEvictionPolicy newCacheEvictionPolicy() {
+        return Caches.newEvictionPolicy(conf, _evictionPolicy);
+    }
+
     public String getEvictionSchedule() {
         return _schedule;
     }
@@ -402,6 +430,9 @@ public abstract class AbstractDataCache extends AbstractConcurrentEventManager
         if (hasListeners())
             fireEvent(new ExpirationEvent(this, key, expired));
 
+        if (expired && _stats.isEnabled())
+            _stats.newEviction((key instanceof OpenJPAId) ? ((OpenJPAId) key).getType() : null);
+
         if (expired && log.isTraceEnabled())
             log.trace(s_loc.get("cache-expired", key));
     }
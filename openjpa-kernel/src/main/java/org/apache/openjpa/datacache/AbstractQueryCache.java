@@ -29,10 +29,12 @@ import java.util.List;
 import java.util.Map;
 import java.util.Set;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.atomic.LongAdder;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.event.RemoteCommitEvent;
 import org.apache.openjpa.event.RemoteCommitListener;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
 import org.apache.openjpa.kernel.QueryStatistics;
 import org.apache.openjpa.lib.conf.Configurable;
 import org.apache.openjpa.lib.conf.Configuration;
@@ -45,6 +47,7 @@ import org.apache.openjpa.lib.util.concurrent.ConcurrentReferenceHashMap;
 import org.apache.openjpa.lib.util.concurrent.ConcurrentReferenceHashSet;
 import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.CacheEvictionPolicy;
 import org.apache.openjpa.util.Id;
 
 /**
@@ -66,7 +69,8 @@ public abstract class AbstractQueryCache
         Localizer.forPackage(AbstractQueryCache.class);
 
     private static final String TIMESTAMP = "timestamp";
-    public enum EvictPolicy {DEFAULT, TIMESTAMP}
+    private static final String PREDICATE = "predicate";
+    public enum EvictPolicy {DEFAULT, TIMESTAMP, PREDICATE}
 
     /**
      * The configuration set by the system.
@@ -88,6 +92,13 @@ public abstract class AbstractQueryCache
 
     private QueryStatistics<QueryKey> _stats;
     private boolean _statsEnabled = false;
+    private String _cacheEvictionPolicy = null;
+
+    private final LongAdder _invalidations = new LongAdder();
+    private final LongAdder _invalidationExamined = new LongAdder();
+    private final LongAdder _invalidationRemoved = new LongAdder();
+    private final LongAdder _invalidationRetained = new LongAdder();
+    private final LongAdder _invalidationNanos = new LongAdder();
 
     public void setEnableStatistics(boolean enable){
         _statsEnabled = enable;
@@ -125,22 +136,33 @@ public abstract class AbstractQueryCache
 
     @Override
     public void onTypesChanged(TypesChangedEvent ev) {
-        if (evictPolicy == EvictPolicy.DEFAULT) {
+        if (evictPolicy != EvictPolicy.TIMESTAMP) {
+            long start = System.nanoTime();
             writeLock();
             Collection keys = null;
             try {
                 if (hasListeners())
                     fireEvent(ev);
-                keys = keySet();
+                keys = invalidationCandidates(ev.getTypes());
             } finally {
                 writeUnlock();
             }
 
+            Collection<OpenJPAStateManager> sms =
+                (evictPolicy == EvictPolicy.PREDICATE) ? ev.getStateManagers()
+                : null;
             QueryKey qk;
-                List<QueryKey> removes = null;
-                for (Object o: keys) {
-                    qk = (QueryKey) o;
+            List<QueryKey> removes = null;
+            int examined = 0;
+            int retained = 0;
+            for (Object o: keys) {
+                qk = (QueryKey) o;
+                examined++;
                 if (qk.changeInvalidatesQuery(ev.getTypes())) {
+                    if (sms != null && !isAffectedBy(qk, sms)) {
+                        retained++;
+                        continue;
+                    }
                     if (removes == null)
                         removes = new ArrayList<>();
                     removes.add(qk);
@@ -148,6 +170,11 @@ public abstract class AbstractQueryCache
             }
             if (removes != null)
                 removeAllInternal(removes);
+            _invalidations.increment();
+            _invalidationExamined.add(examined);
+            _invalidationRemoved.add((removes == null) ? 0 : removes.size());
+            _invalidationRetained.add(retained);
+            _invalidationNanos.add(System.nanoTime() - start);
         } else {
             Collection changedTypes = ev.getTypes();
             HashMap<String,Long> changedClasses =
@@ -338,6 +365,93 @@ public abstract class AbstractQueryCache
      */
     protected abstract Collection keySet();
 
+    /**
+     * Return the keys that may be invalidated by a change to the given
+     * types; only these are tested with
+     * {@link QueryKey#changeInvalidatesQuery}. This implementation returns
+     * all keys. The returned collection must be safe to iterate without the
+     * write lock.
+     *
+     * @since 3.2.1
+     */
+    protected Collection invalidationCandidates(Collection<Class<?>> types) {
+        return keySet();
+    }
+
+    /**
+     * Whether the given changed instances can affect the cached result for
+     * the given key, judged by the predicate recorded with the result.
+     */
+    private boolean isAffectedBy(QueryKey qk,
+        Collection<OpenJPAStateManager> sms) {
+        QueryResult res = getInternal(qk);
+        if (res == null || res.getPredicate() == null)
+            return true;
+        return res.getPredicate().isAffectedBy(qk, res, sms);
+    }
+
+    /**
+     * The number of type changes that invalidated entries of this cache
+     * since the last reset of the invalidation statistics.
+     *
+     * @since 3.2.1
+     */
+    public long getInvalidationCount() {
+        return _invalidations.sum();
+    }
+
+    /**
+     * The number of keys examined by invalidations since the last reset.
+     *
+     * @since 3.2.1
+     */
+    public long getInvalidationExaminedCount() {
+        return _invalidationExamined.sum();
+    }
+
+    /**
+     * The number of entries removed by invalidations since the last reset.
+     *
+     * @since 3.2.1
+     */
+    public long getInvalidatedCount() {
+        return _invalidationRemoved.sum();
+    }
+
+    /**
+     * The number of entries over changed types that invalidations kept
+     * because the changed instances could not affect them, since the last
+     * reset. Always 0 unless the evict policy is <code>predicate</code>.
+     *
+     * @since 3.2.1
+     */
+    public long getInvalidationRetainedCount() {
+        return _invalidationRetained.sum();
+    }
+
+    /**
+     * The total time spent invalidating entries since the last reset, in
+     * nanoseconds.
+     *
+     * @since 3.2.1
+     */
+    public long getInvalidationTime() {
+        return _invalidationNanos.sum();
+    }
+
+    /**
+     * Reset the invalidation statistics.
+     *
+     * @since 3.2.1
+     */
+    public void resetInvalidationStatistics() {
+        _invalidations.reset();
+        _invalidationExamined.reset();
+        _invalidationRemoved.reset();
+        _invalidationRetained.reset();
+        _invalidationNanos.reset();
+    }
+
     /**
      * Return the list for the given key.
      */
@@ -421,12 +535,17 @@ public abstract class AbstractQueryCache
 	}
 
     /**
-     * Sets the eviction policy for the query cache
+     * Sets the eviction policy for the query cache. With
+     * <code>predicate</code>, a local commit keeps the cached results of
+     * simple queries that the committed instances cannot affect, as decided
+     * by evaluating the query filter in memory against these instances.
      * @param evictPolicy -- String value that specifies the eviction policy
      */
     public void setEvictPolicy(String evictPolicy) {
         if (evictPolicy.equalsIgnoreCase(TIMESTAMP))
             this.evictPolicy = EvictPolicy.TIMESTAMP;
+        else if (evictPolicy.equalsIgnoreCase(PREDICATE))
+            this.evictPolicy = EvictPolicy.PREDICATE;
     }
 
     /**
@@ -437,6 +556,32 @@ public abstract class AbstractQueryCache
         return this.evictPolicy;
     }
 
+    /**
+     * The policy used to choose between new and existing entries once the
+     * cache is full: <code>lru</code> (the default), <code>tinylfu</code>
+     * or the class name of a {@link CacheEvictionPolicy}. Not to be confused
+     * with {@link #setEvictPolicy}, which governs invalidation.
+     *
+     * @since 3.2.1
+     */
+    public void setCacheEvictionPolicy(String policy) {
+        _cacheEvictionPolicy = policy;
+    }
+
+    public String getCacheEvictionPolicy() {
+        return _cacheEvictionPolicy;
+    }
+
+    /**
+     * Create the {@link CacheEvictionPolicy} configured for this cache, or
+     * null if none.
+     *
+     * @since 3.2.1
+     */
+    protected CacheEvictionPolicy newCacheEvictionPolicy() {
+        return Caches.newEvictionPolicy(conf, _cacheEvictionPolicy);
+    }
+
     /**
      * Updates the entity timestamp map with the current time in milliseconds
      * @param timestampMap -- a map that contains entityname and its last
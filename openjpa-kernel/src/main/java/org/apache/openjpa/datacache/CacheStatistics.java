@@ -53,6 +53,27 @@ public interface CacheStatistics extends Serializable {
 	 */
 	long getWriteCount();
 
+	/**
+	 * Gets number of entries evicted to make room for others since last
+	 * reset, or -1 if evictions are not counted.
+	 *
+	 * @since 3.2.1
+	 */
+	default long getEvictionCount() {
+		return -1;
+	}
+
+	/**
+	 * Gets the fraction of read requests since last reset that were found
+	 * in cache, or 0 if there were no reads.
+	 *
+	 * @since 3.2.1
+	 */
+	default double getHitRatio() {
+		long reads = getReadCount();
+		return (reads == 0) ? 0 : (double) getHitCount() / reads;
+	}
+
 	/**
 	 * Gets number of total read requests since start.
 	 */
@@ -69,6 +90,27 @@ public interface CacheStatistics extends Serializable {
 	 */
 	long getTotalWriteCount();
 
+	/**
+	 * Gets number of entries evicted to make room for others since start,
+	 * or -1 if evictions are not counted.
+	 *
+	 * @since 3.2.1
+	 */
+	default long getTotalEvictionCount() {
+		return -1;
+	}
+
+	/**
+	 * Gets the fraction of read requests since start that were found in
+	 * cache, or 0 if there were no reads.
+	 *
+	 * @since 3.2.1
+	 */
+	default double getTotalHitRatio() {
+		long reads = getTotalReadCount();
+		return (reads == 0) ? 0 : (double) getTotalHitCount() / reads;
+	}
+
     /**
      * Gets number of total read requests for the given class since last reset.
      *
@@ -141,6 +183,36 @@ public interface CacheStatistics extends Serializable {
      */
     @Deprecated long getTotalWriteCount(Class<?> cls);
 
+	/**
+	 * Gets the estimated number of bytes currently held by the cache, or -1
+	 * if the cache does not weigh its entries.
+	 *
+	 * @since 3.2.1
+	 */
+	default long getByteCount() {
+		return -1;
+	}
+
+	/**
+	 * Gets the number of reads since start that missed the heap and were
+	 * served by an off-heap tier, or -1 if the cache has no off-heap tier.
+	 *
+	 * @since 3.2.1
+	 */
+	default long getOffHeapHitCount() {
+		return -1;
+	}
+
+	/**
+	 * Gets the number of bytes currently held by an off-heap tier, or -1 if
+	 * the cache has no off-heap tier.
+	 *
+	 * @since 3.2.1
+	 */
+	default long getOffHeapByteCount() {
+		return -1;
+	}
+
 	/**
 	 * Gets the time of last reset.
 	 */
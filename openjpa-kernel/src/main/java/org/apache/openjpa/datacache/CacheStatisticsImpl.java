@@ -23,6 +23,7 @@ import java.util.HashMap;
 import java.util.Map;
 import java.util.Map.Entry;
 import java.util.Set;
+import java.util.function.LongSupplier;
 
 import org.apache.openjpa.util.OpenJPAId;
 
@@ -31,7 +32,7 @@ import org.apache.openjpa.util.OpenJPAId;
  */
 public class CacheStatisticsImpl implements CacheStatisticsSPI {
     private static final long serialVersionUID = 9014495759588003166L;
-    private static final int ARRAY_SIZE = 3;
+    private static final int ARRAY_SIZE = 4;
     private long[] totalStat = new long[ARRAY_SIZE];
     private long[] stat = new long[ARRAY_SIZE];
     private Map<String, long[]> stats = new HashMap<>();
@@ -40,10 +41,14 @@ public class CacheStatisticsImpl implements CacheStatisticsSPI {
     private Date start = new Date();
     private Date since = new Date();
     private boolean enabled = false;
+    private transient LongSupplier byteCounter = null;
+    private transient LongSupplier offHeapHitCounter = null;
+    private transient LongSupplier offHeapByteCounter = null;
 
     private static final int READ = 0;
     private static final int HIT = 1;
     private static final int WRITE = 2;
+    private static final int EVICT = 3;
 
     @Override
     public long getReadCount() {
@@ -60,6 +65,16 @@ public class CacheStatisticsImpl implements CacheStatisticsSPI {
         return stat[WRITE];
     }
 
+    @Override
+    public long getEvictionCount() {
+        return stat[EVICT];
+    }
+
+    @Override
+    public double getHitRatio() {
+        return ratio(stat[HIT], stat[READ]);
+    }
+
     @Override
     public long getTotalReadCount() {
         return totalStat[READ];
@@ -75,6 +90,16 @@ public class CacheStatisticsImpl implements CacheStatisticsSPI {
         return totalStat[WRITE];
     }
 
+    @Override
+    public long getTotalEvictionCount() {
+        return totalStat[EVICT];
+    }
+
+    @Override
+    public double getTotalHitRatio() {
+        return ratio(totalStat[HIT], totalStat[READ]);
+    }
+
     @Override
     public long getReadCount(Class<?> c) {
         return getReadCount(c.getName());
@@ -134,6 +159,24 @@ public class CacheStatisticsImpl implements CacheStatisticsSPI {
         return getCount(totalStats, str, WRITE);
     }
 
+    @Override
+    public long getByteCount() {
+        LongSupplier counter = byteCounter;
+        return (counter == null) ? -1 : counter.getAsLong();
+    }
+
+    @Override
+    public long getOffHeapHitCount() {
+        LongSupplier counter = offHeapHitCounter;
+        return (counter == null) ? -1 : counter.getAsLong();
+    }
+
+    @Override
+    public long getOffHeapByteCount() {
+        LongSupplier counter = offHeapByteCounter;
+        return (counter == null) ? -1 : counter.getAsLong();
+    }
+
     @Override
     public Date since() {
         return since;
@@ -173,6 +216,18 @@ public class CacheStatisticsImpl implements CacheStatisticsSPI {
     /**
      * SPI implementation
      */
+    @Override
+    public void setByteCounter(LongSupplier counter) {
+        byteCounter = counter;
+    }
+
+    @Override
+    public void setOffHeapCounters(LongSupplier hitCounter,
+        LongSupplier byteCounter) {
+        offHeapHitCounter = hitCounter;
+        offHeapByteCounter = byteCounter;
+    }
+
     @Override
     public void enable() {
         enabled = true;
@@ -223,9 +278,22 @@ public class CacheStatisticsImpl implements CacheStatisticsSPI {
         }
     }
 
+    @Override
+    public void newEviction(Class<?> cls) {
+        if (!enabled) {
+            return;
+        }
+        cls = (cls == null) ? Object.class : cls;
+        addSample(cls.getName(), EVICT);
+    }
+
     /**
      *  Private worker methods.
      */
+    private static double ratio(long hits, long reads) {
+        return (reads == 0) ? 0 : (double) hits / reads;
+    }
+
     private void addSample(String c, int index) {
         stat[index]++;
         totalStat[index]++;
@@ -18,6 +18,8 @@
  */
 package org.apache.openjpa.datacache;
 
+import java.util.function.LongSupplier;
+
 /**
  * The provider extensions to the CacheStatistics interface.
  */
@@ -41,6 +43,35 @@ public interface CacheStatisticsSPI extends CacheStatistics {
      */
     void newPut(Class<?> cls);
 
+    /**
+     * Record the eviction of an entry to make room for others.
+     *
+     * @param cls
+     *            - The class describing the type that was evicted, or null if unknown.
+     * @since 3.2.1
+     */
+    default void newEviction(Class<?> cls) {
+    }
+
+
+    /**
+     * Set the source of the cache's current size in bytes, or null if the
+     * cache does not weigh its entries.
+     *
+     * @since 3.2.1
+     */
+    default void setByteCounter(LongSupplier counter) {
+    }
+
+    /**
+     * Set the sources of the hit count and size in bytes of the cache's
+     * off-heap tier.
+     *
+     * @since 3.2.1
+     */
+    default void setOffHeapCounters(LongSupplier hitCounter,
+        LongSupplier byteCounter) {
+    }
 
     /**
      * Enable statistics collection.
@@ -23,6 +23,10 @@ import java.util.HashSet;
 import java.util.Set;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.conf.Configurations;
+import org.apache.openjpa.lib.util.StringUtil;
+import org.apache.openjpa.util.CacheEvictionPolicy;
+import org.apache.openjpa.util.TinyLFUEvictionPolicy;
 
 class Caches {
 
@@ -51,4 +55,20 @@ class Caches {
         }
         return classes;
     }
+
+    /**
+     * Create the eviction policy named by a cache's
+     * <code>CacheEvictionPolicy</code> property: <code>lru</code> or empty
+     * for none, <code>tinylfu</code>, or the name of a
+     * {@link CacheEvictionPolicy} implementation.
+     */
+    static CacheEvictionPolicy newEvictionPolicy(OpenJPAConfiguration conf,
+        String policy) {
+        if (StringUtil.isEmpty(policy) || "lru".equalsIgnoreCase(policy))
+            return null;
+        if ("tinylfu".equalsIgnoreCase(policy))
+            return new TinyLFUEvictionPolicy();
+        ClassLoader loader = conf.getClassResolverInstance().getClassLoader(Caches.class, null);
+        return (CacheEvictionPolicy) Configurations.newInstance(policy, loader);
+    }
 }
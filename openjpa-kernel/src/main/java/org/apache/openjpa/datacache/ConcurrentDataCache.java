@@ -19,8 +19,12 @@
 package org.apache.openjpa.datacache;
 
 import org.apache.openjpa.event.RemoteCommitListener;
+import org.apache.openjpa.lib.conf.Configurations;
 import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.lib.util.StringUtil;
 import org.apache.openjpa.util.CacheMap;
+import org.apache.openjpa.util.CacheWeigher;
+import org.apache.openjpa.util.StripedCacheMap;
 
 /**
  * A {@link DataCache} implementation that is optimized for concurrent
@@ -45,6 +49,9 @@ public class ConcurrentDataCache
     private int _cacheSize = Integer.MIN_VALUE;
     private int _softRefs = Integer.MIN_VALUE;
     protected boolean _lru = false;
+    protected int _stripes = 1;
+    private long _maxBytes = -1;
+    private String _weigher = null;
 
     /**
      * Returns the underlying {@link CacheMap} that this cache is using.
@@ -93,6 +100,66 @@ public class ConcurrentDataCache
         return _cache.getSoftReferenceSize();
     }
 
+    /**
+     * Sets the maximum estimated number of bytes retained by the unpinned
+     * hard references, or -1 (the default) for no limit. When exceeded, old
+     * values are moved to the soft reference map as if the cache size had
+     * been reached. Entries are weighed with the configured
+     * {@link #setWeigher weigher}.
+     *
+     * @since 3.2.1
+     */
+    public void setMaxBytes(long bytes) {
+        _maxBytes = bytes;
+    }
+
+    /**
+     * Returns the maximum estimated number of bytes retained by the
+     * unpinned hard references, or -1 for no limit.
+     */
+    public long getMaxBytes() {
+        return _maxBytes;
+    }
+
+    /**
+     * Returns the estimated number of bytes currently retained by the
+     * unpinned hard references, or -1 if entries are not weighed, like
+     * {@link CacheStatistics#getByteCount}.
+     *
+     * @since 3.2.1
+     */
+    public long getByteCount() {
+        return (_cache.getWeigher() == null) ? -1 : _cache.getWeight();
+    }
+
+    /**
+     * Sets the class name of the {@link CacheWeigher} used to estimate the
+     * size of cached data when {@link #setMaxBytes MaxBytes} is set.
+     * Defaults to {@link DataCachePCDataWeigher}.
+     *
+     * @since 3.2.1
+     */
+    public void setWeigher(String weigher) {
+        _weigher = weigher;
+    }
+
+    public String getWeigher() {
+        return _weigher;
+    }
+
+    /**
+     * Create the weigher for cached data, or null if entries are only
+     * counted.
+     */
+    protected CacheWeigher newWeigher() {
+        if (_maxBytes < 0 && StringUtil.isEmpty(_weigher))
+            return null;
+        if (StringUtil.isEmpty(_weigher))
+            return new DataCachePCDataWeigher();
+        ClassLoader loader = conf.getClassResolverInstance().getClassLoader(getClass(), null);
+        return (CacheWeigher) Configurations.newInstance(_weigher, loader);
+    }
+
     @Override
     public void initialize(DataCacheManager mgr) {
         super.initialize(mgr);
@@ -105,6 +172,13 @@ public class ConcurrentDataCache
         if (_softRefs != Integer.MIN_VALUE) {
             _cache.setSoftReferenceSize(_softRefs);
         }
+        _cache.setEvictionPolicy(newCacheEvictionPolicy());
+        CacheWeigher weigher = newWeigher();
+        if (weigher != null) {
+            _cache.setWeigher(weigher);
+            _cache.setMaxWeight(_maxBytes);
+            _stats.setByteCounter(_cache::getWeight);
+        }
     }
 
     @Override
@@ -126,19 +200,39 @@ public class ConcurrentDataCache
 
     /**
      * Return the map to use as an internal cache; entry expirations must
-     * invoke {@link AbstractDataCache#keyRemoved}.
+     * invoke {@link #cacheEntryRemoved}.
      */
     protected CacheMap newCacheMap() {
+        if (_stripes > 1) {
+            return new StripedCacheMap(_lru, _stripes) {
+                @Override
+                protected void entryRemoved(Object key, Object value, boolean expired) {
+                    cacheEntryRemoved(key, value, expired);
+                }
+            };
+        }
+
         CacheMap res = new CacheMap(_lru) {
             @Override
             protected void entryRemoved(Object key, Object value, boolean expired) {
-                keyRemoved(key, expired);
+                cacheEntryRemoved(key, value, expired);
             }
         };
 
         return res;
     }
 
+    /**
+     * Invoked by the cache map when an entry leaves it. The value is null
+     * if it was reclaimed by the garbage collector. Invokes
+     * {@link AbstractDataCache#keyRemoved} by default.
+     *
+     * @since 3.2.1
+     */
+    protected void cacheEntryRemoved(Object key, Object value, boolean expired) {
+        keyRemoved(key, expired);
+    }
+
     @Override
     protected DataCachePCData getInternal(Object key) {
         return (DataCachePCData) _cache.get(key);
@@ -190,4 +284,20 @@ public class ConcurrentDataCache
     public boolean getLru() {
         return _lru;
     }
+
+    /**
+     * Sets the number of independently locked stripes the cache map is
+     * split into. Values greater than 1 select a {@link StripedCacheMap};
+     * the default of 1 uses a single {@link CacheMap}.
+     */
+    public void setStripes(int stripes) {
+        _stripes = stripes;
+    }
+
+    /**
+     * Returns the number of independently locked stripes of the cache map.
+     */
+    public int getStripes() {
+        return _stripes;
+    }
 }
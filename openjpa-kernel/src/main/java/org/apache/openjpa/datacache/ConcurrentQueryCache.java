@@ -22,6 +22,7 @@ import java.util.Collection;
 
 import org.apache.openjpa.event.RemoteCommitListener;
 import org.apache.openjpa.util.CacheMap;
+import org.apache.openjpa.util.StripedCacheMap;
 
 /**
  * A {@link QueryCache} implementation that is optimized for concurrent
@@ -29,6 +30,8 @@ import org.apache.openjpa.util.CacheMap;
  * randomly. Due to race conditions, it is possible that a get call might not
  * retur a cached instance if that instance is being transferred between
  * internal datastructures.
+ * The cached keys are indexed by the classes in their access path, so that
+ * a change to some types only examines the queries over these types.
  *
  * @since 0.4.1
  */
@@ -40,8 +43,10 @@ public class ConcurrentQueryCache
     private static final long serialVersionUID = 1L;
     private CacheMap _cache;
     protected boolean _lru = false;
+    protected int _stripes = 1;
     private int _cacheSize = Integer.MIN_VALUE;
     private int _softRefs = Integer.MIN_VALUE;
+    private transient QueryKeyIndex _index;
 
     /**
      * Returns the underlying {@link CacheMap} that this cache is using.
@@ -97,6 +102,8 @@ public class ConcurrentQueryCache
     public void initialize(DataCacheManager mgr) {
         super.initialize(mgr);
         conf.getRemoteCommitEventManager().addInternalListener(this);
+        // maps of subclasses that do not call newCacheMap are not indexed
+        _index = null;
         _cache = newCacheMap();
         if (_cacheSize != Integer.MIN_VALUE) {
             _cache.setCacheSize(_cacheSize);
@@ -104,6 +111,7 @@ public class ConcurrentQueryCache
         if (_softRefs != Integer.MIN_VALUE) {
             _cache.setSoftReferenceSize(_softRefs);
         }
+        _cache.setEvictionPolicy(newCacheEvictionPolicy());
     }
 
     @Override
@@ -119,12 +127,39 @@ public class ConcurrentQueryCache
     }
 
     /**
-     * Return the map to use as an internal cache.
+     * Return the map to use as an internal cache. The returned map keeps
+     * the index of the cached keys by type up to date.
      */
     protected CacheMap newCacheMap() {
-        CacheMap res = new CacheMap(_lru);
+        final QueryKeyIndex index = new QueryKeyIndex();
+        _index = index;
+        if (_stripes > 1) {
+            return new StripedCacheMap(_lru, _stripes) {
+                @Override
+                protected void entryAdded(Object key, Object value) {
+                    index.add((QueryKey) key);
+                }
+
+                @Override
+                protected void entryRemoved(Object key, Object value,
+                    boolean expired) {
+                    index.remove((QueryKey) key);
+                }
+            };
+        }
+
+        return new CacheMap(_lru) {
+            @Override
+            protected void entryAdded(Object key, Object value) {
+                index.add((QueryKey) key);
+            }
 
-        return res;
+            @Override
+            protected void entryRemoved(Object key, Object value,
+                boolean expired) {
+                index.remove((QueryKey) key);
+            }
+        };
     }
 
     @Override
@@ -145,6 +180,8 @@ public class ConcurrentQueryCache
     @Override
     protected void clearInternal() {
         _cache.clear();
+        if (_index != null)
+            _index.clear();
     }
 
     @Override
@@ -162,6 +199,17 @@ public class ConcurrentQueryCache
         return _cache.keySet ();
 	}
 
+    /**
+     * Return the keys over any of the given types from the index of the
+     * cached keys.
+     */
+    @Override
+    protected Collection invalidationCandidates(Collection<Class<?>> types) {
+        if (_index == null)
+            return super.invalidationCandidates(types);
+        return _index.getKeys(types);
+    }
+
     /**
      * Returns the eviction policy of the query cache
      */
@@ -177,4 +225,20 @@ public class ConcurrentQueryCache
     public boolean getLru() {
         return _lru;
     }
+
+    /**
+     * Sets the number of independently locked stripes the cache map is
+     * split into. Values greater than 1 select a {@link StripedCacheMap};
+     * the default of 1 uses a single {@link CacheMap}.
+     */
+    public void setStripes(int stripes) {
+        _stripes = stripes;
+    }
+
+    /**
+     * Returns the number of independently locked stripes of the cache map.
+     */
+    public int getStripes() {
+        return _stripes;
+    }
 }
@@ -0,0 +1,152 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.lang.reflect.Array;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.util.BitSet;
+import java.util.Calendar;
+import java.util.Collection;
+import java.util.Date;
+import java.util.Map;
+
+import org.apache.openjpa.kernel.AbstractPCData;
+import org.apache.openjpa.kernel.PCData;
+import org.apache.openjpa.util.CacheWeigher;
+import org.apache.openjpa.util.OpenJPAId;
+
+/**
+ * {@link CacheWeigher} that estimates the heap retained by a
+ * {@link DataCachePCData}: the data holder itself, its field array and
+ * loaded mask, and the values of all loaded fields including embedded and
+ * collection data. Estimates assume a 64-bit JVM with compressed
+ * references and are deliberately conservative; shared values such as
+ * enum constants are not counted.
+ *
+ * @since 3.2.1
+ */
+public class DataCachePCDataWeigher
+    implements CacheWeigher {
+
+    private static final int HEADER = 16;
+    private static final int REF = 8;
+    private static final int MAX_DEPTH = 8;
+
+    @Override
+    public int weigh(Object key, Object value) {
+        long size = estimate(key, 0);
+        if (value instanceof PCData)
+            size += estimateData((PCData) value, 0);
+        else
+            size += estimate(value, 0);
+        return (int) Math.min(size, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Estimate the size of the given data holder and its field values.
+     */
+    protected long estimateData(PCData data, int depth) {
+        // object with id, type, cache name, data, loaded, version, impl
+        long size = HEADER + 8 * REF;
+        size += estimate(data.getVersion(), depth + 1);
+        if (!(data instanceof AbstractPCData))
+            return size;
+
+        BitSet loaded = ((AbstractPCData) data).getLoaded();
+        int fields = loaded.length();
+        size += arraySize(fields, REF) + HEADER + 8 + ((fields + 63) >> 6) * 8;
+        for (int i = loaded.nextSetBit(0); i >= 0; i = loaded.nextSetBit(i + 1))
+            size += estimate(data.getData(i), depth + 1);
+        return size;
+    }
+
+    /**
+     * Estimate the size of a single field value.
+     */
+    protected long estimate(Object o, int depth) {
+        if (o == null || o instanceof Enum || o instanceof Class
+            || o == AbstractPCData.NULL)
+            return 0;
+        if (depth > MAX_DEPTH)
+            return HEADER;
+
+        if (o instanceof String)
+            return 40 + 2L * ((String) o).length();
+        if (o instanceof Long || o instanceof Double)
+            return 24;
+        if (o instanceof Number && !(o instanceof BigDecimal)
+            && !(o instanceof BigInteger))
+            return 16;
+        if (o instanceof Boolean || o instanceof Character)
+            return 16;
+        if (o instanceof BigDecimal || o instanceof BigInteger)
+            return 48;
+        if (o instanceof Date)
+            return 32;
+        if (o instanceof Calendar)
+            return 448;
+        if (o instanceof OpenJPAId)
+            return 32 + estimate(((OpenJPAId) o).getIdObject(), depth + 1);
+        if (o instanceof PCData)
+            return estimateData((PCData) o, depth);
+
+        if (o.getClass().isArray()) {
+            Class<?> comp = o.getClass().getComponentType();
+            int len = Array.getLength(o);
+            if (comp.isPrimitive())
+                return arraySize(len, primitiveSize(comp));
+            long size = arraySize(len, REF);
+            for (int i = 0; i < len; i++)
+                size += estimate(Array.get(o, i), depth + 1);
+            return size;
+        }
+        if (o instanceof Collection) {
+            Collection<?> c = (Collection<?>) o;
+            long size = 48 + 16L * c.size();
+            for (Object e : c)
+                size += estimate(e, depth + 1);
+            return size;
+        }
+        if (o instanceof Map) {
+            Map<?, ?> m = (Map<?, ?>) o;
+            long size = 64 + 32L * m.size();
+            for (Map.Entry<?, ?> e : m.entrySet())
+                size += estimate(e.getKey(), depth + 1)
+                    + estimate(e.getValue(), depth + 1);
+            return size;
+        }
+        return HEADER;
+    }
+
+    private static long arraySize(int len, int elementSize) {
+        long size = HEADER + (long) len * elementSize;
+        return (size + 7) & ~7L;
+    }
+
+    private static int primitiveSize(Class<?> type) {
+        if (type == byte.class || type == boolean.class)
+            return 1;
+        if (type == char.class || type == short.class)
+            return 2;
+        if (type == long.class || type == double.class)
+            return 8;
+        return 4;
+    }
+}
@@ -445,10 +445,10 @@ public class DataCacheStoreManager extends DelegatingStoreManager {
         DataCache cache = _mgr.selectCache(sm);
 
         boolean found = false;
-        int loadedFieldsBefore = sm.getLoaded().cardinality();
+        int loadedFieldsBefore = sm.getLoadedCount();
         if (cache == null || sm.isEmbedded() || bypass(fetch, StoreManager.FORCE_LOAD_NONE)) {
             found = super.load(sm, fields, fetch, lockLevel, edata);
-            int loadedFieldsAfter = sm.getLoaded().cardinality();
+            int loadedFieldsAfter = sm.getLoadedCount();
             boolean changed = loadedFieldsAfter > loadedFieldsBefore;
             updateDataCache(found, sm, fetch, changed);
             return found;
@@ -470,7 +470,7 @@ public class DataCacheStoreManager extends DelegatingStoreManager {
         // so that if the store manager decides to modify it it won't affect us
         found = super.load(sm,(BitSet) fields.clone() , fetch, lockLevel, edata);
 
-        int loadedFieldsAfter = sm.getLoaded().cardinality();
+        int loadedFieldsAfter = sm.getLoadedCount();
         boolean changed = loadedFieldsAfter > loadedFieldsBefore;
         // Get new instance of cache after DB load since it may have changed
         updateDataCache(found, sm, fetch, changed);
@@ -0,0 +1,384 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.OffHeapStore;
+import org.apache.openjpa.util.OpenJPAId;
+import org.apache.openjpa.util.Serialization;
+
+/**
+ * A {@link ConcurrentDataCache} with a second, off-heap tier. Entries
+ * evicted from the hard reference map are serialized into direct memory
+ * instead of being dropped, and are deserialized back onto the heap on
+ * their next access. This lets a cache hold far more data than the heap
+ * could without adding to garbage collection pressure.
+ *
+ * The soft reference map is disabled by default so that evicted entries go
+ * straight to the off-heap tier. Only entries whose data is serializable
+ * are moved off-heap; others are dropped as usual.
+ *
+ * Entries evicted from the heap wait in a pending map until the thread
+ * that caused the eviction serializes them after releasing the cache map
+ * locks. Changes to the off-heap tier are made while holding the monitor
+ * of the {@link OffHeapStore}, which is never acquired under a cache map
+ * lock.
+ *
+ * @since 3.2.1
+ */
+public class OffHeapDataCache
+    extends ConcurrentDataCache {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Localizer _loc = Localizer.forPackage
+        (OffHeapDataCache.class);
+
+    private long _offHeapSize = 64L * 1024 * 1024;
+    private int _slabSize = 1024 * 1024;
+    private transient OffHeapStore _store;
+
+    // entries evicted from the heap that are still to be moved off-heap
+    private final Map<Object, DataCachePCData> _pending = new ConcurrentHashMap<>();
+    private final Queue<Object> _pendingKeys = new ConcurrentLinkedQueue<>();
+
+    // number of puts and removals, guarded by the store monitor; entries
+    // read off-heap are only promoted if no change happened meanwhile
+    private long _modCount = 0;
+
+    private final AtomicLong _hits = new AtomicLong();
+    private final AtomicLong _misses = new AtomicLong();
+    private final AtomicLong _writes = new AtomicLong();
+    private final AtomicLong _evictions = new AtomicLong();
+
+    public OffHeapDataCache() {
+        setSoftReferenceSize(0);
+    }
+
+    /**
+     * Sets the maximum number of bytes of direct memory used by the
+     * off-heap tier. Defaults to 64MB.
+     */
+    public void setOffHeapSize(long size) {
+        _offHeapSize = size;
+    }
+
+    public long getOffHeapSize() {
+        return _offHeapSize;
+    }
+
+    /**
+     * Sets the size of the direct memory slabs making up the off-heap tier.
+     * Entries larger than a slab are not moved off-heap. When the tier is
+     * full, the oldest slab and all of the entries in it are dropped.
+     * Defaults to 1MB.
+     */
+    public void setSlabSize(int size) {
+        _slabSize = size;
+    }
+
+    public int getSlabSize() {
+        return _slabSize;
+    }
+
+    /**
+     * Number of lookups that missed the heap and were served off-heap.
+     */
+    public long getOffHeapHitCount() {
+        return _hits.get();
+    }
+
+    /**
+     * Number of lookups that missed both the heap and the off-heap tier.
+     */
+    public long getOffHeapMissCount() {
+        return _misses.get();
+    }
+
+    /**
+     * Number of entries moved from the heap to the off-heap tier.
+     */
+    public long getOffHeapWriteCount() {
+        return _writes.get();
+    }
+
+    /**
+     * Number of entries dropped from the off-heap tier to make room.
+     */
+    public long getOffHeapEvictionCount() {
+        return _evictions.get();
+    }
+
+    /**
+     * Number of entries currently held off-heap.
+     */
+    public int getOffHeapEntryCount() {
+        return _store.size();
+    }
+
+    /**
+     * Number of bytes of live data currently held off-heap.
+     */
+    public long getOffHeapByteCount() {
+        return _store.getByteCount();
+    }
+
+    @Override
+    public void initialize(DataCacheManager mgr) {
+        _store = new OffHeapStore(_offHeapSize, _slabSize);
+        super.initialize(mgr);
+        _stats.setOffHeapCounters(_hits::get, _store::getByteCount);
+        if (log.isTraceEnabled())
+            log.trace(_loc.get("offheap-init", getName(),
+                String.valueOf(_store.getCapacity()),
+                String.valueOf(_store.getSlabSize())));
+    }
+
+    /**
+     * Move entries that expire from the heap off-heap rather than dropping
+     * them. Entries are only reported as removed once they leave both tiers.
+     * This is invoked under the cache map lock, so entries are only queued
+     * here and serialized by {@link #moveOffHeap}.
+     */
+    @Override
+    protected void cacheEntryRemoved(Object key, Object value, boolean expired) {
+        if (expired && value instanceof DataCachePCData
+            && !((DataCachePCData) value).isTimedOut()) {
+            _pending.put(key, (DataCachePCData) value);
+            _pendingKeys.add(key);
+            return;
+        }
+        keyRemoved(key, expired);
+    }
+
+    /**
+     * Serialize the entries evicted from the heap into the off-heap tier.
+     * Must not be called while holding a cache map lock.
+     */
+    protected void moveOffHeap() {
+        Object key;
+        while ((key = _pendingKeys.poll()) != null) {
+            DataCachePCData data = _pending.get(key);
+            if (data == null)
+                continue;
+            byte[] bytes = serialize(key, data);
+            Collection<Object> dropped;
+            synchronized (_store) {
+                // skip entries put or removed since they were evicted
+                if (!_pending.remove(key, data))
+                    continue;
+                if (bytes == null) {
+                    dropped = null;
+                } else {
+                    _writes.incrementAndGet();
+                    dropped = _store.put(key, bytes);
+                }
+            }
+            if (dropped == null) {
+                keyRemoved(key, true);
+                continue;
+            }
+            for (Object o : dropped) {
+                _evictions.incrementAndGet();
+                keyRemoved(o, true);
+            }
+        }
+    }
+
+    @Override
+    protected DataCachePCData getInternal(Object key) {
+        DataCachePCData data = super.getInternal(key);
+        if (data == null)
+            data = getOffHeap(key);
+        moveOffHeap();
+        return data;
+    }
+
+    /**
+     * Return the data for the given key from the entries on their way
+     * off-heap or from the off-heap tier, promoting the latter back onto
+     * the heap.
+     */
+    private DataCachePCData getOffHeap(Object key) {
+        DataCachePCData data = _pending.get(key);
+        if (data != null) {
+            synchronized (_store) {
+                if (_pending.remove(key, data))
+                    super.putInternal(key, data);
+            }
+            _hits.incrementAndGet();
+            return data;
+        }
+
+        byte[] bytes;
+        long modCount;
+        synchronized (_store) {
+            bytes = _store.get(key);
+            modCount = _modCount;
+        }
+        data = (bytes == null) ? null : deserialize(key, bytes);
+        if (data == null) {
+            _misses.incrementAndGet();
+            if (bytes != null)
+                removeInternal(key);
+            return null;
+        }
+
+        // promote unless the entry was put or removed meanwhile, so that a
+        // concurrent change cannot be undone by putting back the old value
+        synchronized (_store) {
+            if (modCount != _modCount) {
+                _misses.incrementAndGet();
+                return null;
+            }
+            _store.remove(key);
+            super.putInternal(key, data);
+        }
+        _hits.incrementAndGet();
+        return data;
+    }
+
+    @Override
+    protected DataCachePCData putInternal(Object key, DataCachePCData pc) {
+        synchronized (_store) {
+            _modCount++;
+            _pending.remove(key);
+            _store.remove(key);
+        }
+        DataCachePCData data = super.putInternal(key, pc);
+        moveOffHeap();
+        return data;
+    }
+
+    @Override
+    protected DataCachePCData removeInternal(Object key) {
+        boolean removed;
+        synchronized (_store) {
+            _modCount++;
+            removed = _pending.remove(key) != null;
+            removed |= _store.remove(key);
+        }
+        DataCachePCData data = super.removeInternal(key);
+        if (removed && data == null)
+            keyRemoved(key, false);
+        return data;
+    }
+
+    @Override
+    protected void removeAllInternal(Class<?> cls, boolean subs) {
+        Collection<Object> removed = new ArrayList<>();
+        synchronized (_store) {
+            _modCount++;
+            for (Iterator<Object> itr = _pending.keySet().iterator(); itr.hasNext();) {
+                Object key = itr.next();
+                if (isInstance(key, cls, subs)) {
+                    itr.remove();
+                    removed.add(key);
+                }
+            }
+            for (Object key : _store.keys()) {
+                if (isInstance(key, cls, subs)) {
+                    _store.remove(key);
+                    removed.add(key);
+                }
+            }
+        }
+        super.removeAllInternal(cls, subs);
+        for (Object key : removed)
+            keyRemoved(key, false);
+    }
+
+    /**
+     * Whether the given key may identify an instance of the given class.
+     * Keys that do not carry their type are assumed to.
+     */
+    private static boolean isInstance(Object key, Class<?> cls, boolean subs) {
+        if (!(key instanceof OpenJPAId) || ((OpenJPAId) key).getType() == null)
+            return true;
+        Class<?> type = ((OpenJPAId) key).getType();
+        return (subs) ? cls.isAssignableFrom(type) : cls == type;
+    }
+
+    @Override
+    protected void clearInternal() {
+        Collection<Object> removed;
+        synchronized (_store) {
+            _modCount++;
+            removed = new ArrayList<>(_pending.keySet());
+            _pending.clear();
+            removed.addAll(_store.keys());
+            _store.clear();
+        }
+        super.clearInternal();
+        for (Object key : removed)
+            keyRemoved(key, false);
+    }
+
+    @Override
+    protected boolean pinInternal(Object key) {
+        // bring the entry back on heap first so the pin retains it
+        if (_pending.containsKey(key) || _store.containsKey(key))
+            getInternal(key);
+        return super.pinInternal(key);
+    }
+
+    /**
+     * Serialize the given cached data, or return null if it cannot be
+     * serialized.
+     */
+    protected byte[] serialize(Object key, Object value) {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(value);
+        } catch (IOException ioe) {
+            if (log.isTraceEnabled())
+                log.trace(_loc.get("offheap-serialize-failed", key), ioe);
+            return null;
+        }
+        return bytes.toByteArray();
+    }
+
+    /**
+     * Deserialize cached data, or return null if it cannot be read back.
+     */
+    protected DataCachePCData deserialize(Object key, byte[] bytes) {
+        try (ObjectInputStream in = new Serialization.ClassResolvingObjectInputStream(
+            new ByteArrayInputStream(bytes))) {
+            return (DataCachePCData) in.readObject();
+        } catch (IOException | ClassNotFoundException e) {
+            if (log.isWarnEnabled())
+                log.warn(_loc.get("offheap-deserialize-failed", key), e);
+            return null;
+        }
+    }
+}
@@ -32,9 +32,11 @@ import java.util.TreeMap;
 
 import org.apache.openjpa.datacache.AbstractQueryCache.EvictPolicy;
 import org.apache.openjpa.kernel.FetchConfiguration;
+import org.apache.openjpa.kernel.Filters;
 import org.apache.openjpa.kernel.LockLevels;
 import org.apache.openjpa.kernel.OpenJPAStateManager;
 import org.apache.openjpa.kernel.QueryContext;
+import org.apache.openjpa.kernel.QueryHints;
 import org.apache.openjpa.kernel.ResultShape;
 import org.apache.openjpa.kernel.StoreContext;
 import org.apache.openjpa.kernel.StoreQuery;
@@ -168,11 +170,31 @@ public class QueryCacheStoreQuery
      * caching provider.
      */
     private ResultObjectProvider wrapResult(ResultObjectProvider rop,
-        QueryKey key) {
+        QueryKey key, QueryResultPredicate predicate) {
         if (key == null)
             return rop;
         return new CachingResultObjectProvider(rop, getContext().
-            getProjectionAliases().length > 0, key);
+            getProjectionAliases().length > 0, key, predicate);
+    }
+
+    /**
+     * Whether the cache keeps results that committed instances cannot
+     * affect, which requires a predicate for each cached result.
+     */
+    private boolean usesPredicates() {
+        return _cache instanceof AbstractQueryCache
+            && ((AbstractQueryCache) _cache).getEvictPolicy()
+            == EvictPolicy.PREDICATE;
+    }
+
+    /**
+     * Whether the results are streamed, as directed by the
+     * {@link QueryHints#HINT_STREAM_RESULTS} hint.
+     */
+    private static boolean isStreaming(FetchConfiguration fetch) {
+        Object hint = fetch.getHint(QueryHints.HINT_STREAM_RESULTS);
+        return hint != null
+            && (Boolean) Filters.convert(hint, Boolean.class);
     }
 
     /**
@@ -334,21 +356,65 @@ public class QueryCacheStoreQuery
         implements Executor {
 
         private final Executor _ex;
+        private final ClassMetaData _meta;
         private final Class<?> _candidate;
         private final boolean _subs;
         private final FetchConfiguration _fc;
 
+        // in-memory form of the query for predicates, parsed on first use;
+        // executors are shared, so the form is published through the
+        // volatile flag, which is written last
+        private volatile QueryExpressions _predicateExps = null;
+        private volatile boolean _predicateParsed = false;
+
         public QueryCacheExecutor(Executor ex, ClassMetaData meta,
             boolean subs, FetchConfiguration fc) {
             _ex = ex;
+            _meta = meta;
             _candidate = (meta == null) ? null : meta.getDescribedType();
             _subs = subs;
             _fc = fc;
         }
 
+        /**
+         * Return the predicate for the result of the given query execution,
+         * or null if the query is too complex to tell which changes affect
+         * its result.
+         */
+        private QueryResultPredicate newPredicate(QueryCacheStoreQuery cq,
+            Object[] params, Range range) {
+            if (_meta == null || range.start != 0 || range.end != Long.MAX_VALUE
+                || cq.getContext().getProjectionAliases().length > 0)
+                return null;
+            if (!_predicateParsed) {
+                StoreQuery q = cq.getDelegate();
+                try {
+                    if (q.supportsInMemoryExecution()) {
+                        QueryExpressions[] exps = q.newInMemoryExecutor(_meta,
+                            _subs).getQueryExpressions();
+                        if (exps.length == 1
+                            && QueryResultPredicate.isSupported(exps[0]))
+                            _predicateExps = exps[0];
+                    }
+                } catch (RuntimeException re) {
+                    // not evaluable in memory; invalidate on any change
+                }
+                _predicateParsed = true;
+            }
+            if (_predicateExps == null)
+                return null;
+            return QueryResultPredicate.newInstance(_predicateExps, _meta,
+                _subs, params);
+        }
+
         @Override
         public ResultObjectProvider executeQuery(StoreQuery q, Object[] params, Range range) {
             QueryCacheStoreQuery cq = (QueryCacheStoreQuery) q;
+            // streamed results are read once; caching their oids would
+            // retain every result that streaming is meant to release
+            if (isStreaming(cq.getContext().getFetchConfiguration()))
+                return _ex.executeQuery(cq.getDelegate(), params, range);
+
             Object parsed = cq.getDelegate().getCompilation();
             QueryKey key =
                 QueryKey.newInstance(cq.getContext(), _ex.isPacking(q), params, _candidate, _subs, range.start,
@@ -383,7 +449,9 @@ public class QueryCacheStoreQuery
 
             ResultObjectProvider rop = _ex.executeQuery(cq.getDelegate(), params, range);
             if (_fc.getQueryCacheEnabled())
-                return cq.wrapResult(rop, key);
+                return cq.wrapResult(rop, key, (key != null
+                    && cq.usesPredicates()) ? newPredicate(cq, params, range)
+                    : null);
             else
                 return rop;
         }
@@ -607,6 +675,7 @@ public class QueryCacheStoreQuery
         private final ResultObjectProvider _rop;
         private final boolean _proj;
         private final QueryKey _qk;
+        private final QueryResultPredicate _predicate;
         private final TreeMap<Integer,Object> _data = new TreeMap<>();
         private boolean _maintainCache = true;
         private int _pos = -1;
@@ -620,10 +689,11 @@ public class QueryCacheStoreQuery
          * Constructor. Supply delegate result provider and our query key.
          */
         public CachingResultObjectProvider(ResultObjectProvider rop,
-            boolean proj, QueryKey key) {
+            boolean proj, QueryKey key, QueryResultPredicate predicate) {
             _rop = rop;
             _proj = proj;
             _qk = key;
+            _predicate = predicate;
             _cache.addTypesChangedListener(this);
         }
 
@@ -689,6 +759,7 @@ public class QueryCacheStoreQuery
                         synchronized (this) {
                             res = new QueryResult(_qk, _data.values());
                             res.setTimestamp(System.currentTimeMillis());
+                            res.setPredicate(_predicate);
                         }
                         _cache.put(_qk, res);
                         abortCaching();
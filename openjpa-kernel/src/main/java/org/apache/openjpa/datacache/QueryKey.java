@@ -40,6 +40,7 @@ import java.util.TreeSet;
 import org.apache.openjpa.enhance.PCRegistry;
 import org.apache.openjpa.kernel.Query;
 import org.apache.openjpa.kernel.QueryContext;
+import org.apache.openjpa.kernel.QueryHints;
 import org.apache.openjpa.kernel.StoreContext;
 import org.apache.openjpa.meta.ClassMetaData;
 import org.apache.openjpa.meta.JavaTypes;
@@ -171,6 +172,11 @@ public class QueryKey
         if (q.getResultType() != null && packed)
             return null;
 
+        // keyset pages depend on the token of the previous page
+        if (q.getFetchConfiguration().getHint(QueryHints.HINT_KEYSET_AFTER)
+            != null)
+            return null;
+
         // can't cache non-serializable non-managed complex types
         Class<?>[] types = q.getProjectionTypes();
         for (Class<?> type : types) {
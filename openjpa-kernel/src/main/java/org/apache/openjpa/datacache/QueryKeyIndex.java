@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.openjpa.enhance.PCRegistry;
+
+/**
+ * Reverse index from the least-derived names of the classes in the access
+ * path of cached queries to their {@link QueryKey}s, so that a change to
+ * some types only has to look at the queries over these types.
+ *
+ * @since 3.2.1
+ */
+class QueryKeyIndex {
+
+    private final Map<String, Set<QueryKey>> _keys = new ConcurrentHashMap<>();
+
+    /**
+     * Index the given key under the classes of its access path.
+     */
+    public void add(QueryKey key) {
+        Set<String> names = key.getAcessPathClassNames();
+        if (names == null)
+            return;
+        for (String name : names)
+            _keys.computeIfAbsent(name, n -> ConcurrentHashMap.newKeySet())
+                .add(key);
+    }
+
+    /**
+     * Remove the given key from the index.
+     */
+    public void remove(QueryKey key) {
+        Set<String> names = key.getAcessPathClassNames();
+        if (names == null)
+            return;
+        for (String name : names) {
+            Set<QueryKey> keys = _keys.get(name);
+            if (keys != null)
+                keys.remove(key);
+        }
+    }
+
+    /**
+     * Return the keys of the queries whose access path includes any of the
+     * given types, which is the same test as
+     * {@link QueryKey#changeInvalidatesQuery}.
+     */
+    public Collection<QueryKey> getKeys(Collection<Class<?>> changed) {
+        Set<QueryKey> result = new LinkedHashSet<>();
+        Class<?> sup;
+        for (Class<?> cls : changed) {
+            while ((sup = PCRegistry.getPersistentSuperclass(cls)) != null)
+                cls = sup;
+            Set<QueryKey> keys = _keys.get(cls.getName());
+            if (keys != null)
+                result.addAll(keys);
+        }
+        return result;
+    }
+
+    /**
+     * The number of distinct classes indexed.
+     */
+    public int size() {
+        return _keys.size();
+    }
+
+    public void clear() {
+        _keys.clear();
+    }
+}
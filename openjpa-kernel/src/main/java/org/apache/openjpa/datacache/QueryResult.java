@@ -32,6 +32,8 @@ public class QueryResult extends ArrayList<Object> {
     private final long _ex;
 
     private long _timestamp = 0L;
+    private transient QueryResultPredicate _predicate = null;
+
     /**
      * Constructor; supply corresponding query key and result data.
      */
@@ -81,4 +83,18 @@ public class QueryResult extends ArrayList<Object> {
     public long getTimestamp() {
         return this._timestamp;
     }
+
+    /**
+     * The predicate used to check whether changes affect this result, or
+     * null if any change to the types of its query invalidates it.
+     *
+     * @since 3.2.1
+     */
+    QueryResultPredicate getPredicate() {
+        return _predicate;
+    }
+
+    void setPredicate(QueryResultPredicate predicate) {
+        _predicate = predicate;
+    }
 }
@@ -0,0 +1,129 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.util.Collection;
+import java.util.Collections;
+import java.util.Date;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.kernel.exps.FilterCompiler;
+import org.apache.openjpa.kernel.exps.InMemoryExpressionFactory;
+import org.apache.openjpa.kernel.exps.QueryExpressions;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.util.ImplHelper;
+
+/**
+ * The filter of a cached query, used to decide whether committed
+ * instances can affect its result. Only unranged queries for candidate
+ * instances whose filter reads nothing but the state of the candidate
+ * itself have a predicate: such a result holds every instance that matched
+ * when it was cached, so a change leaves it valid unless the instance is
+ * part of the result or matches once changed.
+ *
+ * @since 3.2.1
+ */
+class QueryResultPredicate {
+
+    private final InMemoryExpressionFactory _factory;
+    private final QueryExpressions _exps;
+    private final ClassMetaData _meta;
+    private final boolean _subs;
+    private final Object[] _params;
+
+    private QueryResultPredicate(InMemoryExpressionFactory factory,
+        QueryExpressions exps, ClassMetaData meta, boolean subs,
+        Object[] params) {
+        _factory = factory;
+        _exps = exps;
+        _meta = meta;
+        _subs = subs;
+        _params = params;
+    }
+
+    /**
+     * Whether the given in-memory expressions can back a predicate.
+     */
+    static boolean isSupported(QueryExpressions exps) {
+        return exps != null
+            && exps.projections.length == 0
+            && exps.grouping.length == 0
+            && exps.having == null
+            && !exps.isAggregate()
+            && exps.filter != null
+            && FilterCompiler.isCandidateLocal(exps.filter);
+    }
+
+    /**
+     * Return the predicate of a query with the given supported in-memory
+     * expressions and parameters, or null if the parameters refer to
+     * managed instances, which are only meaningful in the context that
+     * executed the query.
+     */
+    static QueryResultPredicate newInstance(QueryExpressions exps,
+        ClassMetaData meta, boolean subs, Object[] params) {
+        Object[] copy = (params == null) ? null : params.clone();
+        if (copy != null) {
+            for (int i = 0; i < copy.length; i++) {
+                if (ImplHelper.isManageable(copy[i]))
+                    return null;
+                if (copy[i] instanceof Date)
+                    copy[i] = ((Date) copy[i]).clone();
+            }
+        }
+        return new QueryResultPredicate(new InMemoryExpressionFactory(), exps,
+            meta, subs, copy);
+    }
+
+    /**
+     * Return whether any of the given changed instances can affect the
+     * given result of the query with the given key.
+     */
+    boolean isAffectedBy(QueryKey key, QueryResult res,
+        Collection<OpenJPAStateManager> sms) {
+        Class<?> candidate = _meta.getDescribedType();
+        Set<Object> oids = null;
+        Class<?> type;
+        for (OpenJPAStateManager sm : sms) {
+            type = sm.getMetaData().getDescribedType();
+            if (!key.changeInvalidatesQuery(Collections.singleton(type)))
+                continue;
+            // instances of other types of the hierarchy are never candidates
+            if (_subs ? !candidate.isAssignableFrom(type) : candidate != type)
+                continue;
+
+            if (oids == null)
+                oids = new HashSet<>(res);
+            if (oids.contains(sm.getObjectId()))
+                return true;
+            if (sm.isDeleted())
+                continue;
+            try {
+                if (_factory.matches(_exps, _meta, _subs,
+                    sm.getManagedInstance(), sm.getContext(), _params))
+                    return true;
+            } catch (RuntimeException re) {
+                return true;
+            }
+        }
+        return false;
+    }
+}
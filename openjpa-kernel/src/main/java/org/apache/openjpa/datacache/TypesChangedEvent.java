@@ -21,6 +21,8 @@ package org.apache.openjpa.datacache;
 import java.util.Collection;
 import java.util.EventObject;
 
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+
 /**
  * An event indicating that instances of given persistent types have
  * been modified.
@@ -33,6 +35,7 @@ public class TypesChangedEvent
     
     private static final long serialVersionUID = 1L;
     private final Collection _types;
+    private final transient Collection<OpenJPAStateManager> _sms;
 
     /**
      * Constructor.
@@ -41,8 +44,23 @@ public class TypesChangedEvent
      * @param types the changed types
      */
     public TypesChangedEvent(Object source, Collection types) {
+        this(source, types, null);
+    }
+
+    /**
+     * Constructor.
+     *
+     * @param source the data or query cache
+     * @param types the changed types
+     * @param sms the changed instances, which must account for all the
+     * changes to the given types, or null if unknown
+     * @since 3.2.1
+     */
+    public TypesChangedEvent(Object source, Collection types,
+        Collection<OpenJPAStateManager> sms) {
         super(source);
         _types = types;
+        _sms = sms;
     }
 
     /**
@@ -51,4 +69,15 @@ public class TypesChangedEvent
     public Collection getTypes() {
         return _types;
 	}
+
+    /**
+     * Return the state managers of the changed instances, or null if the
+     * changes are not known instance by instance, as for bulk updates and
+     * remote commits.
+     *
+     * @since 3.2.1
+     */
+    public Collection<OpenJPAStateManager> getStateManagers() {
+        return _sms;
+    }
 }
@@ -741,15 +741,13 @@ public class PCDataGenerator
         code.constant().setValue(objectCount);
         code.aaload();
         code.astore().setLocal(inter);
-        // 		if (inter != null && !sm.getLoaded().get(index))
+        // 		if (inter != null && !sm.isFieldLoaded(index))
         code.aload().setLocal(inter);
         jumps2.add(code.ifnull());
         code.aload().setParam(0);
-        code.invokeinterface().setMethod(OpenJPAStateManager.class,
-            "getLoaded", BitSet.class, null);
         code.constant().setValue(index);
-        code.invokevirtual().setMethod(BitSet.class, "get",
-            boolean.class, new Class[]{ int.class });
+        code.invokeinterface().setMethod(OpenJPAStateManager.class,
+            "isFieldLoaded", boolean.class, new Class[]{ int.class });
         jumps2.add(code.ifne());
         //			sm.setIntermediate(index, inter);
         //	}  // end else
@@ -810,13 +808,11 @@ public class PCDataGenerator
                     boolean.class, new Class[]{ int.class });
                 jumps.add(code.ifeq());
             } else {
-                // if (sm.getLoaded().get(index)))
+                // if (sm.isFieldLoaded(index)))
                 setTarget(code.aload().setParam(0), jumps);
-                code.invokeinterface().setMethod(OpenJPAStateManager.class,
-                    "getLoaded", BitSet.class, null);
                 code.constant().setValue(i);
-                code.invokevirtual().setMethod(BitSet.class, "get",
-                    boolean.class, new Class[]{ int.class });
+                code.invokeinterface().setMethod(OpenJPAStateManager.class,
+                    "isFieldLoaded", boolean.class, new Class[]{ int.class });
                 jumps.add(code.ifeq());
             }
             addStore(bc, code, fmds[i], objectCount);
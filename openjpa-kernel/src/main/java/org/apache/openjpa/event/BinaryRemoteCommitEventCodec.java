@@ -0,0 +1,503 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInput;
+import java.io.DataOutput;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.security.AccessController;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Date;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.openjpa.lib.util.J2DoPrivHelper;
+import org.apache.openjpa.lib.util.MultiClassLoader;
+import org.apache.openjpa.util.BigDecimalId;
+import org.apache.openjpa.util.BigIntegerId;
+import org.apache.openjpa.util.BlacklistClassResolver;
+import org.apache.openjpa.util.BooleanId;
+import org.apache.openjpa.util.ByteId;
+import org.apache.openjpa.util.CharId;
+import org.apache.openjpa.util.DateId;
+import org.apache.openjpa.util.DoubleId;
+import org.apache.openjpa.util.FloatId;
+import org.apache.openjpa.util.Id;
+import org.apache.openjpa.util.IntId;
+import org.apache.openjpa.util.LongId;
+import org.apache.openjpa.util.OpenJPAId;
+import org.apache.openjpa.util.Serialization;
+import org.apache.openjpa.util.ShortId;
+import org.apache.openjpa.util.StringId;
+
+/**
+ * Compact binary encoding of {@link RemoteCommitEvent}s that avoids Java
+ * serialization for the common cases. Class names are written once per
+ * event into a dictionary and referenced by index, and the built-in
+ * {@link OpenJPAId} types are written as a tag, the dictionary index of
+ * their type and their raw key. Integers are written as variable length
+ * quantities. Any other element, such as an application identity instance,
+ * falls back to Java serialization. When reading, counts and lengths that
+ * are negative or exceed a given bound are rejected before anything is
+ * allocated for them.
+ *
+ * @since 3.2.1
+ */
+public class BinaryRemoteCommitEventCodec {
+
+    private static final byte TAG_NULL = 0;
+    private static final byte TAG_STRING = 1;
+    private static final byte TAG_LONG_ID = 2;
+    private static final byte TAG_INT_ID = 3;
+    private static final byte TAG_SHORT_ID = 4;
+    private static final byte TAG_BYTE_ID = 5;
+    private static final byte TAG_CHAR_ID = 6;
+    private static final byte TAG_BOOLEAN_ID = 7;
+    private static final byte TAG_DOUBLE_ID = 8;
+    private static final byte TAG_FLOAT_ID = 9;
+    private static final byte TAG_STRING_ID = 10;
+    private static final byte TAG_DATE_ID = 11;
+    private static final byte TAG_BIGDECIMAL_ID = 12;
+    private static final byte TAG_BIGINTEGER_ID = 13;
+    private static final byte TAG_DATASTORE_ID = 14;
+    private static final byte TAG_SERIALIZED = 15;
+
+    // set on the tag byte of ids whose hasSubclasses() is false
+    private static final int FLAG_EXACT = 0x80;
+
+    /**
+     * Write the given event.
+     */
+    public void encode(RemoteCommitEvent event, DataOutput out)
+        throws IOException {
+        int payload = event.getPayloadType();
+        Collection addClasses = event.getPersistedTypeNames();
+        Collection addIds = (payload == RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS)
+            ? event.getPersistedObjectIds() : null;
+        Collection updates;
+        Collection deletes;
+        if (payload == RemoteCommitEvent.PAYLOAD_EXTENTS) {
+            updates = event.getUpdatedTypeNames();
+            deletes = event.getDeletedTypeNames();
+        } else {
+            updates = event.getUpdatedObjectIds();
+            deletes = event.getDeletedObjectIds();
+        }
+
+        Map<String, Integer> dict = new HashMap<>();
+        List<String> names = new ArrayList<>();
+        index(addClasses, dict, names);
+        index(addIds, dict, names);
+        index(updates, dict, names);
+        index(deletes, dict, names);
+
+        out.writeByte(payload);
+        writeVarInt(out, names.size());
+        for (String name : names)
+            out.writeUTF(name);
+        writeCollection(out, addClasses, dict);
+        if (payload == RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS)
+            writeCollection(out, addIds, dict);
+        writeCollection(out, updates, dict);
+        writeCollection(out, deletes, dict);
+    }
+
+    /**
+     * Read an event written by {@link #encode}.
+     */
+    public RemoteCommitEvent decode(DataInput in)
+        throws IOException {
+        return decode(in, Integer.MAX_VALUE);
+    }
+
+    /**
+     * Read an event written by {@link #encode} from at most the given number
+     * of bytes. As every element takes at least one byte, no count or length
+     * in the event can exceed this number.
+     */
+    public RemoteCommitEvent decode(DataInput in, int maxLength)
+        throws IOException {
+        int payload = in.readByte();
+        int size = readLength(in, maxLength);
+        String[] names = new String[size];
+        for (int i = 0; i < size; i++)
+            names[i] = in.readUTF();
+
+        Map<String, Class<?>> types = new HashMap<>();
+        Collection addClasses = readCollection(in, names, types, maxLength);
+        Collection addIds = null;
+        if (payload == RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS)
+            addIds = readCollection(in, names, types, maxLength);
+        Collection updates = readCollection(in, names, types, maxLength);
+        Collection deletes = readCollection(in, names, types, maxLength);
+        return new RemoteCommitEvent(payload, addIds, addClasses, updates,
+            deletes);
+    }
+
+    /**
+     * Add the strings and id type names of the given collection to the
+     * dictionary.
+     */
+    private static void index(Collection c, Map<String, Integer> dict,
+        List<String> names) {
+        if (c == null)
+            return;
+        for (Object o : c) {
+            String name = null;
+            if (o instanceof String)
+                name = (String) o;
+            else if (o instanceof OpenJPAId && ((OpenJPAId) o).getType() != null)
+                name = ((OpenJPAId) o).getType().getName();
+            if (name != null && !dict.containsKey(name)) {
+                dict.put(name, names.size());
+                names.add(name);
+            }
+        }
+    }
+
+    private void writeCollection(DataOutput out, Collection c,
+        Map<String, Integer> dict)
+        throws IOException {
+        // 0 encodes a null collection
+        if (c == null) {
+            writeVarInt(out, 0);
+            return;
+        }
+        writeVarInt(out, c.size() + 1);
+        for (Object o : c)
+            writeElement(out, o, dict);
+    }
+
+    private void writeElement(DataOutput out, Object o,
+        Map<String, Integer> dict)
+        throws IOException {
+        if (o == null) {
+            out.writeByte(TAG_NULL);
+            return;
+        }
+        if (o instanceof String) {
+            out.writeByte(TAG_STRING);
+            writeVarInt(out, dict.get(o));
+            return;
+        }
+
+        byte tag = tagOf(o);
+        if (tag == TAG_SERIALIZED) {
+            out.writeByte(TAG_SERIALIZED);
+            byte[] bytes = serialize(o);
+            writeVarInt(out, bytes.length);
+            out.write(bytes);
+            return;
+        }
+
+        OpenJPAId id = (OpenJPAId) o;
+        out.writeByte(id.hasSubclasses() ? tag : tag | FLAG_EXACT);
+        writeVarInt(out, dict.get(id.getType().getName()));
+        switch (tag) {
+            case TAG_LONG_ID:
+                writeVarLong(out, ((LongId) id).getId());
+                break;
+            case TAG_DATASTORE_ID:
+                writeVarLong(out, ((Id) id).getId());
+                break;
+            case TAG_INT_ID:
+                writeVarLong(out, ((IntId) id).getId());
+                break;
+            case TAG_SHORT_ID:
+                writeVarLong(out, ((ShortId) id).getId());
+                break;
+            case TAG_BYTE_ID:
+                out.writeByte(((ByteId) id).getId());
+                break;
+            case TAG_CHAR_ID:
+                out.writeChar(((CharId) id).getId());
+                break;
+            case TAG_BOOLEAN_ID:
+                out.writeBoolean(((BooleanId) id).getId());
+                break;
+            case TAG_DOUBLE_ID:
+                out.writeDouble(((DoubleId) id).getId());
+                break;
+            case TAG_FLOAT_ID:
+                out.writeFloat(((FloatId) id).getId());
+                break;
+            case TAG_STRING_ID:
+                writeString(out, ((StringId) id).getId());
+                break;
+            case TAG_DATE_ID:
+                writeVarLong(out, ((DateId) id).getId().getTime());
+                break;
+            case TAG_BIGDECIMAL_ID:
+                writeString(out, ((BigDecimalId) id).getId().toString());
+                break;
+            case TAG_BIGINTEGER_ID:
+                writeString(out, ((BigIntegerId) id).getId().toString());
+                break;
+            default:
+                throw new StreamCorruptedException(String.valueOf(tag));
+        }
+    }
+
+    /**
+     * Return the tag for the given element, or {@link #TAG_SERIALIZED} if
+     * it has no specialized encoding.
+     */
+    private static byte tagOf(Object o) {
+        if (!(o instanceof OpenJPAId) || ((OpenJPAId) o).getType() == null)
+            return TAG_SERIALIZED;
+        Class<?> cls = o.getClass();
+        if (cls == LongId.class)
+            return TAG_LONG_ID;
+        if (cls == Id.class)
+            return TAG_DATASTORE_ID;
+        if (cls == IntId.class)
+            return TAG_INT_ID;
+        if (cls == StringId.class)
+            return (((StringId) o).getId() == null) ? TAG_SERIALIZED : TAG_STRING_ID;
+        if (cls == ShortId.class)
+            return TAG_SHORT_ID;
+        if (cls == ByteId.class)
+            return TAG_BYTE_ID;
+        if (cls == CharId.class)
+            return TAG_CHAR_ID;
+        if (cls == BooleanId.class)
+            return TAG_BOOLEAN_ID;
+        if (cls == DoubleId.class)
+            return TAG_DOUBLE_ID;
+        if (cls == FloatId.class)
+            return TAG_FLOAT_ID;
+        // sql date and time subclasses carry more than the millis
+        if (cls == DateId.class && ((DateId) o).getId() != null
+            && ((DateId) o).getId().getClass() == Date.class)
+            return TAG_DATE_ID;
+        if (cls == BigDecimalId.class && ((BigDecimalId) o).getId() != null)
+            return TAG_BIGDECIMAL_ID;
+        if (cls == BigIntegerId.class && ((BigIntegerId) o).getId() != null)
+            return TAG_BIGINTEGER_ID;
+        return TAG_SERIALIZED;
+    }
+
+    private Collection readCollection(DataInput in, String[] names,
+        Map<String, Class<?>> types, int maxLength)
+        throws IOException {
+        // 0 encodes a null collection
+        int size = readVarInt(in);
+        if (size == 0)
+            return null;
+        size = checkLength(size - 1, maxLength);
+        List<Object> c = new ArrayList<>(size);
+        for (int i = 0; i < size; i++)
+            c.add(readElement(in, names, types, maxLength));
+        return c;
+    }
+
+    private Object readElement(DataInput in, String[] names,
+        Map<String, Class<?>> types, int maxLength)
+        throws IOException {
+        int b = in.readUnsignedByte();
+        boolean subs = (b & FLAG_EXACT) == 0;
+        byte tag = (byte) (b & ~FLAG_EXACT);
+        switch (tag) {
+            case TAG_NULL:
+                return null;
+            case TAG_STRING:
+                return nameAt(names, readVarInt(in));
+            case TAG_SERIALIZED:
+                byte[] bytes = new byte[readLength(in, maxLength)];
+                in.readFully(bytes);
+                return deserialize(bytes);
+            default:
+                break;
+        }
+
+        Class<?> type = toClass(nameAt(names, readVarInt(in)), types);
+        switch (tag) {
+            case TAG_LONG_ID:
+                return new LongId(type, readVarLong(in), subs);
+            case TAG_DATASTORE_ID:
+                return new Id(type, readVarLong(in), subs);
+            case TAG_INT_ID:
+                return new IntId(type, (int) readVarLong(in), subs);
+            case TAG_SHORT_ID:
+                return new ShortId(type, (short) readVarLong(in), subs);
+            case TAG_BYTE_ID:
+                return new ByteId(type, in.readByte(), subs);
+            case TAG_CHAR_ID:
+                return new CharId(type, in.readChar(), subs);
+            case TAG_BOOLEAN_ID:
+                return new BooleanId(type, in.readBoolean(), subs);
+            case TAG_DOUBLE_ID:
+                return new DoubleId(type, in.readDouble(), subs);
+            case TAG_FLOAT_ID:
+                return new FloatId(type, in.readFloat(), subs);
+            case TAG_STRING_ID:
+                return new StringId(type, readString(in, maxLength), subs);
+            case TAG_DATE_ID:
+                return new DateId(type, new Date(readVarLong(in)), subs);
+            case TAG_BIGDECIMAL_ID:
+                return new BigDecimalId(type, new BigDecimal(readString(in, maxLength)), subs);
+            case TAG_BIGINTEGER_ID:
+                return new BigIntegerId(type, new BigInteger(readString(in, maxLength)), subs);
+            default:
+                throw new StreamCorruptedException(String.valueOf(b));
+        }
+    }
+
+    /**
+     * Resolve a class the way {@link Serialization.ClassResolvingObjectInputStream}
+     * does, caching the result for the rest of the event.
+     */
+    private Class<?> toClass(String name, Map<String, Class<?>> types)
+        throws IOException {
+        Class<?> cls = types.get(name);
+        if (cls != null)
+            return cls;
+        MultiClassLoader loader = AccessController
+            .doPrivileged(J2DoPrivHelper.newMultiClassLoaderAction());
+        loader.addClassLoader(AccessController.doPrivileged(
+            J2DoPrivHelper.getContextClassLoaderAction()));
+        loader.addClassLoader(getClass().getClassLoader());
+        loader.addClassLoader(MultiClassLoader.SYSTEM_LOADER);
+        try {
+            cls = Class.forName(BlacklistClassResolver.DEFAULT.check(name),
+                true, loader);
+        } catch (ClassNotFoundException cnfe) {
+            throw new IOException(cnfe);
+        }
+        types.put(name, cls);
+        return cls;
+    }
+
+    private static byte[] serialize(Object o)
+        throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(o);
+        }
+        return bytes.toByteArray();
+    }
+
+    private static Object deserialize(byte[] bytes)
+        throws IOException {
+        try (ObjectInputStream in = new Serialization.ClassResolvingObjectInputStream(
+            new ByteArrayInputStream(bytes))) {
+            return in.readObject();
+        } catch (ClassNotFoundException cnfe) {
+            throw new IOException(cnfe);
+        }
+    }
+
+    /**
+     * Strings in ids may exceed the 64K limit of {@link DataOutput#writeUTF}.
+     */
+    private static void writeString(DataOutput out, String s)
+        throws IOException {
+        byte[] bytes = s.getBytes("UTF-8");
+        writeVarInt(out, bytes.length);
+        out.write(bytes);
+    }
+
+    private static String readString(DataInput in, int maxLength)
+        throws IOException {
+        byte[] bytes = new byte[readLength(in, maxLength)];
+        in.readFully(bytes);
+        return new String(bytes, "UTF-8");
+    }
+
+    private static String nameAt(String[] names, int index)
+        throws IOException {
+        if (index < 0 || index >= names.length)
+            throw new StreamCorruptedException("name " + index);
+        return names[index];
+    }
+
+    /**
+     * Read a count or length, rejecting it if it is negative or exceeds the
+     * given maximum.
+     */
+    private static int readLength(DataInput in, int maxLength)
+        throws IOException {
+        return checkLength(readVarInt(in), maxLength);
+    }
+
+    private static int checkLength(int length, int maxLength)
+        throws IOException {
+        if (length < 0 || length > maxLength)
+            throw new StreamCorruptedException("length " + length);
+        return length;
+    }
+
+    /**
+     * Write a non-negative int in 7 bit groups, least significant first.
+     */
+    static void writeVarInt(DataOutput out, int v)
+        throws IOException {
+        while ((v & ~0x7F) != 0) {
+            out.writeByte((v & 0x7F) | 0x80);
+            v >>>= 7;
+        }
+        out.writeByte(v);
+    }
+
+    static int readVarInt(DataInput in)
+        throws IOException {
+        int v = 0;
+        for (int shift = 0; shift < 32; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return v;
+        }
+        throw new StreamCorruptedException("varint");
+    }
+
+    /**
+     * Write a long in zig-zag form so that small negative values stay short.
+     */
+    static void writeVarLong(DataOutput out, long v)
+        throws IOException {
+        v = (v << 1) ^ (v >> 63);
+        while ((v & ~0x7FL) != 0) {
+            out.writeByte((int) ((v & 0x7F) | 0x80));
+            v >>>= 7;
+        }
+        out.writeByte((int) v);
+    }
+
+    static long readVarLong(DataInput in)
+        throws IOException {
+        long v = 0;
+        for (int shift = 0; shift < 64; shift += 7) {
+            int b = in.readUnsignedByte();
+            v |= (long) (b & 0x7F) << shift;
+            if ((b & 0x80) == 0)
+                return (v >>> 1) ^ -(v & 1);
+        }
+        throw new StreamCorruptedException("varlong");
+    }
+}
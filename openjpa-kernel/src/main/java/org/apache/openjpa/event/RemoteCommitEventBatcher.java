@@ -0,0 +1,238 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Set;
+import java.util.Timer;
+import java.util.TimerTask;
+
+/**
+ * Collects the {@link RemoteCommitEvent}s of local commits for a short
+ * window and hands them to the {@link RemoteCommitProvider} as a single
+ * merged event per payload type. Object ids and class names are
+ * de-duplicated, and ids that were deleted within the window are dropped
+ * from the updated ids, since receivers evict both in the same way.
+ *
+ * The merged events are ordinary {@link RemoteCommitEvent}s, so receivers
+ * need no special handling. Remote caches are invalidated up to one window
+ * later than without batching.
+ *
+ * @since 3.2.1
+ */
+public class RemoteCommitEventBatcher {
+
+    private final RemoteCommitProvider _provider;
+    private final long _windowMillis;
+    private final int _batchSize;
+
+    private Batch _oids = null;
+    private Batch _extents = null;
+    private int _pending = 0;
+    private long _events = 0;
+    private long _broadcasts = 0;
+    private Timer _timer = null;
+    private TimerTask _task = null;
+    private boolean _closed = false;
+
+    /**
+     * Constructor.
+     *
+     * @param provider the provider to broadcast merged events with
+     * @param windowMillis the longest time an event is held back
+     * @param batchSize the number of events that triggers an immediate
+     * broadcast, or 0 for no limit
+     */
+    public RemoteCommitEventBatcher(RemoteCommitProvider provider,
+        long windowMillis, int batchSize) {
+        _provider = provider;
+        _windowMillis = windowMillis;
+        _batchSize = batchSize;
+    }
+
+    /**
+     * Add the event of a local commit to the current batch.
+     */
+    public void add(RemoteCommitEvent event) {
+        List<RemoteCommitEvent> flush = null;
+        synchronized (this) {
+            if (_closed) {
+                flush = new ArrayList<>(1);
+                flush.add(event);
+            } else {
+                if (event.getPayloadType() == RemoteCommitEvent.PAYLOAD_EXTENTS) {
+                    if (_extents == null)
+                        _extents = new Batch(RemoteCommitEvent.PAYLOAD_EXTENTS);
+                    _extents.add(event);
+                } else {
+                    if (_oids == null || _oids.payload != event.getPayloadType())
+                        flush = drain(flush, _oids);
+                    if (_oids == null)
+                        _oids = new Batch(event.getPayloadType());
+                    _oids.add(event);
+                }
+                _events++;
+                _pending++;
+                if (_batchSize > 0 && _pending >= _batchSize)
+                    flush = drainAll(flush);
+                else
+                    schedule();
+            }
+        }
+        broadcast(flush);
+    }
+
+    /**
+     * Broadcast all pending events now.
+     */
+    public void flush() {
+        List<RemoteCommitEvent> flush;
+        synchronized (this) {
+            flush = drainAll(null);
+        }
+        broadcast(flush);
+    }
+
+    /**
+     * Broadcast all pending events and stop batching. Events added after
+     * this call are broadcast immediately.
+     */
+    public void close() {
+        List<RemoteCommitEvent> flush;
+        synchronized (this) {
+            _closed = true;
+            flush = drainAll(null);
+            if (_timer != null)
+                _timer.cancel();
+            _timer = null;
+        }
+        broadcast(flush);
+    }
+
+    /**
+     * The number of local commit events received.
+     */
+    public synchronized long getEventCount() {
+        return _events;
+    }
+
+    /**
+     * The number of merged events broadcast.
+     */
+    public synchronized long getBroadcastCount() {
+        return _broadcasts;
+    }
+
+    /**
+     * The number of events waiting for the window to close.
+     */
+    public synchronized int getPendingCount() {
+        return _pending;
+    }
+
+    private void schedule() {
+        if (_task != null)
+            return;
+        if (_timer == null)
+            _timer = new Timer("OpenJPA remote commit batcher", true);
+        _task = new TimerTask() {
+            @Override
+            public void run() {
+                flush();
+            }
+        };
+        _timer.schedule(_task, _windowMillis);
+    }
+
+    private List<RemoteCommitEvent> drainAll(List<RemoteCommitEvent> flush) {
+        flush = drain(flush, _oids);
+        flush = drain(flush, _extents);
+        _oids = null;
+        _extents = null;
+        _pending = 0;
+        if (_task != null) {
+            _task.cancel();
+            _task = null;
+        }
+        return flush;
+    }
+
+    private List<RemoteCommitEvent> drain(List<RemoteCommitEvent> flush,
+        Batch batch) {
+        if (batch == null)
+            return flush;
+        if (batch == _oids)
+            _oids = null;
+        if (flush == null)
+            flush = new ArrayList<>(2);
+        flush.add(batch.toEvent());
+        _broadcasts++;
+        return flush;
+    }
+
+    private void broadcast(List<RemoteCommitEvent> events) {
+        if (events == null)
+            return;
+        for (RemoteCommitEvent event : events)
+            _provider.broadcast(event);
+    }
+
+    /**
+     * Merged contents of the events of one payload type.
+     */
+    private static class Batch {
+
+        final int payload;
+        final Set<Object> addIds = new LinkedHashSet<>();
+        final Set<Object> addClasses = new LinkedHashSet<>();
+        final Set<Object> updates = new LinkedHashSet<>();
+        final Set<Object> deletes = new LinkedHashSet<>();
+
+        Batch(int payload) {
+            this.payload = payload;
+        }
+
+        void add(RemoteCommitEvent event) {
+            addClasses.addAll(event.getPersistedTypeNames());
+            if (payload == RemoteCommitEvent.PAYLOAD_EXTENTS) {
+                updates.addAll(event.getUpdatedTypeNames());
+                deletes.addAll(event.getDeletedTypeNames());
+            } else {
+                if (payload == RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS)
+                    addIds.addAll(event.getPersistedObjectIds());
+                updates.addAll(event.getUpdatedObjectIds());
+                deletes.addAll(event.getDeletedObjectIds());
+            }
+        }
+
+        RemoteCommitEvent toEvent() {
+            updates.removeAll(deletes);
+            return new RemoteCommitEvent(payload,
+                (payload == RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS) ? addIds : null,
+                orNull(addClasses), orNull(updates), orNull(deletes));
+        }
+
+        private static Collection<Object> orNull(Collection<Object> c) {
+            return c.isEmpty() ? null : c;
+        }
+    }
+}
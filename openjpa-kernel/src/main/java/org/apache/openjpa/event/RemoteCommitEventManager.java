@@ -54,6 +54,9 @@ public class RemoteCommitEventManager
 
     private final RemoteCommitProvider _provider;
     private boolean _transmitPersIds = false;
+    private long _batchWindow = 0;
+    private int _batchSize = 0;
+    private RemoteCommitEventBatcher _batcher = null;
 
     /**
      * Constructor. Supply configuration.
@@ -95,6 +98,61 @@ public class RemoteCommitEventManager
         _transmitPersIds = transmit;
     }
 
+    /**
+     * The number of milliseconds that the events of local commits are
+     * collected for before being merged and broadcast, or 0 (the default)
+     * to broadcast every commit on its own.
+     *
+     * @since 3.2.1
+     */
+    public long getBatchWindowMillis() {
+        return _batchWindow;
+    }
+
+    /**
+     * The number of milliseconds that the events of local commits are
+     * collected for before being merged and broadcast, or 0 (the default)
+     * to broadcast every commit on its own.
+     *
+     * @since 3.2.1
+     */
+    public void setBatchWindowMillis(long millis) {
+        _batchWindow = millis;
+    }
+
+    /**
+     * The number of commits that ends a batch before its window closes,
+     * or 0 (the default) for no limit.
+     *
+     * @since 3.2.1
+     */
+    public int getBatchSize() {
+        return _batchSize;
+    }
+
+    /**
+     * The number of commits that ends a batch before its window closes,
+     * or 0 (the default) for no limit.
+     *
+     * @since 3.2.1
+     */
+    public void setBatchSize(int size) {
+        _batchSize = size;
+    }
+
+    /**
+     * Return the batcher merging the events of local commits, or null if
+     * events are not batched.
+     *
+     * @since 3.2.1
+     */
+    public synchronized RemoteCommitEventBatcher getBatcher() {
+        if (_batcher == null && _batchWindow > 0 && _provider != null)
+            _batcher = new RemoteCommitEventBatcher(_provider, _batchWindow,
+                _batchSize);
+        return _batcher;
+    }
+
     /**
      * Adds an OpenJPA-internal listener to this RemoteCommitEventManager.
      * Listeners so registered will be fired before any that are registered
@@ -122,6 +180,9 @@ public class RemoteCommitEventManager
     @Override
     public void close() {
         if (_provider != null) {
+            RemoteCommitEventBatcher batcher = getBatcher();
+            if (batcher != null)
+                batcher.close();
             _provider.close();
             Collection listeners = getListeners();
             for (Object listener : listeners) {
@@ -158,7 +219,12 @@ public class RemoteCommitEventManager
     public void afterCommit(TransactionEvent event) {
         if (_provider != null) {
             RemoteCommitEvent rce = createRemoteCommitEvent(event);
-            if (rce != null)
+            if (rce == null)
+                return;
+            RemoteCommitEventBatcher batcher = getBatcher();
+            if (batcher != null)
+                batcher.add(rce);
+            else
                 _provider.broadcast(rce);
         }
     }
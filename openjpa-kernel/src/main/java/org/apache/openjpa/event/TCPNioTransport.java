@@ -0,0 +1,712 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.SequenceInputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.Channels;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+
+import org.apache.openjpa.event.TCPRemoteCommitProvider.HostAddress;
+import org.apache.openjpa.event.TCPRemoteCommitProvider.Packet;
+import org.apache.openjpa.event.TCPRemoteCommitProvider.PeerStatistics;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Localizer;
+
+/**
+ * Non-blocking transport of {@link TCPRemoteCommitProvider}. Packets are
+ * written to every peer from a bounded per-peer queue by a single selector
+ * thread, so that a slow or unreachable peer cannot hold up the others, and
+ * incoming connections are read by a single selector thread per port.
+ *
+ * @since 3.2.1
+ */
+final class TCPNioTransport {
+
+    private static final Localizer s_loc = Localizer.forPackage(TCPNioTransport.class);
+
+    private static final long SELECT_TIMEOUT = 1000;
+
+    private TCPNioTransport() {
+    }
+
+    /**
+     * Writes packets to the peers of a provider.
+     */
+    static final class Sender implements Runnable {
+
+        private final TCPRemoteCommitProvider _provider;
+        private final Log _log;
+        private final Selector _selector;
+        private final Thread _thread;
+        private final Map<HostAddress, Peer> _peers = new ConcurrentHashMap<>();
+        private volatile boolean _closed = false;
+
+        Sender(final TCPRemoteCommitProvider provider) throws IOException {
+            _provider = provider;
+            _log = provider.log;
+            _selector = Selector.open();
+            _thread = new Thread(this, "OpenJPA TCP sender " + provider.getPort());
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+
+        /**
+         * Queue a packet for each of the given peers.
+         */
+        void send(final Collection<HostAddress> addresses, final byte[] bytes) {
+            long now = System.nanoTime();
+            for (HostAddress address : addresses) {
+                _peers.computeIfAbsent(address, Peer::new).offer(bytes, now);
+            }
+            _selector.wakeup();
+        }
+
+        /**
+         * Stop sending to the given peer.
+         */
+        void remove(final HostAddress address) {
+            Peer peer = _peers.remove(address);
+            if (peer != null) {
+                peer._removed = true;
+                _selector.wakeup();
+            }
+        }
+
+        int getQueueDepth() {
+            int depth = 0;
+            for (Peer peer : _peers.values()) {
+                depth += peer.getQueueDepth();
+            }
+            return depth;
+        }
+
+        Map<String, PeerStatistics> getPeerStatistics() {
+            Map<String, PeerStatistics> stats = new LinkedHashMap<>();
+            for (Peer peer : _peers.values()) {
+                stats.put(peer.toString(), peer.getStatistics());
+            }
+            return stats;
+        }
+
+        void close() {
+            _closed = true;
+            _selector.wakeup();
+            try {
+                _thread.join(SELECT_TIMEOUT);
+            } catch (InterruptedException ie) {
+                // Ignore.
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (!_closed) {
+                    for (Peer peer : _peers.values()) {
+                        peer.prepare();
+                    }
+                    _selector.select(SELECT_TIMEOUT);
+
+                    Iterator<SelectionKey> itr = _selector.selectedKeys().iterator();
+                    while (itr.hasNext()) {
+                        SelectionKey key = itr.next();
+                        itr.remove();
+                        Peer peer = (Peer) key.attachment();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isConnectable()) {
+                            peer.finishConnect();
+                        } else if (key.isWritable()) {
+                            peer.write();
+                        }
+                    }
+
+                    // close the channels of peers that are no longer configured
+                    for (SelectionKey key : _selector.keys()) {
+                        Peer peer = (Peer) key.attachment();
+                        if (peer._removed) {
+                            peer.closeChannel();
+                        }
+                    }
+                }
+            } catch (IOException ioe) {
+                if (_log.isWarnEnabled()) {
+                    _log.warn(s_loc.get("tcp-nio-sender-error"), ioe);
+                }
+            } finally {
+                for (Peer peer : _peers.values()) {
+                    peer.closeChannel();
+                }
+                try {
+                    _selector.close();
+                } catch (IOException ioe) {
+                    if (_log.isWarnEnabled()) {
+                        _log.warn(s_loc.get("tcp-close-error"), ioe);
+                    }
+                }
+            }
+        }
+
+        /**
+         * Outbound queue and connection to a single peer. The queue is
+         * filled by broadcasting threads; everything else happens on the
+         * selector thread.
+         */
+        private final class Peer {
+
+            private final HostAddress _address;
+            private final ArrayDeque<byte[]> _queue = new ArrayDeque<>();
+            private final ArrayDeque<Long> _queued = new ArrayDeque<>();
+            private volatile boolean _removed = false;
+
+            private SocketChannel _channel;
+            private SelectionKey _key;
+            private ByteBuffer _current;
+            private long _currentQueued;
+            private boolean _isAvailable = true;
+            private long _timeLastError;
+
+            private long _sent;
+            private long _dropped;
+            private long _lastLatency;
+            private long _totalLatency;
+            private long _maxLatency;
+
+            private Peer(final HostAddress address) {
+                _address = address;
+            }
+
+            private synchronized void offer(final byte[] bytes, final long now) {
+                if (_queue.size() >= Math.max(1, _provider.getMaxQueuedPackets())) {
+                    _queue.pollFirst();
+                    _queued.pollFirst();
+                    _dropped++;
+                }
+                _queue.addLast(bytes);
+                _queued.addLast(now);
+            }
+
+            private synchronized boolean hasPackets() {
+                return _current != null || !_queue.isEmpty();
+            }
+
+            private synchronized int getQueueDepth() {
+                return _queue.size() + ((_current == null) ? 0 : 1);
+            }
+
+            private synchronized PeerStatistics getStatistics() {
+                return new PeerStatistics(getQueueDepth(), _sent, _dropped, _lastLatency, _totalLatency,
+                    _maxLatency);
+            }
+
+            /**
+             * Make sure that there is a connection interested in writing if
+             * there are packets to send.
+             */
+            private void prepare() {
+                if (!hasPackets()) {
+                    if (_key != null && _key.isValid() && _channel.isConnected()) {
+                        _key.interestOps(0);
+                    }
+                    return;
+                }
+                if (_channel != null) {
+                    if (_channel.isConnected()) {
+                        _key.interestOps(SelectionKey.OP_WRITE);
+                    }
+                    return;
+                }
+
+                if (!_isAvailable
+                    && System.currentTimeMillis() - _timeLastError < _provider.getRecoveryTimeMillis()) {
+                    // Not enough time has passed since the last error
+                    dropAll();
+                    return;
+                }
+                try {
+                    InetAddress address = _address.getAddress();
+                    _channel = SocketChannel.open();
+                    _channel.configureBlocking(false);
+                    _channel.socket().setTcpNoDelay(true);
+                    boolean connected = _channel.connect(new InetSocketAddress(address, _address.getPort()));
+                    _key = _channel.register(_selector, connected ? SelectionKey.OP_WRITE : SelectionKey.OP_CONNECT,
+                        this);
+                    if (_log.isTraceEnabled()) {
+                        _log.trace(s_loc.get("tcp-nio-open-connection", this));
+                    }
+                } catch (IOException ioe) {
+                    fail(ioe);
+                }
+            }
+
+            private void finishConnect() {
+                try {
+                    if (_channel.finishConnect()) {
+                        _key.interestOps(SelectionKey.OP_WRITE);
+                    }
+                } catch (IOException ioe) {
+                    fail(ioe);
+                }
+            }
+
+            private void write() {
+                try {
+                    while (true) {
+                        synchronized (this) {
+                            if (_current == null) {
+                                byte[] bytes = _queue.pollFirst();
+                                if (bytes == null) {
+                                    _key.interestOps(0);
+                                    return;
+                                }
+                                _current = ByteBuffer.wrap(bytes);
+                                _currentQueued = _queued.pollFirst();
+                            }
+                        }
+
+                        _channel.write(_current);
+                        if (_current.hasRemaining()) {
+                            // the socket buffer is full; wait to be selected again
+                            return;
+                        }
+
+                        long latency = System.nanoTime() - _currentQueued;
+                        synchronized (this) {
+                            _current = null;
+                            _sent++;
+                            _lastLatency = latency;
+                            _totalLatency += latency;
+                            _maxLatency = Math.max(_maxLatency, latency);
+                        }
+                        _isAvailable = true;
+                    }
+                } catch (IOException ioe) {
+                    fail(ioe);
+                }
+            }
+
+            private void fail(final IOException ioe) {
+                closeChannel();
+                dropAll();
+                if (_isAvailable) {
+                    // Log a warning, the peer was up and has now gone down
+                    if (_log.isWarnEnabled()) {
+                        _log.warn(s_loc.get("tcp-send-error", toString()), ioe);
+                    }
+                    _isAvailable = false;
+                } else if (_log.isTraceEnabled()) {
+                    _log.trace(s_loc.get("tcp-send-still-error", toString()), ioe);
+                }
+                _timeLastError = System.currentTimeMillis();
+            }
+
+            private synchronized void dropAll() {
+                int dropped = _queue.size() + ((_current == null) ? 0 : 1);
+                if (dropped == 0) {
+                    return;
+                }
+                _dropped += dropped;
+                _queue.clear();
+                _queued.clear();
+                _current = null;
+                if (_log.isTraceEnabled()) {
+                    _log.trace(s_loc.get("tcp-nio-dropped", toString(), String.valueOf(dropped)));
+                }
+            }
+
+            private void closeChannel() {
+                if (_key != null) {
+                    _key.cancel();
+                    _key = null;
+                }
+                if (_channel != null) {
+                    try {
+                        _channel.close();
+                    } catch (IOException ioe) {
+                        if (_log.isWarnEnabled()) {
+                            _log.warn(s_loc.get("tcp-close-socket-error", toString()), ioe);
+                        }
+                    }
+                    _channel = null;
+                }
+                synchronized (this) {
+                    // a partially written packet cannot be resumed on a new connection
+                    if (_current != null) {
+                        _current = null;
+                        _dropped++;
+                    }
+                }
+            }
+
+            @Override
+            public String toString() {
+                return _address.getAddress().getHostAddress() + ":" + _address.getPort();
+            }
+        }
+    }
+
+    /**
+     * Receives the framed packets of all connections to a port on a single
+     * selector thread. The unframed Java serialization packets of peers using
+     * the blocking transport can only be told complete by deserializing them,
+     * so such connections are handed to a blocking thread of their own, as
+     * the blocking listener reads them.
+     */
+    static final class NioPortListener implements TCPRemoteCommitProvider.PortListener, Runnable {
+
+        private final int _port;
+        private final int _maxFrameSize;
+        private final Log _log;
+        private final byte[] _localhost;
+        private final ServerSocketChannel _server;
+        private final Selector _selector;
+        private final Set<TCPRemoteCommitProvider> _providers = new HashSet<>();
+        // connections to hand off once their keys are deregistered
+        private final List<Connection> _handOffs = new ArrayList<>();
+        private final Set<SocketChannel> _handedOff = Collections.synchronizedSet(new HashSet<>());
+        private Thread _thread;
+        private volatile boolean _isRunning = false;
+
+        NioPortListener(final int port, final int maxFrameSize, final Log log) throws IOException {
+            _port = port;
+            _maxFrameSize = maxFrameSize;
+            _log = log;
+            _localhost = InetAddress.getLocalHost().getAddress();
+            _selector = Selector.open();
+            _server = ServerSocketChannel.open();
+            _server.socket().bind(new InetSocketAddress(port));
+            _server.configureBlocking(false);
+            _server.register(_selector, SelectionKey.OP_ACCEPT);
+
+            if (_log.isTraceEnabled()) {
+                _log.trace(TCPRemoteCommitProvider.s_loc.get("tcp-start-listener", String.valueOf(_port)));
+            }
+        }
+
+        @Override
+        public void listen() {
+            _isRunning = true;
+            _thread = new Thread(this, "OpenJPA TCP listener " + _port);
+            _thread.setDaemon(true);
+            _thread.start();
+        }
+
+        @Override
+        public boolean isRunning() {
+            return _isRunning;
+        }
+
+        @Override
+        public int getPort() {
+            return _port;
+        }
+
+        @Override
+        public void addProvider(final TCPRemoteCommitProvider provider) {
+            synchronized (_providers) {
+                _providers.add(provider);
+            }
+        }
+
+        @Override
+        public void removeProvider(final TCPRemoteCommitProvider provider) {
+            synchronized (_providers) {
+                _providers.remove(provider);
+
+                // if the provider list is empty, shut down the thread.
+                if (_providers.isEmpty()) {
+                    _isRunning = false;
+                    _selector.wakeup();
+                }
+            }
+        }
+
+        @Override
+        public void run() {
+            try {
+                while (_isRunning) {
+                    if (_handOffs.isEmpty()) {
+                        _selector.select(SELECT_TIMEOUT);
+                    } else {
+                        // deregister the cancelled keys of the connections
+                        // to hand off before making them blocking
+                        _selector.selectNow();
+                        for (Connection conn : _handOffs) {
+                            conn.handOff();
+                        }
+                        _handOffs.clear();
+                    }
+                    Iterator<SelectionKey> itr = _selector.selectedKeys().iterator();
+                    while (itr.hasNext()) {
+                        SelectionKey key = itr.next();
+                        itr.remove();
+                        if (!key.isValid()) {
+                            continue;
+                        }
+                        if (key.isAcceptable()) {
+                            accept();
+                        } else if (key.isReadable()) {
+                            ((Connection) key.attachment()).read(key);
+                        }
+                    }
+                }
+            } catch (IOException ioe) {
+                if (_isRunning && _log.isWarnEnabled()) {
+                    _log.warn(TCPRemoteCommitProvider.s_loc.get("tcp-accept-error"), ioe);
+                }
+            } finally {
+                _isRunning = false;
+                synchronized (_handedOff) {
+                    for (SocketChannel channel : _handedOff) {
+                        try {
+                            channel.close();
+                        } catch (IOException ioe) {
+                            if (_log.isWarnEnabled()) {
+                                _log.warn(TCPRemoteCommitProvider.s_loc.get("tcp-close-error"), ioe);
+                            }
+                        }
+                    }
+                }
+                for (SelectionKey key : _selector.keys()) {
+                    try {
+                        key.channel().close();
+                    } catch (IOException ioe) {
+                        if (_log.isWarnEnabled()) {
+                            _log.warn(TCPRemoteCommitProvider.s_loc.get("tcp-close-error"), ioe);
+                        }
+                    }
+                }
+                try {
+                    _selector.close();
+                    _server.close();
+                } catch (IOException ioe) {
+                    if (_log.isWarnEnabled()) {
+                        _log.warn(TCPRemoteCommitProvider.s_loc.get("tcp-close-error"), ioe);
+                    }
+                }
+                if (_log.isTraceEnabled()) {
+                    _log.trace(TCPRemoteCommitProvider.s_loc.get("tcp-close-listener", String.valueOf(_port)));
+                }
+            }
+        }
+
+        private void accept() throws IOException {
+            SocketChannel channel = _server.accept();
+            if (channel == null) {
+                return;
+            }
+            channel.configureBlocking(false);
+            channel.socket().setTcpNoDelay(true);
+            String peer = channel.socket().getInetAddress().getHostAddress() + ":" + channel.socket().getPort();
+            channel.register(_selector, SelectionKey.OP_READ, new Connection(channel, peer));
+            if (_log.isTraceEnabled()) {
+                _log.trace(TCPRemoteCommitProvider.s_loc.get("tcp-received-connection", peer));
+            }
+        }
+
+        /**
+         * Accumulates the bytes of a connection until complete packets can
+         * be decoded.
+         */
+        private final class Connection {
+
+            private final SocketChannel _channel;
+            private final String _peer;
+            private ByteBuffer _buf = ByteBuffer.allocate(8 * 1024);
+            // the size of the incomplete frame at the start of the buffer
+            private int _frameSize = 0;
+            private boolean _unframed = false;
+
+            private Connection(final SocketChannel channel, final String peer) {
+                _channel = channel;
+                _peer = peer;
+            }
+
+            private void read(final SelectionKey key) {
+                SocketChannel channel = (SocketChannel) key.channel();
+                try {
+                    if (!_buf.hasRemaining()) {
+                        // only a frame within the maximum size fills the
+                        // buffer, so it never grows beyond that frame
+                        ByteBuffer buf = ByteBuffer.allocate(Math.min(_buf.capacity() * 2, _frameSize));
+                        _buf.flip();
+                        buf.put(_buf);
+                        _buf = buf;
+                    }
+                    if (channel.read(_buf) < 0) {
+                        // peer is properly closing its end
+                        if (_log.isTraceEnabled()) {
+                            _log.trace(TCPRemoteCommitProvider.s_loc.get("tcp-close-socket", _peer));
+                        }
+                        close(key);
+                        return;
+                    }
+
+                    _buf.flip();
+                    try {
+                        while (decode()) {
+                            // keep decoding complete packets
+                        }
+                    } finally {
+                        _buf.compact();
+                    }
+                    if (_unframed) {
+                        key.cancel();
+                        _handOffs.add(this);
+                    }
+                } catch (Throwable e) {
+                    if (_log.isWarnEnabled()) {
+                        _log.warn(TCPRemoteCommitProvider.s_loc.get("tcp-receive-error"), e);
+                    }
+                    close(key);
+                }
+            }
+
+            /**
+             * Decode and fire the next packet in the buffer, if complete.
+             */
+            private boolean decode() throws IOException, ClassNotFoundException {
+                int pos = _buf.position();
+                int remaining = _buf.remaining();
+                if (remaining < 2) {
+                    return false;
+                }
+
+                if (((_buf.get(pos) & 0xff) << 8 | (_buf.get(pos + 1) & 0xff)) == 0xaced) {
+                    // unframed Java serialization
+                    _unframed = true;
+                    return false;
+                }
+
+                if (remaining < 8) {
+                    return false;
+                }
+                int version = _buf.getInt(pos);
+                int length = _buf.getInt(pos + 4);
+                TCPRemoteCommitProvider.checkFrameHeader(version, length, _maxFrameSize);
+                if (remaining < 8 + length) {
+                    _frameSize = 8 + length;
+                    return false;
+                }
+                byte[] body = new byte[length];
+                _buf.position(pos + 8);
+                _buf.get(body);
+                fire(TCPRemoteCommitProvider.readFramedPacket(version, body));
+                return true;
+            }
+
+            /**
+             * Read the rest of this connection on a thread of its own. Its
+             * key must have been deregistered.
+             */
+            private void handOff() {
+                try {
+                    _channel.configureBlocking(true);
+                } catch (IOException ioe) {
+                    if (_log.isWarnEnabled()) {
+                        _log.warn(TCPRemoteCommitProvider.s_loc.get("tcp-receive-error"), ioe);
+                    }
+                    closeChannel();
+                    return;
+                }
+                _buf.flip();
+                final InputStream in = new BufferedInputStream(new SequenceInputStream(
+                    new ByteArrayInputStream(_buf.array(), _buf.arrayOffset() + _buf.position(),
+                        _buf.remaining()),
+                    Channels.newInputStream(_channel)));
+                _buf = null;
+                _handedOff.add(_channel);
+                Thread thread = new Thread(() -> readBlocking(in), "OpenJPA TCP receiver " + _peer);
+                thread.setDaemon(true);
+                thread.start();
+            }
+
+            private void readBlocking(final InputStream in) {
+                try {
+                    while (_isRunning) {
+                        fire(TCPRemoteCommitProvider.readPacket(in, _maxFrameSize));
+                    }
+                } catch (EOFException eof) {
+                    // peer is properly closing its end
+                    if (_log.isTraceEnabled()) {
+                        _log.trace(TCPRemoteCommitProvider.s_loc.get("tcp-close-socket", _peer));
+                    }
+                } catch (Throwable e) {
+                    if (_isRunning && _log.isWarnEnabled()) {
+                        _log.warn(TCPRemoteCommitProvider.s_loc.get("tcp-receive-error"), e);
+                    }
+                } finally {
+                    _handedOff.remove(_channel);
+                    closeChannel();
+                }
+            }
+
+            private void fire(final Packet packet) {
+                if (packet == null) {
+                    if (_log.isWarnEnabled()) {
+                        _log.warn(TCPRemoteCommitProvider.s_loc.get("tcp-wrong-version-error", _peer));
+                    }
+                    return;
+                }
+                if (_log.isTraceEnabled()) {
+                    _log.trace(TCPRemoteCommitProvider.s_loc.get("tcp-received-event", _peer));
+                }
+                TCPRemoteCommitProvider.fireReceived(_providers, _port, _localhost, packet);
+            }
+
+            private void close(final SelectionKey key) {
+                key.cancel();
+                closeChannel();
+            }
+
+            private void closeChannel() {
+                try {
+                    _channel.close();
+                } catch (IOException ioe) {
+                    if (_log.isWarnEnabled()) {
+                        _log.warn(TCPRemoteCommitProvider.s_loc.get("tcp-close-socket-error", _peer), ioe);
+                    }
+                }
+            }
+        }
+    }
+}
@@ -19,13 +19,17 @@
 package org.apache.openjpa.event;
 
 import java.io.BufferedInputStream;
+import java.io.ByteArrayInputStream;
 import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
 import java.io.EOFException;
 import java.io.IOException;
 import java.io.InputStream;
 import java.io.ObjectInputStream;
 import java.io.ObjectOutputStream;
 import java.io.OutputStream;
+import java.io.StreamCorruptedException;
 import java.net.InetAddress;
 import java.net.ServerSocket;
 import java.net.Socket;
@@ -58,6 +62,7 @@ import org.apache.openjpa.lib.util.StringUtil;
 import org.apache.openjpa.util.GeneralException;
 import org.apache.openjpa.util.InternalException;
 import org.apache.openjpa.util.Serialization;
+import org.apache.openjpa.util.UserException;
 
 
 /**
@@ -74,6 +79,29 @@ public class TCPRemoteCommitProvider
     implements Configurable {
 
     private static final int DEFAULT_PORT = 5636;
+    private static final int DEFAULT_MAX_FRAME_SIZE = 16 * 1024 * 1024;
+
+    /**
+     * Events are written with Java serialization.
+     */
+    public static final String CODEC_JAVA = "java";
+
+    /**
+     * Events are written with {@link BinaryRemoteCommitEventCodec}.
+     */
+    public static final String CODEC_BINARY = "binary";
+
+    /**
+     * Peers are written to with blocking sockets from a pool of broadcast
+     * threads, and every connection is read by its own thread.
+     */
+    public static final String TRANSPORT_BLOCKING = "blocking";
+
+    /**
+     * Peers are written to and read from with non-blocking channels served
+     * by a single selector thread each for sending and receiving.
+     */
+    public static final String TRANSPORT_NIO = "nio";
 
     protected static final Localizer s_loc = Localizer.forPackage(TCPRemoteCommitProvider.class);
     private static long s_idSequence = System.currentTimeMillis();
@@ -81,7 +109,7 @@ public class TCPRemoteCommitProvider
     //	A map of listen ports to listeners in this JVM. We might
     //	want to look into allowing same port, different interface --
     //	that is not currently possible in a single JVM.
-    private static final Map<String, TCPPortListener> s_portListenerMap = new HashMap<>();
+    private static final Map<String, PortListener> s_portListenerMap = new HashMap<>();
 
     private final long _id;
     private final byte[] _localhost;
@@ -89,7 +117,12 @@ public class TCPRemoteCommitProvider
     private int _maxTotal = 2;
     private int _maxIdle = 2;
     private int _recoveryTimeMillis = 15000;
-    private TCPPortListener _listener;
+    private String _codec = CODEC_JAVA;
+    private String _transport = TRANSPORT_BLOCKING;
+    private int _maxQueuedPackets = 1000;
+    private int _maxFrameSize = DEFAULT_MAX_FRAME_SIZE;
+    private TCPNioTransport.Sender _nioSender;
+    private PortListener _listener;
     private final BroadcastQueue _broadcastQueue = new BroadcastQueue();
     private final List<BroadcastWorkerThread> _broadcastThreads = Collections.synchronizedList(new LinkedList<>());
 
@@ -221,6 +254,117 @@ public class TCPRemoteCommitProvider
         return _broadcastThreads.size();
     }
 
+    /**
+     * Set the format in which events are sent to peers: {@link #CODEC_JAVA}
+     * (the default) or {@link #CODEC_BINARY}. Peers read both formats, so
+     * the codec can be changed one node at a time.
+     *
+     * @param codec the name of the codec
+     * @since 3.2.1
+     */
+    public void setCodec(final String codec) {
+        if (CODEC_JAVA.equalsIgnoreCase(codec)) {
+            _codec = CODEC_JAVA;
+        } else if (CODEC_BINARY.equalsIgnoreCase(codec)) {
+            _codec = CODEC_BINARY;
+        } else {
+            throw new UserException(s_loc.get("tcp-bad-codec", codec));
+        }
+    }
+
+    /**
+     * @return the format in which events are sent to peers.
+     */
+    public String getCodec() {
+        return _codec;
+    }
+
+    /**
+     * Set the transport used to exchange packets with peers:
+     * {@link #TRANSPORT_BLOCKING} (the default) or {@link #TRANSPORT_NIO}.
+     * With the NIO transport a slow or unreachable peer only fills its own
+     * outbound queue instead of holding up the packets of all other peers.
+     * The NIO transport frames every packet with its length, which requires
+     * all peers to run a release that understands framed packets.
+     *
+     * @param transport the name of the transport
+     * @since 3.2.1
+     */
+    public void setTransport(final String transport) {
+        if (TRANSPORT_BLOCKING.equalsIgnoreCase(transport)) {
+            _transport = TRANSPORT_BLOCKING;
+        } else if (TRANSPORT_NIO.equalsIgnoreCase(transport)) {
+            _transport = TRANSPORT_NIO;
+        } else {
+            throw new UserException(s_loc.get("tcp-bad-transport", transport));
+        }
+    }
+
+    /**
+     * @return the transport used to exchange packets with peers.
+     */
+    public String getTransport() {
+        return _transport;
+    }
+
+    /**
+     * Set the maximum number of packets the NIO transport queues for a
+     * single peer. When a peer's queue is full its oldest packet is dropped.
+     *
+     * @param maxQueuedPackets the maximum number of packets queued per peer
+     * @since 3.2.1
+     */
+    public void setMaxQueuedPackets(final int maxQueuedPackets) {
+        _maxQueuedPackets = maxQueuedPackets;
+    }
+
+    /**
+     * @return the maximum number of packets the NIO transport queues for a
+     * single peer.
+     */
+    public int getMaxQueuedPackets() {
+        return _maxQueuedPackets;
+    }
+
+    /**
+     * Set the largest framed packet, in bytes, that this provider's listener
+     * accepts from a peer. A peer announcing a larger packet is considered
+     * broken and its connection is closed. The listener of a port is shared
+     * by the providers of a JVM and uses the value of the first provider
+     * that listens on the port.
+     *
+     * @param maxFrameSize the maximum size of a received packet in bytes
+     * @since 3.2.1
+     */
+    public void setMaxFrameSize(final int maxFrameSize) {
+        _maxFrameSize = maxFrameSize;
+    }
+
+    /**
+     * @return the largest framed packet, in bytes, accepted from a peer.
+     */
+    public int getMaxFrameSize() {
+        return _maxFrameSize;
+    }
+
+    /**
+     * @return the total number of packets waiting to be written to peers by
+     * the NIO transport, or 0 when the blocking transport is used.
+     * @since 3.2.1
+     */
+    public int getQueueDepth() {
+        return (_nioSender == null) ? 0 : _nioSender.getQueueDepth();
+    }
+
+    /**
+     * @return the statistics of the NIO transport for each peer, keyed by
+     * "address:port", or an empty map when the blocking transport is used.
+     * @since 3.2.1
+     */
+    public Map<String, PeerStatistics> getPeerStatistics() {
+        return (_nioSender == null) ? Collections.emptyMap() : _nioSender.getPeerStatistics();
+    }
+
     /**
      * Sets the list of addresses of peers to which this provider will send events to.
      * The peers are semicolon-separated <code>names</code> list in the form of "myhost1:portA;myhost2:portB".
@@ -295,9 +439,13 @@ public class TCPRemoteCommitProvider
             // see if a listener exists for this port.
             _listener = s_portListenerMap.get(String.valueOf(_port));
 
-            if (_listener == null || (!_listener.isRunning() && _listener._port == _port)) {
+            if (_listener == null || (!_listener.isRunning() && _listener.getPort() == _port)) {
                 try {
-                    _listener = new TCPPortListener(_port, log);
+                    if (TRANSPORT_NIO.equals(_transport)) {
+                        _listener = new TCPNioTransport.NioPortListener(_port, _maxFrameSize, log);
+                    } else {
+                        _listener = new TCPPortListener(_port, _maxFrameSize, log);
+                    }
                     _listener.listen();
                     s_portListenerMap.put(String.valueOf(_port), _listener);
                 } catch (Exception e) {
@@ -305,7 +453,7 @@ public class TCPRemoteCommitProvider
                             setFatal(true);
                 }
             } else if (_listener.isRunning()) {
-                if (_listener._port != _port) {
+                if (_listener.getPort() != _port) {
                     // this really shouldn't be able to happen.
                     throw new GeneralException(s_loc.get("tcp-not-equal", String.valueOf(_port))).setFatal(true);
                 }
@@ -315,6 +463,15 @@ public class TCPRemoteCommitProvider
             _listener.addProvider(this);
         }
 
+        if (TRANSPORT_NIO.equals(_transport) && _nioSender == null) {
+            try {
+                _nioSender = new TCPNioTransport.Sender(this);
+            } catch (IOException ioe) {
+                throw new GeneralException(s_loc.get("tcp-init-exception", String.valueOf(_port)), ioe).
+                        setFatal(true);
+            }
+        }
+
         _addressesLock.lock();
         try {
             _addresses.forEach(curAddress -> {
@@ -333,9 +490,54 @@ public class TCPRemoteCommitProvider
     // 3.4 			= 0x1428acff;
     private static final long PROTOCOL_VERSION = 0x1428acff;
 
+    // Framed packets are a protocol version int followed by the length of
+    // the rest of the packet, so that receivers can skip packets they do not
+    // understand. Unlike Java serialization streams they do not start with
+    // 0xaced.
+    // binary codec	= 0x4f4a0001;
+    // framed Java serialization (NIO transport) = 0x4f4a0002;
+    // The high half of every frame version is the magic 0x4f4a ("OJ").
+    static final int FRAME_MAGIC = 0x4f4a;
+    static final int BINARY_PROTOCOL_VERSION = 0x4f4a0001;
+    static final int FRAMED_PROTOCOL_VERSION = 0x4f4a0002;
+
     @Override
     public void broadcast(final RemoteCommitEvent event) {
         // build a packet notifying other JVMs of object changes.
+        try {
+            byte[] bytes;
+            if (CODEC_BINARY.equals(_codec)) {
+                bytes = newBinaryPacket(event);
+            } else {
+                bytes = newJavaPacket(event);
+                if (_nioSender != null) {
+                    bytes = frame(FRAMED_PROTOCOL_VERSION, bytes);
+                }
+            }
+
+            if (_nioSender != null) {
+                _addressesLock.lock();
+                try {
+                    _nioSender.send(_addresses, bytes);
+                } finally {
+                    _addressesLock.unlock();
+                }
+            } else if (_broadcastThreads.isEmpty()) {
+                sendUpdatePacket(bytes);
+            } else {
+                _broadcastQueue.addPacket(bytes);
+            }
+        } catch (IOException ioe) {
+            if (log.isWarnEnabled()) {
+                log.warn(s_loc.get("tcp-payload-create-error"), ioe);
+            }
+        }
+    }
+
+    /**
+     * Build a packet with Java serialization.
+     */
+    private byte[] newJavaPacket(final RemoteCommitEvent event) throws IOException {
         try (ByteArrayOutputStream baos = new ByteArrayOutputStream();
                 ObjectOutputStream oos = new ObjectOutputStream(baos)) {
 
@@ -345,18 +547,138 @@ public class TCPRemoteCommitProvider
             oos.writeObject(_localhost);
             oos.writeObject(event);
             oos.flush();
+            return baos.toByteArray();
+        }
+    }
 
-            byte[] bytes = baos.toByteArray();
-            baos.close();
-            if (_broadcastThreads.isEmpty()) {
-                sendUpdatePacket(bytes);
-            } else {
-                _broadcastQueue.addPacket(bytes);
-            }
-        } catch (IOException ioe) {
-            if (log.isWarnEnabled()) {
-                log.warn(s_loc.get("tcp-payload-create-error"), ioe);
-            }
+    /**
+     * Build a framed packet with the binary codec.
+     */
+    private byte[] newBinaryPacket(final RemoteCommitEvent event) throws IOException {
+        ByteArrayOutputStream body = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(body);
+        out.writeLong(_id);
+        out.writeInt(_port);
+        out.writeByte(_localhost.length);
+        out.write(_localhost);
+        new BinaryRemoteCommitEventCodec().encode(event, out);
+        out.flush();
+        return frame(BINARY_PROTOCOL_VERSION, body.toByteArray());
+    }
+
+    private static byte[] frame(final int version, final byte[] body) throws IOException {
+        ByteArrayOutputStream baos = new ByteArrayOutputStream(body.length + 8);
+        DataOutputStream packet = new DataOutputStream(baos);
+        packet.writeInt(version);
+        packet.writeInt(body.length);
+        packet.write(body);
+        packet.flush();
+        return baos.toByteArray();
+    }
+
+    /**
+     * Read a packet written with Java serialization, or return null if it
+     * was written by an incompatible release.
+     */
+    static Packet readJavaPacket(final InputStream in) throws IOException, ClassNotFoundException {
+        ObjectInputStream ois = new Serialization.ClassResolvingObjectInputStream(in);
+
+        long protocolVersion = ois.readLong();
+        if (protocolVersion != PROTOCOL_VERSION) {
+            return null;
+        }
+
+        Packet packet = new Packet();
+        packet.senderId = ois.readLong();
+        packet.senderPort = ois.readInt();
+        packet.senderAddress = (byte[]) ois.readObject();
+        packet.event = (RemoteCommitEvent) ois.readObject();
+        return packet;
+    }
+
+    /**
+     * Read the next packet of a connection, written either with Java
+     * serialization or framed, or return null if it was written by an
+     * incompatible release. Blocks until the packet is complete.
+     *
+     * @param in a stream that supports {@link InputStream#mark}
+     */
+    static Packet readPacket(final InputStream in, final int maxFrameSize)
+        throws IOException, ClassNotFoundException {
+        // Peek at the stream header to tell Java serialization from
+        // framed packets.
+        in.mark(2);
+        int b0 = in.read();
+        int b1 = in.read();
+        if (b0 == -1 || b1 == -1) {
+            throw new EOFException();
+        }
+        in.reset();
+        if (((b0 << 8) | b1) == 0xaced) {
+            return readJavaPacket(in);
+        }
+
+        DataInputStream din = new DataInputStream(in);
+        int version = din.readInt();
+        int length = din.readInt();
+        checkFrameHeader(version, length, maxFrameSize);
+        byte[] body = new byte[length];
+        din.readFully(body);
+        return readFramedPacket(version, body);
+    }
+
+    /**
+     * Check the header of a framed packet, throwing an exception if it does
+     * not start with the frame magic or announces a negative length or one
+     * above the given maximum.
+     */
+    static void checkFrameHeader(final int version, final int length, final int maxFrameSize)
+        throws IOException {
+        if ((version >>> 16) != FRAME_MAGIC) {
+            throw new StreamCorruptedException(s_loc.get("tcp-bad-frame-magic",
+                Integer.toHexString(version)).getMessage());
+        }
+        if (length < 0 || length > maxFrameSize) {
+            throw new StreamCorruptedException(s_loc.get("tcp-bad-frame-length",
+                String.valueOf(length), String.valueOf(maxFrameSize)).getMessage());
+        }
+    }
+
+    /**
+     * Read the body of a framed packet, or return null if the version is
+     * unknown.
+     */
+    static Packet readFramedPacket(final int version, final byte[] body)
+        throws IOException, ClassNotFoundException {
+        if (version == FRAMED_PROTOCOL_VERSION) {
+            return readJavaPacket(new ByteArrayInputStream(body));
+        }
+        if (version != BINARY_PROTOCOL_VERSION) {
+            return null;
+        }
+
+        DataInputStream in = new DataInputStream(new ByteArrayInputStream(body));
+        Packet packet = new Packet();
+        packet.senderId = in.readLong();
+        packet.senderPort = in.readInt();
+        packet.senderAddress = new byte[in.readUnsignedByte()];
+        in.readFully(packet.senderAddress);
+        packet.event = new BinaryRemoteCommitEventCodec().decode(in, body.length);
+        return packet;
+    }
+
+    /**
+     * Hand a received packet to the providers listening on the given port,
+     * except to the provider that sent it.
+     */
+    static void fireReceived(final Set<TCPRemoteCommitProvider> providers, final int port, final byte[] localhost,
+        final Packet packet) {
+        boolean fromSelf = packet.senderPort == port && Arrays.equals(packet.senderAddress, localhost);
+        synchronized (providers) {
+            // bleair: We're iterating, but currenlty there can really
+            // only be a single provider.
+            providers.stream().filter(provider -> packet.senderId != provider._id || !fromSelf).
+                    forEach(provider -> provider.eventManager.fireEvent(packet.event));
         }
     }
 
@@ -381,6 +703,9 @@ public class TCPRemoteCommitProvider
 
         // Remove Broadcast Threads then close sockets.
         _broadcastQueue.close();
+        if (_nioSender != null) {
+            _nioSender.close();
+        }
 
         // Wait for _broadcastThreads to get cleaned up.
         while(!_broadcastThreads.isEmpty()) {
@@ -399,6 +724,118 @@ public class TCPRemoteCommitProvider
         }
     }
 
+    /**
+     * Listens for incoming packets on a port. There is a single listener per
+     * port in a JVM, shared by all providers configured with that port.
+     */
+    interface PortListener {
+
+        void listen();
+
+        boolean isRunning();
+
+        int getPort();
+
+        /**
+         * All providers added here will be notified of any incoming provider messages. There will be one of these
+         * per BrokerFactory in a given JVM.
+         */
+        void addProvider(TCPRemoteCommitProvider provider);
+
+        /**
+         * Remove a provider from the list of providers to notify of commit events.
+         */
+        void removeProvider(TCPRemoteCommitProvider provider);
+    }
+
+    /**
+     * A decoded packet.
+     */
+    static final class Packet {
+
+        long senderId;
+        int senderPort;
+        byte[] senderAddress;
+        RemoteCommitEvent event;
+    }
+
+    /**
+     * Statistics of the NIO transport for a single peer.
+     *
+     * @since 3.2.1
+     */
+    public static class PeerStatistics {
+
+        private final int _queueDepth;
+        private final long _sent;
+        private final long _dropped;
+        private final long _lastLatencyNanos;
+        private final long _totalLatencyNanos;
+        private final long _maxLatencyNanos;
+
+        PeerStatistics(final int queueDepth, final long sent, final long dropped, final long lastLatencyNanos,
+            final long totalLatencyNanos, final long maxLatencyNanos) {
+            _queueDepth = queueDepth;
+            _sent = sent;
+            _dropped = dropped;
+            _lastLatencyNanos = lastLatencyNanos;
+            _totalLatencyNanos = totalLatencyNanos;
+            _maxLatencyNanos = maxLatencyNanos;
+        }
+
+        /**
+         * @return the number of packets waiting to be written to the peer.
+         */
+        public int getQueueDepth() {
+            return _queueDepth;
+        }
+
+        /**
+         * @return the number of packets written to the peer.
+         */
+        public long getSentCount() {
+            return _sent;
+        }
+
+        /**
+         * @return the number of packets dropped because the peer's queue was
+         * full or the peer was unreachable.
+         */
+        public long getDroppedCount() {
+            return _dropped;
+        }
+
+        /**
+         * @return the time between queueing and completely writing the most
+         * recent packet, in milliseconds.
+         */
+        public double getLastLatencyMillis() {
+            return _lastLatencyNanos / 1000000D;
+        }
+
+        /**
+         * @return the average time between queueing and completely writing a
+         * packet, in milliseconds.
+         */
+        public double getAverageLatencyMillis() {
+            return (_sent == 0) ? 0 : _totalLatencyNanos / 1000000D / _sent;
+        }
+
+        /**
+         * @return the longest time between queueing and completely writing a
+         * packet, in milliseconds.
+         */
+        public double getMaxLatencyMillis() {
+            return _maxLatencyNanos / 1000000D;
+        }
+
+        @Override
+        public String toString() {
+            return "queued=" + _queueDepth + ", sent=" + _sent + ", dropped=" + _dropped
+                + ", avgLatencyMillis=" + getAverageLatencyMillis() + ", maxLatencyMillis=" + getMaxLatencyMillis();
+        }
+    }
+
     /**
      * Utility class to hold messages to be sent. This
      * allows calls to broadcast () to return without
@@ -482,7 +919,7 @@ public class TCPRemoteCommitProvider
     /**
      * Responsible for listening for incoming packets and processing them.
      */
-    private static final class TCPPortListener implements Runnable {
+    private static final class TCPPortListener implements PortListener, Runnable {
 
         private final Log _log;
         private ServerSocket _receiveSocket;
@@ -506,11 +943,17 @@ public class TCPRemoteCommitProvider
          */
         private boolean _isRunning = false;
 
+        /**
+         * The largest framed packet accepted from a peer.
+         */
+        private final int _maxFrameSize;
+
         /**
          * Construct a new TCPPortListener configured to use the specified port.
          */
-        private TCPPortListener(final int port, final Log log) throws IOException {
+        private TCPPortListener(final int port, final int maxFrameSize, final Log log) throws IOException {
             _port = port;
+            _maxFrameSize = maxFrameSize;
             _log = log;
             try {
                 _receiveSocket = AccessController.doPrivileged(J2DoPrivHelper.newServerSocketAction(_port));
@@ -524,7 +967,8 @@ public class TCPRemoteCommitProvider
             }
         }
 
-        private void listen() {
+        @Override
+        public void listen() {
             _acceptThread = new Thread(this);
             _acceptThread.setDaemon(true);
             _acceptThread.start();
@@ -536,7 +980,8 @@ public class TCPRemoteCommitProvider
          * {@link TCPRemoteCommitProvider#endConfiguration} invokes <code>addProvider</code> with <code>this</code> upon
          * completion of configuration.
          */
-        private void addProvider(final TCPRemoteCommitProvider provider) {
+        @Override
+        public void addProvider(final TCPRemoteCommitProvider provider) {
             synchronized (_providers) {
                 _providers.add(provider);
             }
@@ -545,7 +990,8 @@ public class TCPRemoteCommitProvider
         /**
          * Remove a provider from the list of providers to notify of commit events.
          */
-        private synchronized void removeProvider(final TCPRemoteCommitProvider provider) {
+        @Override
+        public synchronized void removeProvider(final TCPRemoteCommitProvider provider) {
             synchronized (_providers) {
                 _providers.remove(provider);
 
@@ -564,12 +1010,18 @@ public class TCPRemoteCommitProvider
             }
         }
 
-        private boolean isRunning() {
+        @Override
+        public boolean isRunning() {
             synchronized (_providers) {
                 return _isRunning;
             }
         }
 
+        @Override
+        public int getPort() {
+            return _port;
+        }
+
         @Override
         public void run() {
             synchronized (_providers) {
@@ -708,35 +1160,24 @@ public class TCPRemoteCommitProvider
              * by {@link TCPRemoteCommitProvider#broadcast(RemoteCommitEvent)}.
              */
             private void handle(final InputStream in) throws IOException, ClassNotFoundException {
-                // This will block waiting for the next
-                ObjectInputStream ois = new Serialization.ClassResolvingObjectInputStream(in);
+                // This will block waiting for the next packet.
+                fireEvent(readPacket(in, _maxFrameSize));
+            }
 
-                long protocolVersion = ois.readLong();
-                if (protocolVersion != PROTOCOL_VERSION) {
+            private void fireEvent(final Packet packet) {
+                if (packet == null) {
                     if (_log.isWarnEnabled()) {
                         _log.warn(s_loc.get("tcp-wrong-version-error",
                             _s.getInetAddress().getHostAddress() + ":" + _s.getPort()));
-                        return;
                     }
+                    return;
                 }
-
-                long senderId = ois.readLong();
-                int senderPort = ois.readInt();
-                byte[] senderAddress = (byte[]) ois.readObject();
-                RemoteCommitEvent rce = (RemoteCommitEvent) ois.readObject();
                 if (_log.isTraceEnabled()) {
                     _log.trace(s_loc.get("tcp-received-event",
                         _s.getInetAddress().getHostAddress() + ":"
                             + _s.getPort()));
                 }
-
-                boolean fromSelf = senderPort == _port && Arrays.equals(senderAddress, _localhost);
-                synchronized (_providers) {
-                    // bleair: We're iterating, but currenlty there can really
-                    // only be a single provider.
-                    _providers.stream().filter(provider -> senderId != provider._id || !fromSelf).
-                            forEach(provider -> provider.eventManager.fireEvent(rce));
-                }
+                fireReceived(_providers, _port, _localhost, packet);
             }
         }
     }
@@ -800,6 +1241,9 @@ public class TCPRemoteCommitProvider
         }
 
         public void close() {
+            if (_nioSender != null) {
+                _nioSender.remove(this);
+            }
             // Close the pool of sockets to this peer. This
             // will close all sockets in the pool.
             try {
@@ -108,6 +108,54 @@ public abstract class AbstractDataCacheInstrument extends AbstractInstrument imp
         return NO_STATS;
     }
 
+    @Override
+    public long getEvictionCount() {
+        CacheStatistics stats = getStatistics();
+        if (stats != null)
+            return stats.getEvictionCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public double getHitRatio() {
+        CacheStatistics stats = getStatistics();
+        if (stats != null)
+            return stats.getHitRatio();
+        return NO_STATS;
+    }
+
+    @Override
+    public double getTotalHitRatio() {
+        CacheStatistics stats = getStatistics();
+        if (stats != null)
+            return stats.getTotalHitRatio();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getByteCount() {
+        CacheStatistics stats = getStatistics();
+        if (stats != null)
+            return stats.getByteCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getOffHeapHitCount() {
+        CacheStatistics stats = getStatistics();
+        if (stats != null)
+            return stats.getOffHeapHitCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getOffHeapByteCount() {
+        CacheStatistics stats = getStatistics();
+        if (stats != null)
+            return stats.getOffHeapByteCount();
+        return NO_STATS;
+    }
+
     @Override
     public void reset() {
         CacheStatistics stats = getStatistics();
@@ -153,6 +153,8 @@ public abstract class AbstractQueryCacheInstrument extends AbstractInstrument
         QueryStatistics<QueryKey> stats = getStatistics();
         if (stats != null)
             stats.reset();
+        if (_qc instanceof AbstractQueryCache)
+            ((AbstractQueryCache) _qc).resetInvalidationStatistics();
     }
 
     @Override
@@ -231,6 +233,43 @@ public abstract class AbstractQueryCacheInstrument extends AbstractInstrument
         return NO_STATS;
     }
 
+    @Override
+    public long getInvalidationCount() {
+        if (_qc instanceof AbstractQueryCache)
+            return ((AbstractQueryCache) _qc).getInvalidationCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getInvalidationExaminedCount() {
+        if (_qc instanceof AbstractQueryCache)
+            return ((AbstractQueryCache) _qc).getInvalidationExaminedCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getInvalidatedCount() {
+        if (_qc instanceof AbstractQueryCache)
+            return ((AbstractQueryCache) _qc).getInvalidatedCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public long getInvalidationRetainedCount() {
+        if (_qc instanceof AbstractQueryCache)
+            return ((AbstractQueryCache) _qc).getInvalidationRetainedCount();
+        return NO_STATS;
+    }
+
+    @Override
+    public double getAverageInvalidationTime() {
+        if (!(_qc instanceof AbstractQueryCache))
+            return NO_STATS;
+        AbstractQueryCache aqc = (AbstractQueryCache) _qc;
+        long count = aqc.getInvalidationCount();
+        return (count == 0) ? 0 : aqc.getInvalidationTime() / 1000000D / count;
+    }
+
     @Override
     public InstrumentationLevel getLevel() {
         return InstrumentationLevel.FACTORY;
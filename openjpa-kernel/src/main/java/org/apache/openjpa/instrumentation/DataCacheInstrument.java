@@ -91,6 +91,67 @@ public interface DataCacheInstrument {
      */
     long getWriteCount();
 
+    /**
+     * Returns the number of entries evicted to make room for others since
+     * cache statistics were last reset, or -1 if evictions are not counted
+     *
+     * @since 3.2.1
+     */
+    default long getEvictionCount() {
+        return -1;
+    }
+
+    /**
+     * Returns the fraction of reads found in cache since cache statistics
+     * were last reset
+     *
+     * @since 3.2.1
+     */
+    default double getHitRatio() {
+        long reads = getReadCount();
+        return (reads == 0) ? 0 : (double) getHitCount() / reads;
+    }
+
+    /**
+     * Returns the fraction of reads found in cache since start.
+     *
+     * @since 3.2.1
+     */
+    default double getTotalHitRatio() {
+        long reads = getTotalReadCount();
+        return (reads == 0) ? 0 : (double) getTotalHitCount() / reads;
+    }
+
+    /**
+     * Returns the estimated number of bytes currently held by the cache, or
+     * -1 if the cache does not weigh its entries.
+     *
+     * @since 3.2.1
+     */
+    default long getByteCount() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of reads since start that missed the heap and were
+     * served by an off-heap tier, or -1 if the cache has no off-heap tier.
+     *
+     * @since 3.2.1
+     */
+    default long getOffHeapHitCount() {
+        return -1;
+    }
+
+    /**
+     * Returns the number of bytes currently held by an off-heap tier, or -1
+     * if the cache has no off-heap tier.
+     *
+     * @since 3.2.1
+     */
+    default long getOffHeapByteCount() {
+        return -1;
+    }
+
     /**
      * Resets cache statistics
      */
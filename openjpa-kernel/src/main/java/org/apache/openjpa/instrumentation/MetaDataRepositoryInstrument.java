@@ -0,0 +1,44 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation;
+
+/**
+ * Interface for providing instrumented data of the metadata repository.
+ *
+ * @since 3.2.1
+ */
+public interface MetaDataRepositoryInstrument {
+
+    /**
+     * Returns the wall-clock time in milliseconds the preload of the
+     * metadata took, or -1 if the repository was not preloaded.
+     */
+    long getPreloadTime();
+
+    /**
+     * Returns number of persistent classes loaded by the preload.
+     */
+    int getPreloadCount();
+
+    /**
+     * Returns whether the metadata of all persistent classes was loaded
+     * when the repository was initialized.
+     */
+    boolean isPreload();
+}
@@ -107,4 +107,35 @@ public interface QueryCacheInstrument {
      */
     long count();
 
+    /**
+     * Returns the number of commits that invalidated cached queries since
+     * last reset.
+     */
+    long getInvalidationCount();
+
+    /**
+     * Returns the number of cached queries examined by invalidations since
+     * last reset.
+     */
+    long getInvalidationExaminedCount();
+
+    /**
+     * Returns the number of cached queries removed by invalidations since
+     * last reset.
+     */
+    long getInvalidatedCount();
+
+    /**
+     * Returns the number of cached queries over changed types that
+     * invalidations kept since last reset, because the changed instances
+     * could not affect them.
+     */
+    long getInvalidationRetainedCount();
+
+    /**
+     * Returns the average time spent invalidating cached queries per
+     * commit since last reset, in milliseconds.
+     */
+    double getAverageInvalidationTime();
+
 }
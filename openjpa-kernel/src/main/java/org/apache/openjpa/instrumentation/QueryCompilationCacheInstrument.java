@@ -0,0 +1,73 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation;
+
+import java.util.Date;
+
+/**
+ * Interface for providing instrumented query compilation cache metrics
+ * and operations.
+ *
+ * @since 3.2.1
+ */
+public interface QueryCompilationCacheInstrument {
+
+    /**
+     * Returns number of lookups that found a compilation since start or
+     * last reset.
+     */
+    long getHitCount();
+
+    /**
+     * Returns number of lookups that found no compilation since start or
+     * last reset.
+     */
+    long getMissCount();
+
+    /**
+     * Returns number of compilations dropped to keep the cache within its
+     * size since start or last reset.
+     */
+    long getEvictionCount();
+
+    /**
+     * Returns the fraction of lookups that found a compilation.
+     */
+    double getHitRatio();
+
+    /**
+     * Returns number of compilations currently cached.
+     */
+    int getSize();
+
+    /**
+     * Returns the maximum number of compilations cached.
+     */
+    int getCacheSize();
+
+    /**
+     * Resets cache statistics
+     */
+    void reset();
+
+    /**
+     * Returns date since cache statistics collection were last reset.
+     */
+    Date statsResetSince();
+}
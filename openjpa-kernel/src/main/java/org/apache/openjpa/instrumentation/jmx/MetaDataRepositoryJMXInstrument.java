@@ -0,0 +1,140 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.instrumentation.jmx;
+
+import javax.management.ObjectName;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.instrumentation.AbstractInstrument;
+import org.apache.openjpa.lib.instrumentation.InstrumentationLevel;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * A JMX-specific instrument for the metadata repository, exposing the time
+ * its preload took.
+ *
+ * @since 3.2.1
+ */
+public class MetaDataRepositoryJMXInstrument extends AbstractInstrument
+    implements JMXInstrument, MetaDataRepositoryJMXInstrumentMBean {
+
+    private static Localizer _loc = Localizer.forPackage(MetaDataRepositoryJMXInstrument.class);
+
+    public static final long NO_STATS = -1;
+
+    private static final String MBEAN_TYPE = "MetaDataRepository";
+
+    private MetaDataRepository _repos;
+    private String _configID = null;
+    private String _configRef = null;
+    private ObjectName _objName = null;
+
+    @Override
+    public String getName() {
+        return MBEAN_TYPE;
+    }
+
+    @Override
+    public InstrumentationLevel getLevel() {
+        return InstrumentationLevel.FACTORY;
+    }
+
+    @Override
+    public void initialize() {
+        OpenJPAConfiguration conf = (OpenJPAConfiguration) getProvider().getConfiguration();
+        MetaDataRepository repos = conf.getMetaDataRepositoryInstance();
+
+        if (repos == null) {
+            throw new UserException(_loc.get("meta-data-repository-not-found"));
+        }
+
+        setMetaDataRepository(repos);
+        setConfigId(conf.getId());
+        setContextRef(Integer.toString(System.identityHashCode(getContext())));
+    }
+
+    public void setMetaDataRepository(MetaDataRepository repos) {
+        _repos = repos;
+    }
+
+    @Override
+    public void setConfigId(String cid) {
+        _configID = cid;
+    }
+
+    @Override
+    public void setContextRef(String cref) {
+        _configRef = cref;
+    }
+
+    @Override
+    public String getConfigId() {
+        return _configID;
+    }
+
+    @Override
+    public String getContextRef() {
+        return _configRef;
+    }
+
+    @Override
+    public long getPreloadTime() {
+        if (_repos == null)
+            return NO_STATS;
+        return _repos.getPreloadTime();
+    }
+
+    @Override
+    public int getPreloadCount() {
+        if (_repos == null)
+            return (int) NO_STATS;
+        return _repos.getPreloadCount();
+    }
+
+    @Override
+    public boolean isPreload() {
+        return _repos != null && _repos.getPreload();
+    }
+
+    @Override
+    public ObjectName getObjectName() {
+        if (_objName != null) {
+            return _objName;
+        }
+
+        try {
+            _objName = JMXProvider.createObjectName(this, null);
+            return _objName;
+        } catch (Throwable t) {
+            throw new UserException(_loc.get("unable-to-create-object-name", getName()), t);
+        }
+    }
+
+    @Override
+    public void start() {
+        getProvider().startInstrument(this);
+    }
+
+    @Override
+    public void stop() {
+        getProvider().stopInstrument(this);
+    }
+}
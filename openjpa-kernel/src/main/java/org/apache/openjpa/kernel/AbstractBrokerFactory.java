@@ -398,6 +398,15 @@ public abstract class AbstractBrokerFactory implements BrokerFactory {
                     broker.close();
             }
 
+            // keep the compiled queries for the next factory; failing to
+            // store them must not keep the factory from closing
+            try {
+                QueryCacheSnapshot.store(_conf);
+            } catch (RuntimeException re) {
+                _conf.getLog(OpenJPAConfiguration.LOG_RUNTIME).warn(
+                    _loc.get("query-snapshot-store-failed", re), re);
+            }
+
             if(_conf.metaDataRepositoryAvailable()) {
                 // remove metadata repository from listener list
                 PCRegistry.removeRegisterClassListener
@@ -907,6 +916,9 @@ public abstract class AbstractBrokerFactory implements BrokerFactory {
             mdr.preload();
         }
 
+        // compile the queries of the last run before serving brokers
+        QueryCacheSnapshot.load(this);
+
         // Get a DataCacheManager instance up front to avoid threading concerns on first call.
         // _conf.getDataCacheManagerInstance();
 
@@ -46,6 +46,7 @@ import javax.transaction.Synchronization;
 
 import org.apache.openjpa.conf.Compatibility;
 import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.datacache.AbstractQueryCache;
 import org.apache.openjpa.datacache.DataCache;
 import org.apache.openjpa.datacache.QueryCache;
 import org.apache.openjpa.datacache.TypesChangedEvent;
@@ -202,6 +203,8 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
     private Set<Class<?>> _persistedClss = null;
     private Set<Class<?>> _updatedClss = null;
     private Set<Class<?>> _deletedClss = null;
+    // types dirtied through dirtyType, as by bulk updates
+    private Set<Class<?>> _dirtiedClss = null;
     private Set<StateManagerImpl> _pending = null;
     private int findAllDepth = 0;
 
@@ -1553,7 +1556,8 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
                             types.addAll(pers);
                             types.addAll(del);
                             types.addAll(up);
-                            queryCache.onTypesChanged(new TypesChangedEvent(this, types));
+                            queryCache.onTypesChanged(new TypesChangedEvent(this, types,
+                                getChangedStates(queryCache, types)));
                         }
                     }
                     _store.commit();
@@ -2216,8 +2220,14 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
      */
     protected void flush(int reason) {
         // this will enlist proxied states as necessary so we know whether we
-        // have anything to flush
-        Collection transactional = getTransactionalStates();
+        // have anything to flush; an intermediate flush only visits the
+        // instances with changes or version checks to flush, unless flush
+        // listeners are handed all transactional instances
+        Collection transactional;
+        if (reason == FLUSH_INC && !_transEventManager.hasFlushListeners())
+            transactional = getFlushCandidates();
+        else
+            transactional = getTransactionalStates();
 
         // do we actually have to flush?  only if our flags say so, or if
         // we have transaction listeners that need to be invoked for commit
@@ -2524,6 +2534,8 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
             _updatedClss = null;
         if (_deletedClss != null)
             _deletedClss = null;
+        if (_dirtiedClss != null)
+            _dirtiedClss = null;
 
         // new cache would get cleared anyway during transitions, but doing so
         // immediately saves us some lookups
@@ -3828,6 +3840,7 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
             if (sm != null && sm.isPersistent()) {
                 assertActiveTransaction();
                 sm.transactional();
+                addVersionCheck(sm);
                 sm.load(_fc, StateManagerImpl.LOAD_FGS, null, null, false);
                 sm.setCheckVersion(true);
                 if (updateVersion)
@@ -3865,6 +3878,7 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
 
             try {
                 sm.transactional();
+                addVersionCheck(sm);
                 sm.load(_fc, StateManagerImpl.LOAD_FGS, null, null, false);
             }
             catch (OpenJPAException ke) {
@@ -4253,6 +4267,47 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         return _cache.copy();
     }
 
+    /**
+     * Return the state managers of the instances changed by this
+     * transaction if the given query cache uses them to decide which
+     * results remain valid and they account for all changes to the given
+     * types, or null otherwise.
+     */
+    private Collection<OpenJPAStateManager> getChangedStates(QueryCache cache,
+        Collection<Class<?>> types) {
+        if (!(cache instanceof AbstractQueryCache) || ((AbstractQueryCache)
+            cache).getEvictPolicy() != AbstractQueryCache.EvictPolicy.PREDICATE)
+            return null;
+        return getChangedStates(getTransactionalStates(), types, _dirtiedClss);
+    }
+
+    /**
+     * Return the changed ones of the given transactional state managers if
+     * they account for all changes to the given types, or null if some of
+     * these types changed in ways the instances do not show: types dirtied
+     * through {@link #dirtyType}, as by bulk updates, or types without a
+     * changed instance.
+     */
+    static Collection<OpenJPAStateManager> getChangedStates(
+        Collection<? extends OpenJPAStateManager> transStates,
+        Collection<Class<?>> types, Collection<Class<?>> dirtied) {
+        if (dirtied != null) {
+            for (Class<?> type : types)
+                if (dirtied.contains(type))
+                    return null;
+        }
+
+        Collection<OpenJPAStateManager> changed = new ArrayList<>();
+        Set<Class<?>> changedTypes = new HashSet<>();
+        for (OpenJPAStateManager sm : transStates) {
+            if (sm.isNew() || sm.isDeleted() || sm.isDirty()) {
+                changed.add(sm);
+                changedTypes.add(sm.getMetaData().getDescribedType());
+            }
+        }
+        return changedTypes.containsAll(types) ? changed : null;
+    }
+
     /**
      * Return a copy of all transactional state managers.
      */
@@ -4274,6 +4329,34 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         return _transCache != null;
     }
 
+    /**
+     * Return a copy of the state managers an intermediate flush has to
+     * visit: the dirty ones and the clean ones with a version check.
+     *
+     * @since 3.2.1
+     */
+    protected Collection<StateManagerImpl> getFlushCandidates() {
+        if (!hasTransactionalObjects()) {
+            // return a new empty set. Entities may be added by TransactionListeners
+            return new LinkedHashSet<>();
+        }
+        return _transCache.copyFlushCandidates();
+    }
+
+    /**
+     * Record that the given instance has been made transactional to check
+     * or update its version on flush.
+     */
+    private void addVersionCheck(StateManagerImpl sm) {
+        lock();
+        try {
+            if (_transCache != null && sm.isTransactional())
+                _transCache.addVersionCheck(sm);
+        } finally {
+            unlock();
+        }
+    }
+
     /**
      * Return a copy of all dirty state managers.
      */
@@ -4510,6 +4593,9 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
             if (_updatedClss == null)
                 _updatedClss = new HashSet<>();
             _updatedClss.add(cls);
+            if (_dirtiedClss == null)
+                _dirtiedClss = new HashSet<>();
+            _dirtiedClss.add(cls);
         } finally {
             endOperation();
         }
@@ -4589,6 +4675,7 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         _persistedClss = null;
         _updatedClss = null;
         _deletedClss = null;
+        _dirtiedClss = null;
         _derefCache = null;
         _pending = null;
         _loader = null;
@@ -5040,6 +5127,8 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
         private final boolean _orderDirty;
         private Set<StateManagerImpl> _dirty = null;
         private Set<StateManagerImpl> _clean = null;
+        // clean instances made transactional to check or update their version
+        private Set<StateManagerImpl> _versioned = null;
 
         public TransactionalCache(boolean orderDirty) {
             _orderDirty = orderDirty;
@@ -5078,6 +5167,50 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
             return new LinkedHashSet<>(_dirty);
         }
 
+        /**
+         * Return a copy of the dirty state managers and of the clean ones
+         * that still have to check or update their version on flush. The
+         * clean state managers that do not are not visited by intermediate
+         * flushes.
+         */
+        public Collection copyFlushCandidates() {
+            int size = 0;
+            if (_dirty != null)
+                size += _dirty.size();
+            if (_versioned != null)
+                size += _versioned.size();
+            if (size == 0)
+                return new LinkedHashSet();
+
+            Set copy = new LinkedHashSet(size);
+            if (_dirty != null)
+                copy.addAll(_dirty);
+            if (_versioned != null) {
+                StateManagerImpl sm;
+                for (Iterator<StateManagerImpl> itr = _versioned.iterator();
+                    itr.hasNext();) {
+                    sm = itr.next();
+                    // flushing clears the version flags
+                    if (sm.isVersionCheckRequired()
+                        || sm.isVersionUpdateRequired())
+                        copy.add(sm);
+                    else
+                        itr.remove();
+                }
+            }
+            return copy;
+        }
+
+        /**
+         * Add the given transactional instance to the instances checking or
+         * updating their version on flush.
+         */
+        public void addVersionCheck(StateManagerImpl sm) {
+            if (_versioned == null)
+                _versioned = new HashSet<>();
+            _versioned.add(sm);
+        }
+
         /**
          * Transfer the given instance from the dirty cache to the clean cache.
          */
@@ -5118,6 +5251,8 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
          * Remove the given instance from the cache.
          */
         public boolean remove(StateManagerImpl sm) {
+            if (_versioned != null)
+                _versioned.remove(sm);
             return removeCleanInternal(sm)
                 || (_dirty != null && _dirty.remove(sm));
         }
@@ -5156,6 +5291,7 @@ public class BrokerImpl implements Broker, FindCallbacks, Cloneable, Serializabl
                 _dirty = null;
             if (_clean != null)
                 _clean = null;
+            _versioned = null;
         }
 
         @Override
@@ -613,6 +613,15 @@ public class DelegatingQuery
         }
     }
 
+    @Override
+    public KeysetToken getKeysetToken(Object result) {
+        try {
+            return _query.getKeysetToken(result);
+        } catch (RuntimeException re) {
+            throw translate(re);
+        }
+    }
+
     @Override
     public long deleteAll() {
         try {
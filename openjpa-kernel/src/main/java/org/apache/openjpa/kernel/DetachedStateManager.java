@@ -81,7 +81,7 @@ public class DetachedStateManager
         _loaded = load;
         _access = access;
         if (!sm.isFlushed())
-            _dirty = (BitSet) sm.getDirty().clone();
+            _dirty = sm.getDirty();
         else
             _dirty = new BitSet(_loaded.length());
         _oid = sm.fetchObjectId();
@@ -181,14 +181,13 @@ public class DetachedStateManager
         Object origVersion = sm.getVersion();
         sm.setVersion(_version);
 
-        BitSet loaded = sm.getLoaded();
         int set = StateManager.SET_ATTACH;
         sm.setPostLoadCallback(false);
         for (int i = 0; i < fields.length; i++) {
             if (!_loaded.get(i))
                 continue;
             // don't reload already loaded non-mutable objects
-            if (!_dirty.get(i) && loaded.get(i) && ignoreLoaded(fields[i]))
+            if (!_dirty.get(i) && sm.isFieldLoaded(i) && ignoreLoaded(fields[i]))
                 continue;
 
             provideField(i);
@@ -196,35 +195,35 @@ public class DetachedStateManager
                 case JavaTypes.BOOLEAN:
                     if (_dirty.get(i))
                         sm.settingBooleanField(pc, i,
-                            (loaded.get(i)) && sm.fetchBooleanField(i),
+                            (sm.isFieldLoaded(i)) && sm.fetchBooleanField(i),
                             longval == 1, set);
                     else
                         sm.storeBooleanField(i, longval == 1);
                     break;
                 case JavaTypes.BYTE:
                     if (_dirty.get(i))
-                        sm.settingByteField(pc, i, (!loaded.get(i)) ? (byte) 0
+                        sm.settingByteField(pc, i, (!sm.isFieldLoaded(i)) ? (byte) 0
                             : sm.fetchByteField(i), (byte) longval, set);
                     else
                         sm.storeByteField(i, (byte) longval);
                     break;
                 case JavaTypes.CHAR:
                     if (_dirty.get(i))
-                        sm.settingCharField(pc, i, (!loaded.get(i)) ? (char) 0
+                        sm.settingCharField(pc, i, (!sm.isFieldLoaded(i)) ? (char) 0
                             : sm.fetchCharField(i), (char) longval, set);
                     else
                         sm.storeCharField(i, (char) longval);
                     break;
                 case JavaTypes.INT:
                     if (_dirty.get(i))
-                        sm.settingIntField(pc, i, (!loaded.get(i)) ? 0
+                        sm.settingIntField(pc, i, (!sm.isFieldLoaded(i)) ? 0
                             : sm.fetchIntField(i), (int) longval, set);
                     else
                         sm.storeIntField(i, (int) longval);
                     break;
                 case JavaTypes.LONG:
                     if (_dirty.get(i))
-                        sm.settingLongField(pc, i, (!loaded.get(i)) ? 0L
+                        sm.settingLongField(pc, i, (!sm.isFieldLoaded(i)) ? 0L
                             : sm.fetchLongField(i), longval, set);
                     else
                         sm.storeLongField(i, longval);
@@ -232,27 +231,27 @@ public class DetachedStateManager
                 case JavaTypes.SHORT:
                     if (_dirty.get(i))
                         sm.settingShortField(pc, i,
-                            (!loaded.get(i)) ? (short) 0 : sm.fetchShortField(i), (short) longval, set);
+                            (!sm.isFieldLoaded(i)) ? (short) 0 : sm.fetchShortField(i), (short) longval, set);
                     else
                         sm.storeShortField(i, (short) longval);
                     break;
                 case JavaTypes.FLOAT:
                     if (_dirty.get(i))
-                        sm.settingFloatField(pc, i, (!loaded.get(i)) ? 0F
+                        sm.settingFloatField(pc, i, (!sm.isFieldLoaded(i)) ? 0F
                             : sm.fetchFloatField(i), (float) dblval, set);
                     else
                         sm.storeFloatField(i, (float) dblval);
                     break;
                 case JavaTypes.DOUBLE:
                     if (_dirty.get(i))
-                        sm.settingDoubleField(pc, i, (!loaded.get(i)) ? 0D
+                        sm.settingDoubleField(pc, i, (!sm.isFieldLoaded(i)) ? 0D
                             : sm.fetchDoubleField(i), dblval, set);
                     else
                         sm.storeDoubleField(i, dblval);
                     break;
                 case JavaTypes.STRING:
                     if (_dirty.get(i))
-                        sm.settingStringField(pc, i, (!loaded.get(i)) ? null
+                        sm.settingStringField(pc, i, (!sm.isFieldLoaded(i)) ? null
                             : sm.fetchStringField(i), (String) objval, set);
                     else
                         sm.storeStringField(i, (String) objval);
@@ -279,7 +278,7 @@ public class DetachedStateManager
                             false);
                     }
                     if (_dirty.get(i))
-                        sm.settingObjectField(pc, i, (!loaded.get(i)) ? null
+                        sm.settingObjectField(pc, i, (!sm.isFieldLoaded(i)) ? null
                             : sm.fetchObjectField(i), objval, set);
                     else
                         sm.storeObjectField(i, objval);
@@ -291,7 +290,7 @@ public class DetachedStateManager
                     if (coll != null)
                         coll = attachCollection(manager, coll, sm, fields[i]);
                     if (_dirty.get(i))
-                        sm.settingObjectField(pc, i, (!loaded.get(i)) ? null
+                        sm.settingObjectField(pc, i, (!sm.isFieldLoaded(i)) ? null
                             : sm.fetchObjectField(i), coll, set);
                     else
                         sm.storeObjectField(i, coll);
@@ -302,14 +301,14 @@ public class DetachedStateManager
                     if (map != null)
                         map = attachMap(manager, map, sm, fields[i]);
                     if (_dirty.get(i))
-                        sm.settingObjectField(pc, i, (!loaded.get(i)) ? null
+                        sm.settingObjectField(pc, i, (!sm.isFieldLoaded(i)) ? null
                             : sm.fetchObjectField(i), map, set);
                     else
                         sm.storeObjectField(i, map);
                     break;
                 default:
                     if (_dirty.get(i))
-                        sm.settingObjectField(pc, i, (!loaded.get(i)) ? null
+                        sm.settingObjectField(pc, i, (!sm.isFieldLoaded(i)) ? null
                             : sm.fetchObjectField(i), objval, set);
                     else
                         sm.storeObjectField(i, objval);
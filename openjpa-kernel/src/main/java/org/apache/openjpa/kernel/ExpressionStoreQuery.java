@@ -47,6 +47,7 @@ import org.apache.openjpa.kernel.exps.Subquery;
 import org.apache.openjpa.kernel.exps.Val;
 import org.apache.openjpa.kernel.exps.Value;
 import org.apache.openjpa.kernel.exps.WildcardMatch;
+import org.apache.openjpa.lib.log.Log;
 import org.apache.openjpa.lib.rop.ListResultObjectProvider;
 import org.apache.openjpa.lib.rop.RangeResultObjectProvider;
 import org.apache.openjpa.lib.rop.ResultObjectProvider;
@@ -57,6 +58,7 @@ import org.apache.openjpa.meta.FieldMetaData;
 import org.apache.openjpa.meta.JavaTypes;
 import org.apache.openjpa.util.ImplHelper;
 import org.apache.openjpa.util.InvalidStateException;
+import org.apache.openjpa.util.OpenJPAException;
 import org.apache.openjpa.util.UnsupportedException;
 import org.apache.openjpa.util.UserException;
 
@@ -642,6 +644,27 @@ public class ExpressionStoreQuery
                 for (int i = 0; i < _exps[0].grouping.length; i++)
                     _exps[0].grouping[i].acceptVisit(novars);
             }
+
+            OpenJPAConfiguration conf = q.getContext().getStoreContext()
+                .getConfiguration();
+            if (conf.getCompileInMemoryQueries())
+                compile(q, conf.getLog(OpenJPAConfiguration.LOG_QUERY));
+        }
+
+        /**
+         * Compile the filter, falling back on interpreting it if the
+         * compilation fails.
+         */
+        private void compile(ExpressionStoreQuery q, Log log) {
+            try {
+                if (_factory.compile(_exps[0]) && log.isTraceEnabled())
+                    log.trace(_loc.get("inmem-filter-compiled",
+                        q.getContext().getQueryString()));
+            } catch (OpenJPAException ke) {
+                if (log.isWarnEnabled())
+                    log.warn(_loc.get("inmem-filter-not-compiled",
+                        q.getContext().getQueryString()), ke);
+            }
         }
 
         @Override
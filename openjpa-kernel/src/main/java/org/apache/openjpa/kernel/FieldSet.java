@@ -0,0 +1,306 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.io.Serializable;
+import java.util.Arrays;
+import java.util.BitSet;
+
+/**
+ * Compact set of field indexes, used by state managers to track their
+ * loaded, dirty, flushed and delayed fields. The indexes of the first 64
+ * fields are held in a single <code>long</code>, so that the field sets of
+ * the instances of most types are a single object without an array; the
+ * indexes of further fields are held in an array allocated on demand.
+ * The methods mirror those of {@link BitSet}.
+ *
+ * @since 3.2.1
+ */
+public final class FieldSet
+    implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    // indexes 0 to 63
+    private long _bits = 0L;
+
+    // indexes from 64 on, 64 per word
+    private long[] _words = null;
+
+    /**
+     * Create an empty set.
+     */
+    public FieldSet() {
+    }
+
+    /**
+     * Create an empty set sized for the given number of fields.
+     */
+    public FieldSet(int fields) {
+        if (fields > 64)
+            _words = new long[(fields - 1) >> 6];
+    }
+
+    private FieldSet(long bits, long[] words) {
+        _bits = bits;
+        _words = words;
+    }
+
+    /**
+     * Return a set of the indexes set in the given bit set.
+     */
+    public static FieldSet valueOf(BitSet bits) {
+        if (bits == null)
+            return null;
+        long[] words = bits.toLongArray();
+        if (words.length == 0)
+            return new FieldSet();
+        if (words.length == 1)
+            return new FieldSet(words[0], null);
+        return new FieldSet(words[0], Arrays.copyOfRange(words, 1,
+            words.length));
+    }
+
+    /**
+     * Return whether the given index is set.
+     */
+    public boolean get(int index) {
+        if (index < 64)
+            return (_bits & (1L << index)) != 0;
+        int word = (index >> 6) - 1;
+        return _words != null && word < _words.length
+            && (_words[word] & (1L << index)) != 0;
+    }
+
+    /**
+     * Set the given index.
+     */
+    public void set(int index) {
+        if (index < 64)
+            _bits |= 1L << index;
+        else {
+            // grow the array before dereferencing it
+            int word = ensureWord(index);
+            _words[word] |= 1L << index;
+        }
+    }
+
+    /**
+     * Set or clear the given index.
+     */
+    public void set(int index, boolean value) {
+        if (value)
+            set(index);
+        else
+            clear(index);
+    }
+
+    /**
+     * Clear the given index.
+     */
+    public void clear(int index) {
+        if (index < 64)
+            _bits &= ~(1L << index);
+        else {
+            int word = (index >> 6) - 1;
+            if (_words != null && word < _words.length)
+                _words[word] &= ~(1L << index);
+        }
+    }
+
+    /**
+     * Clear all indexes.
+     */
+    public void clear() {
+        _bits = 0L;
+        if (_words != null)
+            Arrays.fill(_words, 0L);
+    }
+
+    /**
+     * Return whether no index is set.
+     */
+    public boolean isEmpty() {
+        if (_bits != 0L)
+            return false;
+        if (_words != null)
+            for (long word : _words)
+                if (word != 0L)
+                    return false;
+        return true;
+    }
+
+    /**
+     * Return the highest set index plus one, or 0 if the set is empty.
+     */
+    public int length() {
+        if (_words != null)
+            for (int i = _words.length - 1; i >= 0; i--)
+                if (_words[i] != 0L)
+                    return ((i + 2) << 6)
+                        - Long.numberOfLeadingZeros(_words[i]);
+        return 64 - Long.numberOfLeadingZeros(_bits);
+    }
+
+    /**
+     * Return the number of set indexes.
+     */
+    public int cardinality() {
+        int count = Long.bitCount(_bits);
+        if (_words != null)
+            for (long word : _words)
+                count += Long.bitCount(word);
+        return count;
+    }
+
+    /**
+     * Return the first set index at or after the given index, or -1 if
+     * there is none.
+     */
+    public int nextSetBit(int from) {
+        if (from < 64) {
+            long bits = _bits & (-1L << from);
+            if (bits != 0L)
+                return Long.numberOfTrailingZeros(bits);
+            from = 64;
+        }
+        if (_words == null)
+            return -1;
+        int word = (from >> 6) - 1;
+        if (word >= _words.length)
+            return -1;
+        long bits = _words[word] & (-1L << from);
+        while (true) {
+            if (bits != 0L)
+                return ((word + 1) << 6) + Long.numberOfTrailingZeros(bits);
+            if (++word == _words.length)
+                return -1;
+            bits = _words[word];
+        }
+    }
+
+    /**
+     * Set the indexes set in the given set.
+     */
+    public void or(FieldSet set) {
+        _bits |= set._bits;
+        if (set._words != null) {
+            for (int i = set._words.length - 1; i >= 0; i--) {
+                if (set._words[i] != 0L) {
+                    ensureWord((i + 1) << 6);
+                    _words[i] |= set._words[i];
+                }
+            }
+        }
+    }
+
+    /**
+     * Clear the indexes set in the given set.
+     */
+    public void andNot(FieldSet set) {
+        _bits &= ~set._bits;
+        if (_words != null && set._words != null)
+            for (int i = Math.min(_words.length, set._words.length) - 1;
+                i >= 0; i--)
+                _words[i] &= ~set._words[i];
+    }
+
+    /**
+     * Clear the indexes set in the given bit set.
+     */
+    public void andNot(BitSet set) {
+        for (int i = set.nextSetBit(0); i >= 0; i = set.nextSetBit(i + 1))
+            clear(i);
+    }
+
+    /**
+     * Return a copy of this set.
+     */
+    public FieldSet copy() {
+        return new FieldSet(_bits, (_words == null) ? null : _words.clone());
+    }
+
+    /**
+     * Return a bit set of the set indexes.
+     */
+    public BitSet toBitSet() {
+        if (_words == null)
+            return BitSet.valueOf(new long[]{ _bits });
+        long[] words = new long[_words.length + 1];
+        words[0] = _bits;
+        System.arraycopy(_words, 0, words, 1, _words.length);
+        return BitSet.valueOf(words);
+    }
+
+    /**
+     * Return the index of the word holding the given index in the array,
+     * growing the array as needed.
+     */
+    private int ensureWord(int index) {
+        int word = (index >> 6) - 1;
+        if (_words == null)
+            _words = new long[word + 1];
+        else if (word >= _words.length)
+            _words = Arrays.copyOf(_words, Math.max(word + 1,
+                _words.length * 2));
+        return word;
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this)
+            return true;
+        if (!(other instanceof FieldSet))
+            return false;
+        FieldSet set = (FieldSet) other;
+        if (_bits != set._bits)
+            return false;
+        int len = Math.max(wordCount(), set.wordCount());
+        for (int i = 0; i < len; i++)
+            if (word(i) != set.word(i))
+                return false;
+        return true;
+    }
+
+    @Override
+    public int hashCode() {
+        long hash = _bits;
+        for (int i = 0, len = wordCount(); i < len; i++)
+            hash ^= word(i) * (i + 2);
+        return (int) ((hash >> 32) ^ hash);
+    }
+
+    private int wordCount() {
+        if (_words == null)
+            return 0;
+        int len = _words.length;
+        while (len > 0 && _words[len - 1] == 0L)
+            len--;
+        return len;
+    }
+
+    private long word(int i) {
+        return (_words != null && i < _words.length) ? _words[i] : 0L;
+    }
+
+    @Override
+    public String toString() {
+        return toBitSet().toString();
+    }
+}
@@ -0,0 +1,348 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.Serializable;
+import java.math.BigDecimal;
+import java.math.BigInteger;
+import java.sql.Time;
+import java.sql.Timestamp;
+import java.time.Instant;
+import java.time.LocalDate;
+import java.time.LocalDateTime;
+import java.time.LocalTime;
+import java.time.OffsetDateTime;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.Date;
+import java.util.UUID;
+
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.util.UserException;
+
+/**
+ * Continuation token of keyset pagination: the ordering values of the last
+ * result of a page. Executing the same query with the
+ * {@link QueryHints#HINT_KEYSET_AFTER} hint set to this token returns the
+ * results ordered after that result, which the datastore finds by seeking
+ * on its ordering rather than by skipping all the previous results.
+ * The token can be passed around in its opaque {@link #encode encoded}
+ * form, which only holds simple values so that it can safely be decoded
+ * from untrusted input.
+ *
+ * @since 3.2.1
+ */
+public class KeysetToken implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Localizer _loc = Localizer.forPackage
+        (KeysetToken.class);
+
+    private static final byte VERSION = 1;
+
+    private static final byte NULL = 0;
+    private static final byte STRING = 1;
+    private static final byte BOOLEAN = 2;
+    private static final byte CHAR = 3;
+    private static final byte BYTE = 4;
+    private static final byte SHORT = 5;
+    private static final byte INT = 6;
+    private static final byte LONG = 7;
+    private static final byte FLOAT = 8;
+    private static final byte DOUBLE = 9;
+    private static final byte BIGINTEGER = 10;
+    private static final byte BIGDECIMAL = 11;
+    private static final byte DATE = 12;
+    private static final byte SQL_DATE = 13;
+    private static final byte SQL_TIME = 14;
+    private static final byte SQL_TIMESTAMP = 15;
+    private static final byte LOCAL_DATE = 16;
+    private static final byte LOCAL_TIME = 17;
+    private static final byte LOCAL_DATETIME = 18;
+    private static final byte OFFSET_DATETIME = 19;
+    private static final byte INSTANT = 20;
+    private static final byte UUID_VALUE = 21;
+    private static final byte ENUM = 22;
+
+    private final int _queryHash;
+    private final Object[] _values;
+
+    /**
+     * Constructor.
+     *
+     * @param query the string of the query the token continues
+     * @param values the ordering values of the last result of the page
+     */
+    public KeysetToken(String query, Object[] values) {
+        this(hash(query), values.clone());
+    }
+
+    private KeysetToken(int queryHash, Object[] values) {
+        _queryHash = queryHash;
+        _values = values;
+    }
+
+    /**
+     * The ordering values of the last result of the page, in the order of
+     * the ordering clauses of the query.
+     */
+    public Object[] getValues() {
+        return _values.clone();
+    }
+
+    /**
+     * Whether this token continues the query with the given string.
+     */
+    public boolean isTokenOf(String query) {
+        return _queryHash == hash(query);
+    }
+
+    private static int hash(String query) {
+        return (query == null) ? 0 : query.hashCode();
+    }
+
+    /**
+     * Return the given hint value as a token, decoding it if it is a string.
+     * Returns null for a null or empty hint.
+     */
+    public static KeysetToken valueOf(Object hint, ClassLoader loader) {
+        if (hint == null || hint instanceof KeysetToken)
+            return (KeysetToken) hint;
+        if (hint instanceof String) {
+            String str = (String) hint;
+            return (str.isEmpty()) ? null : decode(str, loader);
+        }
+        throw new UserException(_loc.get("keyset-bad-token", hint));
+    }
+
+    /**
+     * Return the opaque string form of this token.
+     */
+    public String encode() {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (DataOutputStream out = new DataOutputStream(bytes)) {
+            out.writeByte(VERSION);
+            out.writeInt(_queryHash);
+            out.writeInt(_values.length);
+            for (Object value : _values)
+                writeValue(out, value);
+        } catch (IOException ioe) {
+            throw new UserException(_loc.get("keyset-bad-value",
+                Arrays.toString(_values)), ioe);
+        }
+        return Base64.getUrlEncoder().withoutPadding().encodeToString(
+            bytes.toByteArray());
+    }
+
+    /**
+     * Decode the given token string.
+     *
+     * @param loader the loader of enum types, or null for the loader of
+     * this class
+     * @throws UserException if the string is not a valid token
+     */
+    public static KeysetToken decode(String token, ClassLoader loader) {
+        try (DataInputStream in = new DataInputStream(new ByteArrayInputStream(
+            Base64.getUrlDecoder().decode(token)))) {
+            if (in.readByte() != VERSION)
+                throw new UserException(_loc.get("keyset-bad-token", token));
+            int queryHash = in.readInt();
+            int size = in.readInt();
+            if (size < 0 || size > in.available())
+                throw new UserException(_loc.get("keyset-bad-token", token));
+            Object[] values = new Object[size];
+            for (int i = 0; i < size; i++)
+                values[i] = readValue(in, loader);
+            if (in.available() > 0)
+                throw new UserException(_loc.get("keyset-bad-token", token));
+            return new KeysetToken(queryHash, values);
+        } catch (UserException ue) {
+            throw ue;
+        } catch (Exception e) {
+            throw new UserException(_loc.get("keyset-bad-token", token), e);
+        }
+    }
+
+    private static void writeValue(DataOutputStream out, Object value)
+        throws IOException {
+        // test subclasses before their superclasses
+        if (value == null) {
+            out.writeByte(NULL);
+        } else if (value instanceof String) {
+            out.writeByte(STRING);
+            out.writeUTF((String) value);
+        } else if (value instanceof Boolean) {
+            out.writeByte(BOOLEAN);
+            out.writeBoolean((Boolean) value);
+        } else if (value instanceof Character) {
+            out.writeByte(CHAR);
+            out.writeChar((Character) value);
+        } else if (value instanceof Byte) {
+            out.writeByte(BYTE);
+            out.writeByte((Byte) value);
+        } else if (value instanceof Short) {
+            out.writeByte(SHORT);
+            out.writeShort((Short) value);
+        } else if (value instanceof Integer) {
+            out.writeByte(INT);
+            out.writeInt((Integer) value);
+        } else if (value instanceof Long) {
+            out.writeByte(LONG);
+            out.writeLong((Long) value);
+        } else if (value instanceof Float) {
+            out.writeByte(FLOAT);
+            out.writeFloat((Float) value);
+        } else if (value instanceof Double) {
+            out.writeByte(DOUBLE);
+            out.writeDouble((Double) value);
+        } else if (value instanceof BigInteger) {
+            out.writeByte(BIGINTEGER);
+            out.writeUTF(value.toString());
+        } else if (value instanceof BigDecimal) {
+            out.writeByte(BIGDECIMAL);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Timestamp) {
+            out.writeByte(SQL_TIMESTAMP);
+            out.writeLong(((Timestamp) value).getTime());
+            out.writeInt(((Timestamp) value).getNanos());
+        } else if (value instanceof Time) {
+            out.writeByte(SQL_TIME);
+            out.writeLong(((Time) value).getTime());
+        } else if (value instanceof java.sql.Date) {
+            out.writeByte(SQL_DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof Date) {
+            out.writeByte(DATE);
+            out.writeLong(((Date) value).getTime());
+        } else if (value instanceof LocalDate) {
+            out.writeByte(LOCAL_DATE);
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalTime) {
+            out.writeByte(LOCAL_TIME);
+            out.writeUTF(value.toString());
+        } else if (value instanceof LocalDateTime) {
+            out.writeByte(LOCAL_DATETIME);
+            out.writeUTF(value.toString());
+        } else if (value instanceof OffsetDateTime) {
+            out.writeByte(OFFSET_DATETIME);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Instant) {
+            out.writeByte(INSTANT);
+            out.writeUTF(value.toString());
+        } else if (value instanceof UUID) {
+            out.writeByte(UUID_VALUE);
+            out.writeUTF(value.toString());
+        } else if (value instanceof Enum) {
+            out.writeByte(ENUM);
+            out.writeUTF(((Enum<?>) value).getDeclaringClass().getName());
+            out.writeUTF(((Enum<?>) value).name());
+        } else
+            throw new UserException(_loc.get("keyset-bad-value", value));
+    }
+
+    @SuppressWarnings({ "unchecked", "rawtypes" })
+    private static Object readValue(DataInputStream in, ClassLoader loader)
+        throws IOException, ClassNotFoundException {
+        byte type = in.readByte();
+        switch (type) {
+            case NULL:
+                return null;
+            case STRING:
+                return in.readUTF();
+            case BOOLEAN:
+                return in.readBoolean();
+            case CHAR:
+                return in.readChar();
+            case BYTE:
+                return in.readByte();
+            case SHORT:
+                return in.readShort();
+            case INT:
+                return in.readInt();
+            case LONG:
+                return in.readLong();
+            case FLOAT:
+                return in.readFloat();
+            case DOUBLE:
+                return in.readDouble();
+            case BIGINTEGER:
+                return new BigInteger(in.readUTF());
+            case BIGDECIMAL:
+                return new BigDecimal(in.readUTF());
+            case DATE:
+                return new Date(in.readLong());
+            case SQL_DATE:
+                return new java.sql.Date(in.readLong());
+            case SQL_TIME:
+                return new Time(in.readLong());
+            case SQL_TIMESTAMP:
+                Timestamp ts = new Timestamp(in.readLong());
+                ts.setNanos(in.readInt());
+                return ts;
+            case LOCAL_DATE:
+                return LocalDate.parse(in.readUTF());
+            case LOCAL_TIME:
+                return LocalTime.parse(in.readUTF());
+            case LOCAL_DATETIME:
+                return LocalDateTime.parse(in.readUTF());
+            case OFFSET_DATETIME:
+                return OffsetDateTime.parse(in.readUTF());
+            case INSTANT:
+                return Instant.parse(in.readUTF());
+            case UUID_VALUE:
+                return UUID.fromString(in.readUTF());
+            case ENUM:
+                // only initialize the class once known to be an enum
+                Class cls = Class.forName(in.readUTF(), false, (loader == null)
+                    ? KeysetToken.class.getClassLoader() : loader);
+                if (!cls.isEnum())
+                    throw new IOException(cls.getName());
+                return Enum.valueOf(cls, in.readUTF());
+            default:
+                throw new IOException(String.valueOf(type));
+        }
+    }
+
+    @Override
+    public boolean equals(Object other) {
+        if (other == this)
+            return true;
+        if (!(other instanceof KeysetToken))
+            return false;
+        KeysetToken token = (KeysetToken) other;
+        return _queryHash == token._queryHash
+            && Arrays.equals(_values, token._values);
+    }
+
+    @Override
+    public int hashCode() {
+        return 31 * _queryHash + Arrays.hashCode(_values);
+    }
+
+    @Override
+    public String toString() {
+        return "KeysetToken" + Arrays.toString(_values);
+    }
+}
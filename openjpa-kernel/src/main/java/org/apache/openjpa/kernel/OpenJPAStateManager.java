@@ -134,17 +134,70 @@ public interface OpenJPAStateManager
      */
     BitSet getLoaded();
 
+    /**
+     * Return whether the given field is loaded. Prefer this method over
+     * {@link #getLoaded} to test single fields.
+     *
+     * @since 3.2.1
+     */
+    default boolean isFieldLoaded(int field) {
+        return getLoaded().get(field);
+    }
+
+    /**
+     * Return the number of loaded fields. Prefer this method over
+     * {@link #getLoaded} when only the count is needed.
+     *
+     * @since 3.2.1
+     */
+    default int getLoadedCount() {
+        return getLoaded().cardinality();
+    }
+
     /**
      * Return a read-only mask of the indexes of all dirty fields.
      */
     BitSet getDirty();
 
+    /**
+     * Return whether the given field is dirty. Prefer this method over
+     * {@link #getDirty} to test single fields.
+     *
+     * @since 3.2.1
+     */
+    default boolean isFieldDirty(int field) {
+        return getDirty().get(field);
+    }
+
     /**
      * Return a read-only mask of the indexes of all fields that have been
      * flushed since they were last changed.
      */
     BitSet getFlushed();
 
+    /**
+     * Return whether the given field has been flushed since it was last
+     * changed.
+     *
+     * @since 3.2.1
+     */
+    default boolean isFieldFlushed(int field) {
+        return getFlushed().get(field);
+    }
+
+    /**
+     * Return a new mask of the indexes of all fields that are dirty and
+     * have not been flushed since they were last changed. The returned
+     * set may be modified by the caller.
+     *
+     * @since 3.2.1
+     */
+    default BitSet getUnflushedDirty() {
+        BitSet dirty = (BitSet) getDirty().clone();
+        dirty.andNot(getFlushed());
+        return dirty;
+    }
+
     /**
      * Return a mutable mask of the unloaded fields that need loading based
      * on the given fetch configuration. Pass in null to retrieve all
@@ -106,6 +106,16 @@ public interface Query
      */
     Object execute(Object[] params);
 
+    /**
+     * Return the keyset pagination token of the given result of this query,
+     * made of its values for the ordering clauses of the query. Execute the
+     * query with the token as {@link QueryHints#HINT_KEYSET_AFTER} hint to
+     * get the results ordered after the given one.
+     *
+     * @since 3.2.1
+     */
+    KeysetToken getKeysetToken(Object result);
+
     /**
      * Deletes all of the instances that are satisfied by the query.
      *
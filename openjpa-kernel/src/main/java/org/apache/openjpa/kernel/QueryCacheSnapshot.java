@@ -0,0 +1,285 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.io.Serializable;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Objects;
+import java.util.Set;
+
+import org.apache.openjpa.conf.CacheMarshaller;
+import org.apache.openjpa.conf.CacheMarshallersValue;
+import org.apache.openjpa.conf.NoOpCacheMarshaller;
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.kernel.jpql.JPQLParser;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Localizer;
+
+/**
+ * Snapshot of the queries held by the query compilation cache and the
+ * prepared query cache, used to warm these caches when a
+ * {@link BrokerFactory} is created. The snapshot is stored and loaded
+ * through the {@link CacheMarshaller} whose id is the name of this class,
+ * typically with a
+ * {@link org.apache.openjpa.conf.MetaDataFingerprintValidationPolicy} so
+ * that a snapshot taken against different metadata is discarded.
+ * <PRE>
+ *   &lt;property name="openjpa.CacheMarshallers"
+ *     value="default(Id=org.apache.openjpa.kernel.QueryCacheSnapshot,
+ *       OutputFile=queries.ser, InputURL=file:queries.ser,
+ *       ValidationPolicy=org.apache.openjpa.conf.MetaDataFingerprintValidationPolicy)" /&gt;
+ * </PRE>
+ * Compilations and prepared SQL refer to live metadata and mappings, so
+ * the snapshot records the query strings and candidates only; loading it
+ * compiles each query again before the factory serves its first broker.
+ *
+ * @since 3.2.1
+ */
+public class QueryCacheSnapshot
+    implements Serializable {
+
+    private static final long serialVersionUID = 1L;
+
+    private static final Localizer _loc = Localizer.forPackage
+        (QueryCacheSnapshot.class);
+
+    /**
+     * The id of the {@link CacheMarshaller} for query snapshots.
+     */
+    public static final String MARSHALLER_ID =
+        QueryCacheSnapshot.class.getName();
+
+    private final Set<Entry> _entries = new LinkedHashSet<>();
+
+    /**
+     * Return the marshaller for query snapshots of the given configuration,
+     * or null if none is configured.
+     */
+    static CacheMarshaller getMarshaller(OpenJPAConfiguration conf) {
+        CacheMarshaller cm = CacheMarshallersValue.getMarshallerById(conf,
+            MARSHALLER_ID);
+        return (cm instanceof NoOpCacheMarshaller) ? null : cm;
+    }
+
+    /**
+     * Store a snapshot of the query caches of the given configuration, if a
+     * marshaller for query snapshots is configured and the caches hold any
+     * queries.
+     *
+     * @return the number of queries stored
+     */
+    public static int store(OpenJPAConfiguration conf) {
+        CacheMarshaller cm = getMarshaller(conf);
+        if (cm == null)
+            return 0;
+        // do not replace a snapshot with one of a run without queries
+        QueryCacheSnapshot snapshot = capture(conf);
+        if (snapshot.size() == 0)
+            return 0;
+        cm.store(snapshot);
+        Log log = conf.getLog(OpenJPAConfiguration.LOG_QUERY);
+        if (log.isInfoEnabled())
+            log.info(_loc.get("query-snapshot-stored", snapshot.size()));
+        return snapshot.size();
+    }
+
+    /**
+     * Load the snapshot of the given factory, if a marshaller for query
+     * snapshots is configured, and compile its queries.
+     *
+     * @return the number of queries compiled
+     */
+    public static int load(BrokerFactory factory) {
+        OpenJPAConfiguration conf = factory.getConfiguration();
+        CacheMarshaller cm = getMarshaller(conf);
+        if (cm == null)
+            return 0;
+        Object o = cm.load();
+        if (!(o instanceof QueryCacheSnapshot))
+            return 0;
+        return ((QueryCacheSnapshot) o).warm(factory);
+    }
+
+    /**
+     * Capture the queries of the compilation and prepared query caches of
+     * the given configuration.
+     */
+    public static QueryCacheSnapshot capture(OpenJPAConfiguration conf) {
+        QueryCacheSnapshot snapshot = new QueryCacheSnapshot();
+        Map compCache = conf.getQueryCompilationCacheInstance();
+        if (compCache != null) {
+            List keys;
+            synchronized (compCache) {
+                keys = new ArrayList(compCache.keySet());
+            }
+            for (Object key : keys) {
+                if (!(key instanceof QueryImpl.CompilationKey))
+                    continue;
+                QueryImpl.CompilationKey ck = (QueryImpl.CompilationKey) key;
+                snapshot.add(ck.language, ck.query, (ck.candidateType == null)
+                    ? null : ck.candidateType.getName(), ck.subclasses);
+            }
+        }
+
+        // prepared queries are keyed by their JPQL
+        PreparedQueryCache sqlCache = conf.getQuerySQLCacheInstance();
+        if (sqlCache != null)
+            for (String id : sqlCache.getMapView().keySet())
+                snapshot.add(JPQLParser.LANG_JPQL, id, null, true);
+        return snapshot;
+    }
+
+    /**
+     * Add a query to this snapshot. Queries without a string are ignored.
+     */
+    public void add(String language, String query, String candidate,
+        boolean subclasses) {
+        if (language != null && query != null)
+            _entries.add(new Entry(language, query, candidate, subclasses));
+    }
+
+    /**
+     * The number of queries in this snapshot.
+     */
+    public int size() {
+        return _entries.size();
+    }
+
+    /**
+     * The queries of this snapshot.
+     */
+    public Set<Entry> getEntries() {
+        return Collections.unmodifiableSet(_entries);
+    }
+
+    /**
+     * Compile each query of this snapshot with a broker of the given
+     * factory, which fills the query compilation cache. Queries that no
+     * longer compile are skipped.
+     *
+     * @return the number of queries compiled
+     */
+    public int warm(BrokerFactory factory) {
+        OpenJPAConfiguration conf = factory.getConfiguration();
+        Log log = conf.getLog(OpenJPAConfiguration.LOG_QUERY);
+        if (_entries.isEmpty() || conf.getQueryCompilationCacheInstance() == null)
+            return 0;
+
+        long start = System.currentTimeMillis();
+        int compiled = 0;
+        Broker broker = factory.newBroker();
+        try {
+            ClassLoader loader = broker.getClassLoader();
+            for (Entry entry : _entries) {
+                try {
+                    Query q = broker.newQuery(entry.getLanguage(),
+                        entry.getQuery());
+                    if (entry.getCandidate() != null)
+                        q.setCandidateType(Class.forName(entry.getCandidate(),
+                            false, loader), entry.hasSubclasses());
+                    q.compile();
+                    q.closeAll();
+                    compiled++;
+                } catch (Exception e) {
+                    if (log.isTraceEnabled())
+                        log.trace(_loc.get("query-snapshot-skip",
+                            entry.getQuery()), e);
+                }
+            }
+        } finally {
+            broker.close();
+        }
+
+        if (log.isInfoEnabled())
+            log.info(_loc.get("query-snapshot-loaded", compiled, size(),
+                System.currentTimeMillis() - start));
+        return compiled;
+    }
+
+    /**
+     * A query of the snapshot.
+     */
+    public static class Entry
+        implements Serializable {
+
+        private static final long serialVersionUID = 1L;
+
+        private final String _language;
+        private final String _query;
+        private final String _candidate;
+        private final boolean _subclasses;
+
+        Entry(String language, String query, String candidate,
+            boolean subclasses) {
+            _language = language;
+            _query = query;
+            _candidate = candidate;
+            _subclasses = subclasses;
+        }
+
+        /**
+         * The language of the query.
+         */
+        public String getLanguage() {
+            return _language;
+        }
+
+        public String getQuery() {
+            return _query;
+        }
+
+        /**
+         * The name of the candidate class, or null if the query names it.
+         */
+        public String getCandidate() {
+            return _candidate;
+        }
+
+        public boolean hasSubclasses() {
+            return _subclasses;
+        }
+
+        @Override
+        public int hashCode() {
+            return Objects.hash(_language, _query, _candidate, _subclasses);
+        }
+
+        @Override
+        public boolean equals(Object other) {
+            if (other == this)
+                return true;
+            if (!(other instanceof Entry))
+                return false;
+            Entry entry = (Entry) other;
+            return _subclasses == entry._subclasses
+                && _language.equals(entry._language)
+                && _query.equals(entry._query)
+                && Objects.equals(_candidate, entry._candidate);
+        }
+
+        @Override
+        public String toString() {
+            return _language + ": " + _query;
+        }
+    }
+}
@@ -108,4 +108,32 @@ public interface QueryHints {
      * if possible.
      */
     String HINT_USE_LITERAL_IN_SQL = "openjpa.hint.UseLiteralInSQL";
+
+    /**
+     * A boolean directive to stream the results of a select query: the
+     * results are read from a forward-only result set as they are iterated
+     * over, and the returned list does not retain them, so that it can only
+     * be traversed once.
+     *
+     * @since 3.2.1
+     */
+    String HINT_STREAM_RESULTS = "openjpa.hint.StreamResults";
+
+    /**
+     * The number of streamed results after which the instances returned so
+     * far are detached from the persistence context, or 0 to keep them
+     * managed. Only used with {@link #HINT_STREAM_RESULTS}.
+     *
+     * @since 3.2.1
+     */
+    String HINT_STREAM_DETACH_BATCH_SIZE = "openjpa.hint.StreamDetachBatchSize";
+
+    /**
+     * The {@link KeysetToken} of the last result of the previous page, or
+     * its encoded string, to return the results ordered after that result.
+     * The query must be ordered, ideally on a unique last ordering clause.
+     *
+     * @since 3.2.1
+     */
+    String HINT_KEYSET_AFTER = "openjpa.hint.KeysetAfter";
 }
@@ -49,6 +49,7 @@ import org.apache.openjpa.lib.rop.MergedResultObjectProvider;
 import org.apache.openjpa.lib.rop.RangeResultObjectProvider;
 import org.apache.openjpa.lib.rop.ResultList;
 import org.apache.openjpa.lib.rop.ResultObjectProvider;
+import org.apache.openjpa.lib.rop.StreamingResultList;
 import org.apache.openjpa.lib.util.ClassUtil;
 import org.apache.openjpa.lib.util.J2DoPrivHelper;
 import org.apache.openjpa.lib.util.Localizer;
@@ -67,6 +68,7 @@ import org.apache.openjpa.util.InvalidStateException;
 import org.apache.openjpa.util.NoResultException;
 import org.apache.openjpa.util.NonUniqueResultException;
 import org.apache.openjpa.util.OpenJPAException;
+import org.apache.openjpa.util.QueryCompilationCacheMap;
 import org.apache.openjpa.util.UnsupportedException;
 import org.apache.openjpa.util.UserException;
 
@@ -691,14 +693,21 @@ public class QueryImpl implements Query {
                 comp = newCompilation();
                 // only cache those queries that can be compiled
                 if (comp.storeData != null) {
-
-                    synchronized (compCache) {
-                        Compilation existingComp = (Compilation) compCache.get(key);
-                        if (existingComp == null) {
-                            compCache.put(key, comp);
-                        } else {
+                    if (compCache instanceof QueryCompilationCacheMap) {
+                        // only locks the stripe of the key
+                        Compilation existingComp = (Compilation) compCache.putIfAbsent(key, comp);
+                        if (existingComp != null) {
                             comp = existingComp;
                         }
+                    } else {
+                        synchronized (compCache) {
+                            Compilation existingComp = (Compilation) compCache.get(key);
+                            if (existingComp == null) {
+                                compCache.put(key, comp);
+                            } else {
+                                comp = existingComp;
+                            }
+                        }
                     }
                 }
             } else {
@@ -1052,10 +1061,11 @@ public class QueryImpl implements Query {
             ex.getRange(q, params, range);
         if (range.start >= range.end)
             return emptyResult(q, ex);
+        assertKeysetAfter(ex);
 
         // execute; if we have a result class or we have only one result
         // and so need to remove it from its array, wrap in a packing rop
-        range.lrs = isLRS(range.start, range.end);
+        range.lrs = isStreaming() || isLRS(range.start, range.end);
         ResultObjectProvider rop = ex.executeQuery(q, params, range);
         try {
             return toResult(q, ex, rop, range);
@@ -1066,6 +1076,43 @@ public class QueryImpl implements Query {
         }
     }
 
+    /**
+     * Validate the {@link QueryHints#HINT_KEYSET_AFTER} token of this query,
+     * which only datastore executors apply.
+     */
+    private void assertKeysetAfter(StoreQuery.Executor ex) {
+        KeysetToken after = KeysetToken.valueOf(
+            _fc.getHint(QueryHints.HINT_KEYSET_AFTER), _broker.getClassLoader());
+        if (after == null)
+            return;
+        if (!after.isTokenOf(_query))
+            throw new UserException(_loc.get("keyset-wrong-query", after,
+                _query));
+        if (ex == compileForCompilation().memory)
+            throw new UnsupportedException(_loc.get("keyset-in-memory",
+                _query));
+    }
+
+    @Override
+    public KeysetToken getKeysetToken(Object result) {
+        lock();
+        try {
+            assertOpen();
+            StoreQuery.Executor ex = compileForExecutor();
+            int orderings = ex.getAscending(_storeQuery).length;
+            if (orderings == 0)
+                throw new UserException(_loc.get("keyset-no-ordering", _query));
+
+            Object[] values = new Object[orderings];
+            for (int i = 0; i < orderings; i++)
+                values[i] = ex.getOrderingValue(_storeQuery,
+                    StoreQuery.EMPTY_OBJECTS, result, i);
+            return new KeysetToken(_query, values);
+        } finally {
+            unlock();
+        }
+    }
+
     /**
      * Delete the query using the given executor, and parameter
      * values. All other execute methods delegate to this one or to
@@ -1281,6 +1328,30 @@ public class QueryImpl implements Query {
             || (_fc.getFetchBatchSize() == 0 && range <= 50));
     }
 
+    /**
+     * Return whether the results should be streamed, as directed by the
+     * {@link QueryHints#HINT_STREAM_RESULTS} hint.
+     */
+    private boolean isStreaming() {
+        Object hint = _fc.getHint(QueryHints.HINT_STREAM_RESULTS);
+        return hint != null
+            && (Boolean) Filters.convert(hint, Boolean.class);
+    }
+
+    /**
+     * Return the result list streaming the results of the given provider,
+     * detaching them in batches if so directed by the
+     * {@link QueryHints#HINT_STREAM_DETACH_BATCH_SIZE} hint.
+     */
+    private ResultList<?> newStreamingResultList(ResultObjectProvider rop) {
+        Object hint = _fc.getHint(QueryHints.HINT_STREAM_DETACH_BATCH_SIZE);
+        int batch = (hint == null) ? 0
+            : (Integer) Filters.convert(hint, Integer.class);
+        if (batch > 0)
+            rop = new DetachingResultObjectProvider(rop, _broker, batch);
+        return new StreamingResultList(rop);
+    }
+
     /**
      * Return the query result for the given result object provider.
      */
@@ -1311,7 +1382,10 @@ public class QueryImpl implements Query {
         boolean lrs = range.lrs && !ex.isAggregate(q) && !ex.hasGrouping(q);
         ResultList<?> res;
         try {
-            res = (!detach && lrs) ? _fc.newResultList(rop) : new EagerResultList(rop);
+            if (!detach && lrs && isStreaming())
+                res = newStreamingResultList(rop);
+            else
+                res = (!detach && lrs) ? _fc.newResultList(rop) : new EagerResultList(rop);
             res.setUserObject(new Object[]{rop,ex});
             _resultLists.add(decorateResultList(res));
         } catch (OpenJPAException e) {
@@ -1890,7 +1964,7 @@ public class QueryImpl implements Query {
     /**
      * Struct to hold the unparsed properties associated with a query.
      */
-    private static class CompilationKey
+    static class CompilationKey
         implements Serializable {
 
         
@@ -2240,6 +2314,121 @@ public class QueryImpl implements Query {
         }
     }
 
+    /**
+     * Result object provider that detaches the managed instances it returns
+     * every given number of results, so that streaming any number of results
+     * does not fill the persistence context. Public for testing.
+     *
+     * @since 3.2.1
+     */
+    public static class DetachingResultObjectProvider
+        implements ResultObjectProvider {
+
+        private final ResultObjectProvider _delegate;
+        private final Broker _broker;
+        private final int _batch;
+        private final List<Object> _returned;
+        private int _count = 0;
+
+        public DetachingResultObjectProvider(ResultObjectProvider delegate,
+            Broker broker, int batch) {
+            _delegate = delegate;
+            _broker = broker;
+            _batch = batch;
+            _returned = new ArrayList<>(Math.min(batch, 1000));
+        }
+
+        @Override
+        public boolean supportsRandomAccess() {
+            return false;
+        }
+
+        @Override
+        public void open()
+            throws Exception {
+            _delegate.open();
+        }
+
+        @Override
+        public Object getResultObject()
+            throws Exception {
+            Object ob = _delegate.getResultObject();
+            if (ob instanceof Object[]) {
+                for (Object o : (Object[]) ob)
+                    track(o);
+            } else
+                track(ob);
+            return ob;
+        }
+
+        private void track(Object o) {
+            if (ImplHelper.isManageable(o))
+                _returned.add(o);
+        }
+
+        @Override
+        public boolean next()
+            throws Exception {
+            // the previous batch is no longer used once the next is read
+            if (++_count > _batch) {
+                detachReturned();
+                _count = 1;
+            }
+            return _delegate.next();
+        }
+
+        /**
+         * Detach the managed instances returned since the last detach.
+         */
+        private void detachReturned() {
+            List<Object> managed = new ArrayList<>(_returned.size());
+            for (Object o : _returned)
+                if (_broker.isPersistent(o) && !_broker.isDetached(o))
+                    managed.add(o);
+            _returned.clear();
+            if (!managed.isEmpty())
+                _broker.detachAll(managed, null);
+        }
+
+        @Override
+        public boolean absolute(int pos)
+            throws Exception {
+            throw new UnsupportedException();
+        }
+
+        @Override
+        public int size()
+            throws Exception {
+            return _delegate.size();
+        }
+
+        @Override
+        public void reset()
+            throws Exception {
+            throw new UnsupportedException();
+        }
+
+        @Override
+        public void close()
+            throws Exception {
+            try {
+                if (!_broker.isClosed())
+                    detachReturned();
+            } finally {
+                _delegate.close();
+            }
+        }
+
+        @Override
+        public void handleCheckedException(Exception e) {
+            _delegate.handleCheckedException(e);
+        }
+
+        public ResultObjectProvider getDelegate() {
+            return _delegate;
+        }
+    }
+
     /**
      * Result list that removes itself from the query's open result list
      * when it is closed. Public for testing.
@@ -114,14 +114,14 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     // information about the instance
     private transient PersistenceCapable _pc = null;
     protected transient ClassMetaData _meta = null;
-    protected BitSet _loaded = null;
+    protected FieldSet _loaded = null;
 
     // Care needs to be taken when accessing these fields as they will can be null if no fields are
     // dirty, or have been flushed.
-    private BitSet _dirty = null;
-    private BitSet _flush = null;
+    private FieldSet _dirty = null;
+    private FieldSet _flush = null;
 
-    private BitSet _delayed = null;
+    private FieldSet _delayed = null;
     private int _flags = 0;
 
     // id is the state manager identity; oid is the persistent identity.  oid
@@ -220,10 +220,10 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         _pc.pcReplaceStateManager(this);
         _state = newState;
 
-        // clone the field bitsets.
-        _dirty=(BitSet)sm.getDirty().clone();
-        _loaded = (BitSet)sm.getLoaded().clone();
-        _flush = (BitSet) sm.getFlushed().clone();
+        // clone the field sets.
+        _dirty = (sm._dirty == null) ? null : sm._dirty.copy();
+        _loaded = sm._loaded.copy();
+        _flush = (sm._flush == null) ? null : sm._flush.copy();
         _version = sm.getVersion();
 
         _oid = sm.getObjectId();
@@ -358,7 +358,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         pc.pcReplaceStateManager(this);
 
         FieldMetaData[] fmds = _meta.getFields();
-        _loaded = new BitSet(fmds.length);
+        _loaded = new FieldSet(fmds.length);
 
         // mark primary key and non-persistent fields as loaded
         for(int i : _meta.getPkAndNonPersistentManagedFmdIndexes()){
@@ -504,7 +504,24 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
 
     @Override
     public BitSet getLoaded() {
-        return _loaded;
+        return (_loaded == null) ? null : _loaded.toBitSet();
+    }
+
+    @Override
+    public boolean isFieldLoaded(int field) {
+        return _loaded != null && _loaded.get(field);
+    }
+
+    @Override
+    public int getLoadedCount() {
+        return (_loaded == null) ? 0 : _loaded.cardinality();
+    }
+
+    /**
+     * Whether the loaded fields are tracked yet, without copying the mask.
+     */
+    boolean isLoadedTracked() {
+        return _loaded != null;
     }
 
     @Override
@@ -1129,10 +1146,12 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             boolean needPostUpdate = !(wasNew && !wasFlushed)
                     && (ImplHelper.getUpdateFields(this) != null);
 
-            // all dirty fields were flushed, we are referencing the _dirty BitSet directly here
+            // all dirty fields were flushed, we are referencing the _dirty set directly here
             // because we don't want to instantiate it if we don't have to.
             if (_dirty != null) {
-                getFlushed().or(_dirty);
+                if (_flush == null)
+                    _flush = new FieldSet(_meta.getFields().length);
+                _flush.or(_dirty);
             }
 
             // important to set flushed bit after calling _state.flush so
@@ -1232,9 +1251,9 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
                 replaceField(_pc, savepoint, i);
             }
         }
-        _loaded = loaded;
-        _dirty = savepoint.getDirty();
-        _flush = savepoint.getFlushed();
+        _loaded = FieldSet.valueOf(loaded);
+        _dirty = FieldSet.valueOf(savepoint.getDirty());
+        _flush = FieldSet.valueOf(savepoint.getFlushed());
         _version = savepoint.getVersion();
         _loadVersion = savepoint.getLoadVersion();
     }
@@ -1692,7 +1711,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     @Override
     public void setDelayed(int field, boolean delay) {
         if (_delayed == null) {
-            _delayed = new BitSet();
+            _delayed = new FieldSet();
         }
         if (delay) {
             _delayed.set(field);
@@ -3019,7 +3038,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
             // record a saved field manager even if no field is currently loaded
             // as existence of a SaveFieldManager is critical for a dirty check
             if (_saved == null)
-                _saved = new SaveFieldManager(this, getPersistenceCapable(), getDirty());
+                _saved = new SaveFieldManager(this, getPersistenceCapable(), _dirty);
         }
     }
 
@@ -3042,7 +3061,7 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
         // save the old field value anyway
         if (_saved == null) {
             if (_loaded.get(field))
-                _saved = new SaveFieldManager(this, null, getDirty());
+                _saved = new SaveFieldManager(this, null, _dirty);
             else
                 return;
         }
@@ -3641,12 +3660,13 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     @Override
     public BitSet getFlushed() {
         if (_flush == null) {
-            _flush = new BitSet(_meta.getFields().length);
+            return new BitSet(_meta.getFields().length);
         }
-        return _flush;
+        return _flush.toBitSet();
     }
 
-    private boolean isFieldFlushed(int index) {
+    @Override
+    public boolean isFieldFlushed(int index) {
         if (_flush == null) {
             return false;
         }
@@ -3658,19 +3678,41 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
      */
     private void clearFlushField(int index) {
         if (_flush != null) {
-            getFlushed().clear(index);
+            _flush.clear(index);
         }
     }
 
     @Override
     public BitSet getDirty() {
         if (_dirty == null) {
-            _dirty = new BitSet(_meta.getFields().length);
+            return new BitSet(_meta.getFields().length);
+        }
+        return _dirty.toBitSet();
+    }
+
+    @Override
+    public BitSet getUnflushedDirty() {
+        if (_dirty == null) {
+            return new BitSet(_meta.getFields().length);
         }
-        return _dirty;
+        BitSet dirty = _dirty.toBitSet();
+        if (_flush != null) {
+            for (int i = _flush.nextSetBit(0); i >= 0; i = _flush.nextSetBit(i + 1)) {
+                dirty.clear(i);
+            }
+        }
+        return dirty;
     }
 
-    private boolean isFieldDirty(int index) {
+    /**
+     * Whether any field is dirty.
+     */
+    boolean hasDirtyFields() {
+        return _dirty != null && !_dirty.isEmpty();
+    }
+
+    @Override
+    public boolean isFieldDirty(int index) {
         if (_dirty == null) {
             return false;
         }
@@ -3678,15 +3720,18 @@ public class StateManagerImpl implements OpenJPAStateManager, Serializable {
     }
 
     private void setFieldDirty(int index) {
-        getDirty().set(index);
+        if (_dirty == null) {
+            _dirty = new FieldSet(_meta.getFields().length);
+        }
+        _dirty.set(index);
     }
 
     /**
-     * Will clear the bit at the specified index if the _dirty BetSet has been created.
+     * Will clear the bit at the specified index if the _dirty set has been created.
      */
     private void clearDirty(int index) {
         if (_dirty != null) {
-            getDirty().clear(index);
+            _dirty.clear(index);
         }
     }
 
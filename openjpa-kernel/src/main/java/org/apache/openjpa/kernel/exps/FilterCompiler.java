@@ -0,0 +1,605 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel.exps;
+
+import java.security.AccessController;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.openjpa.enhance.AsmAdaptor;
+import org.apache.openjpa.enhance.PersistenceCapable;
+import org.apache.openjpa.enhance.StateManager;
+import org.apache.openjpa.kernel.Broker;
+import org.apache.openjpa.kernel.Filters;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.kernel.StoreContext;
+import org.apache.openjpa.lib.util.J2DoPrivHelper;
+import org.apache.openjpa.meta.FieldMetaData;
+import org.apache.openjpa.meta.JavaTypes;
+import org.apache.openjpa.util.GeneralException;
+import org.apache.openjpa.util.ImplHelper;
+
+import serp.bytecode.BCClass;
+import serp.bytecode.BCField;
+import serp.bytecode.BCMethod;
+import serp.bytecode.Code;
+import serp.bytecode.JumpInstruction;
+import serp.bytecode.Project;
+
+/**
+ * Compiles query filters to classes implementing {@link CompiledFilter},
+ * so that in-memory queries no longer walk the expression tree for every
+ * candidate. Comparisons of candidate fields, literals and parameters
+ * combined with and, or and not are supported; the compiler returns null
+ * for filters using any other expression, which are then interpreted as
+ * usual. Fields of primitive numeric types compared to literals are read
+ * through the typed accessors of the state manager and compared without
+ * boxing. The generated code gives the same results as the interpreter.
+ *
+ * The static methods of this class are used by the generated code and are
+ * not meant to be called otherwise.
+ *
+ * @since 3.2.1
+ */
+public class FilterCompiler {
+
+    /**
+     * Value of a path that the interpreter would fail to evaluate.
+     */
+    public static final Object FAIL = new Object();
+
+    public static final int EQUAL = 0;
+    public static final int NOT_EQUAL = 1;
+    public static final int LESS_THAN = 2;
+    public static final int GREATER_THAN = 3;
+    public static final int LESS_THAN_EQUAL = 4;
+    public static final int GREATER_THAN_EQUAL = 5;
+
+    private static final AtomicInteger _count = new AtomicInteger();
+
+    private final List<Object> _constants = new ArrayList<>();
+
+    private FilterCompiler() {
+    }
+
+    /**
+     * Compile the given filter.
+     *
+     * @return the compiled filter, or null if the filter uses expressions
+     * that cannot be compiled
+     */
+    public static CompiledFilter compile(Expression filter) {
+        if (!isSupported(filter))
+            return null;
+        return new FilterCompiler().generate((Exp) filter);
+    }
+
+    /**
+     * Return whether the given filter can be compiled.
+     */
+    public static boolean isSupported(Expression exp) {
+        return isSupported(exp, false);
+    }
+
+    /**
+     * Return whether the given filter can be compiled and only reads the
+     * state of the candidate itself, through its fields and embedded fields,
+     * so that whether a candidate matches does not depend on any other
+     * instance.
+     */
+    public static boolean isCandidateLocal(Expression exp) {
+        return isSupported(exp, true);
+    }
+
+    private static boolean isSupported(Expression exp, boolean local) {
+        Class<?> type = exp.getClass();
+        if (type == Exp.class)
+            return true;
+        if (type == AndExpression.class)
+            return isSupported(((AndExpression) exp).getExpression1(), local)
+                && isSupported(((AndExpression) exp).getExpression2(), local);
+        if (type == OrExpression.class)
+            return isSupported(((OrExpression) exp).getExpression1(), local)
+                && isSupported(((OrExpression) exp).getExpression2(), local);
+        if (type == NotExpression.class)
+            return isSupported(((NotExpression) exp).getExpression(), local);
+        if (getOperator(exp) != -1)
+            return isSupported(((CompareExpression) exp).getValue1(), local)
+                && isSupported(((CompareExpression) exp).getValue2(), local);
+        return false;
+    }
+
+    private static boolean isSupported(Val val, boolean local) {
+        Class<?> type = val.getClass();
+        if (type == Lit.class || type == Null.class || type == Param.class
+            || type == This.class)
+            return true;
+        if (type != CandidatePath.class)
+            return false;
+        CandidatePath path = (CandidatePath) val;
+        if (path.getCorrelationVar() != null)
+            return false;
+        if (path._actions == null)
+            return true;
+        FieldMetaData prev = null;
+        for (Object action : path._actions) {
+            if (!(action instanceof CandidatePath.Traversal))
+                return false;
+            // a traversal through a relation reads another instance
+            if (local && prev != null && !prev.isEmbeddedPC())
+                return false;
+            prev = ((CandidatePath.Traversal) action).field;
+        }
+        return true;
+    }
+
+    private static int getOperator(Expression exp) {
+        Class<?> type = exp.getClass();
+        if (type == EqualExpression.class)
+            return EQUAL;
+        if (type == NotEqualExpression.class)
+            return NOT_EQUAL;
+        if (type == LessThanExpression.class)
+            return LESS_THAN;
+        if (type == GreaterThanExpression.class)
+            return GREATER_THAN;
+        if (type == LessThanEqualExpression.class)
+            return LESS_THAN_EQUAL;
+        if (type == GreaterThanEqualExpression.class)
+            return GREATER_THAN_EQUAL;
+        return -1;
+    }
+
+    private CompiledFilter generate(Exp filter) {
+        String name = FilterCompiler.class.getName() + "$Filter"
+            + _count.incrementAndGet();
+        Project project = new Project();
+        BCClass bc = AccessController.doPrivileged(J2DoPrivHelper
+            .loadProjectClassAction(project, name));
+        bc.setMajorVersion(51);
+        bc.makePublic();
+        bc.setFinal(true);
+        bc.declareInterface(CompiledFilter.class);
+        BCField constants = bc.declareField("constants", Object[].class);
+        constants.makePrivate();
+        constants.setFinal(true);
+
+        // public <init>(Object[] constants)
+        BCMethod method = bc.declareMethod("<init>", void.class,
+            new Class[]{ Object[].class });
+        method.makePublic();
+        Code code = method.getCode(true);
+        code.aload().setThis();
+        code.invokespecial().setMethod(Object.class, "<init>", void.class,
+            null);
+        code.aload().setThis();
+        code.aload().setParam(0);
+        code.putfield().setField(constants);
+        code.vreturn();
+        code.calculateMaxStack();
+        code.calculateMaxLocals();
+
+        // public boolean matches(Object candidate, StoreContext ctx,
+        //     Object[] params)
+        method = bc.declareMethod("matches", boolean.class, new Class[]{
+            Object.class, StoreContext.class, Object[].class });
+        method.makePublic();
+        code = method.getCode(true);
+        emit(filter, code, constants);
+        code.ireturn();
+        code.calculateMaxStack();
+        code.calculateMaxLocals();
+
+        // the generated code only refers to OpenJPA classes
+        try {
+            byte[] bytes = AsmAdaptor.toByteArray(bc, bc.toByteArray());
+            Class<?> cls = new FilterLoader(FilterCompiler.class
+                .getClassLoader()).define(name, bytes);
+            return (CompiledFilter) cls.getConstructor(Object[].class)
+                .newInstance(new Object[]{ _constants.toArray() });
+        } catch (Throwable t) {
+            throw new GeneralException(name).setCause(t);
+        } finally {
+            project.clear();
+        }
+    }
+
+    /**
+     * Emit the code leaving the value of the given expression on the stack.
+     */
+    private void emit(Exp exp, Code code, BCField constants) {
+        Class<?> type = exp.getClass();
+        if (type == Exp.class) {
+            code.constant().setValue(true);
+        } else if (type == AndExpression.class || type == OrExpression.class) {
+            // short-circuit like the interpreter does
+            boolean and = type == AndExpression.class;
+            emit(and ? ((AndExpression) exp).getExpression1()
+                : ((OrExpression) exp).getExpression1(), code, constants);
+            JumpInstruction shortCircuit = and ? code.ifeq() : code.ifne();
+            emit(and ? ((AndExpression) exp).getExpression2()
+                : ((OrExpression) exp).getExpression2(), code, constants);
+            JumpInstruction end = code.go2();
+            shortCircuit.setTarget(code.constant().setValue(!and));
+            end.setTarget(code.nop());
+        } else if (type == NotExpression.class) {
+            emit(((NotExpression) exp).getExpression(), code, constants);
+            code.constant().setValue(1);
+            code.ixor();
+        } else {
+            CompareExpression compare = (CompareExpression) exp;
+            Val val1 = compare.getValue1();
+            Val val2 = compare.getValue2();
+            if (emitPrimitiveCompare(val1, val2, getOperator(exp), code,
+                constants)
+                || emitPrimitiveCompare(val2, val1, flip(getOperator(exp)),
+                code, constants))
+                return;
+            emit(val1, val2, code, constants);
+            emit(val2, val1, code, constants);
+            code.constant().setValue(getOperator(exp));
+            code.invokestatic().setMethod(FilterCompiler.class, "compare",
+                boolean.class, new Class[]{ Object.class, Object.class,
+                int.class });
+        }
+    }
+
+    /**
+     * Emit the code leaving the given value on the stack.
+     *
+     * @param other the value it is compared to
+     */
+    private void emit(Val val, Val other, Code code, BCField constants) {
+        Class<?> type = val.getClass();
+        if (type == Null.class) {
+            code.constant().setNull();
+        } else if (type == This.class) {
+            code.aload().setParam(0);
+        } else if (type == Param.class) {
+            code.aload().setParam(2);
+            code.constant().setValue(((Param) val).getIndex());
+            code.aaload();
+        } else if (type == Lit.class) {
+            code.aload().setThis();
+            code.getfield().setField(constants);
+            code.constant().setValue(_constants.size());
+            code.aaload();
+            _constants.add(toConstant(((Lit) val).getValue(), other));
+        } else {
+            CandidatePath path = (CandidatePath) val;
+            emitTraversals(path, (path._actions == null) ? 0
+                : path._actions.size(), code);
+        }
+    }
+
+    /**
+     * Emit the code leaving the value of the given number of leading
+     * traversals of the given path on the stack.
+     */
+    private static void emitTraversals(CandidatePath path, int count,
+        Code code) {
+        code.aload().setParam(0);
+        if (count == 0)
+            return;
+        for (Object action : path._actions) {
+            if (count-- == 0)
+                break;
+            CandidatePath.Traversal traversal =
+                (CandidatePath.Traversal) action;
+            code.aload().setParam(1);
+            code.constant().setValue(traversal.field.getIndex());
+            code.constant().setValue(traversal.nullTraversal);
+            code.invokestatic().setMethod(FilterCompiler.class, "fetch",
+                Object.class, new Class[]{ Object.class,
+                StoreContext.class, int.class, boolean.class });
+        }
+    }
+
+    /**
+     * If the given value is a path to a field of a primitive numeric type
+     * and the other value is a literal of that type, emit the code leaving
+     * the result of their comparison on the stack without boxing the field
+     * value.
+     *
+     * @return whether the code was emitted
+     */
+    private boolean emitPrimitiveCompare(Val val, Val other, int op,
+        Code code, BCField constants) {
+        if (val.getClass() != CandidatePath.class
+            || other.getClass() != Lit.class)
+            return false;
+        CandidatePath path = (CandidatePath) val;
+        FieldMetaData field = path.last();
+        if (field == null)
+            return false;
+        int typeCode = field.getDeclaredTypeCode();
+        boolean integral;
+        switch (typeCode) {
+            case JavaTypes.BYTE:
+            case JavaTypes.SHORT:
+            case JavaTypes.INT:
+            case JavaTypes.LONG:
+                integral = true;
+                break;
+            case JavaTypes.FLOAT:
+            case JavaTypes.DOUBLE:
+                integral = false;
+                break;
+            default:
+                return false;
+        }
+        // integral values compare exactly as longs whatever their types; a
+        // floating point field is only compared to a literal converted to
+        // its own type, as the values would be converted to that type
+        Object value = toConstant(((Lit) other).getValue(), path);
+        if (value == null)
+            return false;
+        Class<?> type = value.getClass();
+        if (integral ? type != Long.class && type != Integer.class
+            && type != Short.class && type != Byte.class
+            : type != Filters.wrap(field.getDeclaredType()))
+            return false;
+
+        CandidatePath.Traversal last = (CandidatePath.Traversal)
+            path._actions.getLast();
+        emitTraversals(path, path._actions.size() - 1, code);
+        code.aload().setParam(1);
+        code.constant().setValue(field.getIndex());
+        code.constant().setValue(typeCode);
+        code.constant().setValue(!field.isPrimaryKey());
+        code.constant().setValue(last.nullTraversal);
+        if (integral)
+            code.constant().setValue(((Number) value).longValue());
+        else
+            code.constant().setValue(((Number) value).doubleValue());
+        code.constant().setValue(op);
+        code.invokestatic().setMethod(FilterCompiler.class, (integral)
+            ? "compareLong" : "compareDouble", boolean.class, new Class[]{
+            Object.class, StoreContext.class, int.class, int.class,
+            boolean.class, boolean.class, (integral) ? long.class
+            : double.class, int.class });
+        return true;
+    }
+
+    /**
+     * Return the operator comparing the values the other way round.
+     */
+    private static int flip(int op) {
+        switch (op) {
+            case LESS_THAN:
+                return GREATER_THAN;
+            case GREATER_THAN:
+                return LESS_THAN;
+            case LESS_THAN_EQUAL:
+                return GREATER_THAN_EQUAL;
+            case GREATER_THAN_EQUAL:
+                return LESS_THAN_EQUAL;
+            default:
+                return op;
+        }
+    }
+
+    /**
+     * Convert a literal compared to a field to the type of the field
+     * values up front, so that the comparison of each candidate does not
+     * have to.
+     */
+    private static Object toConstant(Object value, Val other) {
+        if (value == null || !(other instanceof CandidatePath))
+            return value;
+        FieldMetaData field = ((CandidatePath) other).last();
+        if (field == null)
+            return value;
+        Class<?> type = Filters.wrap(field.getDeclaredType());
+        if (type == value.getClass())
+            return value;
+        try {
+            if (Filters.wrap(Filters.promote(type, value.getClass())) == type)
+                return Filters.convert(value, type);
+        } catch (RuntimeException re) {
+            // leave the conversion to each comparison
+        }
+        return value;
+    }
+
+    /**
+     * Return the value of the given field of the given object, null for a
+     * null traversal, or {@link #FAIL} where the interpreter would fail.
+     */
+    public static Object fetch(Object obj, StoreContext ctx, int field,
+        boolean nullTraversal) {
+        if (obj == null)
+            return (nullTraversal) ? null : FAIL;
+        if (obj == FAIL)
+            return FAIL;
+        try {
+            if (obj instanceof PersistenceCapable) {
+                StateManager sm = ((PersistenceCapable) obj).pcGetStateManager();
+                if (sm instanceof OpenJPAStateManager)
+                    return ((OpenJPAStateManager) sm).fetchField(field, true);
+            }
+            return fetchUnmanaged(obj, ctx, field);
+        } catch (ClassCastException | NullPointerException e) {
+            return FAIL;
+        }
+    }
+
+    /**
+     * Compare the given integral field of the given object to the given
+     * value with the given operator, in the same way as
+     * {@link #compare} compares the field value fetched by {@link #fetch}.
+     * Managed instances are read through the typed field accessors of their
+     * state manager, so that the field value is not boxed.
+     */
+    public static boolean compareLong(Object obj, StoreContext ctx,
+        int field, int typeCode, boolean transitions, boolean nullTraversal,
+        long value, int op) {
+        OpenJPAStateManager sm = getStateManager(obj);
+        if (sm == null)
+            return compare(fetch(obj, ctx, field, nullTraversal),
+                value, op);
+        if (transitions)
+            sm.accessingField(field);
+        long val;
+        switch (typeCode) {
+            case JavaTypes.BYTE:
+                val = sm.fetchByteField(field);
+                break;
+            case JavaTypes.SHORT:
+                val = sm.fetchShortField(field);
+                break;
+            case JavaTypes.INT:
+                val = sm.fetchIntField(field);
+                break;
+            default:
+                val = sm.fetchLongField(field);
+        }
+        return test(Long.compare(val, value), op);
+    }
+
+    /**
+     * Compare the given floating point field of the given object to the
+     * given value with the given operator, in the same way as
+     * {@link #compareLong}.
+     */
+    public static boolean compareDouble(Object obj, StoreContext ctx,
+        int field, int typeCode, boolean transitions, boolean nullTraversal,
+        double value, int op) {
+        OpenJPAStateManager sm = getStateManager(obj);
+        if (sm == null)
+            return compare(fetch(obj, ctx, field, nullTraversal),
+                value, op);
+        if (transitions)
+            sm.accessingField(field);
+        double val = (typeCode == JavaTypes.FLOAT) ? sm.fetchFloatField(field)
+            : sm.fetchDoubleField(field);
+        // Double.compare orders like Double.equals and compareTo, and
+        // widening a float keeps the order of Float.compare
+        return test(Double.compare(val, value), op);
+    }
+
+    /**
+     * Return the state manager of the given managed instance, or null.
+     */
+    private static OpenJPAStateManager getStateManager(Object obj) {
+        if (!(obj instanceof PersistenceCapable))
+            return null;
+        StateManager sm = ((PersistenceCapable) obj).pcGetStateManager();
+        return (sm instanceof OpenJPAStateManager) ? (OpenJPAStateManager) sm
+            : null;
+    }
+
+    /**
+     * Return whether the given result of a comparison satisfies the given
+     * operator.
+     */
+    private static boolean test(int cmp, int op) {
+        switch (op) {
+            case EQUAL:
+                return cmp == 0;
+            case NOT_EQUAL:
+                return cmp != 0;
+            case LESS_THAN:
+                return cmp < 0;
+            case GREATER_THAN:
+                return cmp > 0;
+            case LESS_THAN_EQUAL:
+                return cmp <= 0;
+            default:
+                return cmp >= 0;
+        }
+    }
+
+    /**
+     * Fetch the given field of an instance without a state manager, in the
+     * same way as {@link CandidatePath}.
+     */
+    private static Object fetchUnmanaged(Object obj, StoreContext ctx,
+        int field) {
+        OpenJPAStateManager sm = null;
+        if (ImplHelper.isManageable(obj))
+            sm = (OpenJPAStateManager) ImplHelper.toPersistenceCapable(obj,
+                ctx.getConfiguration()).pcGetStateManager();
+        if (sm != null)
+            return sm.fetchField(field, true);
+
+        Broker broker = ctx.getBroker();
+        broker.transactional(obj, false, null);
+        sm = broker.getStateManager(obj);
+        try {
+            return sm.fetchField(field, true);
+        } finally {
+            broker.nontransactional(sm.getManagedInstance(), null);
+        }
+    }
+
+    /**
+     * Compare the given values with the given operator, in the same way as
+     * {@link CompareExpression}.
+     */
+    public static boolean compare(Object o1, Object o2, int op) {
+        if (o1 == FAIL || o2 == FAIL)
+            return false;
+        try {
+            if (o1 != null && o2 != null && o1.getClass() != o2.getClass()) {
+                Class<?> c = Filters.promote(o1.getClass(), o2.getClass());
+                o1 = Filters.convert(o1, c);
+                o2 = Filters.convert(o2, c);
+            }
+            switch (op) {
+                case EQUAL:
+                    return (o1 == null) ? o2 == null : o1.equals(o2);
+                case NOT_EQUAL:
+                    return (o1 == null) ? o2 != null : !o1.equals(o2);
+                default:
+                    if (!(o1 instanceof Comparable))
+                        return false;
+                    int cmp = ((Comparable) o1).compareTo(o2);
+                    switch (op) {
+                        case LESS_THAN:
+                            return cmp < 0;
+                        case GREATER_THAN:
+                            return cmp > 0;
+                        case LESS_THAN_EQUAL:
+                            return cmp <= 0;
+                        default:
+                            return cmp >= 0;
+                    }
+            }
+        } catch (ClassCastException | NullPointerException e) {
+            return false;
+        }
+    }
+
+    /**
+     * Loader of a single generated filter, so that the filter can be
+     * garbage collected with the query that uses it.
+     */
+    private static class FilterLoader extends ClassLoader {
+
+        FilterLoader(ClassLoader parent) {
+            super(parent);
+        }
+
+        Class<?> define(String name, byte[] bytes) {
+            return defineClass(name, bytes, 0, bytes.length);
+        }
+    }
+}
@@ -54,6 +54,30 @@ public class InMemoryExpressionFactory
     // list of unbound variables in this query
     private List<UnboundVariable> _unbounds = null;
 
+    // compiled form of a filter, if any
+    private Expression _compiledExp = null;
+    private CompiledFilter _compiled = null;
+
+    /**
+     * Compile the filter of the given expressions to bytecode, so that
+     * matching candidates no longer interprets the filter. Filters the
+     * {@link FilterCompiler} does not support, or that use unbound
+     * variables, remain interpreted.
+     *
+     * @return whether the filter was compiled
+     * @since 3.2.1
+     */
+    public boolean compile(QueryExpressions exps) {
+        if (exps.filter == null || (_unbounds != null && !_unbounds.isEmpty()))
+            return false;
+        CompiledFilter compiled = FilterCompiler.compile(exps.filter);
+        if (compiled == null)
+            return false;
+        _compiledExp = exps.filter;
+        _compiled = compiled;
+        return true;
+    }
+
     /**
      * Tests whether the given candidate matches the given type and this
      * expression.
@@ -69,6 +93,9 @@ public class InMemoryExpressionFactory
             (candidate.getClass()))
             return false;
 
+        if (_compiled != null && exps.filter == _compiledExp)
+            return _compiled.matches(candidate, ctx, params);
+
         // evaluate the expression for all possible combinations of values
         // of the unbound variables; the candidate matches if any combination
         // matches
@@ -41,6 +41,10 @@ class NotExpression
         _exp = exp;
     }
 
+    Exp getExpression() {
+        return _exp;
+    }
+
     @Override
     protected boolean eval(Object candidate, Object orig,
         StoreContext ctx, Object[] params) {
@@ -63,6 +63,10 @@ class Param
         _index = index;
     }
 
+    int getIndex() {
+        return _index;
+    }
+
     @Override
     public Object getValue(Object[] params) {
         return params[_index];
@@ -82,6 +82,10 @@ public abstract class AbstractCFMetaDataFactory
     protected Collection<String> cpath = null;
 
     private Set<String> _typeNames = null;
+    private String _typeIndex = null;
+    // whether the scans of the current parse are replaced by the type index,
+    // in which case the scanned locations are skipped before they are opened
+    private boolean _indexed = false;
     public static final String PERSISTENCE_UNIT_ROOT_URL = "PersistenceUnitRootUrl";
     public static final String MAPPING_FILE_NAMES = "MappingFileNames";
     public static final String JAR_FILE_URLS = "JarFiles";
@@ -176,6 +180,28 @@ public abstract class AbstractCFMetaDataFactory
           : new ArrayList<>(Arrays.asList(StringUtil.split(cpath, ";", 0)));
     }
 
+    /**
+     * Resource of the {@link PersistentTypeIndex} that replaces the scans of
+     * the configured classes, jars and directories for persistent types, or
+     * null to scan them.
+     *
+     * @since 3.2.1
+     */
+    public String getTypeIndex() {
+        return _typeIndex;
+    }
+
+    /**
+     * Resource of the {@link PersistentTypeIndex} that replaces the scans of
+     * the configured classes, jars and directories for persistent types, or
+     * null to scan them.
+     *
+     * @since 3.2.1
+     */
+    public void setTypeIndex(String typeIndex) {
+        _typeIndex = (StringUtil.isEmpty(typeIndex)) ? null : typeIndex;
+    }
+
     @Override
     public boolean store(ClassMetaData[] metas, QueryMetaData[] queries,
         SequenceMetaData[] seqs, int mode, Map<File,String> output) {
@@ -642,6 +668,60 @@ public abstract class AbstractCFMetaDataFactory
      * Parse persistent type names.
      */
     protected Set<String> parsePersistentTypeNames(ClassLoader loader)
+        throws IOException {
+        long start = System.currentTimeMillis();
+        Set<String> indexed = readTypeIndex(loader);
+        _indexed = indexed != null;
+        try {
+            Set<String> names = parsePersistentTypeNamesInternal(loader);
+            if (indexed != null) {
+                names.addAll(indexed);
+                // compare with the found-pcs trace of scanning startups
+                if (log.isInfoEnabled())
+                    log.info(_loc.get("type-index-used",
+                        String.valueOf(names.size()), _typeIndex,
+                        String.valueOf(System.currentTimeMillis() - start)));
+            }
+            return names;
+        } finally {
+            _indexed = false;
+        }
+    }
+
+    /**
+     * Read the type index, or return null if there is no valid index.
+     */
+    private Set<String> readTypeIndex(ClassLoader loader) {
+        if (_typeIndex == null)
+            return null;
+        URL url = AccessController.doPrivileged(
+            J2DoPrivHelper.getResourceAction(loader, _typeIndex));
+        if (url == null) {
+            if (log.isWarnEnabled())
+                log.warn(_loc.get("type-index-missing", _typeIndex));
+            return null;
+        }
+        try (InputStream in = (InputStream) AccessController.doPrivileged(
+            J2DoPrivHelper.openStreamAction(url))) {
+            String unit = PersistentTypeIndex.getUnitName(
+                repos.getConfiguration());
+            Set<String> names = PersistentTypeIndex.read(in).get(unit);
+            if (names == null) {
+                if (log.isWarnEnabled())
+                    log.warn(_loc.get("type-index-no-unit", url, unit));
+                return null;
+            }
+            if (log.isTraceEnabled())
+                log.trace(_loc.get("type-index-read", url, names));
+            return names;
+        } catch (PrivilegedActionException | IOException e) {
+            if (log.isWarnEnabled())
+                log.warn(_loc.get("type-index-invalid", url), e);
+            return null;
+        }
+    }
+
+    private Set<String> parsePersistentTypeNamesInternal(ClassLoader loader)
         throws IOException {
         ClassArgParser cparser = newClassArgParser();
         String[] clss;
@@ -652,12 +732,16 @@ public abstract class AbstractCFMetaDataFactory
                 file = value;
                 if (AccessController.doPrivileged(J2DoPrivHelper
                         .isDirectoryAction(file))) {
+                    if (_indexed)
+                        continue;
                     if (log.isTraceEnabled())
                         log.trace(_loc.get("scanning-directory", file));
                     scan(new FileMetaDataIterator(file, newMetaDataFilter()),
                             cparser, names, true, file);
                 }
                 else if (file.getName().endsWith(".jar")) {
+                    if (_indexed)
+                        continue;
                     if (log.isTraceEnabled())
                         log.trace(_loc.get("scanning-jar", file));
                     try {
@@ -706,6 +790,8 @@ public abstract class AbstractCFMetaDataFactory
                     }
                     else if (AccessController
                             .doPrivileged(J2DoPrivHelper.isDirectoryAction(file))) {
+                        if (_indexed)
+                            continue;
                         if (log.isTraceEnabled())
                             log.trace(_loc.get("scanning-directory", file));
                         scan(
@@ -715,6 +801,8 @@ public abstract class AbstractCFMetaDataFactory
                     }
                 }
                 if ("vfs".equals(url.getProtocol())) {
+                    if (_indexed)
+                        continue;
                     if (log.isTraceEnabled()) {
                         log.trace(_loc.get("scanning-vfs-url", url));
                     }
@@ -771,6 +859,8 @@ public abstract class AbstractCFMetaDataFactory
                     continue;
                 }
                 if ("jar".equals(url.getProtocol())) {
+                    if (_indexed)
+                        continue;
                     if (url.getPath().endsWith("!/")) {
                         if (log.isTraceEnabled())
                             log.trace(_loc.get("scanning-jar-url", url));
@@ -785,6 +875,8 @@ public abstract class AbstractCFMetaDataFactory
                     }
                 }
                 else if (url.getPath().endsWith(".jar")) {
+                    if (_indexed)
+                        continue;
                     if (log.isTraceEnabled())
                         log.trace(_loc.get("scanning-jar-at-url", url));
                     try {
@@ -819,7 +911,10 @@ public abstract class AbstractCFMetaDataFactory
                             is.read() == 0x04;
                     is.reset();
 
-                    if (zipHeaderMatch) {
+                    if (zipHeaderMatch && _indexed) {
+                        is.close();
+                    }
+                    else if (zipHeaderMatch) {
                         // The URL provides a Jar-formatted InputStream, consume it with ZipStreamMetaDataIterator
                         if (log.isTraceEnabled())
                             log.trace(_loc.get("scanning-jar-at-url", url));
@@ -846,6 +941,8 @@ public abstract class AbstractCFMetaDataFactory
             for (String s : rsrcs) {
                 rsrc = s;
                 if (rsrc.endsWith(".jar")) {
+                    if (_indexed)
+                        continue;
                     url = AccessController.doPrivileged(
                             J2DoPrivHelper.getResourceAction(loader, rsrc));
                     if (url != null) {
@@ -945,7 +1042,7 @@ public abstract class AbstractCFMetaDataFactory
                 }
             }
         }
-        if (cpath != null) {
+        if (cpath != null && !_indexed) {
             String[] dirs = (String[]) cpath.toArray(new String[cpath.size()]);
             scan(new ClasspathMetaDataIterator(dirs, newMetaDataFilter()),
                 cparser, names, true, dirs);
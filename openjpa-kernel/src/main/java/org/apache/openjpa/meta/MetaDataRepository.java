@@ -34,6 +34,7 @@ import java.util.Objects;
 import java.util.Set;
 import java.util.TreeSet;
 import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.openjpa.conf.OpenJPAConfiguration;
 import org.apache.openjpa.enhance.DynamicPersistenceCapable;
@@ -158,8 +159,18 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
     protected boolean _preload = false;
     protected boolean _preloadComplete = false;
     protected boolean _locking = true;
+    private long _preloadTime = -1;
+    private int _preloadCount = 0;
     private static final String PRELOAD_STR = "Preload";
 
+    // immutable copies of the resolved class, alias and oid class lookups,
+    // republished on each addition so that they can be read without locking
+    protected boolean _snapshotLookups = false;
+    private volatile Map<Class<?>, ClassMetaData> _metaSnapshot = Collections.emptyMap();
+    private volatile Map<String, AliasLookup> _aliasSnapshot = Collections.emptyMap();
+    private volatile Map<Class<?>, ClassMetaData> _oidSnapshot = Collections.emptyMap();
+    private volatile int _snapshotVersion = 0;
+
     // A boolean used to decide whether or not we need to call to PCEnhancer to check whether we have any down level
     // Entities.
     private boolean _logEnhancementLevel = true;
@@ -308,6 +319,48 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
         _preload = l;
     }
 
+    /**
+     * The wall-clock time in milliseconds {@link #preload} took, or -1 if this repository was
+     * not preloaded.
+     *
+     * @since 3.2.1
+     */
+    public long getPreloadTime() {
+        return _preloadTime;
+    }
+
+    /**
+     * The number of persistent classes {@link #preload} loaded, or 0 if this repository was
+     * not preloaded.
+     *
+     * @since 3.2.1
+     */
+    public int getPreloadCount() {
+        return _preloadCount;
+    }
+
+    /**
+     * Whether lookups of resolved metadata by class, alias and oid class are served from an
+     * immutable snapshot without locking. Lookups of classes not resolved yet take the lock.
+     * Defaults to false.
+     *
+     * @since 3.2.1
+     */
+    public boolean getSnapshotLookups() {
+        return _snapshotLookups;
+    }
+
+    /**
+     * Whether lookups of resolved metadata by class, alias and oid class are served from an
+     * immutable snapshot without locking. Lookups of classes not resolved yet take the lock.
+     * Defaults to false.
+     *
+     * @since 3.2.1
+     */
+    public void setSnapshotLookups(boolean snapshotLookups) {
+        _snapshotLookups = snapshotLookups;
+    }
+
 
      /**
      * If the openjpa.MetaDataRepository plugin value Preload=true is set, this method will load all
@@ -321,7 +374,7 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
         if (_preloadComplete) {
             return;
         }
-
+        long start = System.nanoTime();
 
         MultiClassLoader multi = AccessController.doPrivileged(J2DoPrivHelper.newMultiClassLoaderAction());
         multi.addClassLoader(AccessController.doPrivileged(J2DoPrivHelper.getContextClassLoaderAction()));
@@ -375,6 +428,12 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
         processRegisteredClasses(multi);
         _locking = false;
         _preloadComplete = true;
+
+        _preloadCount = loaded.size();
+        _preloadTime = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+        if (_log.isInfoEnabled()) {
+            _log.info(_loc.get("repos-preload-time", loaded.size(), _preloadTime));
+        }
     }
 
 
@@ -389,9 +448,17 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
      *            if true, throws a {@link MetaDataException} if no metadata is found
      */
     public ClassMetaData getMetaData(Class<?> cls, ClassLoader envLoader, boolean mustExist) {
+        if (_snapshotLookups && cls != null) {
+            ClassMetaData meta = _metaSnapshot.get(cls);
+            if (meta != null)
+                return meta;
+        }
         if (_locking) {
             synchronized(this){
-                return getMetaDataInternal(cls, envLoader, mustExist);
+                ClassMetaData meta = getMetaDataInternal(cls, envLoader, mustExist);
+                if (_snapshotLookups && isPublishable(meta))
+                    _metaSnapshot = copyWith(_metaSnapshot, cls, meta);
+                return meta;
             }
         } else {
             return getMetaDataInternal(cls, envLoader, mustExist);
@@ -424,6 +491,66 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
         return meta;
     }
 
+    /**
+     * Whether the given metadata is fully resolved and can be published to the lookup snapshots.
+     * Metadata returned to reentrant lookups while other metadata resolve is not.
+     */
+    private boolean isPublishable(ClassMetaData meta) {
+        int mode = _resMode & (MODE_META | MODE_MAPPING);
+        return meta != null && _resolving.isEmpty() && _mapping.isEmpty()
+            && (meta.getResolve() & mode) == mode;
+    }
+
+    /**
+     * Publish the metadata found for the given alias, unless the lookup
+     * snapshots were dropped since the given version was read.
+     */
+    private synchronized void publishAlias(String alias, ClassLoader envLoader, ClassMetaData meta,
+        int version) {
+        if (version == _snapshotVersion && isPublishable(meta))
+            _aliasSnapshot = copyWith(_aliasSnapshot, alias, new AliasLookup(envLoader, meta));
+    }
+
+    /**
+     * Publish the metadata found for the given oid class, unless the lookup
+     * snapshots were dropped since the given version was read, returning it.
+     */
+    private ClassMetaData publishOid(Class<?> oidClass, ClassMetaData meta, int version) {
+        if (_snapshotLookups) {
+            synchronized (this) {
+                if (version == _snapshotVersion && isPublishable(meta))
+                    _oidSnapshot = copyWith(_oidSnapshot, oidClass, meta);
+            }
+        }
+        return meta;
+    }
+
+    /**
+     * Drop the lookup snapshots after a change to the repository.
+     */
+    private synchronized void clearSnapshots() {
+        _metaSnapshot = Collections.emptyMap();
+        clearLookupSnapshots();
+    }
+
+    /**
+     * Drop the alias and oid lookup snapshots, which newly registered classes
+     * may take over. Lookups that started before the drop do not publish
+     * their results.
+     */
+    private synchronized void clearLookupSnapshots() {
+        _aliasSnapshot = Collections.emptyMap();
+        _oidSnapshot = Collections.emptyMap();
+        _snapshotVersion++;
+    }
+
+    private static <K, V> Map<K, V> copyWith(Map<K, V> map, K key, V val) {
+        Map<K, V> copy = new HashMap<>((int) ((map.size() + 1) / .75f) + 1);
+        copy.putAll(map);
+        copy.put(key, val);
+        return Collections.unmodifiableMap(copy);
+    }
+
     /**
      * Return the metadata for the given alias name.
      *
@@ -440,9 +567,15 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
             throw new MetaDataException(_loc.get("no-alias-meta", alias, _aliases));
         if (alias == null)
             return null;
+        if (_snapshotLookups) {
+            AliasLookup lookup = _aliasSnapshot.get(alias);
+            if (lookup != null && lookup.envLoader == envLoader)
+                return lookup.meta;
+        }
 
         // check cache
         processRegisteredClasses(envLoader);
+        int version = _snapshotVersion;
         List<Class<?>> classList = _aliases.get(alias);
 
         // multiple classes may have been defined with the same alias: we
@@ -473,8 +606,12 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
                 // other class loading problems
             }
         }
-        if (cls != null)
-            return getMetaData(cls, envLoader, mustExist);
+        if (cls != null) {
+            ClassMetaData meta = getMetaData(cls, envLoader, mustExist);
+            if (_snapshotLookups)
+                publishAlias(alias, envLoader, meta, version);
+            return meta;
+        }
 
         // maybe this is some type we've seen but just isn't valid
         if (_aliases.containsKey(alias)) {
@@ -944,7 +1081,9 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
     private ClassMetaData metasPutInternal(Class<?> cls, ClassMetaData meta){
             if (_pawares.containsKey(cls))
                 throw new MetaDataException(_loc.get("pc-and-aware", cls));
-            _metas.put(cls, meta);
+            // a replaced metadata may be published under several lookups
+            if (_metas.put(cls, meta) != null)
+                clearSnapshots();
         return meta;
     }
 
@@ -1090,6 +1229,7 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
     private boolean removeMetaDataInternal(Class<?> cls) {
             if (cls == null)
                 return false;
+            clearSnapshots();
             if (_metas.remove(cls) != null) {
                 Class<?> impl = _ifaces.remove(cls);
                 if (impl != null)
@@ -1176,11 +1316,18 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
             return getMetaData(cls, envLoader, mustExist);
         }
 
+        if (_snapshotLookups) {
+            ClassMetaData meta = _oidSnapshot.get(oid.getClass());
+            if (meta != null)
+                return meta;
+        }
+
         // check cache
         processRegisteredClasses(envLoader);
+        int version = _snapshotVersion;
         Class<?> cls = _oids.get(oid.getClass());
         if (cls != null)
-            return getMetaData(cls, envLoader, mustExist);
+            return publishOid(oid.getClass(), getMetaData(cls, envLoader, mustExist), version);
 
         // maybe this is some type we've seen but just isn't valid
         if (_oids.containsKey(oid.getClass())) {
@@ -1193,9 +1340,10 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
         // oid class and check again
         resolveIdentityClass(oid);
         if (processRegisteredClasses(envLoader).length > 0) {
+            version = _snapshotVersion;
             cls = _oids.get(oid.getClass());
             if (cls != null)
-                return getMetaData(cls, envLoader, mustExist);
+                return publishOid(oid.getClass(), getMetaData(cls, envLoader, mustExist), version);
         }
 
         // record that this is an invalid type
@@ -1473,6 +1621,7 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
             _pawares.clear();
             _nonMapped.clear();
             _metaStringMap.clear();
+            clearSnapshots();
     }
     /**
      * Return the set of configured persistent classes, or null if the user did not configure any.
@@ -1668,6 +1817,8 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
             reg = _registered.toArray(new Class[_registered.size()]);
             _registered.clear();
         }
+        // new classes may take over the aliases and oid classes of others
+        clearLookupSnapshots();
 
         Collection<String> pcNames = getPersistentTypeNames(false, envLoader);
         Collection<Class<?>> failed = null;
@@ -1733,6 +1884,9 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
                 _registered.addAll(failed);
             }
         }
+        // drop anything published while the classes were processed, and
+        // refuse lookups that read the repository before they were
+        clearLookupSnapshots();
         return reg;
     }
 
@@ -2581,4 +2735,19 @@ public class MetaDataRepository implements PCRegistry.RegisterClassListener, Con
         }
         return cmd;
     }
+
+    /**
+     * The metadata found for an alias in the lookup snapshot, with the loader it was looked up
+     * with since the alias resolves to the class of that loader.
+     */
+    private static final class AliasLookup {
+
+        final ClassLoader envLoader;
+        final ClassMetaData meta;
+
+        AliasLookup(ClassLoader envLoader, ClassMetaData meta) {
+            this.envLoader = envLoader;
+            this.meta = meta;
+        }
+    }
 }
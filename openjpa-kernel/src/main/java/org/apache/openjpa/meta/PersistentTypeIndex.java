@@ -0,0 +1,303 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.meta;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.util.Collection;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+import java.util.zip.CRC32;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.conf.OpenJPAConfigurationImpl;
+import org.apache.openjpa.lib.conf.Configuration;
+import org.apache.openjpa.lib.conf.Configurations;
+import org.apache.openjpa.lib.log.Log;
+import org.apache.openjpa.lib.util.Files;
+import org.apache.openjpa.lib.util.Localizer;
+import org.apache.openjpa.lib.util.Options;
+import org.apache.openjpa.util.GeneralException;
+
+/**
+ * Index of the persistent type names found by scanning the configured
+ * classes, jars and directories for annotated types. Scanning reads every
+ * class file of the scanned locations, which dominates the startup of
+ * large persistence units; building the index once at build time with
+ * this tool and setting the <code>TypeIndex</code> property of the
+ * metadata factory to its resource replaces the scans by reading the
+ * index. The index holds a section for each persistence unit, keyed by
+ * the unit name. The index is checksummed: a corrupt index, or one
+ * without a section for the unit, is ignored and the locations are
+ * scanned as usual.
+ *
+ * @since 3.2.1
+ */
+public class PersistentTypeIndex {
+
+    /**
+     * Default resource of the index.
+     */
+    public static final String DEFAULT_RESOURCE =
+        "META-INF/openjpa-types.idx";
+
+    private static final Localizer _loc = Localizer.forPackage
+        (PersistentTypeIndex.class);
+
+    private static final int MAGIC = 0x4f4a5449;
+    private static final byte VERSION = 2;
+
+    /**
+     * Return the name of the section of the given configuration, which is
+     * the name of its persistence unit.
+     */
+    public static String getUnitName(Configuration conf) {
+        String id = conf.getId();
+        return (id == null) ? "" : id;
+    }
+
+    /**
+     * Write an index of the given type names of each persistence unit.
+     */
+    public static void write(Map<String, ? extends Collection<String>> units,
+        OutputStream out)
+        throws IOException {
+        // sort for reproducible builds
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream data = new DataOutputStream(bytes);
+        data.writeInt(units.size());
+        for (Map.Entry<String, ? extends Collection<String>> unit
+            : new TreeMap<>(units).entrySet()) {
+            Set<String> sorted = new TreeSet<>(unit.getValue());
+            data.writeUTF(unit.getKey());
+            data.writeInt(sorted.size());
+            for (String name : sorted)
+                data.writeUTF(name);
+        }
+        data.flush();
+        byte[] payload = bytes.toByteArray();
+
+        DataOutputStream dout = new DataOutputStream(out);
+        dout.writeInt(MAGIC);
+        dout.writeByte(VERSION);
+        dout.writeLong(checksum(payload));
+        dout.writeInt(payload.length);
+        dout.write(payload);
+        dout.flush();
+    }
+
+    /**
+     * Read the type names of each persistence unit of an index.
+     *
+     * @throws IOException if the index is not valid or its checksum does
+     * not match its contents
+     */
+    public static Map<String, Set<String>> read(InputStream in)
+        throws IOException {
+        DataInputStream din = new DataInputStream(in);
+        if (din.readInt() != MAGIC || din.readByte() != VERSION)
+            throw new IOException(_loc.get("type-index-format").getMessage());
+        long checksum = din.readLong();
+        int length = din.readInt();
+        if (length < 0)
+            throw new IOException(_loc.get("type-index-format").getMessage());
+        byte[] payload = new byte[length];
+        din.readFully(payload);
+        if (din.read() != -1 || checksum(payload) != checksum)
+            throw new IOException(_loc.get("type-index-checksum")
+                .getMessage());
+
+        DataInputStream data = new DataInputStream(
+            new ByteArrayInputStream(payload));
+        int units = readSize(data, length);
+        Map<String, Set<String>> index = new HashMap<>();
+        for (int i = 0; i < units; i++) {
+            String unit = data.readUTF();
+            int size = readSize(data, length);
+            Set<String> names = new HashSet<>((int) (size * 1.33 + 1));
+            for (int j = 0; j < size; j++)
+                names.add(data.readUTF());
+            index.put(unit, names);
+        }
+        return index;
+    }
+
+    /**
+     * Read a count, which cannot exceed the length of the payload.
+     */
+    private static int readSize(DataInputStream data, int length)
+        throws IOException {
+        int size = data.readInt();
+        if (size < 0 || size > length)
+            throw new IOException(_loc.get("type-index-format").getMessage());
+        return size;
+    }
+
+    private static long checksum(byte[] bytes) {
+        CRC32 crc = new CRC32();
+        crc.update(bytes, 0, bytes.length);
+        return crc.getValue();
+    }
+
+    /**
+     * Usage: java org.apache.openjpa.meta.PersistentTypeIndex [option]*
+     * Where the following options are recognized.
+     * <ul>
+     * <li><i>-properties/-p &lt;properties file or resource&gt;</i>: The
+     * path or resource name of a OpenJPA properties file containing
+     * information as outlined in {@link OpenJPAConfiguration}. Optional.</li>
+     * <li><i>-&lt;property name&gt; &lt;property value&gt;</i>: All bean
+     * properties of the OpenJPA {@link OpenJPAConfiguration} can be set by
+     * using their names and supplying a value.</li>
+     * <li><i>-file/-f &lt;index file&gt;</i>: The file to write the index
+     * to. Defaults to {@link #DEFAULT_RESOURCE} under the current
+     * directory.</li>
+     * </ul>
+     * The index lists the persistent types found in the locations
+     * configured for each persistence unit, so it is typically written into
+     * the output directory of the build after compiling the persistent
+     * classes.
+     */
+    public static void main(String[] args) {
+        Options opts = new Options();
+        opts.setFromCmdLine(args);
+        if (!run(opts)) {
+            // START - ALLOW PRINT STATEMENTS
+            System.err.println(_loc.get("type-index-usage"));
+            // STOP - ALLOW PRINT STATEMENTS
+        }
+    }
+
+    /**
+     * Run the tool. Returns false if invalid options given. Runs against all
+     * the persistence units defined in the resource to parse, and writes
+     * a section for each of them to the index.
+     */
+    public static boolean run(Options opts) {
+        File file = Files.getFile(opts.removeProperty("file", "f",
+            DEFAULT_RESOURCE), null);
+        final Map<String, Set<String>> units = new TreeMap<>();
+        boolean ret = Configurations.runAgainstAllAnchors(opts,
+            new Configurations.Runnable() {
+            @Override
+            public boolean run(Options opts) {
+                OpenJPAConfiguration conf = new OpenJPAConfigurationImpl();
+                try {
+                    Configurations.populateConfiguration(conf, opts);
+                    Set<String> names = getPersistentTypeNames(conf, null);
+                    if (names == null)
+                        return false;
+                    units.put(getUnitName(conf), names);
+                    return true;
+                } finally {
+                    conf.close();
+                }
+            }
+        });
+        if (units.isEmpty())
+            return false;
+        try {
+            write(units, file);
+        } catch (IOException ioe) {
+            throw new GeneralException(ioe);
+        }
+        return ret;
+    }
+
+    /**
+     * Run the tool. Returns false if invalid options given.
+     */
+    public static boolean run(OpenJPAConfiguration conf, Options opts)
+        throws IOException {
+        File file = Files.getFile(opts.removeProperty("file", "f",
+            DEFAULT_RESOURCE), null);
+        Configurations.populateConfiguration(conf, opts);
+        return run(conf, file, null);
+    }
+
+    /**
+     * Write the index of the persistent types of the given configuration
+     * to the given file.
+     */
+    public static boolean run(OpenJPAConfiguration conf, File file,
+        ClassLoader loader)
+        throws IOException {
+        Set<String> names = getPersistentTypeNames(conf, loader);
+        if (names == null)
+            return false;
+        Map<String, Set<String>> units = new TreeMap<>();
+        units.put(getUnitName(conf), names);
+        write(units, file);
+        Log log = conf.getLog(OpenJPAConfiguration.LOG_TOOL);
+        if (log.isInfoEnabled())
+            log.info(_loc.get("type-index-written", names.size(), file));
+        return true;
+    }
+
+    /**
+     * Scan the configured locations of the given configuration for its
+     * persistent types, or return null if there are none.
+     */
+    private static Set<String> getPersistentTypeNames(
+        OpenJPAConfiguration conf, ClassLoader loader) {
+        if (loader == null)
+            loader = conf.getClassResolverInstance().
+                getClassLoader(PersistentTypeIndex.class, null);
+        Log log = conf.getLog(OpenJPAConfiguration.LOG_TOOL);
+
+        // scan the configured locations rather than reading an old index
+        MetaDataRepository repos = conf.newMetaDataRepositoryInstance();
+        MetaDataFactory factory = repos.getMetaDataFactory();
+        if (factory instanceof AbstractCFMetaDataFactory)
+            ((AbstractCFMetaDataFactory) factory).setTypeIndex(null);
+        Set<String> names = factory.getPersistentTypeNames(false, loader);
+        if (names == null || names.isEmpty()) {
+            log.warn(_loc.get("type-index-no-types", getUnitName(conf)));
+            return null;
+        }
+        if (log.isInfoEnabled())
+            log.info(_loc.get("type-index-unit", names.size(),
+                getUnitName(conf)));
+        return names;
+    }
+
+    /**
+     * Write the given index to the given file.
+     */
+    private static void write(Map<String, Set<String>> units, File file)
+        throws IOException {
+        File dir = file.getAbsoluteFile().getParentFile();
+        if (dir != null && !dir.exists() && !dir.mkdirs())
+            throw new IOException(dir.toString());
+        try (OutputStream out = new FileOutputStream(file)) {
+            write(units, out);
+        }
+    }
+}
@@ -0,0 +1,52 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+/**
+ * Decides which entries a {@link CacheMap} keeps as hard references once it
+ * is full. The map consults the policy whenever a new key would push out an
+ * existing entry; candidates that are not admitted go to the soft reference
+ * map instead, so a later hit can still promote them.
+ *
+ * Implementations are called concurrently from readers of the cache and
+ * must therefore be thread safe, although they may trade accuracy for
+ * throughput.
+ *
+ * @since 3.2.1
+ */
+public interface CacheEvictionPolicy {
+
+    /**
+     * Set the maximum number of hard references of the cache map. Invoked
+     * before the policy is used and whenever the cache size changes.
+     */
+    void setMaximumSize(int size);
+
+    /**
+     * Record a read or write of the given key, regardless of whether the
+     * key is currently cached.
+     */
+    void recordAccess(Object key);
+
+    /**
+     * Return true if <code>candidate</code> should displace
+     * <code>victim</code>, the entry the cache map would otherwise evict.
+     */
+    boolean admit(Object candidate, Object victim);
+}
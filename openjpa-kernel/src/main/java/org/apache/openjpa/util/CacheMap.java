@@ -22,6 +22,7 @@ import java.util.AbstractCollection;
 import java.util.AbstractSet;
 import java.util.Collection;
 import java.util.Collections;
+import java.util.HashMap;
 import java.util.Iterator;
 import java.util.Map;
 import java.util.Set;
@@ -65,6 +66,17 @@ public class CacheMap
     // number of pinned values (not including keys not mapped to values)
     private int _pinnedSize = 0;
 
+    // optional admission policy; null keeps plain LRU/random eviction
+    private CacheEvictionPolicy _policy = null;
+
+    // optional weight bound on the unpinned hard references; the weight of
+    // each entry is remembered so that in-place changes to cached values
+    // cannot make the running total drift
+    private CacheWeigher _weigher = null;
+    private long _maxWeight = -1;
+    private long _weight = 0;
+    private final Map<Object, Integer> _weights = new HashMap<>();
+
     private final ReentrantReadWriteLock rwl = new ReentrantReadWriteLock(true);
     private final Lock _readLock = rwl.readLock();
     private final Lock _writeLock = rwl.writeLock();
@@ -156,6 +168,7 @@ public class CacheMap
      * Called from {@link SizedMap#overflowRemoved} in the cache map.
      */
     protected void cacheMapOverflowRemoved(Object key, Object value) {
+        unweigh(key);
         if (softMap.size() < softMap.getMaxSize())
             put(softMap, key, value);
         else
@@ -181,7 +194,13 @@ public class CacheMap
      * take additional actions.
      */
     protected Object put(Map map, Object key, Object value) {
-        return map.put(key, value);
+        Object val = map.put(key, value);
+        if (map == cacheMap && _weigher != null) {
+            int w = _weigher.weigh(key, value);
+            Integer old = _weights.put(key, w);
+            _weight += w - ((old == null) ? 0 : old);
+        }
+        return val;
     }
 
     /**
@@ -189,9 +208,39 @@ public class CacheMap
      * take additional actions.
      */
     protected Object remove(Map map, Object key) {
+        if (map == cacheMap)
+            unweigh(key);
         return map.remove(key);
     }
 
+    /**
+     * Drop the remembered weight of the given hard reference, if any.
+     */
+    private void unweigh(Object key) {
+        if (_weights.isEmpty())
+            return;
+        Integer w = _weights.remove(key);
+        if (w != null)
+            _weight -= w;
+    }
+
+    /**
+     * Move hard references to the soft map until the total weight is
+     * within bounds again.
+     */
+    private void evictOverweight() {
+        if (_weigher == null || _maxWeight < 0)
+            return;
+        while (_weight > _maxWeight && !cacheMap.isEmpty()) {
+            Object victim = evictionCandidate();
+            if (victim == null)
+                break;
+            Object val = remove(cacheMap, victim);
+            if (val != null)
+                cacheMapOverflowRemoved(victim, val);
+        }
+    }
+
     /**
      * Acquire read lock.
      */
@@ -234,11 +283,137 @@ public class CacheMap
         writeLock();
         try {
             cacheMap.setMaxSize((size < 0) ? Integer.MAX_VALUE : size);
+            if (_policy != null)
+                _policy.setMaximumSize(getCacheSize());
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    /**
+     * The weigher used to estimate the size of each entry, or null if the
+     * map only bounds the number of entries. Existing entries are weighed
+     * when the weigher is set.
+     *
+     * @since 3.2.1
+     */
+    public void setWeigher(CacheWeigher weigher) {
+        writeLock();
+        try {
+            _weigher = weigher;
+            _weights.clear();
+            _weight = 0;
+            if (weigher != null) {
+                Map.Entry entry;
+                for (Object o : cacheMap.entrySet()) {
+                    entry = (Map.Entry) o;
+                    int w = weigher.weigh(entry.getKey(), entry.getValue());
+                    _weights.put(entry.getKey(), w);
+                    _weight += w;
+                }
+            }
+            evictOverweight();
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    /**
+     * The weigher used to estimate the size of each entry, or null.
+     *
+     * @since 3.2.1
+     */
+    public CacheWeigher getWeigher() {
+        return _weigher;
+    }
+
+    /**
+     * The maximum total weight of the unpinned hard references, or -1 for
+     * no limit. Only enforced when a {@link CacheWeigher} is set; entries
+     * over the limit are moved to the soft reference map like entries over
+     * the cache size.
+     *
+     * @since 3.2.1
+     */
+    public void setMaxWeight(long max) {
+        writeLock();
+        try {
+            _maxWeight = (max < 0) ? -1 : max;
+            evictOverweight();
+        } finally {
+            writeUnlock();
+        }
+    }
+
+    /**
+     * The maximum total weight of the unpinned hard references, or -1 for
+     * no limit.
+     *
+     * @since 3.2.1
+     */
+    public long getMaxWeight() {
+        return _maxWeight;
+    }
+
+    /**
+     * The current total weight of the unpinned hard references, or 0 if no
+     * {@link CacheWeigher} is set.
+     *
+     * @since 3.2.1
+     */
+    public long getWeight() {
+        readLock();
+        try {
+            return _weight;
+        } finally {
+            readUnlock();
+        }
+    }
+
+    /**
+     * The policy deciding whether a new key may displace an existing hard
+     * reference once the map is full, or null to always admit new keys.
+     *
+     * @since 3.2.1
+     */
+    public void setEvictionPolicy(CacheEvictionPolicy policy) {
+        writeLock();
+        try {
+            _policy = policy;
+            if (policy != null)
+                policy.setMaximumSize(getCacheSize());
         } finally {
             writeUnlock();
         }
     }
 
+    /**
+     * The policy deciding whether a new key may displace an existing hard
+     * reference once the map is full, or null to always admit new keys.
+     *
+     * @since 3.2.1
+     */
+    public CacheEvictionPolicy getEvictionPolicy() {
+        return _policy;
+    }
+
+    /**
+     * Return the key the hard reference map would evict next, or null if
+     * unknown.
+     */
+    protected Object evictionCandidate() {
+        if (cacheMap.isEmpty())
+            return null;
+        if (cacheMap instanceof LRUMap)
+            return ((LRUMap) cacheMap).firstKey();
+        if (cacheMap instanceof ConcurrentHashMap) {
+            Iterator itr = ((ConcurrentHashMap) cacheMap).randomEntryIterator();
+            if (itr.hasNext())
+                return ((Map.Entry) itr.next()).getKey();
+        }
+        return null;
+    }
+
     /**
      * The maximum number of hard references to maintain, or -1 for no limit.
      */
@@ -367,6 +542,10 @@ public class CacheMap
                 if (val == null) {
                     val = pinnedMap.get(key);
                 }
+                // a soft hit or a miss followed by a put is recorded by put,
+                // so only hard hits are recorded here
+                if (val != null && _policy != null)
+                    _policy.recordAccess(key);
             } else {
                 putcache = true;
             }
@@ -402,6 +581,22 @@ public class CacheMap
             if (cacheMap.getMaxSize() == 0)
                 return null;
 
+            // when full, let the eviction policy decide whether the new key
+            // may displace the entry that would otherwise be evicted
+            if (_policy != null) {
+                _policy.recordAccess(key);
+                if (cacheMap.isFull() && !cacheMap.containsKey(key)) {
+                    Object victim = evictionCandidate();
+                    if (victim != null) {
+                        if (!_policy.admit(key, victim))
+                            return putSoft(key, value);
+                        Object victimVal = remove(cacheMap, victim);
+                        if (victimVal != null)
+                            cacheMapOverflowRemoved(victim, victimVal);
+                    }
+                }
+            }
+
             // otherwise, put the value into the map and clear it from the
             // soft map
             val = put(cacheMap, key, value);
@@ -417,12 +612,29 @@ public class CacheMap
                 entryRemoved(key, val, false);
                 entryAdded(key, value);
             }
+            evictOverweight();
             return val;
         } finally {
             writeUnlock();
         }
     }
 
+    /**
+     * Place a key that was not admitted to the hard references into the
+     * soft map, where a later hit gives it another chance.
+     */
+    private Object putSoft(Object key, Object value) {
+        Object val = remove(softMap, key);
+        if (val != null)
+            entryRemoved(key, val, false);
+        entryAdded(key, value);
+        if (softMap.size() < softMap.getMaxSize())
+            put(softMap, key, value);
+        else
+            entryRemoved(key, value, true);
+        return val;
+    }
+
     @Override
     public void putAll(Map map) {
         putAll(map, true);
@@ -484,6 +696,8 @@ public class CacheMap
 
             notifyEntryRemovals(cacheMap.entrySet());
             cacheMap.clear();
+            _weights.clear();
+            _weight = 0;
 
             notifyEntryRemovals(softMap.entrySet());
             softMap.clear();
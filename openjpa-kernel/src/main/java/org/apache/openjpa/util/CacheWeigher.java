@@ -0,0 +1,38 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+/**
+ * Estimates the weight of a {@link CacheMap} entry, typically the number
+ * of bytes it retains on the heap. A cache map with a weigher and a
+ * maximum weight evicts entries by total weight rather than by count.
+ *
+ * Weighers are called while the cache map holds its write lock and should
+ * be fast and side effect free. The weight of an entry is computed once
+ * when the entry is added.
+ *
+ * @since 3.2.1
+ */
+public interface CacheWeigher {
+
+    /**
+     * Return the non-negative weight of the given entry.
+     */
+    int weigh(Object key, Object value);
+}
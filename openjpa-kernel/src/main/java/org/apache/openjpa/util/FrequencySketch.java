@@ -0,0 +1,132 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+/**
+ * Count-min sketch of 4-bit counters used to estimate how often a key was
+ * accessed recently. Four counters per key are packed into a table of longs;
+ * once the number of increments reaches ten times the table size all
+ * counters are halved, so the estimate favours recent history.
+ *
+ * Updates are not synchronized. Concurrent increments may be lost, which
+ * only lowers the accuracy of the estimate. Each operation reads the table
+ * once so that a concurrent resize never mixes two table sizes.
+ *
+ * @since 3.2.1
+ */
+class FrequencySketch {
+
+    private static final long[] SEED = {
+        0xc3a5c85c97cb3127L, 0xb492b66fbe98f273L,
+        0x9ae16a3b2f90404fL, 0xcbf29ce484222325L,
+    };
+    private static final long RESET_MASK = 0x7777777777777777L;
+    private static final long ONE_MASK = 0x1111111111111111L;
+    private static final int MAX_TABLE = 1 << 26;
+
+    private volatile long[] _table;
+    private int _sampleSize;
+    private int _size;
+
+    public FrequencySketch(int maximumSize) {
+        ensureCapacity(maximumSize);
+    }
+
+    /**
+     * Size the table for the given number of cached entries, discarding
+     * the current counts.
+     */
+    public void ensureCapacity(int maximumSize) {
+        int max = Math.min(Math.max(maximumSize, 16), MAX_TABLE);
+        int n = 1;
+        while (n < max)
+            n <<= 1;
+        _sampleSize = (maximumSize <= 0 || maximumSize > Integer.MAX_VALUE / 10)
+            ? Integer.MAX_VALUE : 10 * Math.max(maximumSize, 16);
+        _size = 0;
+        _table = new long[n];
+    }
+
+    /**
+     * Return the estimated number of recent accesses of the given key,
+     * at most 15.
+     */
+    public int frequency(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        long[] table = _table;
+        int freq = Integer.MAX_VALUE;
+        for (int i = 0; i < 4; i++) {
+            int index = indexOf(hash, i, table.length - 1);
+            int count = (int) ((table[index] >>> ((start + i) << 2)) & 0xfL);
+            freq = Math.min(freq, count);
+        }
+        return freq;
+    }
+
+    /**
+     * Increment the counters of the given key, aging all counters once
+     * the sample size is reached.
+     */
+    public void increment(Object key) {
+        int hash = spread(key.hashCode());
+        int start = (hash & 3) << 2;
+        long[] table = _table;
+        boolean added = false;
+        for (int i = 0; i < 4; i++)
+            added |= incrementAt(table, indexOf(hash, i, table.length - 1),
+                start + i);
+        if (added && ++_size >= _sampleSize)
+            reset(table);
+    }
+
+    private static boolean incrementAt(long[] table, int i, int j) {
+        int offset = j << 2;
+        long mask = 0xfL << offset;
+        if ((table[i] & mask) != mask) {
+            table[i] += 1L << offset;
+            return true;
+        }
+        return false;
+    }
+
+    /**
+     * Halve every counter.
+     */
+    private void reset(long[] table) {
+        int odd = 0;
+        for (int i = 0; i < table.length; i++) {
+            odd += Long.bitCount(table[i] & ONE_MASK);
+            table[i] = (table[i] >>> 1) & RESET_MASK;
+        }
+        _size = (_size >>> 1) - (odd >>> 2);
+    }
+
+    private static int indexOf(int item, int i, int mask) {
+        long hash = (item + SEED[i]) * SEED[i];
+        hash += hash >>> 32;
+        return ((int) hash) & mask;
+    }
+
+    private static int spread(int x) {
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        x = ((x >>> 16) ^ x) * 0x45d9f3b;
+        return (x >>> 16) ^ x;
+    }
+}
@@ -184,11 +184,8 @@ public class ImplHelper {
         if ((sm.getPCState() == PCState.PDIRTY
             && (!sm.isFlushed() || sm.isFlushedDirty()))
             || (sm.getPCState() == PCState.PNEW && sm.isFlushedDirty())) {
-            BitSet dirty = sm.getDirty();
-            if (sm.isFlushed()) {
-                dirty = (BitSet) dirty.clone();
-                dirty.andNot(sm.getFlushed());
-            }
+            BitSet dirty = (sm.isFlushed()) ? sm.getUnflushedDirty()
+                : sm.getDirty();
             if (dirty.length() > 0)
                 return dirty;
         }
@@ -0,0 +1,233 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.nio.ByteBuffer;
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+/**
+ * Bounded store of serialized values kept outside of the Java heap.
+ * Values are appended to a ring of fixed size direct buffer slabs; when
+ * the ring wraps, the oldest slab is recycled and every value still living
+ * in it is dropped. Replaced and removed values leave dead space behind
+ * that is reclaimed with the slab, so the store behaves like a FIFO cache
+ * of serialized bytes.
+ *
+ * All methods are synchronized; callers are expected to do the
+ * (de)serialization work outside of this class.
+ *
+ * @since 3.2.1
+ */
+public class OffHeapStore {
+
+    private final ByteBuffer[] _slabs;
+    private final List<Object>[] _slabKeys;
+    private final int _slabSize;
+    private final Map<Object, Location> _index = new HashMap<>();
+    private int _slab = 0;
+    private int _position = 0;
+    private long _bytes = 0;
+
+    /**
+     * Create a store of at most <code>capacity</code> bytes split into
+     * slabs of <code>slabSize</code> bytes. At least one slab is always
+     * available. Slabs are allocated lazily as they are first written.
+     */
+    @SuppressWarnings("unchecked")
+    public OffHeapStore(long capacity, int slabSize) {
+        if (slabSize <= 0)
+            throw new IllegalArgumentException(String.valueOf(slabSize));
+        long slabs = Math.max(1, capacity / slabSize);
+        if (slabs > Integer.MAX_VALUE)
+            slabs = Integer.MAX_VALUE;
+        _slabSize = slabSize;
+        _slabs = new ByteBuffer[(int) slabs];
+        _slabKeys = new List[(int) slabs];
+    }
+
+    /**
+     * The size of a single slab; values larger than this are never stored.
+     */
+    public int getSlabSize() {
+        return _slabSize;
+    }
+
+    /**
+     * The total number of bytes this store may allocate.
+     */
+    public long getCapacity() {
+        return (long) _slabs.length * _slabSize;
+    }
+
+    /**
+     * Store the given bytes under the given key, replacing any previous
+     * value. Returns the keys whose values were dropped to make room, which
+     * includes <code>key</code> itself if the value does not fit in a slab.
+     */
+    public synchronized Collection<Object> put(Object key, byte[] bytes) {
+        release(_index.remove(key));
+        if (bytes.length > _slabSize)
+            return Collections.singleton(key);
+
+        Collection<Object> dropped = Collections.emptyList();
+        if (_slabs[_slab] == null || _position + bytes.length > _slabSize) {
+            if (_slabs[_slab] != null)
+                _slab = (_slab + 1) % _slabs.length;
+            dropped = recycle(_slab);
+            _position = 0;
+        }
+
+        ByteBuffer buf = _slabs[_slab].duplicate();
+        buf.position(_position);
+        buf.put(bytes);
+        _index.put(key, new Location(_slab, _position, bytes.length));
+        _slabKeys[_slab].add(key);
+        _position += bytes.length;
+        _bytes += bytes.length;
+        return dropped;
+    }
+
+    /**
+     * Return the bytes stored under the given key, or null if none.
+     */
+    public synchronized byte[] get(Object key) {
+        return read(_index.get(key));
+    }
+
+    /**
+     * Remove and return the bytes stored under the given key, or null
+     * if none.
+     */
+    public synchronized byte[] take(Object key) {
+        Location loc = _index.remove(key);
+        byte[] bytes = read(loc);
+        release(loc);
+        return bytes;
+    }
+
+    /**
+     * Remove the value stored under the given key.
+     *
+     * @return true if a value was removed
+     */
+    public synchronized boolean remove(Object key) {
+        Location loc = _index.remove(key);
+        release(loc);
+        return loc != null;
+    }
+
+    public synchronized boolean containsKey(Object key) {
+        return _index.containsKey(key);
+    }
+
+    /**
+     * The keys currently stored.
+     */
+    public synchronized Collection<Object> keys() {
+        return new ArrayList<>(_index.keySet());
+    }
+
+    /**
+     * The number of values currently stored.
+     */
+    public synchronized int size() {
+        return _index.size();
+    }
+
+    /**
+     * The number of bytes taken by the values currently stored, not
+     * counting dead space awaiting recycling.
+     */
+    public synchronized long getByteCount() {
+        return _bytes;
+    }
+
+    /**
+     * Drop all values. Allocated slabs are kept for reuse.
+     */
+    public synchronized void clear() {
+        _index.clear();
+        for (List<Object> keys : _slabKeys)
+            if (keys != null)
+                keys.clear();
+        _slab = 0;
+        _position = 0;
+        _bytes = 0;
+    }
+
+    /**
+     * Prepare the given slab for writing from its start, dropping the
+     * values that still live in it.
+     */
+    private Collection<Object> recycle(int slab) {
+        if (_slabs[slab] == null) {
+            _slabs[slab] = ByteBuffer.allocateDirect(_slabSize);
+            _slabKeys[slab] = new ArrayList<>();
+            return Collections.emptyList();
+        }
+
+        Collection<Object> dropped = new ArrayList<>();
+        for (Object key : _slabKeys[slab]) {
+            Location loc = _index.get(key);
+            if (loc != null && loc.slab == slab) {
+                _index.remove(key);
+                release(loc);
+                dropped.add(key);
+            }
+        }
+        _slabKeys[slab].clear();
+        return dropped;
+    }
+
+    private byte[] read(Location loc) {
+        if (loc == null)
+            return null;
+        byte[] bytes = new byte[loc.length];
+        ByteBuffer buf = _slabs[loc.slab].duplicate();
+        buf.position(loc.offset);
+        buf.get(bytes);
+        return bytes;
+    }
+
+    private void release(Location loc) {
+        if (loc != null)
+            _bytes -= loc.length;
+    }
+
+    /**
+     * Position of a value within the slabs.
+     */
+    private static class Location {
+
+        final int slab;
+        final int offset;
+        final int length;
+
+        Location(int slab, int offset, int length) {
+            this.slab = slab;
+            this.offset = offset;
+            this.length = length;
+        }
+    }
+}
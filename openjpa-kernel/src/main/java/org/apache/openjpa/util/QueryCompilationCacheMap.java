@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.util.Date;
+import java.util.concurrent.atomic.LongAdder;
+
+/**
+ * Bounded {@link StripedCacheMap} for the query compilation cache that
+ * counts hits, misses and evictions. The least recently used compilations
+ * of each stripe are dropped once the cache size is reached; unlike the
+ * default {@link CacheMap}, no soft references are kept unless configured,
+ * so the map stays bounded even when queries are built by concatenating
+ * strings.
+ * <PRE>
+ *   &lt;property name="openjpa.QueryCompilationCache"
+ *     value="bounded(CacheSize=5000)" /&gt;
+ * </PRE>
+ *
+ * @since 3.2.1
+ */
+public class QueryCompilationCacheMap
+    extends StripedCacheMap {
+
+    /**
+     * Default number of stripes.
+     */
+    public static final int DEFAULT_STRIPES = 16;
+
+    private final LongAdder _hits = new LongAdder();
+    private final LongAdder _misses = new LongAdder();
+    private final LongAdder _evictions = new LongAdder();
+    private volatile Date _since = new Date();
+
+    /**
+     * Create a map with a size of 1000 over the default number of stripes.
+     */
+    public QueryCompilationCacheMap() {
+        this(1000, DEFAULT_STRIPES);
+    }
+
+    /**
+     * Create a map with the given size and number of stripes.
+     */
+    public QueryCompilationCacheMap(int max, int stripes) {
+        super(true, max, stripes);
+        setSoftReferenceSize(0);
+    }
+
+    @Override
+    public Object get(Object key) {
+        Object val = super.get(key);
+        if (val == null)
+            _misses.increment();
+        else
+            _hits.increment();
+        return val;
+    }
+
+    /**
+     * Add the given entry unless the key is already mapped, atomically with
+     * respect to the stripe of the key only.
+     */
+    @Override
+    public Object putIfAbsent(Object key, Object value) {
+        CacheMap stripe = stripeFor(key);
+        stripe.writeLock();
+        try {
+            Object val = stripe.get(key);
+            if (val == null)
+                stripe.put(key, value);
+            return val;
+        } finally {
+            stripe.writeUnlock();
+        }
+    }
+
+    @Override
+    protected void entryRemoved(Object key, Object value, boolean expired) {
+        if (expired)
+            _evictions.increment();
+    }
+
+    /**
+     * The number of lookups that found a compilation since the last reset.
+     */
+    public long getHitCount() {
+        return _hits.sum();
+    }
+
+    /**
+     * The number of lookups that found no compilation since the last reset.
+     */
+    public long getMissCount() {
+        return _misses.sum();
+    }
+
+    /**
+     * The number of compilations dropped to keep the map within its size
+     * since the last reset.
+     */
+    public long getEvictionCount() {
+        return _evictions.sum();
+    }
+
+    /**
+     * The fraction of lookups that found a compilation, or 0 if there were
+     * none.
+     */
+    public double getHitRatio() {
+        long hits = getHitCount();
+        long total = hits + getMissCount();
+        return (total == 0) ? 0 : (double) hits / total;
+    }
+
+    /**
+     * The time of the last reset of the statistics.
+     */
+    public Date getStatisticsResetDate() {
+        return _since;
+    }
+
+    /**
+     * Reset the statistics.
+     */
+    public void resetStatistics() {
+        _hits.reset();
+        _misses.reset();
+        _evictions.reset();
+        _since = new Date();
+    }
+}
@@ -0,0 +1,406 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.util.AbstractCollection;
+import java.util.AbstractSet;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.openjpa.lib.util.collections.IteratorChain;
+
+/**
+ * {@link CacheMap} that partitions its entries over a fixed number of
+ * independently locked stripes. Each stripe is a complete {@link CacheMap}
+ * with its own LRU/random eviction, soft reference overflow and pinned
+ * entries, so readers and writers of keys that hash to different stripes
+ * never contend for the same lock. The configured cache and soft reference
+ * sizes are divided evenly among the stripes, so eviction is only
+ * approximately global.
+ *
+ * Operations that span the whole map ({@link #writeLock}, {@link #clear},
+ * {@link #size}) visit every stripe.
+ *
+ * @since 3.2.1
+ */
+public class StripedCacheMap
+    extends CacheMap {
+
+    private final CacheMap[] _stripes;
+    private final int _mask;
+    private final boolean _lru;
+    private int _cacheSize;
+    private int _softRefs = -1;
+    private long _maxWeight = -1;
+
+    /**
+     * Create a cache map with a size of 1000 spread over the given
+     * number of stripes.
+     */
+    public StripedCacheMap(boolean lru, int stripes) {
+        this(lru, 1000, stripes);
+    }
+
+    /**
+     * Create a cache map with the given properties. The number of stripes
+     * is rounded up to the next power of two.
+     */
+    public StripedCacheMap(boolean lru, int max, int stripes) {
+        // the inherited maps are never used; keep them as small as possible
+        super(lru, 0, 1, .75F, 1);
+        int n = 1;
+        while (n < stripes)
+            n <<= 1;
+        _lru = lru;
+        _mask = n - 1;
+        _cacheSize = (max < 0) ? -1 : max;
+        _stripes = new CacheMap[n];
+        for (int i = 0; i < n; i++)
+            _stripes[i] = newStripe(lru, perStripe(_cacheSize));
+    }
+
+    /**
+     * Create the map backing a single stripe. The returned map must forward
+     * its {@link CacheMap#entryAdded} and {@link CacheMap#entryRemoved}
+     * callbacks to this instance.
+     */
+    protected CacheMap newStripe(boolean lru, int max) {
+        return new CacheMap(lru, max) {
+            @Override
+            protected void entryRemoved(Object key, Object value,
+                boolean expired) {
+                StripedCacheMap.this.entryRemoved(key, value, expired);
+            }
+
+            @Override
+            protected void entryAdded(Object key, Object value) {
+                StripedCacheMap.this.entryAdded(key, value);
+            }
+        };
+    }
+
+    /**
+     * The number of stripes in this map.
+     */
+    public int getStripeCount() {
+        return _stripes.length;
+    }
+
+    /**
+     * Return the stripe responsible for the given key.
+     */
+    protected CacheMap stripeFor(Object key) {
+        if (key == null)
+            return _stripes[0];
+        int h = key.hashCode();
+        h ^= (h >>> 16);
+        return _stripes[h & _mask];
+    }
+
+    /**
+     * Split a total size among the stripes, rounding up.
+     */
+    private int perStripe(int size) {
+        if (size < 0)
+            return -1;
+        return (size + _stripes.length - 1) / _stripes.length;
+    }
+
+    /**
+     * Acquire the read lock of every stripe.
+     */
+    @Override
+    public void readLock() {
+        for (CacheMap stripe : _stripes)
+            stripe.readLock();
+    }
+
+    /**
+     * Release the read lock of every stripe.
+     */
+    @Override
+    public void readUnlock() {
+        for (int i = _stripes.length - 1; i >= 0; i--)
+            _stripes[i].readUnlock();
+    }
+
+    /**
+     * Acquire the write lock of every stripe, always in the same order.
+     */
+    @Override
+    public void writeLock() {
+        for (CacheMap stripe : _stripes)
+            stripe.writeLock();
+    }
+
+    /**
+     * Release the write lock of every stripe.
+     */
+    @Override
+    public void writeUnlock() {
+        for (int i = _stripes.length - 1; i >= 0; i--)
+            _stripes[i].writeUnlock();
+    }
+
+    @Override
+    public boolean isLRU() {
+        return _lru;
+    }
+
+    @Override
+    public void setCacheSize(int size) {
+        _cacheSize = (size < 0) ? -1 : size;
+        int max = perStripe(_cacheSize);
+        for (CacheMap stripe : _stripes)
+            stripe.setCacheSize(max);
+        CacheEvictionPolicy policy = getEvictionPolicy();
+        if (policy != null)
+            policy.setMaximumSize(_cacheSize);
+    }
+
+    @Override
+    public void setWeigher(CacheWeigher weigher) {
+        for (CacheMap stripe : _stripes)
+            stripe.setWeigher(weigher);
+    }
+
+    @Override
+    public CacheWeigher getWeigher() {
+        return _stripes[0].getWeigher();
+    }
+
+    /**
+     * The maximum weight is divided evenly among the stripes.
+     */
+    @Override
+    public void setMaxWeight(long max) {
+        long perStripe = (max < 0) ? -1 : (max + _stripes.length - 1) / _stripes.length;
+        for (CacheMap stripe : _stripes)
+            stripe.setMaxWeight(perStripe);
+        _maxWeight = (max < 0) ? -1 : max;
+    }
+
+    @Override
+    public long getMaxWeight() {
+        return _maxWeight;
+    }
+
+    @Override
+    public long getWeight() {
+        long weight = 0;
+        for (CacheMap stripe : _stripes)
+            weight += stripe.getWeight();
+        return weight;
+    }
+
+    /**
+     * All stripes consult the given policy, which is sized for the map as
+     * a whole rather than for a single stripe.
+     */
+    @Override
+    public void setEvictionPolicy(CacheEvictionPolicy policy) {
+        CacheEvictionPolicy shared = (policy == null) ? null
+            : new SharedEvictionPolicy(policy);
+        for (CacheMap stripe : _stripes)
+            stripe.setEvictionPolicy(shared);
+        super.setEvictionPolicy(policy);
+    }
+
+    @Override
+    public int getCacheSize() {
+        return _cacheSize;
+    }
+
+    @Override
+    public void setSoftReferenceSize(int size) {
+        _softRefs = (size < 0) ? -1 : size;
+        int max = perStripe(_softRefs);
+        for (CacheMap stripe : _stripes)
+            stripe.setSoftReferenceSize(max);
+    }
+
+    @Override
+    public int getSoftReferenceSize() {
+        return _softRefs;
+    }
+
+    @Override
+    public Set getPinnedKeys() {
+        Set keys = new HashSet();
+        for (CacheMap stripe : _stripes)
+            keys.addAll(stripe.getPinnedKeys());
+        return Collections.unmodifiableSet(keys);
+    }
+
+    @Override
+    public boolean pin(Object key) {
+        return stripeFor(key).pin(key);
+    }
+
+    @Override
+    public boolean unpin(Object key) {
+        return stripeFor(key).unpin(key);
+    }
+
+    @Override
+    public Object get(Object key) {
+        return stripeFor(key).get(key);
+    }
+
+    @Override
+    public Object put(Object key, Object value) {
+        return stripeFor(key).put(key, value);
+    }
+
+    @Override
+    public Object remove(Object key) {
+        return stripeFor(key).remove(key);
+    }
+
+    @Override
+    public void clear() {
+        for (CacheMap stripe : _stripes)
+            stripe.clear();
+    }
+
+    @Override
+    public int size() {
+        int size = 0;
+        for (CacheMap stripe : _stripes)
+            size += stripe.size();
+        return size;
+    }
+
+    @Override
+    public boolean containsKey(Object key) {
+        return stripeFor(key).containsKey(key);
+    }
+
+    @Override
+    public boolean containsValue(Object val) {
+        for (CacheMap stripe : _stripes)
+            if (stripe.containsValue(val))
+                return true;
+        return false;
+    }
+
+    @Override
+    public Set keySet() {
+        return new AbstractSet() {
+            @Override
+            public int size() {
+                return StripedCacheMap.this.size();
+            }
+
+            @Override
+            public Iterator iterator() {
+                IteratorChain itr = new IteratorChain();
+                for (CacheMap stripe : _stripes)
+                    itr.addIterator(stripe.keySet().iterator());
+                return itr;
+            }
+        };
+    }
+
+    @Override
+    public Collection values() {
+        return new AbstractCollection() {
+            @Override
+            public int size() {
+                return StripedCacheMap.this.size();
+            }
+
+            @Override
+            public Iterator iterator() {
+                IteratorChain itr = new IteratorChain();
+                for (CacheMap stripe : _stripes)
+                    itr.addIterator(stripe.values().iterator());
+                return itr;
+            }
+        };
+    }
+
+    @Override
+    public Set entrySet() {
+        return new AbstractSet() {
+            @Override
+            public int size() {
+                return StripedCacheMap.this.size();
+            }
+
+            @Override
+            public boolean add(Object o) {
+                Map.Entry entry = (Map.Entry) o;
+                put(entry.getKey(), entry.getValue());
+                return true;
+            }
+
+            @Override
+            public Iterator iterator() {
+                IteratorChain itr = new IteratorChain();
+                for (CacheMap stripe : _stripes)
+                    itr.addIterator(stripe.entrySet().iterator());
+                return itr;
+            }
+        };
+    }
+
+    @Override
+    public String toString() {
+        StringBuilder buf = new StringBuilder("StripedCacheMap:");
+        for (int i = 0; i < _stripes.length; i++) {
+            if (i > 0)
+                buf.append("::");
+            buf.append(_stripes[i]);
+        }
+        return buf.toString();
+    }
+
+    /**
+     * View of the map's policy handed to each stripe. Sizing is left to the
+     * owning map.
+     */
+    private static class SharedEvictionPolicy
+        implements CacheEvictionPolicy {
+
+        private final CacheEvictionPolicy _delegate;
+
+        SharedEvictionPolicy(CacheEvictionPolicy delegate) {
+            _delegate = delegate;
+        }
+
+        @Override
+        public void setMaximumSize(int size) {
+        }
+
+        @Override
+        public void recordAccess(Object key) {
+            _delegate.recordAccess(key);
+        }
+
+        @Override
+        public boolean admit(Object candidate, Object victim) {
+            return _delegate.admit(candidate, victim);
+        }
+    }
+}
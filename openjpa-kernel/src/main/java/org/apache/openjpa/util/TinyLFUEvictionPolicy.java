@@ -0,0 +1,61 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+/**
+ * Frequency based admission policy in the style of W-TinyLFU. Every access
+ * is recorded in a {@link FrequencySketch}; a new key only displaces the
+ * entry the cache map would evict if it has been used more often recently.
+ * The soft reference map of the {@link CacheMap} plays the role of the
+ * admission window: rejected keys wait there and are reconsidered when
+ * they are hit again. Large scans therefore no longer flush the hot working
+ * set out of the hard references.
+ *
+ * @since 3.2.1
+ */
+public class TinyLFUEvictionPolicy
+    implements CacheEvictionPolicy {
+
+    private final FrequencySketch _sketch = new FrequencySketch(1000);
+
+    @Override
+    public void setMaximumSize(int size) {
+        _sketch.ensureCapacity(size);
+    }
+
+    @Override
+    public void recordAccess(Object key) {
+        if (key != null)
+            _sketch.increment(key);
+    }
+
+    @Override
+    public boolean admit(Object candidate, Object victim) {
+        if (candidate == null || victim == null)
+            return true;
+        return _sketch.frequency(candidate) > _sketch.frequency(victim);
+    }
+
+    /**
+     * Estimated recent access frequency of the given key.
+     */
+    public int frequency(Object key) {
+        return (key == null) ? 0 : _sketch.frequency(key);
+    }
+}
@@ -0,0 +1,235 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.lang.reflect.Proxy;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.enhance.PCRegistry;
+import org.apache.openjpa.event.AbstractRemoteCommitProvider;
+import org.apache.openjpa.event.RemoteCommitEvent;
+import org.apache.openjpa.event.RemoteCommitEventManager;
+import org.apache.openjpa.lib.log.NoneLogFactory.NoneLog;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.CacheWeigher;
+import org.apache.openjpa.util.ClassResolverImpl;
+import org.apache.openjpa.util.LongId;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test of the byte bound of {@link ConcurrentDataCache}.
+ */
+public class ConcurrentDataCacheTest {
+
+    private static ClassMetaData _meta;
+
+    @BeforeClass
+    public static void createMetaData() {
+        PCRegistry.register(Item.class, new String[0], new Class<?>[0],
+            new byte[0], null, Item.class.getSimpleName(), null);
+        final OpenJPAConfiguration conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            ConcurrentDataCacheTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> null);
+        MetaDataRepository repos = new MetaDataRepository() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public OpenJPAConfiguration getConfiguration() {
+                return conf;
+            }
+        };
+        _meta = new ClassMetaData(Item.class, repos) {
+            private static final long serialVersionUID = 1L;
+        };
+        _meta.setDataCacheTimeout(-1);
+    }
+
+    @Test
+    public void entriesAreNotWeighedByDefault() {
+        ConcurrentDataCache cache = newCache(1, -1, null);
+        cache.put(data(1, 10));
+        Assert.assertEquals(-1, cache.getByteCount());
+        Assert.assertEquals(-1, cache.getStatistics().getByteCount());
+    }
+
+    @Test
+    public void defaultWeigherEstimatesData() {
+        ConcurrentDataCache cache = newCache(1, Long.MAX_VALUE, null);
+        Assert.assertEquals(0, cache.getByteCount());
+        DataCachePCData data = data(1, 10);
+        cache.put(data);
+        long bytes = new DataCachePCDataWeigher().weigh(data.getId(), data);
+        Assert.assertTrue(bytes > 0);
+        Assert.assertEquals(bytes, cache.getByteCount());
+        Assert.assertEquals(bytes, cache.getStatistics().getByteCount());
+    }
+
+    @Test
+    public void bytesFollowPutsAndRemoves() {
+        for (int stripes = 1; stripes <= 4; stripes *= 4) {
+            ConcurrentDataCache cache = newCache(stripes, 1000,
+                VersionWeigher.class.getName());
+            cache.put(data(1, 10));
+            cache.put(data(2, 20));
+            Assert.assertEquals(30, cache.getByteCount());
+
+            // a replaced entry is weighed again
+            cache.put(data(1, 50));
+            Assert.assertEquals(70, cache.getByteCount());
+            Assert.assertEquals(70, cache.getStatistics().getByteCount());
+
+            cache.remove(new LongId(Item.class, 2));
+            Assert.assertEquals(50, cache.getByteCount());
+            cache.clear();
+            Assert.assertEquals(0, cache.getByteCount());
+        }
+    }
+
+    @Test
+    public void maxBytesEvictsOldEntries() {
+        ConcurrentDataCache cache = newCache(1, 250,
+            VersionWeigher.class.getName());
+        for (int i = 0; i < 5; i++)
+            cache.put(data(i, 100));
+        Assert.assertEquals(200, cache.getByteCount());
+
+        // victims are picked at random unless the cache is lru
+        int kept = 0;
+        for (int i = 0; i < 5; i++)
+            if (cache.get(new LongId(Item.class, i)) != null)
+                kept++;
+        Assert.assertEquals(2, kept);
+
+        // an entry heavier than the bound is not kept either
+        cache.put(data(5, 300));
+        Assert.assertNull(cache.get(new LongId(Item.class, 5)));
+        Assert.assertTrue(cache.getByteCount() <= 250);
+    }
+
+    @Test
+    public void pinnedEntriesAreNotWeighed() {
+        ConcurrentDataCache cache = newCache(1, 150,
+            VersionWeigher.class.getName());
+        cache.put(data(1, 100));
+        Assert.assertTrue(cache.pin(new LongId(Item.class, 1)));
+        Assert.assertEquals(0, cache.getByteCount());
+        cache.put(data(2, 100));
+        cache.put(data(3, 100));
+        Assert.assertEquals(100, cache.getByteCount());
+        Assert.assertNotNull(cache.get(new LongId(Item.class, 1)));
+    }
+
+    @Test
+    public void evictionsAndHitRatioAreCounted() {
+        ConcurrentDataCache cache = newCache(1, 250,
+            VersionWeigher.class.getName());
+        CacheStatistics stats = cache.getStatistics();
+        ((CacheStatisticsSPI) stats).enable();
+        Assert.assertEquals(0, stats.getHitRatio(), 0);
+
+        for (int i = 0; i < 5; i++)
+            cache.put(data(i, 100));
+        Assert.assertEquals(3, stats.getEvictionCount());
+        Assert.assertEquals(3, stats.getTotalEvictionCount());
+
+        // reads are counted by the store manager from the lookup result
+        for (int i = 0; i < 5; i++)
+            ((CacheStatisticsSPI) stats).newGet(Item.class,
+                cache.get(new LongId(Item.class, i)) != null);
+        Assert.assertEquals(5, stats.getReadCount());
+        Assert.assertEquals(2, stats.getHitCount());
+        Assert.assertEquals(0.4, stats.getHitRatio(), 0.0001);
+        Assert.assertEquals(0.4, stats.getTotalHitRatio(), 0.0001);
+
+        // a reset clears the current counts but not the totals
+        stats.reset();
+        Assert.assertEquals(0, stats.getEvictionCount());
+        Assert.assertEquals(0, stats.getHitRatio(), 0);
+        Assert.assertEquals(3, stats.getTotalEvictionCount());
+        Assert.assertEquals(0.4, stats.getTotalHitRatio(), 0.0001);
+    }
+
+    private static DataCachePCData data(long id, int version) {
+        DataCachePCDataImpl data = new DataCachePCDataImpl(
+            new LongId(Item.class, id), _meta);
+        data.setVersion(version);
+        return data;
+    }
+
+    private static ConcurrentDataCache newCache(int stripes, long maxBytes,
+        String weigher) {
+        OpenJPAConfiguration conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            ConcurrentDataCacheTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> "newRemoteCommitProviderInstance".equals(method.getName())
+                ? new NoopProvider() : null);
+        final RemoteCommitEventManager rcem = new RemoteCommitEventManager(conf);
+        ConcurrentDataCache cache = new ConcurrentDataCache();
+        cache.conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            ConcurrentDataCacheTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getRemoteCommitEventManager":
+                        return rcem;
+                    case "getClassResolverInstance":
+                        return new ClassResolverImpl();
+                    default:
+                        return null;
+                }
+            });
+        cache.log = NoneLog.getInstance();
+        cache.setCacheSize(1000);
+        cache.setSoftReferenceSize(0);
+        cache.setStripes(stripes);
+        cache.setMaxBytes(maxBytes);
+        cache.setWeigher(weigher);
+        cache.initialize(null);
+        return cache;
+    }
+
+    /**
+     * Weighs data by its version.
+     */
+    public static class VersionWeigher implements CacheWeigher {
+
+        @Override
+        public int weigh(Object key, Object value) {
+            return (Integer) ((DataCachePCData) value).getVersion();
+        }
+    }
+
+    private static class Item {
+    }
+
+    private static class NoopProvider extends AbstractRemoteCommitProvider {
+
+        @Override
+        public void broadcast(RemoteCommitEvent event) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
@@ -0,0 +1,189 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.enhance.PCRegistry;
+import org.apache.openjpa.event.AbstractRemoteCommitProvider;
+import org.apache.openjpa.event.RemoteCommitEvent;
+import org.apache.openjpa.event.RemoteCommitEventManager;
+import org.apache.openjpa.lib.log.NoneLogFactory.NoneLog;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test of the type-indexed invalidation of {@link ConcurrentQueryCache}.
+ */
+public class ConcurrentQueryCacheTest {
+
+    @BeforeClass
+    public static void registerTypes() {
+        register(Person.class, null);
+        register(Employee.class, Person.class);
+        register(Company.class, null);
+        register(Address.class, null);
+        register(Order.class, null);
+    }
+
+    @Test
+    public void invalidatesOnlyIndexedKeys() throws Exception {
+        invalidatesOnlyIndexedKeys(1);
+    }
+
+    @Test
+    public void invalidatesOnlyIndexedKeysStriped() throws Exception {
+        invalidatesOnlyIndexedKeys(4);
+    }
+
+    private void invalidatesOnlyIndexedKeys(int stripes) throws Exception {
+        ConcurrentQueryCache cache = newCache(stripes, 1000);
+        QueryKey people = key("q1", Person.class);
+        QueryKey companies = key("q2", Company.class);
+        QueryKey both = key("q3", Person.class, Company.class);
+        QueryKey addresses = key("q4", Address.class);
+        for (QueryKey key : Arrays.asList(people, companies, both, addresses))
+            cache.put(key, new QueryResult(key, Collections.emptyList()));
+
+        // a change to a subclass invalidates the queries over its base
+        cache.onTypesChanged(new TypesChangedEvent(this,
+            Collections.singleton(Employee.class)));
+        Assert.assertNull(cache.get(people));
+        Assert.assertNull(cache.get(both));
+        Assert.assertNotNull(cache.get(companies));
+        Assert.assertNotNull(cache.get(addresses));
+        Assert.assertEquals(1, cache.getInvalidationCount());
+        Assert.assertEquals(2, cache.getInvalidationExaminedCount());
+        Assert.assertEquals(2, cache.getInvalidatedCount());
+
+        // removed keys leave the index
+        cache.remove(companies);
+        cache.onTypesChanged(new TypesChangedEvent(this,
+            new HashSet<>(Arrays.asList(Company.class, Order.class))));
+        Assert.assertEquals(2, cache.getInvalidationExaminedCount());
+        Assert.assertNotNull(cache.get(addresses));
+
+        cache.resetInvalidationStatistics();
+        Assert.assertEquals(0, cache.getInvalidationCount());
+    }
+
+    @Test
+    public void evictedKeysLeaveIndex() throws Exception {
+        ConcurrentQueryCache cache = newCache(1, 10);
+        for (int i = 0; i < 100; i++) {
+            QueryKey key = key("q" + i, Person.class);
+            cache.put(key, new QueryResult(key, Collections.emptyList()));
+        }
+        cache.onTypesChanged(new TypesChangedEvent(this,
+            Collections.singleton(Person.class)));
+        Assert.assertEquals(10, cache.getInvalidationExaminedCount());
+        Assert.assertEquals(0, cache.count());
+    }
+
+    private static ConcurrentQueryCache newCache(int stripes, int size) {
+        OpenJPAConfiguration conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            ConcurrentQueryCacheTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> "newRemoteCommitProviderInstance".equals(method.getName())
+                ? new NoopProvider() : null);
+        final RemoteCommitEventManager rcem = new RemoteCommitEventManager(conf);
+        ConcurrentQueryCache cache = new ConcurrentQueryCache();
+        cache.conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            ConcurrentQueryCacheTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> "getRemoteCommitEventManager".equals(method.getName())
+                ? rcem : null);
+        cache.log = NoneLog.getInstance();
+        cache.setStripes(stripes);
+        cache.setCacheSize(size);
+        cache.setSoftReferenceSize(0);
+        cache.initialize(null);
+        return cache;
+    }
+
+    private static void register(Class<?> type, Class<?> sup) {
+        PCRegistry.register(type, new String[0], new Class<?>[0], new byte[0],
+            sup, type.getSimpleName(), null);
+    }
+
+    private static class Person {
+    }
+
+    private static class Employee extends Person {
+    }
+
+    private static class Company {
+    }
+
+    private static class Address {
+    }
+
+    private static class Order {
+    }
+
+    private static class NoopProvider extends AbstractRemoteCommitProvider {
+
+        @Override
+        public void broadcast(RemoteCommitEvent event) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    /**
+     * Create a key over the given access path, going through the
+     * externalized form since keys are otherwise created from queries.
+     */
+    private static QueryKey key(String query, Class<?>... accessPath)
+        throws IOException, ClassNotFoundException {
+        HashSet<String> names = new HashSet<>();
+        for (Class<?> cls : accessPath)
+            names.add(cls.getName());
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(accessPath[0].getName());
+            out.writeBoolean(true);
+            out.writeObject(names);
+            out.writeObject(query);
+            out.writeBoolean(false);
+            out.writeObject(null);
+            out.writeLong(0);
+            out.writeLong(Long.MAX_VALUE);
+            out.writeInt(-1);
+        }
+        QueryKey key = new QueryKey();
+        try (ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray()))) {
+            key.readExternal(in);
+        }
+        return key;
+    }
+}
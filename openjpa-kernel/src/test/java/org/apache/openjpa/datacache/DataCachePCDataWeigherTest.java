@@ -0,0 +1,89 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of the estimates of {@link DataCachePCDataWeigher}.
+ */
+public class DataCachePCDataWeigherTest {
+
+    private final DataCachePCDataWeigher _weigher = new DataCachePCDataWeigher();
+
+    @Test
+    public void sharedValuesAreFree() {
+        Assert.assertEquals(0, _weigher.estimate(null, 0));
+        Assert.assertEquals(0, _weigher.estimate(TimeUnit.SECONDS, 0));
+        Assert.assertEquals(0, _weigher.estimate(String.class, 0));
+    }
+
+    @Test
+    public void stringsGrowWithLength() {
+        Assert.assertEquals(40, _weigher.estimate("", 0));
+        Assert.assertEquals(60, _weigher.estimate("0123456789", 0));
+    }
+
+    @Test
+    public void arraysAreAligned() {
+        // 16 byte header plus 3 bytes, padded to 8
+        Assert.assertEquals(24, _weigher.estimate(new byte[3], 0));
+        Assert.assertEquals(40, _weigher.estimate(new long[3], 0));
+        // references plus the elements themselves
+        Assert.assertEquals(16 + 2 * 8 + 2 * 40,
+            _weigher.estimate(new String[] { "", "" }, 0));
+    }
+
+    @Test
+    public void collectionsCountTheirElements() {
+        List<String> list = Arrays.asList("a", "b");
+        Assert.assertEquals(48 + 2 * 16 + 2 * 42, _weigher.estimate(list, 0));
+    }
+
+    @Test
+    public void nestingIsCapped() {
+        List<Object> outer = new ArrayList<>();
+        List<Object> inner = outer;
+        for (int i = 0; i < 100; i++) {
+            List<Object> next = new ArrayList<>();
+            inner.add(next);
+            inner = next;
+        }
+        // only the first levels are walked; deeper ones count as a header
+        long capped = _weigher.estimate(outer, 0);
+        Assert.assertTrue(capped < 100 * 64);
+        Assert.assertEquals(capped, _weigher.estimate(outer, 0));
+
+        // a self-referencing collection terminates
+        List<Object> cycle = new ArrayList<>();
+        cycle.add(cycle);
+        Assert.assertTrue(_weigher.estimate(cycle, 0) > 0);
+    }
+
+    @Test
+    public void weighIncludesTheKey() {
+        Assert.assertEquals(40 + 24, _weigher.weigh("", 1L));
+    }
+}
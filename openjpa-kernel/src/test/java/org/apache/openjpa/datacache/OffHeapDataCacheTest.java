@@ -0,0 +1,184 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.enhance.PCRegistry;
+import org.apache.openjpa.event.AbstractRemoteCommitProvider;
+import org.apache.openjpa.event.RemoteCommitEvent;
+import org.apache.openjpa.event.RemoteCommitEventManager;
+import org.apache.openjpa.lib.log.NoneLogFactory.NoneLog;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.LongId;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link OffHeapDataCache}
+ */
+public class OffHeapDataCacheTest {
+
+    private static ClassMetaData _meta;
+
+    @BeforeClass
+    public static void createMetaData() {
+        register(Person.class, null);
+        register(Employee.class, Person.class);
+        register(Company.class, null);
+        final OpenJPAConfiguration conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            OffHeapDataCacheTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> null);
+        MetaDataRepository repos = new MetaDataRepository() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public OpenJPAConfiguration getConfiguration() {
+                return conf;
+            }
+        };
+        _meta = new ClassMetaData(Person.class, repos) {
+            private static final long serialVersionUID = 1L;
+        };
+        _meta.setDataCacheTimeout(-1);
+    }
+
+    @Test
+    public void evictedEntriesComeBackFromOffHeap() {
+        OffHeapDataCache cache = newCache(2);
+        for (int i = 0; i < 5; i++)
+            cache.put(data(Person.class, i));
+
+        Assert.assertEquals(3, cache.getOffHeapEntryCount());
+        Assert.assertEquals(3, cache.getOffHeapWriteCount());
+        long bytes = cache.getStatistics().getOffHeapByteCount();
+        Assert.assertTrue(bytes > 0);
+        Assert.assertEquals(cache.getOffHeapByteCount(), bytes);
+
+        DataCachePCData data = cache.get(new LongId(Person.class, 0));
+        Assert.assertNotNull(data);
+        Assert.assertEquals(new LongId(Person.class, 0), data.getId());
+        Assert.assertEquals(1, cache.getOffHeapHitCount());
+        Assert.assertEquals(1, cache.getStatistics().getOffHeapHitCount());
+
+        Assert.assertNull(cache.get(new LongId(Person.class, 99)));
+        Assert.assertEquals(1, cache.getOffHeapMissCount());
+    }
+
+    @Test
+    public void removedEntriesDoNotComeBack() {
+        OffHeapDataCache cache = newCache(1);
+        cache.put(data(Person.class, 1));
+        cache.put(data(Person.class, 2));
+        Assert.assertEquals(1, cache.getOffHeapEntryCount());
+
+        cache.remove(new LongId(Person.class, 1));
+        Assert.assertEquals(0, cache.getOffHeapEntryCount());
+        Assert.assertNull(cache.get(new LongId(Person.class, 1)));
+        Assert.assertNotNull(cache.get(new LongId(Person.class, 2)));
+    }
+
+    @Test
+    public void removeAllOfClassKeepsOtherClassesOffHeap() {
+        OffHeapDataCache cache = newCache(1);
+        List<Object> removed = new ArrayList<>();
+        cache.addExpirationListener(event -> {
+            if (!event.getExpired())
+                removed.add(event.getKey());
+        });
+        cache.put(data(Person.class, 1));
+        cache.put(data(Employee.class, 2));
+        cache.put(data(Company.class, 3));
+        cache.put(data(Company.class, 4));
+        Assert.assertEquals(3, cache.getOffHeapEntryCount());
+
+        cache.removeAll(Person.class, false);
+        Assert.assertEquals(2, cache.getOffHeapEntryCount());
+        Assert.assertTrue(removed.contains(new LongId(Person.class, 1)));
+        Assert.assertFalse(removed.contains(new LongId(Employee.class, 2)));
+
+        cache.removeAll(Person.class, true);
+        Assert.assertEquals(1, cache.getOffHeapEntryCount());
+        Assert.assertTrue(removed.contains(new LongId(Employee.class, 2)));
+        Assert.assertNotNull(cache.get(new LongId(Company.class, 3)));
+
+        cache.clear();
+        Assert.assertEquals(0, cache.getOffHeapEntryCount());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(new LongId(Person.class, 1),
+            new LongId(Employee.class, 2), new LongId(Company.class, 3),
+            new LongId(Company.class, 4))), new HashSet<>(removed));
+    }
+
+    private static DataCachePCData data(Class<?> type, long id) {
+        return new DataCachePCDataImpl(new LongId(type, id), _meta);
+    }
+
+    private static OffHeapDataCache newCache(int size) {
+        OpenJPAConfiguration conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            OffHeapDataCacheTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> "newRemoteCommitProviderInstance".equals(method.getName())
+                ? new NoopProvider() : null);
+        final RemoteCommitEventManager rcem = new RemoteCommitEventManager(conf);
+        OffHeapDataCache cache = new OffHeapDataCache();
+        cache.conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            OffHeapDataCacheTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> "getRemoteCommitEventManager".equals(method.getName())
+                ? rcem : null);
+        cache.log = NoneLog.getInstance();
+        cache.setCacheSize(size);
+        cache.setSoftReferenceSize(0);
+        cache.initialize(null);
+        return cache;
+    }
+
+    private static void register(Class<?> type, Class<?> sup) {
+        PCRegistry.register(type, new String[0], new Class<?>[0], new byte[0],
+            sup, type.getSimpleName(), null);
+    }
+
+    private static class Person {
+    }
+
+    private static class Employee extends Person {
+    }
+
+    private static class Company {
+    }
+
+    private static class NoopProvider extends AbstractRemoteCommitProvider {
+
+        @Override
+        public void broadcast(RemoteCommitEvent event) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
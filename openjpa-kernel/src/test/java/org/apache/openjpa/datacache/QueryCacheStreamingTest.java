@@ -0,0 +1,91 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.kernel.FetchConfiguration;
+import org.apache.openjpa.kernel.FetchConfigurationImpl;
+import org.apache.openjpa.kernel.QueryContext;
+import org.apache.openjpa.kernel.QueryHints;
+import org.apache.openjpa.kernel.StoreContext;
+import org.apache.openjpa.kernel.StoreQuery;
+import org.apache.openjpa.lib.rop.ListResultObjectProvider;
+import org.apache.openjpa.lib.rop.ResultObjectProvider;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Tests that streamed query results bypass the {@link QueryCacheStoreQuery}.
+ */
+public class QueryCacheStreamingTest {
+
+    @Test
+    public void streamedResultsAreNotCached() {
+        ResultObjectProvider rop = new ListResultObjectProvider(
+            Arrays.asList("a", "b", "c"));
+        FetchConfiguration fetch = new FetchConfigurationImpl();
+        fetch.setHint(QueryHints.HINT_STREAM_RESULTS, Boolean.TRUE);
+
+        Map<String, Object> conf = new HashMap<>();
+        StoreContext sctx = proxy(StoreContext.class, "getConfiguration",
+            proxy(OpenJPAConfiguration.class, conf));
+        Map<String, Object> ctxMethods = new HashMap<>();
+        ctxMethods.put("getFetchConfiguration", fetch);
+        ctxMethods.put("getStoreContext", sctx);
+        QueryContext ctx = proxy(QueryContext.class, ctxMethods);
+
+        StoreQuery.Executor ex = proxy(StoreQuery.Executor.class,
+            "executeQuery", rop);
+        Map<String, Object> queryMethods = new HashMap<>();
+        queryMethods.put("newDataStoreExecutor", ex);
+        queryMethods.put("getContext", ctx);
+        StoreQuery delegate = proxy(StoreQuery.class, queryMethods);
+
+        // any use of the cache fails the test
+        QueryCache cache = (QueryCache) Proxy.newProxyInstance(
+            getClass().getClassLoader(), new Class<?>[] { QueryCache.class },
+            (proxy, method, args) -> {
+                throw new AssertionError("query cache used: " + method);
+            });
+
+        QueryCacheStoreQuery cq = new QueryCacheStoreQuery(delegate, cache);
+        cq.setContext(ctx);
+        StoreQuery.Executor cex = cq.newDataStoreExecutor(null, false);
+        Assert.assertSame(rop, cex.executeQuery(cq, new Object[0],
+            new StoreQuery.Range()));
+    }
+
+    private static <T> T proxy(Class<T> type, String method, Object result) {
+        Map<String, Object> results = new HashMap<>();
+        results.put(method, result);
+        return proxy(type, results);
+    }
+
+    private static <T> T proxy(Class<T> type, Map<String, Object> results) {
+        return type.cast(Proxy.newProxyInstance(
+            QueryCacheStreamingTest.class.getClassLoader(),
+            new Class<?>[] { type },
+            (proxy, method, args) -> results.get(method.getName())));
+    }
+}
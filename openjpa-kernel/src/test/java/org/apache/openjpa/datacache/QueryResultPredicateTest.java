@@ -0,0 +1,199 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.datacache;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.enhance.PCRegistry;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.kernel.exps.Expression;
+import org.apache.openjpa.kernel.exps.InMemoryExpressionFactory;
+import org.apache.openjpa.kernel.exps.QueryExpressions;
+import org.apache.openjpa.kernel.exps.Value;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test of the predicates that keep cached query results which
+ * committed instances cannot affect.
+ */
+public class QueryResultPredicateTest {
+
+    private static final InMemoryExpressionFactory _factory =
+        new InMemoryExpressionFactory();
+    private static ClassMetaData _person;
+    private static ClassMetaData _employee;
+    private static ClassMetaData _company;
+
+    @BeforeClass
+    public static void registerTypes() {
+        register(Person.class, null);
+        register(Employee.class, Person.class);
+        register(Company.class, null);
+        final OpenJPAConfiguration conf = (OpenJPAConfiguration)
+            Proxy.newProxyInstance(
+                QueryResultPredicateTest.class.getClassLoader(),
+                new Class<?>[] { OpenJPAConfiguration.class },
+                (proxy, method, args) -> null);
+        MetaDataRepository repos = new MetaDataRepository() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public OpenJPAConfiguration getConfiguration() {
+                return conf;
+            }
+        };
+        _person = newMetaData(repos, Person.class);
+        _employee = newMetaData(repos, Employee.class);
+        _company = newMetaData(repos, Company.class);
+    }
+
+    @Test
+    public void nonMatchingChangesKeepResult() throws Exception {
+        QueryKey key = key(Person.class);
+        QueryResult res = new QueryResult(key, Arrays.asList("p1", "p2"));
+        QueryResultPredicate none = predicate(
+            _factory.equal(_factory.getThis(), _factory.getNull()));
+
+        // a new instance that does not match, and other types
+        Assert.assertFalse(none.isAffectedBy(key, res, Arrays.asList(
+            sm(new Employee(), "e1", false), sm(new Company(), "c1", false))));
+        // a deleted instance that was not part of the result
+        Assert.assertFalse(none.isAffectedBy(key, res,
+            Collections.singleton(sm(new Person(), "p3", true))));
+    }
+
+    @Test
+    public void resultMembersAndMatchesInvalidate() throws Exception {
+        QueryKey key = key(Person.class);
+        QueryResult res = new QueryResult(key, Arrays.asList("p1", "p2"));
+        QueryResultPredicate none = predicate(
+            _factory.equal(_factory.getThis(), _factory.getNull()));
+        Assert.assertTrue(none.isAffectedBy(key, res,
+            Collections.singleton(sm(new Person(), "p2", false))));
+        Assert.assertTrue(none.isAffectedBy(key, res,
+            Collections.singleton(sm(new Person(), "p1", true))));
+
+        QueryResultPredicate all = predicate(_factory.emptyExpression());
+        Assert.assertTrue(all.isAffectedBy(key, res,
+            Collections.singleton(sm(new Employee(), "e1", false))));
+    }
+
+    @Test
+    public void supportedExpressions() {
+        QueryExpressions exps = new QueryExpressions();
+        exps.filter = _factory.equal(_factory.getThis(), _factory.getNull());
+        Assert.assertTrue(QueryResultPredicate.isSupported(exps));
+        exps.filter = _factory.startsWith(_factory.getThis(),
+            _factory.getNull());
+        Assert.assertFalse(QueryResultPredicate.isSupported(exps));
+        exps.filter = _factory.emptyExpression();
+        exps.projections = new Value[] {
+            _factory.getThis() };
+        Assert.assertFalse(QueryResultPredicate.isSupported(exps));
+    }
+
+    private static QueryResultPredicate predicate(Expression filter) {
+        QueryExpressions exps = new QueryExpressions();
+        exps.filter = filter;
+        return QueryResultPredicate.newInstance(exps, _person, true, null);
+    }
+
+    private static OpenJPAStateManager sm(Object pc, Object oid,
+        boolean deleted) {
+        ClassMetaData meta = (pc instanceof Employee) ? _employee
+            : (pc instanceof Company) ? _company : _person;
+        return (OpenJPAStateManager) Proxy.newProxyInstance(
+            QueryResultPredicateTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAStateManager.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getMetaData":
+                        return meta;
+                    case "getObjectId":
+                        return oid;
+                    case "getManagedInstance":
+                        return pc;
+                    case "isDeleted":
+                        return deleted;
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    private static void register(Class<?> type, Class<?> sup) {
+        PCRegistry.register(type, new String[0], new Class<?>[0], new byte[0],
+            sup, type.getSimpleName(), null);
+    }
+
+    private static ClassMetaData newMetaData(MetaDataRepository repos,
+        Class<?> type) {
+        return new ClassMetaData(type, repos) {
+            private static final long serialVersionUID = 1L;
+        };
+    }
+
+    /**
+     * Create a key for a query over the given candidate and its subclasses.
+     */
+    private static QueryKey key(Class<?> candidate)
+        throws IOException, ClassNotFoundException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(candidate.getName());
+            out.writeBoolean(true);
+            out.writeObject(new HashSet<>(Collections.singleton(
+                candidate.getName())));
+            out.writeObject("select");
+            out.writeBoolean(false);
+            out.writeObject(null);
+            out.writeLong(0);
+            out.writeLong(Long.MAX_VALUE);
+            out.writeInt(-1);
+        }
+        QueryKey key = new QueryKey();
+        try (ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray()))) {
+            key.readExternal(in);
+        }
+        return key;
+    }
+
+    private static class Person {
+    }
+
+    private static class Employee extends Person {
+    }
+
+    private static class Company {
+    }
+}
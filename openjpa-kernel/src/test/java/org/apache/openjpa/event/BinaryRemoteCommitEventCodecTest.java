@@ -0,0 +1,149 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.DataInputStream;
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.ObjectOutputStream;
+import java.io.StreamCorruptedException;
+import java.sql.Timestamp;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.List;
+
+import org.apache.openjpa.util.Id;
+import org.apache.openjpa.util.IntId;
+import org.apache.openjpa.util.LongId;
+import org.apache.openjpa.util.DateId;
+import org.apache.openjpa.util.StringId;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link BinaryRemoteCommitEventCodec}
+ */
+public class BinaryRemoteCommitEventCodecTest {
+
+    @Test
+    public void oidsRoundTrip() throws IOException {
+        List<Object> updates = new ArrayList<>();
+        updates.add(new LongId(String.class, -3L));
+        updates.add(new LongId(Integer.class, Long.MAX_VALUE, false));
+        updates.add(new StringId(String.class, "key"));
+        updates.add(new IntId(String.class, 42));
+        updates.add(new Id(Integer.class, 7L));
+        List<Object> deletes = new ArrayList<>();
+        deletes.add(new DateId(String.class, new Timestamp(123456789L)));
+        RemoteCommitEvent event = new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS,
+            Arrays.asList(new LongId(String.class, 1L)), Arrays.asList(String.class.getName()),
+            updates, deletes);
+
+        RemoteCommitEvent copy = roundTrip(event);
+        Assert.assertEquals(RemoteCommitEvent.PAYLOAD_OIDS_WITH_ADDS, copy.getPayloadType());
+        assertSame(event.getPersistedTypeNames(), copy.getPersistedTypeNames());
+        assertSame(event.getPersistedObjectIds(), copy.getPersistedObjectIds());
+        assertSame(event.getUpdatedObjectIds(), copy.getUpdatedObjectIds());
+        assertSame(event.getDeletedObjectIds(), copy.getDeletedObjectIds());
+        Assert.assertFalse(((LongId) new ArrayList<>(copy.getUpdatedObjectIds()).get(1))
+            .hasSubclasses());
+    }
+
+    @Test
+    public void extentsRoundTrip() throws IOException {
+        RemoteCommitEvent event = new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS,
+            null, Arrays.asList("a.B"), Arrays.asList("a.B", "c.D"), null);
+
+        RemoteCommitEvent copy = roundTrip(event);
+        assertSame(event.getPersistedTypeNames(), copy.getPersistedTypeNames());
+        assertSame(event.getUpdatedTypeNames(), copy.getUpdatedTypeNames());
+        Assert.assertTrue(copy.getDeletedTypeNames().isEmpty());
+    }
+
+    @Test
+    public void smallerThanJavaSerialization() throws IOException {
+        List<Object> updates = new ArrayList<>();
+        for (int i = 0; i < 100; i++)
+            updates.add(new LongId(String.class, i));
+        RemoteCommitEvent event = new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS,
+            null, null, updates, null);
+
+        ByteArrayOutputStream java = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(java)) {
+            out.writeObject(event);
+        }
+        Assert.assertTrue(encode(event).length * 4 < java.size());
+    }
+
+    @Test
+    public void malformedCountsAreRejected() throws IOException {
+        // a name count that overflows to a negative int
+        assertRejected(new byte[] { RemoteCommitEvent.PAYLOAD_OIDS,
+            (byte) 0xff, (byte) 0xff, (byte) 0xff, (byte) 0xff, 0x0f }, 100);
+        // a collection size beyond the bytes available
+        assertRejected(new byte[] { RemoteCommitEvent.PAYLOAD_OIDS, 0,
+            (byte) 0xe8, 0x07 }, 100);
+        // a serialized element longer than the bytes available
+        assertRejected(new byte[] { RemoteCommitEvent.PAYLOAD_OIDS, 0, 2, 15,
+            (byte) 0xe8, 0x07 }, 100);
+        // a string element referencing a name that was not written
+        assertRejected(new byte[] { RemoteCommitEvent.PAYLOAD_OIDS, 0, 2, 1,
+            5 }, 100);
+    }
+
+    @Test
+    public void lengthsWithinBoundAreRead() throws IOException {
+        RemoteCommitEvent event = new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS,
+            null, null, Arrays.asList("a.B"), null);
+        byte[] bytes = encode(event);
+        RemoteCommitEvent copy = new BinaryRemoteCommitEventCodec().decode(
+            new DataInputStream(new ByteArrayInputStream(bytes)), bytes.length);
+        assertSame(event.getUpdatedTypeNames(), copy.getUpdatedTypeNames());
+    }
+
+    private static void assertRejected(byte[] bytes, int maxLength) throws IOException {
+        try {
+            new BinaryRemoteCommitEventCodec().decode(new DataInputStream(
+                new ByteArrayInputStream(bytes)), maxLength);
+            Assert.fail("decoded a malformed event");
+        } catch (StreamCorruptedException sce) {
+            // expected
+        }
+    }
+
+    private static void assertSame(Collection expected, Collection actual) {
+        Assert.assertEquals(new ArrayList<>(expected), new ArrayList<>(actual));
+    }
+
+    private static byte[] encode(RemoteCommitEvent event) throws IOException {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        DataOutputStream out = new DataOutputStream(bytes);
+        new BinaryRemoteCommitEventCodec().encode(event, out);
+        out.flush();
+        return bytes.toByteArray();
+    }
+
+    private static RemoteCommitEvent roundTrip(RemoteCommitEvent event) throws IOException {
+        return new BinaryRemoteCommitEventCodec().decode(new DataInputStream(
+            new ByteArrayInputStream(encode(event))));
+    }
+}
@@ -0,0 +1,109 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashSet;
+import java.util.List;
+
+import org.apache.openjpa.util.LongId;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link RemoteCommitEventBatcher}
+ */
+public class RemoteCommitEventBatcherTest {
+
+    @Test
+    public void eventsAreMerged() {
+        RecordingProvider provider = new RecordingProvider();
+        RemoteCommitEventBatcher batcher = new RemoteCommitEventBatcher(provider, 60000, 0);
+        LongId a = new LongId(String.class, 1);
+        LongId b = new LongId(String.class, 2);
+        batcher.add(oids(Arrays.asList(a), null));
+        batcher.add(oids(Arrays.asList(a, b), null));
+        batcher.add(oids(null, Arrays.asList(b)));
+        Assert.assertTrue(provider.events.isEmpty());
+        Assert.assertEquals(3, batcher.getPendingCount());
+
+        batcher.flush();
+        Assert.assertEquals(1, provider.events.size());
+        RemoteCommitEvent event = provider.events.get(0);
+        Assert.assertEquals(Collections.singletonList(a), new ArrayList<>(event.getUpdatedObjectIds()));
+        Assert.assertEquals(Collections.singletonList(b), new ArrayList<>(event.getDeletedObjectIds()));
+        Assert.assertEquals(3, batcher.getEventCount());
+        Assert.assertEquals(1, batcher.getBroadcastCount());
+    }
+
+    @Test
+    public void payloadTypesAreKeptApart() {
+        RecordingProvider provider = new RecordingProvider();
+        RemoteCommitEventBatcher batcher = new RemoteCommitEventBatcher(provider, 60000, 0);
+        batcher.add(oids(Arrays.asList(new LongId(String.class, 1)), null));
+        batcher.add(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS, null,
+            null, Arrays.asList("a.B"), null));
+        batcher.close();
+
+        Assert.assertEquals(2, provider.events.size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(RemoteCommitEvent.PAYLOAD_OIDS,
+            RemoteCommitEvent.PAYLOAD_EXTENTS)), new HashSet<>(Arrays.asList(
+            provider.events.get(0).getPayloadType(), provider.events.get(1).getPayloadType())));
+
+        // once closed, events are no longer held back
+        batcher.add(oids(Arrays.asList(new LongId(String.class, 2)), null));
+        Assert.assertEquals(3, provider.events.size());
+    }
+
+    @Test
+    public void sizeAndWindowEndTheBatch() throws InterruptedException {
+        RecordingProvider provider = new RecordingProvider();
+        RemoteCommitEventBatcher batcher = new RemoteCommitEventBatcher(provider, 60000, 2);
+        batcher.add(oids(Arrays.asList(new LongId(String.class, 1)), null));
+        batcher.add(oids(Arrays.asList(new LongId(String.class, 2)), null));
+        Assert.assertEquals(1, provider.events.size());
+
+        batcher = new RemoteCommitEventBatcher(provider, 10, 0);
+        batcher.add(oids(Arrays.asList(new LongId(String.class, 3)), null));
+        for (int i = 0; i < 500 && provider.events.size() < 2; i++)
+            Thread.sleep(10);
+        Assert.assertEquals(2, provider.events.size());
+        batcher.close();
+    }
+
+    private static RemoteCommitEvent oids(List<Object> updates, List<Object> deletes) {
+        return new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_OIDS, null, null, updates, deletes);
+    }
+
+    private static class RecordingProvider extends AbstractRemoteCommitProvider {
+
+        final List<RemoteCommitEvent> events = Collections.synchronizedList(new ArrayList<>());
+
+        @Override
+        public void broadcast(RemoteCommitEvent event) {
+            events.add(event);
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+}
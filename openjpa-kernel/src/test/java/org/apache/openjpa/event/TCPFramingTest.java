@@ -0,0 +1,148 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.io.DataOutputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.StreamCorruptedException;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.net.SocketTimeoutException;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.log.NoneLogFactory.NoneLog;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Feeds malformed framed packets to the listener of a
+ * {@link TCPRemoteCommitProvider}, which must close the connection instead
+ * of trusting the announced length.
+ */
+public class TCPFramingTest {
+
+    private static final int MAX_FRAME_SIZE = 1024;
+
+    @Test
+    public void frameHeaderChecks() throws IOException {
+        TCPRemoteCommitProvider.checkFrameHeader(
+            TCPRemoteCommitProvider.BINARY_PROTOCOL_VERSION, MAX_FRAME_SIZE, MAX_FRAME_SIZE);
+        // unknown versions with the magic are skipped by the reader
+        TCPRemoteCommitProvider.checkFrameHeader(0x4f4a00ff, 0, MAX_FRAME_SIZE);
+        assertBadHeader(0x12345678, 10);
+        assertBadHeader(TCPRemoteCommitProvider.BINARY_PROTOCOL_VERSION, -1);
+        assertBadHeader(TCPRemoteCommitProvider.BINARY_PROTOCOL_VERSION, MAX_FRAME_SIZE + 1);
+    }
+
+    @Test
+    public void blockingListenerClosesMalformedConnections() throws Exception {
+        assertMalformedFramesClose("blocking");
+    }
+
+    @Test
+    public void nioListenerClosesMalformedConnections() throws Exception {
+        assertMalformedFramesClose("nio");
+    }
+
+    private void assertMalformedFramesClose(String transport) throws Exception {
+        int port = freePort();
+        RemoteCommitEventManager mgr = newManager();
+        TCPRemoteCommitProvider provider = new TCPRemoteCommitProvider();
+        provider.log = NoneLog.getInstance();
+        provider.setRemoteCommitEventManager(mgr);
+        provider.setPort(port);
+        provider.setTransport(transport);
+        provider.setMaxFrameSize(MAX_FRAME_SIZE);
+        provider.endConfiguration();
+        try {
+            // no magic
+            assertClosed(port, 0x12345678, 16);
+            // negative length
+            assertClosed(port, TCPRemoteCommitProvider.BINARY_PROTOCOL_VERSION, -5);
+            // a 2 GB frame
+            assertClosed(port, TCPRemoteCommitProvider.BINARY_PROTOCOL_VERSION, Integer.MAX_VALUE);
+        } finally {
+            provider.close();
+            mgr.close();
+        }
+    }
+
+    /**
+     * Send the given frame header and expect the listener to close the
+     * connection.
+     */
+    private static void assertClosed(int port, int version, int length) throws IOException {
+        try (Socket socket = new Socket("127.0.0.1", port)) {
+            socket.setSoTimeout(10000);
+            DataOutputStream out = new DataOutputStream(socket.getOutputStream());
+            out.writeInt(version);
+            out.writeInt(length);
+            out.write(new byte[16]);
+            out.flush();
+
+            InputStream in = socket.getInputStream();
+            try {
+                Assert.assertEquals(-1, in.read());
+            } catch (SocketTimeoutException ste) {
+                Assert.fail("connection not closed after bad header " + Integer.toHexString(version)
+                    + "/" + length);
+            } catch (IOException ioe) {
+                // reset by the peer
+            }
+        }
+    }
+
+    private static void assertBadHeader(int version, int length) {
+        try {
+            TCPRemoteCommitProvider.checkFrameHeader(version, length, MAX_FRAME_SIZE);
+            Assert.fail("accepted bad header " + Integer.toHexString(version) + "/" + length);
+        } catch (StreamCorruptedException sce) {
+            // expected
+        } catch (IOException ioe) {
+            Assert.fail(ioe.toString());
+        }
+    }
+
+    private static RemoteCommitEventManager newManager() {
+        OpenJPAConfiguration conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            TCPFramingTest.class.getClassLoader(), new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> "newRemoteCommitProviderInstance".equals(method.getName())
+                ? new NoopProvider() : null);
+        return new RemoteCommitEventManager(conf);
+    }
+
+    private static class NoopProvider extends AbstractRemoteCommitProvider {
+
+        @Override
+        public void broadcast(RemoteCommitEvent event) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
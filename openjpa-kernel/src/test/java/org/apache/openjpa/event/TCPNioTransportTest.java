@@ -0,0 +1,195 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.event;
+
+import java.io.IOException;
+import java.lang.reflect.Proxy;
+import java.net.ServerSocket;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Set;
+import java.util.concurrent.BlockingQueue;
+import java.util.concurrent.LinkedBlockingQueue;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.log.NoneLogFactory.NoneLog;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Round trips events between two {@link TCPRemoteCommitProvider}s on the
+ * loopback interface using the NIO transport. Both providers fire into the
+ * same event manager; only the receiver gets packets.
+ */
+public class TCPNioTransportTest {
+
+    @Test
+    public void javaRoundTrip() throws Exception {
+        roundTrip("nio", "nio", "java");
+    }
+
+    @Test
+    public void binaryRoundTrip() throws Exception {
+        roundTrip("nio", "nio", "binary");
+    }
+
+    @Test
+    public void blockingSenderToNioListener() throws Exception {
+        roundTrip("blocking", "nio", "java");
+    }
+
+    @Test
+    public void packetLargerThanReadBuffer() throws Exception {
+        int senderPort = freePort();
+        int receiverPort = freePort();
+        RemoteCommitEventManager mgr = newManager();
+        TCPRemoteCommitProvider sender = newProvider(mgr, senderPort, receiverPort, "nio", "binary");
+        TCPRemoteCommitProvider receiver = newProvider(mgr, receiverPort, senderPort, "nio", "binary");
+        try {
+            final BlockingQueue<RemoteCommitEvent> received = new LinkedBlockingQueue<>();
+            mgr.addListener(new RemoteCommitListener() {
+                @Override
+                public void afterCommit(RemoteCommitEvent event) {
+                    received.add(event);
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+
+            List<String> names = new ArrayList<>();
+            for (int i = 0; i < 5000; i++) {
+                names.add("a.B" + i);
+            }
+            sender.broadcast(new RemoteCommitEvent(RemoteCommitEvent.PAYLOAD_EXTENTS, null, null, names, null));
+            RemoteCommitEvent event = received.poll(10, TimeUnit.SECONDS);
+            Assert.assertNotNull(event);
+            Assert.assertEquals(names, new ArrayList<>(event.getUpdatedTypeNames()));
+        } finally {
+            sender.close();
+            receiver.close();
+            mgr.close();
+        }
+    }
+
+    private void roundTrip(String senderTransport, String receiverTransport, String codec)
+        throws Exception {
+        int senderPort = freePort();
+        int receiverPort = freePort();
+        RemoteCommitEventManager mgr = newManager();
+        TCPRemoteCommitProvider sender = newProvider(mgr, senderPort, receiverPort, senderTransport, codec);
+        TCPRemoteCommitProvider receiver = newProvider(mgr, receiverPort, senderPort, receiverTransport,
+            codec);
+        try {
+            final BlockingQueue<RemoteCommitEvent> received = new LinkedBlockingQueue<>();
+            mgr.addListener(new RemoteCommitListener() {
+                @Override
+                public void afterCommit(RemoteCommitEvent event) {
+                    received.add(event);
+                }
+
+                @Override
+                public void close() {
+                }
+            });
+
+            for (int i = 0; i < 3; i++) {
+                sender.broadcast(new RemoteCommitEvent(
+                    RemoteCommitEvent.PAYLOAD_EXTENTS, null, null, Arrays.asList("a.B" + i), null));
+            }
+            // the blocking transport may use several connections, so only
+            // the NIO transport keeps the order of the events
+            Set<Object> names = new HashSet<>();
+            for (int i = 0; i < 3; i++) {
+                RemoteCommitEvent event = received.poll(10, TimeUnit.SECONDS);
+                Assert.assertNotNull(event);
+                names.addAll(event.getUpdatedTypeNames());
+            }
+            Assert.assertEquals(new HashSet<>(Arrays.asList("a.B0", "a.B1", "a.B2")), names);
+
+            if ("nio".equals(senderTransport)) {
+                // the sender counts a packet after writing it, which may be
+                // after the receiver has already seen it
+                Map<String, TCPRemoteCommitProvider.PeerStatistics> stats = sender.getPeerStatistics();
+                long deadline = System.currentTimeMillis() + 10000;
+                while (stats.values().iterator().next().getSentCount() < 3
+                    && System.currentTimeMillis() < deadline) {
+                    Thread.sleep(10);
+                    stats = sender.getPeerStatistics();
+                }
+                Assert.assertEquals(1, stats.size());
+                TCPRemoteCommitProvider.PeerStatistics peer = stats.values().iterator().next();
+                Assert.assertEquals(3, peer.getSentCount());
+                Assert.assertEquals(0, peer.getDroppedCount());
+                Assert.assertEquals(0, sender.getQueueDepth());
+            }
+        } finally {
+            sender.close();
+            receiver.close();
+            mgr.close();
+        }
+    }
+
+    private static RemoteCommitEventManager newManager() {
+        OpenJPAConfiguration conf = (OpenJPAConfiguration) Proxy.newProxyInstance(
+            TCPNioTransportTest.class.getClassLoader(), new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> "newRemoteCommitProviderInstance".equals(method.getName())
+                ? new NoopProvider() : null);
+        return new RemoteCommitEventManager(conf);
+    }
+
+    private static TCPRemoteCommitProvider newProvider(RemoteCommitEventManager mgr, int port,
+        int peerPort, String transport, String codec) throws Exception {
+        TCPRemoteCommitProvider provider = new TCPRemoteCommitProvider();
+        provider.log = NoneLog.getInstance();
+        provider.setRemoteCommitEventManager(mgr);
+        provider.setPort(port);
+        provider.setAddresses("127.0.0.1:" + peerPort);
+        provider.setTransport(transport);
+        provider.setCodec(codec);
+        provider.endConfiguration();
+        return provider;
+    }
+
+    /**
+     * Provider of the shared event manager; events are fired into the
+     * manager by the TCP providers under test instead.
+     */
+    private static class NoopProvider extends AbstractRemoteCommitProvider {
+
+        @Override
+        public void broadcast(RemoteCommitEvent event) {
+        }
+
+        @Override
+        public void close() {
+        }
+    }
+
+    private static int freePort() throws IOException {
+        try (ServerSocket socket = new ServerSocket(0)) {
+            return socket.getLocalPort();
+        }
+    }
+}
@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.Collections;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test of the changed instances that the broker hands to a query cache
+ * evicting by predicate.
+ */
+public class ChangedStatesTest {
+
+    private static ClassMetaData _foo1;
+    private static ClassMetaData _foo2;
+
+    @BeforeClass
+    public static void createMetaData() {
+        final OpenJPAConfiguration conf = (OpenJPAConfiguration)
+            Proxy.newProxyInstance(ChangedStatesTest.class.getClassLoader(),
+                new Class<?>[] { OpenJPAConfiguration.class },
+                (proxy, method, args) -> null);
+        MetaDataRepository repos = new MetaDataRepository() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public OpenJPAConfiguration getConfiguration() {
+                return conf;
+            }
+        };
+        _foo1 = new ClassMetaData(Foo1.class, repos) {
+            private static final long serialVersionUID = 1L;
+        };
+        _foo2 = new ClassMetaData(Foo2.class, repos) {
+            private static final long serialVersionUID = 1L;
+        };
+    }
+
+    @Test
+    public void changedInstancesAccountForTypes() {
+        OpenJPAStateManager dirty = sm(_foo1, false, true);
+        OpenJPAStateManager clean = sm(_foo2, false, false);
+        Collection<OpenJPAStateManager> changed = BrokerImpl.getChangedStates(
+            Arrays.asList(dirty, clean), types(Foo1.class), null);
+        Assert.assertEquals(1, changed.size());
+        Assert.assertSame(dirty, changed.iterator().next());
+    }
+
+    @Test
+    public void typeWithoutChangedInstanceEvictsByType() {
+        Assert.assertNull(BrokerImpl.getChangedStates(
+            Arrays.asList(sm(_foo1, true, false), sm(_foo2, false, false)),
+            types(Foo1.class, Foo2.class), null));
+    }
+
+    @Test
+    public void dirtiedTypeEvictsByTypeDespiteChangedInstance() {
+        // a bulk update of Foo1 plus a changed managed Foo1 instance
+        Collection<OpenJPAStateManager> states = Collections.singletonList(
+            sm(_foo1, false, true));
+        Assert.assertNotNull(BrokerImpl.getChangedStates(states,
+            types(Foo1.class), types(Foo2.class)));
+        Assert.assertNull(BrokerImpl.getChangedStates(states,
+            types(Foo1.class), types(Foo1.class)));
+    }
+
+    private static Collection<Class<?>> types(Class<?>... types) {
+        return Arrays.asList(types);
+    }
+
+    private static OpenJPAStateManager sm(ClassMetaData meta, boolean isNew,
+        boolean dirty) {
+        return (OpenJPAStateManager) Proxy.newProxyInstance(
+            ChangedStatesTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAStateManager.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getMetaData":
+                        return meta;
+                    case "isNew":
+                        return isNew;
+                    case "isDirty":
+                        return dirty;
+                    case "isDeleted":
+                        return false;
+                    default:
+                        return null;
+                }
+            });
+    }
+}
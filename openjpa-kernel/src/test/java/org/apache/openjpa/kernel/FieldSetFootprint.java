@@ -0,0 +1,79 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.util.BitSet;
+
+/**
+ * Reports the heap held by the loaded and dirty field masks of the state
+ * managers of loaded instances, as {@link BitSet}s and as {@link FieldSet}s.
+ * Every instance has all its fields loaded and one of them dirty. Usage:
+ * <code>java FieldSetFootprint [instances [fields]]</code>, defaulting to
+ * 1,000,000 instances of 12 fields.
+ */
+public class FieldSetFootprint {
+
+    public static void main(String[] args) {
+        int instances = (args.length > 0) ? Integer.parseInt(args[0])
+            : 1000000;
+        int fields = (args.length > 1) ? Integer.parseInt(args[1]) : 12;
+
+        long base = usedMemory();
+        Object[] masks = new Object[instances * 2];
+        long array = usedMemory() - base;
+
+        for (int i = 0; i < instances; i++) {
+            BitSet loaded = new BitSet(fields);
+            loaded.set(0, fields);
+            BitSet dirty = new BitSet(fields);
+            dirty.set(i % fields);
+            masks[2 * i] = loaded;
+            masks[2 * i + 1] = dirty;
+        }
+        long bitSets = usedMemory() - base - array;
+
+        for (int i = 0; i < instances; i++) {
+            FieldSet loaded = new FieldSet(fields);
+            for (int j = 0; j < fields; j++)
+                loaded.set(j);
+            FieldSet dirty = new FieldSet(fields);
+            dirty.set(i % fields);
+            masks[2 * i] = loaded;
+            masks[2 * i + 1] = dirty;
+        }
+        long fieldSets = usedMemory() - base - array;
+
+        // START - ALLOW PRINT STATEMENTS
+        System.out.println(instances + " instances of " + fields + " fields");
+        System.out.println("BitSet:   " + bitSets / 1024 + " KB, "
+            + bitSets / instances + " bytes per instance");
+        System.out.println("FieldSet: " + fieldSets / 1024 + " KB, "
+            + fieldSets / instances + " bytes per instance");
+        // STOP - ALLOW PRINT STATEMENTS
+        if (masks.length == 0)
+            throw new IllegalStateException();
+    }
+
+    private static long usedMemory() {
+        Runtime runtime = Runtime.getRuntime();
+        for (int i = 0; i < 3; i++)
+            System.gc();
+        return runtime.totalMemory() - runtime.freeMemory();
+    }
+}
@@ -0,0 +1,124 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.util.BitSet;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link FieldSet}, checked against {@link BitSet}.
+ */
+public class FieldSetTest {
+
+    private static final int[] INDEXES = { 0, 1, 31, 63, 64, 65, 127, 128,
+        200 };
+
+    @Test
+    public void setAndClear() {
+        FieldSet set = new FieldSet(10);
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertEquals(0, set.length());
+        for (int i : INDEXES) {
+            Assert.assertFalse(set.get(i));
+            set.set(i);
+            Assert.assertTrue(set.get(i));
+            Assert.assertEquals(i + 1, set.length());
+        }
+        Assert.assertEquals(INDEXES.length, set.cardinality());
+        Assert.assertFalse(set.get(2));
+        Assert.assertFalse(set.get(500));
+
+        set.clear(200);
+        Assert.assertEquals(129, set.length());
+        set.set(63, false);
+        Assert.assertFalse(set.get(63));
+        set.clear(1000);
+        set.clear();
+        Assert.assertTrue(set.isEmpty());
+        Assert.assertEquals(0, set.cardinality());
+    }
+
+    @Test
+    public void nextSetBit() {
+        FieldSet set = newSet(INDEXES);
+        BitSet bits = set.toBitSet();
+        for (int i = 0; i <= 201; i++)
+            Assert.assertEquals(bits.nextSetBit(i), set.nextSetBit(i));
+        Assert.assertEquals(-1, new FieldSet().nextSetBit(0));
+        Assert.assertEquals(-1, newSet(3).nextSetBit(64));
+    }
+
+    @Test
+    public void orAndNot() {
+        FieldSet set = newSet(1, 70);
+        set.or(newSet(2, 63, 140));
+        Assert.assertEquals(newSet(1, 2, 63, 70, 140), set);
+
+        set.andNot(newSet(2, 140, 300));
+        Assert.assertEquals(newSet(1, 63, 70), set);
+
+        BitSet bits = new BitSet();
+        bits.set(63);
+        bits.set(70);
+        set.andNot(bits);
+        Assert.assertEquals(newSet(1), set);
+        Assert.assertEquals(2, set.length());
+
+        set.andNot(set);
+        Assert.assertTrue(set.isEmpty());
+    }
+
+    @Test
+    public void copyIsIndependent() {
+        FieldSet set = newSet(5, 100);
+        FieldSet copy = set.copy();
+        copy.set(6);
+        copy.clear(100);
+        Assert.assertEquals(newSet(5, 100), set);
+        Assert.assertEquals(newSet(5, 6), copy);
+    }
+
+    @Test
+    public void bitSetConversion() {
+        FieldSet set = newSet(INDEXES);
+        BitSet bits = set.toBitSet();
+        Assert.assertEquals(INDEXES.length, bits.cardinality());
+        for (int i : INDEXES)
+            Assert.assertTrue(bits.get(i));
+        Assert.assertEquals(set, FieldSet.valueOf(bits));
+        Assert.assertEquals(set.hashCode(), FieldSet.valueOf(bits).hashCode());
+
+        // snapshots do not write through
+        bits.clear(0);
+        Assert.assertTrue(set.get(0));
+
+        Assert.assertNull(FieldSet.valueOf(null));
+        Assert.assertTrue(FieldSet.valueOf(new BitSet()).isEmpty());
+        Assert.assertEquals(new FieldSet(), new FieldSet(300));
+    }
+
+    private static FieldSet newSet(int... indexes) {
+        FieldSet set = new FieldSet();
+        for (int i : indexes)
+            set.set(i);
+        return set;
+    }
+}
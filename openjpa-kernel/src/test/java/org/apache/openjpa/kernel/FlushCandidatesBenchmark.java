@@ -0,0 +1,111 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the state managers an intermediate flush visits in a transaction
+ * holding a large working set of clean instances and a batch of dirty ones.
+ * <code>allStates</code> visits all transactional instances as flushes did
+ * before, <code>flushCandidates</code> only the dirty instances and the
+ * clean ones with version checks. The state managers are kept strongly
+ * reachable, as the application holding the working set does.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FlushCandidatesBenchmark {
+
+    private static final int DIRTY = 1000;
+
+    @Param({ "10000", "100000", "500000" })
+    public int clean;
+
+    private final List<StateManagerImpl> _working = new ArrayList<>();
+    private BrokerImpl.TransactionalCache cache;
+
+    @Setup
+    public void setUp() {
+        cache = new BrokerImpl.TransactionalCache(false);
+        for (int i = 0; i < clean; i++) {
+            TransactionalCacheTest.StubStateManager sm =
+                TransactionalCacheTest.newStateManager();
+            _working.add(sm);
+            cache.addClean(sm);
+        }
+        for (int i = 0; i < DIRTY; i++) {
+            TransactionalCacheTest.StubStateManager sm =
+                TransactionalCacheTest.newStateManager();
+            sm.dirty = true;
+            _working.add(sm);
+            cache.addDirty(sm);
+        }
+    }
+
+    @Benchmark
+    public int allStates() {
+        return visit(cache.copy());
+    }
+
+    @Benchmark
+    public int flushCandidates() {
+        return visit(cache.copyFlushCandidates());
+    }
+
+    /**
+     * Visit the states as the flush does before and after flushing them.
+     */
+    private static int visit(Collection states) {
+        int dirty = 0;
+        for (Object o : states)
+            if (((StateManagerImpl) o).isDirty())
+                dirty++;
+        return dirty;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opts = new OptionsBuilder()
+            .include(FlushCandidatesBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,86 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.math.BigDecimal;
+import java.sql.Timestamp;
+import java.time.LocalDate;
+import java.util.Base64;
+import java.util.Date;
+
+import org.apache.openjpa.util.UserException;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link KeysetToken}.
+ */
+public class KeysetTokenTest {
+
+    private static final String QUERY =
+        "select f from Foo1 f order by f.name, f.id";
+
+    @Test
+    public void encodedTokenRoundTrips() {
+        Timestamp ts = new Timestamp(1000L);
+        ts.setNanos(123456789);
+        KeysetToken token = new KeysetToken(QUERY, new Object[] {
+            "name", 42L, 7, new BigDecimal("1.50"), new Date(5000L), ts,
+            LocalDate.of(2020, 2, 29), Thread.State.BLOCKED, null });
+
+        String encoded = token.encode();
+        KeysetToken decoded = KeysetToken.valueOf(encoded, null);
+        Assert.assertEquals(token, decoded);
+        Assert.assertArrayEquals(token.getValues(), decoded.getValues());
+        Assert.assertTrue(decoded.isTokenOf(QUERY));
+        Assert.assertFalse(decoded.isTokenOf("select f from Foo1 f"));
+        Assert.assertSame(decoded, KeysetToken.valueOf(decoded, null));
+        Assert.assertNull(KeysetToken.valueOf("", null));
+    }
+
+    @Test
+    public void unsupportedValuesAreRejected() {
+        KeysetToken token = new KeysetToken(QUERY, new Object[] {
+            new Object() });
+        try {
+            token.encode();
+            Assert.fail("encoded");
+        } catch (UserException ue) {
+        }
+    }
+
+    @Test
+    public void invalidTokensAreRejected() {
+        assertInvalid("not a token");
+        assertInvalid(Base64.getUrlEncoder().encodeToString(new byte[] {
+            1, 0, 0, 0, 0, 0, 0, 0, 1 }));
+        assertInvalid(Base64.getUrlEncoder().encodeToString(new byte[] {
+            1, 0, 0, 0, 0, 0, 0, 0, 1, 22, 0, 16, 'j', 'a', 'v', 'a', '.',
+            'l', 'a', 'n', 'g', '.', 'O', 'b', 'j', 'e', 'c', 't', 0, 1,
+            'x' }));
+    }
+
+    private static void assertInvalid(String token) {
+        try {
+            KeysetToken.decode(token, null);
+            Assert.fail(token);
+        } catch (UserException ue) {
+        }
+    }
+}
@@ -0,0 +1,213 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.ObjectInputStream;
+import java.io.ObjectOutputStream;
+import java.lang.reflect.Proxy;
+import java.util.Collection;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+
+import org.apache.openjpa.conf.MetaDataFingerprintValidationPolicy;
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.kernel.jpql.JPQLParser;
+import org.apache.openjpa.lib.log.NoneLogFactory.NoneLog;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.ClassResolverImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link QueryCacheSnapshot} and
+ * {@link MetaDataFingerprintValidationPolicy}.
+ */
+public class QueryCacheSnapshotTest {
+
+    @Test
+    public void captureBothCaches() throws Exception {
+        Map<Object, Object> compCache = new HashMap<>();
+        compCache.put(key("select f from Foo1 f", null), "comp");
+        compCache.put(key("f.name = 'x'", Foo1.class), "comp");
+        Map<String, String> prepared = new HashMap<>();
+        prepared.put("select f from Foo1 f", "SELECT ...");
+        prepared.put("select f from Foo2 f", "SELECT ...");
+
+        QueryCacheSnapshot snapshot = QueryCacheSnapshot.capture(
+            newConfiguration(compCache, prepared));
+        Assert.assertEquals(3, snapshot.size());
+
+        QueryCacheSnapshot copy = roundTrip(snapshot);
+        Assert.assertEquals(snapshot.getEntries(), copy.getEntries());
+        boolean candidate = false;
+        for (QueryCacheSnapshot.Entry entry : copy.getEntries())
+            if (Foo1.class.getName().equals(entry.getCandidate()))
+                candidate = true;
+        Assert.assertTrue(candidate);
+    }
+
+    @Test
+    public void emptyCaches() {
+        QueryCacheSnapshot snapshot = QueryCacheSnapshot.capture(
+            newConfiguration(null, null));
+        Assert.assertEquals(0, snapshot.size());
+        snapshot.add(JPQLParser.LANG_JPQL, null, null, true);
+        Assert.assertEquals(0, snapshot.size());
+    }
+
+    @Test
+    public void fingerprintMismatchDiscardsData() {
+        OpenJPAConfiguration conf = newConfiguration(null, null);
+        Object stored = newPolicy(conf, "a").getCacheableData("data");
+        Assert.assertEquals("data", newPolicy(conf, "a").getValidData(stored));
+        Assert.assertNull(newPolicy(conf, "b").getValidData(stored));
+    }
+
+    @Test
+    public void metaDataChangeDiscardsData() {
+        Object stored = newPolicy(newMetaDataConfiguration("name"))
+            .getCacheableData("data");
+        Assert.assertEquals("data", newPolicy(newMetaDataConfiguration("name"))
+            .getValidData(stored));
+        Assert.assertNull(newPolicy(newMetaDataConfiguration("name", "title"))
+            .getValidData(stored));
+    }
+
+    private static MetaDataFingerprintValidationPolicy newPolicy(
+        OpenJPAConfiguration conf) {
+        MetaDataFingerprintValidationPolicy policy =
+            new MetaDataFingerprintValidationPolicy();
+        policy.setConfiguration(conf);
+        return policy;
+    }
+
+    /**
+     * Return a configuration whose only persistent type is {@link Foo1}
+     * with the given string fields.
+     */
+    private static OpenJPAConfiguration newMetaDataConfiguration(
+        String... fields) {
+        final MetaDataRepository[] repos = new MetaDataRepository[1];
+        final OpenJPAConfiguration conf = (OpenJPAConfiguration)
+            Proxy.newProxyInstance(QueryCacheSnapshotTest.class.getClassLoader(),
+                new Class<?>[] { OpenJPAConfiguration.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getMetaDataRepositoryInstance":
+                            return repos[0];
+                        case "getClassResolverInstance":
+                            return new ClassResolverImpl();
+                        case "getConfigurationLog":
+                            return NoneLog.getInstance();
+                        default:
+                            return null;
+                    }
+                });
+        final ClassMetaData[] meta = new ClassMetaData[1];
+        repos[0] = new MetaDataRepository() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public OpenJPAConfiguration getConfiguration() {
+                return conf;
+            }
+
+            @Override
+            public Collection<Class<?>> loadPersistentTypes(boolean devpath,
+                ClassLoader envLoader) {
+                return Collections.singleton(Foo1.class);
+            }
+
+            @Override
+            public ClassMetaData getMetaData(Class<?> cls,
+                ClassLoader envLoader, boolean mustExist) {
+                return meta[0];
+            }
+        };
+        meta[0] = new ClassMetaData(Foo1.class, repos[0]) {
+            private static final long serialVersionUID = 1L;
+        };
+        meta[0].setIdentityType(ClassMetaData.ID_DATASTORE);
+        for (String field : fields)
+            meta[0].addDeclaredField(field, String.class);
+        return conf;
+    }
+
+    private static QueryImpl.CompilationKey key(String query, Class<?> cls) {
+        QueryImpl.CompilationKey key = new QueryImpl.CompilationKey();
+        key.language = JPQLParser.LANG_JPQL;
+        key.query = query;
+        key.candidateType = cls;
+        return key;
+    }
+
+    private static QueryCacheSnapshot roundTrip(QueryCacheSnapshot snapshot)
+        throws Exception {
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        try (ObjectOutputStream out = new ObjectOutputStream(bytes)) {
+            out.writeObject(snapshot);
+        }
+        try (ObjectInputStream in = new ObjectInputStream(
+            new ByteArrayInputStream(bytes.toByteArray()))) {
+            return (QueryCacheSnapshot) in.readObject();
+        }
+    }
+
+    private static MetaDataFingerprintValidationPolicy newPolicy(
+        OpenJPAConfiguration conf, final String fingerprint) {
+        MetaDataFingerprintValidationPolicy policy =
+            new MetaDataFingerprintValidationPolicy() {
+                @Override
+                protected String computeFingerprint() {
+                    return fingerprint;
+                }
+            };
+        policy.setConfiguration(conf);
+        return policy;
+    }
+
+    private static OpenJPAConfiguration newConfiguration(final Map compCache,
+        final Map<String, String> prepared) {
+        final PreparedQueryCache sqlCache = (prepared == null) ? null
+            : (PreparedQueryCache) Proxy.newProxyInstance(
+                QueryCacheSnapshotTest.class.getClassLoader(),
+                new Class<?>[] { PreparedQueryCache.class },
+                (proxy, method, args) -> "getMapView".equals(method.getName())
+                    ? Collections.unmodifiableMap(prepared) : null);
+        return (OpenJPAConfiguration) Proxy.newProxyInstance(
+            QueryCacheSnapshotTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getQueryCompilationCacheInstance":
+                        return compCache;
+                    case "getQuerySQLCacheInstance":
+                        return sqlCache;
+                    case "getConfigurationLog":
+                        return NoneLog.getInstance();
+                    default:
+                        return null;
+                }
+            });
+    }
+}
@@ -0,0 +1,127 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Set;
+
+import org.apache.openjpa.enhance.PCRegistry;
+import org.apache.openjpa.lib.rop.ListResultObjectProvider;
+import org.apache.openjpa.lib.rop.ResultObjectProvider;
+import org.apache.openjpa.lib.rop.StreamingResultList;
+import org.junit.Assert;
+import org.junit.BeforeClass;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link StreamingResultList} and
+ * {@link QueryImpl.DetachingResultObjectProvider}.
+ */
+public class StreamingResultTest {
+
+    @BeforeClass
+    public static void registerTypes() {
+        PCRegistry.register(Item.class, new String[0], new Class<?>[0],
+            new byte[0], null, Item.class.getSimpleName(), null);
+    }
+
+    @Test
+    public void singleForwardPass() {
+        StreamingResultList list = new StreamingResultList(
+            new ListResultObjectProvider(Arrays.asList("a", "b", "c")));
+        Assert.assertEquals(3, list.size());
+        Assert.assertFalse(list.isEmpty());
+        Assert.assertEquals("a", list.get(0));
+
+        Iterator<?> itr = list.iterator();
+        Assert.assertEquals("b", itr.next());
+        Assert.assertEquals("c", itr.next());
+        Assert.assertFalse(itr.hasNext());
+        Assert.assertFalse(list.isProviderOpen());
+        Assert.assertFalse(list.isClosed());
+
+        try {
+            list.get(1);
+            Assert.fail("rewind");
+        } catch (UnsupportedOperationException uoe) {
+        }
+        list.close();
+        Assert.assertTrue(list.isClosed());
+    }
+
+    @Test
+    public void detachesEachBatch() throws Exception {
+        List<Collection<?>> detached = new ArrayList<>();
+        Set<Object> gone = new HashSet<>();
+        Item a = new Item();
+        Item b = new Item();
+        Item c = new Item();
+        ResultObjectProvider rop = new QueryImpl.DetachingResultObjectProvider(
+            new ListResultObjectProvider(Arrays.asList(a, new Object[] { b, 1 },
+                c)), newBroker(detached, gone), 2);
+
+        StreamingResultList list = new StreamingResultList(rop);
+        Iterator<?> itr = list.iterator();
+        itr.next();
+        itr.next();
+        Assert.assertTrue(detached.isEmpty());
+        itr.next();
+        Assert.assertEquals(1, detached.size());
+        Assert.assertEquals(Arrays.asList(a, b), detached.get(0));
+
+        Assert.assertFalse(itr.hasNext());
+        Assert.assertEquals(2, detached.size());
+        Assert.assertEquals(Arrays.asList(c), detached.get(1));
+        list.close();
+        Assert.assertEquals(2, detached.size());
+    }
+
+    private static Broker newBroker(final List<Collection<?>> detached,
+        final Set<Object> gone) {
+        return (Broker) Proxy.newProxyInstance(
+            StreamingResultTest.class.getClassLoader(),
+            new Class<?>[] { Broker.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "isPersistent":
+                        return true;
+                    case "isDetached":
+                        return gone.contains(args[0]);
+                    case "isClosed":
+                        return false;
+                    case "detachAll":
+                        Collection<?> pcs = (Collection<?>) args[0];
+                        detached.add(new ArrayList<>(pcs));
+                        gone.addAll(pcs);
+                        return pcs.toArray();
+                    default:
+                        return null;
+                }
+            });
+    }
+
+    private static class Item {
+    }
+}
@@ -0,0 +1,165 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.Collection;
+import java.util.HashSet;
+
+import org.apache.openjpa.conf.Compatibility;
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.log.NoneLogFactory;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of the flush candidates of {@link BrokerImpl.TransactionalCache}.
+ */
+public class TransactionalCacheTest {
+
+    @Test
+    public void candidatesSkipCleanStates() {
+        BrokerImpl.TransactionalCache cache =
+            new BrokerImpl.TransactionalCache(false);
+        StubStateManager clean = newStateManager();
+        StubStateManager dirty = newStateManager();
+        dirty.dirty = true;
+        cache.addClean(clean);
+        cache.addDirty(dirty);
+
+        Assert.assertEquals(2, cache.copy().size());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(dirty)),
+            cache.copyFlushCandidates());
+    }
+
+    @Test
+    public void candidatesIncludePendingVersionChecks() {
+        BrokerImpl.TransactionalCache cache =
+            new BrokerImpl.TransactionalCache(false);
+        StubStateManager locked = newStateManager();
+        locked.versionCheck = true;
+        cache.addClean(locked);
+        cache.addVersionCheck(locked);
+
+        Collection candidates = cache.copyFlushCandidates();
+        Assert.assertTrue(candidates.contains(locked));
+
+        // once flushed, the instance is no candidate anymore
+        locked.versionCheck = false;
+        Assert.assertTrue(cache.copyFlushCandidates().isEmpty());
+        locked.versionCheck = true;
+        Assert.assertTrue(cache.copyFlushCandidates().isEmpty());
+        Assert.assertTrue(cache.contains(locked));
+    }
+
+    @Test
+    public void removedStatesAreNoCandidates() {
+        BrokerImpl.TransactionalCache cache =
+            new BrokerImpl.TransactionalCache(false);
+        StubStateManager locked = newStateManager();
+        locked.versionCheck = true;
+        cache.addClean(locked);
+        cache.addVersionCheck(locked);
+        Assert.assertTrue(cache.remove(locked));
+        Assert.assertTrue(cache.copyFlushCandidates().isEmpty());
+    }
+
+    private static final OpenJPAConfiguration CONF = (OpenJPAConfiguration)
+        Proxy.newProxyInstance(TransactionalCacheTest.class.getClassLoader(),
+            new Class<?>[] { OpenJPAConfiguration.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getLog":
+                        return NoneLogFactory.NoneLog.getInstance();
+                    case "getCompatibilityInstance":
+                        return new Compatibility();
+                    default:
+                        return null;
+                }
+            });
+
+    private static BrokerImpl _broker;
+    private static ClassMetaData _meta;
+
+    /**
+     * Create a state manager whose dirty and version flags are set
+     * directly rather than by state transitions.
+     */
+    static synchronized StubStateManager newStateManager() {
+        if (_meta == null) {
+            _broker = new BrokerImpl() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public OpenJPAConfiguration getConfiguration() {
+                    return CONF;
+                }
+            };
+            MetaDataRepository repos = new MetaDataRepository() {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public OpenJPAConfiguration getConfiguration() {
+                    return CONF;
+                }
+            };
+            _meta = new ClassMetaData(Item.class, repos) {
+                private static final long serialVersionUID = 1L;
+
+                @Override
+                public int getIdentityType() {
+                    return ID_DATASTORE;
+                }
+            };
+        }
+        return new StubStateManager(_meta, _broker);
+    }
+
+    static class StubStateManager extends StateManagerImpl {
+        private static final long serialVersionUID = 1L;
+
+        boolean dirty;
+        boolean versionCheck;
+
+        StubStateManager(ClassMetaData meta, BrokerImpl broker) {
+            super(new Object(), meta, broker);
+        }
+
+        @Override
+        public boolean isDirty() {
+            return dirty;
+        }
+
+        @Override
+        public boolean isVersionCheckRequired() {
+            return versionCheck;
+        }
+
+        @Override
+        public boolean isVersionUpdateRequired() {
+            return false;
+        }
+    }
+
+    private static class Item {
+    }
+}
@@ -0,0 +1,263 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel.exps;
+
+import java.io.IOException;
+import java.lang.reflect.Field;
+import java.lang.reflect.Proxy;
+import java.util.ArrayList;
+import java.util.HashMap;
+import java.util.List;
+import java.util.Map;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.enhance.AsmAdaptor;
+import org.apache.openjpa.enhance.PCEnhancer;
+import org.apache.openjpa.enhance.PersistenceCapable;
+import org.apache.openjpa.enhance.StateManager;
+import org.apache.openjpa.kernel.OpenJPAStateManager;
+import org.apache.openjpa.kernel.StoreContext;
+import org.apache.openjpa.lib.log.NoneLogFactory;
+import org.apache.openjpa.meta.AccessCode;
+import org.apache.openjpa.meta.ClassMetaData;
+import org.apache.openjpa.meta.MetaDataRepository;
+import org.apache.openjpa.util.ClassResolverImpl;
+
+import serp.bytecode.BCClass;
+import serp.bytecode.Project;
+
+/**
+ * Test fixture enhancing {@link Order} and {@link Customer} in memory with
+ * the metadata below, and managing their instances with state managers that
+ * read the fields through the enhanced code and record the methods called.
+ */
+class EnhancedEntities {
+
+    final MetaDataRepository repos;
+    final ClassMetaData order;
+    final ClassMetaData customer;
+    final Class<?> orderType;
+    final Class<?> customerType;
+
+    /**
+     * The names of the state manager methods called.
+     */
+    final List<String> calls = new ArrayList<>();
+
+    /**
+     * Whether to record the methods called in {@link #calls}.
+     */
+    boolean record = true;
+
+    EnhancedEntities() throws Exception {
+        final OpenJPAConfiguration conf = (OpenJPAConfiguration)
+            Proxy.newProxyInstance(EnhancedEntities.class.getClassLoader(),
+                new Class<?>[] { OpenJPAConfiguration.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getLog":
+                        case "getConfigurationLog":
+                            return NoneLogFactory.NoneLog.getInstance();
+                        case "getClassResolverInstance":
+                            return new ClassResolverImpl();
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+        final Map<Class<?>, ClassMetaData> metas = new HashMap<>();
+        repos = new MetaDataRepository() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public OpenJPAConfiguration getConfiguration() {
+                return conf;
+            }
+
+            @Override
+            public ClassMetaData getMetaData(Class<?> cls,
+                ClassLoader envLoader, boolean mustExist) {
+                return metas.get(cls);
+            }
+        };
+        order = new ClassMetaData(Order.class, repos) {
+            private static final long serialVersionUID = 1L;
+        };
+        customer = new ClassMetaData(Customer.class, repos) {
+            private static final long serialVersionUID = 1L;
+        };
+        metas.put(Order.class, order);
+        metas.put(Customer.class, customer);
+        addFields(order, "customer", "price", "quantity", "status");
+        addFields(customer, "name", "rating", "referrer");
+
+        final Map<String, byte[]> bytes = new HashMap<>();
+        bytes.put(Order.class.getName(), enhance(order));
+        bytes.put(Customer.class.getName(), enhance(customer));
+        ClassLoader loader = new ClassLoader(
+            EnhancedEntities.class.getClassLoader()) {
+            @Override
+            protected Class<?> loadClass(String name, boolean resolve)
+                throws ClassNotFoundException {
+                byte[] b = bytes.get(name);
+                if (b == null)
+                    return super.loadClass(name, resolve);
+                synchronized (getClassLoadingLock(name)) {
+                    Class<?> c = findLoadedClass(name);
+                    return (c != null) ? c
+                        : defineClass(name, b, 0, b.length);
+                }
+            }
+        };
+        orderType = loader.loadClass(Order.class.getName());
+        customerType = loader.loadClass(Customer.class.getName());
+    }
+
+    /**
+     * Return a new managed order.
+     */
+    Object newOrder(Object customer, double price, int quantity,
+        String status) throws ReflectiveOperationException {
+        return manage(newInstance(orderType, "customer", customer, "price",
+            price, "quantity", quantity, "status", status));
+    }
+
+    /**
+     * Return a new managed customer.
+     */
+    Object newCustomer(String name, long rating, Object referrer)
+        throws ReflectiveOperationException {
+        return manage(newInstance(customerType, "name", name, "rating",
+            rating, "referrer", referrer));
+    }
+
+    /**
+     * Return a new instance of the given enhanced type that has no state
+     * manager, with the given field values.
+     */
+    static Object newInstance(Class<?> type, Object... values)
+        throws ReflectiveOperationException {
+        Object pc = type.newInstance();
+        for (int i = 0; i < values.length; i += 2) {
+            Field field = type.getDeclaredField((String) values[i]);
+            field.setAccessible(true);
+            field.set(pc, values[i + 1]);
+        }
+        return pc;
+    }
+
+    /**
+     * Give the given instance a state manager that fetches its fields through
+     * {@link PersistenceCapable#pcProvideField}.
+     */
+    Object manage(Object obj) {
+        final PersistenceCapable pc = (PersistenceCapable) obj;
+        final Object[] provided = new Object[1];
+        pc.pcReplaceStateManager((StateManager) Proxy.newProxyInstance(
+            EnhancedEntities.class.getClassLoader(),
+            new Class<?>[] { OpenJPAStateManager.class },
+            (proxy, method, args) -> {
+                String name = method.getName();
+                if (record)
+                    calls.add(name);
+                if (name.startsWith("provided")) {
+                    provided[0] = args[2];
+                    return null;
+                }
+                if (name.startsWith("fetch") && name.endsWith("Field")) {
+                    pc.pcProvideField((Integer) args[0]);
+                    return provided[0];
+                }
+                switch (name) {
+                    case "replaceStateManager":
+                        return args[0];
+                    case "getPersistenceCapable":
+                    case "getManagedInstance":
+                        return pc;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            }));
+        return pc;
+    }
+
+    /**
+     * Return the path through the given fields, starting at the order.
+     */
+    Value path(boolean nullTraversal, String... fields) {
+        Path path = new InMemoryExpressionFactory().newPath();
+        ClassMetaData meta = order;
+        for (String field : fields) {
+            path.get(meta.getField(field), nullTraversal);
+            meta = customer;
+        }
+        return path;
+    }
+
+    /**
+     * Return a context without a broker.
+     */
+    static StoreContext newContext() {
+        return (StoreContext) Proxy.newProxyInstance(
+            EnhancedEntities.class.getClassLoader(),
+            new Class<?>[] { StoreContext.class },
+            (proxy, method, args) -> defaultValue(method.getReturnType()));
+    }
+
+    private static void addFields(ClassMetaData meta, String... names)
+        throws NoSuchFieldException {
+        meta.setIdentityType(ClassMetaData.ID_DATASTORE);
+        meta.setAccessType(AccessCode.FIELD);
+        for (String name : names) {
+            Field field = meta.getDescribedType().getDeclaredField(name);
+            meta.addDeclaredField(name, field.getType()).backingMember(field);
+        }
+    }
+
+    private byte[] enhance(ClassMetaData meta) throws IOException {
+        BCClass bc = new Project().loadClass(meta.getDescribedType());
+        PCEnhancer enhancer = new PCEnhancer(repos, bc, meta);
+        if (enhancer.run() != PCEnhancer.ENHANCE_PC)
+            throw new IllegalStateException(meta.toString());
+        BCClass pc = enhancer.getPCBytecode();
+        return AsmAdaptor.toByteArray(pc, pc.toByteArray());
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class)
+            return false;
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        return null;
+    }
+
+    public static class Order {
+        private Customer customer;
+        private double price;
+        private int quantity;
+        private String status;
+    }
+
+    public static class Customer {
+        private String name;
+        private long rating;
+        private Customer referrer;
+    }
+}
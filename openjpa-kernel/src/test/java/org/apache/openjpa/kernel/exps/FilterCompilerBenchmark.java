@@ -0,0 +1,116 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel.exps;
+
+import java.util.concurrent.TimeUnit;
+
+import org.apache.openjpa.kernel.StoreContext;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the time to filter enhanced candidates in memory with the
+ * interpreted and the compiled filter of
+ * <code>quantity &gt; 5 AND customer.rating &gt;= 3 AND price &lt; 100.0
+ * AND status = :status</code>. Run {@link #main} to execute the benchmark.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class FilterCompilerBenchmark {
+
+    private static final int CANDIDATES = 1000;
+
+    @Param({ "interpreted", "compiled" })
+    public String mode;
+
+    private Object[] candidates;
+    private Exp filter;
+    private CompiledFilter compiled;
+    private StoreContext ctx;
+    private Object[] params;
+
+    @Setup
+    public void setUp() throws Exception {
+        EnhancedEntities entities = new EnhancedEntities();
+        Object[] customers = new Object[10];
+        for (int i = 0; i < customers.length; i++)
+            customers[i] = entities.newCustomer("c" + i, i, null);
+        candidates = new Object[CANDIDATES];
+        for (int i = 0; i < CANDIDATES; i++)
+            candidates[i] = entities.newOrder(customers[i % customers.length],
+                i % 200, i % 11, (i % 3 == 0) ? "open" : "closed");
+
+        InMemoryExpressionFactory factory = new InMemoryExpressionFactory();
+        Parameter status = factory.newParameter("status", String.class);
+        status.setIndex(0);
+        filter = (Exp) factory.and(factory.and(
+            factory.greaterThan(entities.path(false, "quantity"),
+                factory.newLiteral(5L, Literal.TYPE_NUMBER)),
+            factory.greaterThanEqual(entities.path(false, "customer",
+                "rating"), factory.newLiteral(3L, Literal.TYPE_NUMBER))),
+            factory.and(factory.lessThan(entities.path(false, "price"),
+                factory.newLiteral(100d, Literal.TYPE_NUMBER)),
+                factory.equal(entities.path(false, "status"), status)));
+        compiled = FilterCompiler.compile(filter);
+        ctx = EnhancedEntities.newContext();
+        params = new Object[]{ "open" };
+        // the recording state managers are not part of the measurement
+        entities.calls.clear();
+        entities.record = false;
+    }
+
+    @Benchmark
+    public int filter() {
+        int matches = 0;
+        if ("compiled".equals(mode)) {
+            for (Object candidate : candidates)
+                if (compiled.matches(candidate, ctx, params))
+                    matches++;
+        } else {
+            for (Object candidate : candidates)
+                if (filter.evaluate(candidate, candidate, ctx, params))
+                    matches++;
+        }
+        return matches;
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        Options opts = new OptionsBuilder()
+            .include(FilterCompilerBenchmark.class.getSimpleName())
+            .build();
+        new Runner(opts).run();
+    }
+}
@@ -0,0 +1,224 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.kernel.exps;
+
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+
+import org.apache.openjpa.kernel.StoreContext;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Checks that compiled filters give the same results as the interpreter,
+ * for plain values compared through the candidate itself and for enhanced
+ * instances compared through their fields.
+ */
+public class FilterCompilerTest {
+
+    private final InMemoryExpressionFactory _factory =
+        new InMemoryExpressionFactory();
+
+    @Test
+    public void comparisons() {
+        Value p = param(0);
+        Value lit = _factory.newLiteral(10L, Literal.TYPE_NUMBER);
+        assertSame(_factory.equal(_factory.getThis(), p));
+        assertSame(_factory.notEqual(_factory.getThis(), p));
+        assertSame(_factory.lessThan(_factory.getThis(), lit));
+        assertSame(_factory.greaterThan(lit, _factory.getThis()));
+        assertSame(_factory.lessThanEqual(_factory.getThis(), p));
+        assertSame(_factory.greaterThanEqual(_factory.getThis(), p));
+        assertSame(_factory.equal(_factory.getThis(), _factory.getNull()));
+        assertSame(_factory.notEqual(p, _factory.getNull()));
+    }
+
+    @Test
+    public void booleans() {
+        Expression low = _factory.lessThan(_factory.getThis(), param(0));
+        Expression high = _factory.greaterThan(_factory.getThis(),
+            _factory.newLiteral(15, Literal.TYPE_NUMBER));
+        Expression seven = _factory.equal(_factory.getThis(),
+            _factory.newLiteral(7, Literal.TYPE_NUMBER));
+        assertSame(_factory.and(low, _factory.not(seven)));
+        assertSame(_factory.or(low, high));
+        assertSame(_factory.not(_factory.or(_factory.and(low, seven), high)));
+        assertSame(_factory.emptyExpression());
+    }
+
+    @Test
+    public void unsupported() {
+        Expression exp = _factory.and(
+            _factory.equal(_factory.getThis(), param(0)),
+            _factory.startsWith(_factory.getThis(), param(0)));
+        Assert.assertNull(FilterCompiler.compile(exp));
+
+        QueryExpressions exps = new QueryExpressions();
+        exps.filter = exp;
+        Assert.assertFalse(_factory.compile(exps));
+        exps.filter = _factory.equal(_factory.getThis(), param(0));
+        Assert.assertTrue(_factory.compile(exps));
+    }
+
+    @Test
+    public void failedPaths() {
+        Assert.assertSame(FilterCompiler.FAIL,
+            FilterCompiler.fetch(null, null, 0, false));
+        Assert.assertNull(FilterCompiler.fetch(null, null, 0, true));
+        Assert.assertSame(FilterCompiler.FAIL,
+            FilterCompiler.fetch(FilterCompiler.FAIL, null, 0, true));
+        Assert.assertFalse(FilterCompiler.compare(FilterCompiler.FAIL, null,
+            FilterCompiler.EQUAL));
+        Assert.assertFalse(FilterCompiler.compare(FilterCompiler.FAIL, null,
+            FilterCompiler.NOT_EQUAL));
+    }
+
+    @Test
+    public void candidateFields() throws Exception {
+        EnhancedEntities entities = new EnhancedEntities();
+        Object[] candidates = newOrders(entities);
+        Value quantity = entities.path(false, "quantity");
+        Value price = entities.path(false, "price");
+        Value status = entities.path(false, "status");
+        Value rating = entities.path(false, "customer", "rating");
+        Value referrer = entities.path(false, "customer", "referrer",
+            "name");
+        Value lenient = entities.path(true, "customer", "referrer",
+            "rating");
+        Value five = _factory.newLiteral(5L, Literal.TYPE_NUMBER);
+        Value third = _factory.newLiteral(12.5d, Literal.TYPE_NUMBER);
+        Value three = _factory.newLiteral(3, Literal.TYPE_NUMBER);
+        Value open = _factory.newLiteral("open", Literal.TYPE_STRING);
+
+        assertSame(_factory.greaterThan(quantity, five), candidates);
+        assertSame(_factory.lessThan(five, quantity), candidates);
+        assertSame(_factory.equal(quantity, five), candidates);
+        assertSame(_factory.notEqual(quantity, five), candidates);
+        assertSame(_factory.lessThanEqual(price, third), candidates);
+        assertSame(_factory.greaterThanEqual(third, price), candidates);
+        assertSame(_factory.equal(price, five), candidates);
+        assertSame(_factory.equal(status, open), candidates);
+        assertSame(_factory.equal(status, _factory.getNull()), candidates);
+        assertSame(_factory.equal(quantity, param(0)), candidates);
+        assertSame(_factory.greaterThanEqual(rating, three), candidates);
+        assertSame(_factory.notEqual(rating, three), candidates);
+        assertSame(_factory.equal(referrer, param(0)), candidates);
+        assertSame(_factory.notEqual(referrer, _factory.getNull()),
+            candidates);
+        assertSame(_factory.notEqual(lenient, three), candidates);
+        assertSame(_factory.lessThan(lenient, three), candidates);
+        assertSame(_factory.not(_factory.and(
+            _factory.greaterThan(quantity, five),
+            _factory.lessThan(rating, three))), candidates);
+        assertSame(_factory.or(_factory.equal(status, open),
+            _factory.greaterThan(rating, three)), candidates);
+    }
+
+    @Test
+    public void primitiveFieldsAreNotBoxed() throws Exception {
+        EnhancedEntities entities = new EnhancedEntities();
+        Object order = entities.newOrder(entities.newCustomer("c", 4, null),
+            7.5d, 9, "open");
+        CompiledFilter filter = FilterCompiler.compile(_factory.and(
+            _factory.greaterThan(entities.path(false, "quantity"),
+                _factory.newLiteral(5L, Literal.TYPE_NUMBER)),
+            _factory.lessThan(entities.path(false, "customer", "rating"),
+                _factory.newLiteral(5, Literal.TYPE_NUMBER))));
+        entities.calls.clear();
+        Assert.assertTrue(filter.matches(order,
+            EnhancedEntities.newContext(), new Object[0]));
+        Assert.assertTrue(entities.calls.toString(),
+            entities.calls.contains("fetchIntField"));
+        Assert.assertTrue(entities.calls.toString(),
+            entities.calls.contains("fetchLongField"));
+        Assert.assertTrue(entities.calls.toString(),
+            entities.calls.contains("accessingField"));
+        // only the customer relation is fetched as an object
+        Assert.assertEquals(1, Collections.frequency(entities.calls,
+            "fetchField"));
+    }
+
+    /**
+     * Return orders with a range of quantities, prices, statuses and
+     * customers, including orders without a customer and customers without
+     * a referrer, and an order that is not managed.
+     */
+    static Object[] newOrders(EnhancedEntities entities) throws Exception {
+        Object referrer = entities.newCustomer("y", 5, null);
+        Object[] customers = {
+            null,
+            entities.newCustomer("a", 1, null),
+            entities.newCustomer("b", 3, referrer),
+            entities.newCustomer(null, 7, entities.newCustomer(null, 3,
+                null)),
+        };
+        String[] statuses = { "open", "closed", null };
+        double[] prices = { 0d, 5d, 12.5d, -0d, Double.NaN };
+        List<Object> orders = new ArrayList<>();
+        for (int i = 0; i < 3 * customers.length * prices.length; i++)
+            orders.add(entities.newOrder(customers[i % customers.length],
+                prices[i % prices.length], i % 11,
+                statuses[i % statuses.length]));
+        orders.add(EnhancedEntities.newInstance(entities.orderType,
+            "quantity", 5));
+        return orders.toArray();
+    }
+
+    private Value param(int index) {
+        Parameter param = _factory.newParameter("p" + index, Integer.class);
+        param.setIndex(index);
+        return param;
+    }
+
+    /**
+     * Assert that the compiled expression matches the same candidates as
+     * the interpreted one for a range of candidates and parameters, failing
+     * in the same way for values that cannot be compared.
+     */
+    private void assertSame(Expression exp) {
+        assertSame(exp, new Object[]{ 0, 3, 7, 9L, 10, 12.5d, 15, 20, "x" });
+    }
+
+    private void assertSame(Expression exp, Object[] candidates) {
+        CompiledFilter compiled = FilterCompiler.compile(exp);
+        Assert.assertNotNull(compiled);
+        StoreContext ctx = EnhancedEntities.newContext();
+        Object[][] params = { { 9 }, { 10L }, { null }, { "y" } };
+        for (Object candidate : candidates) {
+            for (Object[] param : params) {
+                Object interpreted;
+                try {
+                    interpreted = ((Exp) exp).evaluate(candidate, candidate,
+                        ctx, param);
+                } catch (RuntimeException re) {
+                    interpreted = re.getClass();
+                }
+                Object result;
+                try {
+                    result = compiled.matches(candidate, ctx, param);
+                } catch (RuntimeException re) {
+                    result = re.getClass();
+                }
+                Assert.assertEquals(exp + " " + candidate + " " + param[0],
+                    interpreted, result);
+            }
+        }
+    }
+}
@@ -0,0 +1,115 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.meta;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Measures the throughput of {@link MetaDataRepository#getMetaData} lookups
+ * of warmed-up classes. The <code>locking</code> mode is the default
+ * repository, <code>snapshot</code> enables its snapshot lookups and
+ * <code>preload</code> turns off its locking as preloading does once all
+ * classes are loaded. Run {@link #main} to execute the benchmark with 1 to
+ * 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class MetaDataLookupBenchmark {
+
+    private static final Class<?>[] TYPES = {
+        Type0.class, Type1.class, Type2.class, Type3.class,
+        Type4.class, Type5.class, Type6.class, Type7.class,
+    };
+
+    @Param({ "locking", "snapshot", "preload" })
+    public String mode;
+
+    private MetaDataRepository repos;
+
+    @Setup
+    public void setUp() {
+        repos = SnapshotLookupsTest.newRepository("snapshot".equals(mode));
+        for (Class<?> type : TYPES)
+            repos.getMetaData(type, null, true);
+        if ("preload".equals(mode))
+            repos._locking = false;
+    }
+
+    @Benchmark
+    public ClassMetaData getMetaData() {
+        Class<?> type = TYPES[ThreadLocalRandom.current().nextInt(
+            TYPES.length)];
+        return repos.getMetaData(type, null, true);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Options opts = new OptionsBuilder()
+                .include(MetaDataLookupBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build();
+            new Runner(opts).run();
+        }
+    }
+
+    private static class Type0 {
+    }
+
+    private static class Type1 {
+    }
+
+    private static class Type2 {
+    }
+
+    private static class Type3 {
+    }
+
+    private static class Type4 {
+    }
+
+    private static class Type5 {
+    }
+
+    private static class Type6 {
+    }
+
+    private static class Type7 {
+    }
+}
@@ -0,0 +1,271 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.meta;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.lang.reflect.Proxy;
+import java.net.URL;
+import java.net.URLClassLoader;
+import java.nio.file.Files;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.log.NoneLogFactory.NoneLog;
+import org.apache.openjpa.lib.meta.MetaDataFilter;
+import org.junit.Assert;
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+/**
+ * Unit test of the format of {@link PersistentTypeIndex} and of its use
+ * by {@link AbstractCFMetaDataFactory}.
+ */
+public class PersistentTypeIndexTest {
+
+    private static final Set<String> NAMES = new HashSet<>(Arrays.asList(
+        "org.example.Order", "org.example.LineItem", "org.example.Customer"));
+    private static final Set<String> OTHER_NAMES = new HashSet<>(
+        Arrays.asList("org.example.Invoice"));
+
+    @Rule
+    public TemporaryFolder tmp = new TemporaryFolder();
+
+    @Test
+    public void readsWrittenNames() throws IOException {
+        Map<String, Set<String>> index = PersistentTypeIndex.read(
+            new ByteArrayInputStream(write(units())));
+        Assert.assertEquals(units(), index);
+    }
+
+    @Test
+    public void writesReproducibleIndex() throws IOException {
+        Set<String> reordered = new HashSet<>(16, 0.9f);
+        reordered.addAll(NAMES);
+        Map<String, Set<String>> units = new HashMap<>(16, 0.9f);
+        units.put("other", OTHER_NAMES);
+        units.put("orders", reordered);
+        Assert.assertArrayEquals(write(units()), write(units));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsCorruptIndex() throws IOException {
+        byte[] bytes = write(units());
+        bytes[bytes.length - 1] ^= 1;
+        PersistentTypeIndex.read(new ByteArrayInputStream(bytes));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsTruncatedIndex() throws IOException {
+        byte[] bytes = write(units());
+        PersistentTypeIndex.read(new ByteArrayInputStream(
+            Arrays.copyOf(bytes, bytes.length - 4)));
+    }
+
+    @Test(expected = IOException.class)
+    public void rejectsOtherFiles() throws IOException {
+        PersistentTypeIndex.read(new ByteArrayInputStream(
+            "<persistence/>".getBytes("UTF-8")));
+    }
+
+    @Test
+    public void indexReplacesScans() throws IOException {
+        ScanCountingFactory factory = newFactory("orders", write(units()));
+        Assert.assertEquals(NAMES, factory.parsePersistentTypeNames(
+            factory.loader));
+        Assert.assertEquals(0, factory.scanned);
+    }
+
+    @Test
+    public void corruptIndexFallsBackToScanning() throws IOException {
+        byte[] bytes = write(units());
+        bytes[bytes.length - 1] ^= 1;
+        ScanCountingFactory factory = newFactory("orders", bytes);
+        Assert.assertTrue(factory.parsePersistentTypeNames(factory.loader)
+            .isEmpty());
+        Assert.assertTrue(factory.scanned > 0);
+    }
+
+    @Test
+    public void missingIndexFallsBackToScanning() throws IOException {
+        ScanCountingFactory factory = newFactory("orders", null);
+        Assert.assertTrue(factory.parsePersistentTypeNames(factory.loader)
+            .isEmpty());
+        Assert.assertTrue(factory.scanned > 0);
+    }
+
+    @Test
+    public void indexOfOtherUnitsFallsBackToScanning() throws IOException {
+        ScanCountingFactory factory = newFactory("invoices", write(units()));
+        Assert.assertTrue(factory.parsePersistentTypeNames(factory.loader)
+            .isEmpty());
+        Assert.assertTrue(factory.scanned > 0);
+    }
+
+    private static Map<String, Set<String>> units() {
+        Map<String, Set<String>> units = new HashMap<>();
+        units.put("orders", NAMES);
+        units.put("other", OTHER_NAMES);
+        return units;
+    }
+
+    private static byte[] write(Map<String, Set<String>> units)
+        throws IOException {
+        ByteArrayOutputStream out = new ByteArrayOutputStream();
+        PersistentTypeIndex.write(units, out);
+        return out.toByteArray();
+    }
+
+    /**
+     * Return a factory of the given unit that scans a directory of classes
+     * and reads the given index, if any, from its class loader.
+     */
+    private ScanCountingFactory newFactory(final String unit, byte[] index)
+        throws IOException {
+        File classes = tmp.newFolder();
+        Files.write(new File(classes, "Order.class").toPath(), new byte[0]);
+        File resources = tmp.newFolder();
+        if (index != null) {
+            File file = new File(resources, PersistentTypeIndex.DEFAULT_RESOURCE);
+            file.getParentFile().mkdirs();
+            try (OutputStream out = new FileOutputStream(file)) {
+                out.write(index);
+            }
+        }
+
+        final OpenJPAConfiguration conf = (OpenJPAConfiguration)
+            Proxy.newProxyInstance(getClass().getClassLoader(),
+                new Class<?>[] { OpenJPAConfiguration.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getId":
+                            return unit;
+                        case "getLog":
+                            return NoneLog.getInstance();
+                        default:
+                            return null;
+                    }
+                });
+        ScanCountingFactory factory = new ScanCountingFactory();
+        factory.setRepository(new MetaDataRepository() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public OpenJPAConfiguration getConfiguration() {
+                return conf;
+            }
+        });
+        factory.setFiles(Collections.singleton(classes));
+        factory.setTypeIndex(PersistentTypeIndex.DEFAULT_RESOURCE);
+        factory.loader = new URLClassLoader(
+            new URL[] { resources.toURI().toURL() }, null);
+        return factory;
+    }
+
+    /**
+     * Factory that counts the resources its scans look at.
+     */
+    private static class ScanCountingFactory
+        extends AbstractCFMetaDataFactory {
+
+        private ClassLoader loader;
+        private int scanned = 0;
+
+        @Override
+        protected MetaDataFilter newMetaDataFilter() {
+            return rsrc -> {
+                scanned++;
+                return false;
+            };
+        }
+
+        @Override
+        protected File defaultSourceFile(ClassMetaData meta) {
+            return null;
+        }
+
+        @Override
+        protected File defaultSourceFile(QueryMetaData query, Map clsNames) {
+            return null;
+        }
+
+        @Override
+        protected File defaultSourceFile(SequenceMetaData seq, Map clsNames) {
+            return null;
+        }
+
+        @Override
+        protected Parser newParser(boolean loading) {
+            return null;
+        }
+
+        @Override
+        protected Serializer newSerializer() {
+            return null;
+        }
+
+        @Override
+        protected Serializer newAnnotationSerializer() {
+            return null;
+        }
+
+        @Override
+        public void load(Class<?> cls, int mode, ClassLoader envLoader) {
+        }
+
+        @Override
+        public MetaDataDefaults getDefaults() {
+            return null;
+        }
+
+        @Override
+        public void loadXMLMetaData(Class<?> cls) {
+        }
+
+        @Override
+        public String getMetaModelClassName(String managedClassName) {
+            return null;
+        }
+
+        @Override
+        public String getManagedClassName(String metamodelClassName) {
+            return null;
+        }
+
+        @Override
+        public boolean isMetaClass(Class<?> c) {
+            return false;
+        }
+
+        @Override
+        public Class<?> getManagedClass(Class<?> c) {
+            return null;
+        }
+    }
+}
@@ -0,0 +1,167 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.meta;
+
+import java.lang.reflect.Proxy;
+import java.util.Arrays;
+import java.util.HashSet;
+import java.util.Set;
+
+import org.apache.openjpa.conf.Compatibility;
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.instrumentation.jmx.MetaDataRepositoryJMXInstrument;
+import org.apache.openjpa.lib.log.NoneLogFactory;
+import org.apache.openjpa.util.ClassResolverImpl;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of the time and class count reported by
+ * {@link MetaDataRepository#preload}.
+ */
+public class PreloadTest {
+
+    private static final Class<?>[] TYPES = {
+        Base.class, Sub.class, Other.class, Unrelated.class,
+    };
+
+    @Test
+    public void preloadReportsTimeAndCount() {
+        MetaDataRepository repos = newRepository(names());
+        repos.setPreload(true);
+        Assert.assertEquals(-1, repos.getPreloadTime());
+        Assert.assertEquals(0, repos.getPreloadCount());
+
+        repos.preload();
+        Assert.assertTrue(repos.getPreloadTime() >= 0);
+        Assert.assertEquals(TYPES.length, repos.getPreloadCount());
+        Set<Class<?>> preloaded = new HashSet<>();
+        for (ClassMetaData meta : repos.getMetaDatas())
+            preloaded.add(meta.getDescribedType());
+        Assert.assertEquals(new HashSet<>(Arrays.asList(TYPES)), preloaded);
+        Assert.assertFalse(repos._locking);
+    }
+
+    @Test
+    public void instrumentReportsPreload() {
+        MetaDataRepository repos = newRepository(names());
+        MetaDataRepositoryJMXInstrument instrument =
+            new MetaDataRepositoryJMXInstrument();
+        Assert.assertEquals(-1, instrument.getPreloadTime());
+        Assert.assertFalse(instrument.isPreload());
+
+        instrument.setMetaDataRepository(repos);
+        repos.setPreload(true);
+        Assert.assertEquals(-1, instrument.getPreloadTime());
+        Assert.assertEquals(0, instrument.getPreloadCount());
+
+        repos.preload();
+        Assert.assertTrue(instrument.isPreload());
+        Assert.assertEquals(repos.getPreloadTime(),
+            instrument.getPreloadTime());
+        Assert.assertEquals(TYPES.length, instrument.getPreloadCount());
+    }
+
+    private static Set<String> names() {
+        Set<String> names = new HashSet<>();
+        for (Class<?> type : TYPES)
+            names.add(type.getName());
+        return names;
+    }
+
+    /**
+     * Create a repository whose factory lists the given persistent type
+     * names, adds default metadata for any class it is asked to load, and
+     * that does not resolve metadata.
+     */
+    private static MetaDataRepository newRepository(final Set<String> typeNames) {
+        final OpenJPAConfiguration conf = (OpenJPAConfiguration)
+            Proxy.newProxyInstance(PreloadTest.class.getClassLoader(),
+                new Class<?>[] { OpenJPAConfiguration.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getLog":
+                            return NoneLogFactory.NoneLog.getInstance();
+                        case "getCompatibilityInstance":
+                            return new Compatibility();
+                        case "getClassResolverInstance":
+                            return new ClassResolverImpl();
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+        final MetaDataRepository repos = new MetaDataRepository() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public OpenJPAConfiguration getConfiguration() {
+                return conf;
+            }
+        };
+        repos.setConfiguration(conf);
+        repos.setResolve(MetaDataModes.MODE_NONE);
+
+        final MetaDataDefaults defaults = (MetaDataDefaults)
+            Proxy.newProxyInstance(PreloadTest.class.getClassLoader(),
+                new Class<?>[] { MetaDataDefaults.class },
+                (proxy, method, args) -> defaultValue(method.getReturnType()));
+        repos.setMetaDataFactory((MetaDataFactory) Proxy.newProxyInstance(
+            PreloadTest.class.getClassLoader(),
+            new Class<?>[] { MetaDataFactory.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getDefaults":
+                        return defaults;
+                    case "getPersistentTypeNames":
+                        return typeNames;
+                    case "load":
+                        repos.addMetaData((Class<?>) args[0]).setSourceMode(
+                            MetaDataModes.MODE_META);
+                        return null;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            }));
+        return repos;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class)
+            return false;
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        return null;
+    }
+
+    public static class Base {
+        private Other other;
+    }
+
+    public static class Sub extends Base {
+    }
+
+    public static class Other {
+        private Base base;
+    }
+
+    public static class Unrelated {
+    }
+}
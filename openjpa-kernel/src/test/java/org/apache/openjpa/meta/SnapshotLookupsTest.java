@@ -0,0 +1,212 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.meta;
+
+import java.lang.reflect.Proxy;
+import java.util.Collections;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.function.BiConsumer;
+
+import org.apache.openjpa.conf.Compatibility;
+import org.apache.openjpa.conf.OpenJPAConfiguration;
+import org.apache.openjpa.lib.log.NoneLogFactory;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of the lock-free lookups of
+ * {@link MetaDataRepository#setSnapshotLookups}.
+ */
+public class SnapshotLookupsTest {
+
+    @Test
+    public void resolvedLookupsDoNotLock() throws Exception {
+        final MetaDataRepository repos = newRepository(true);
+        ClassMetaData meta = repos.getMetaData(Item.class, null, true);
+        Assert.assertNotNull(meta);
+
+        // hold the repository lock while looking up again
+        CountDownLatch locked = new CountDownLatch(1);
+        CountDownLatch release = new CountDownLatch(1);
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        try {
+            exec.submit(() -> {
+                synchronized (repos) {
+                    locked.countDown();
+                    release.await();
+                }
+                return null;
+            });
+            locked.await();
+            Future<ClassMetaData> lookup = exec.submit(
+                () -> repos.getMetaData(Item.class, null, true));
+            Assert.assertSame(meta, lookup.get(5, TimeUnit.SECONDS));
+        } finally {
+            release.countDown();
+            exec.shutdown();
+        }
+    }
+
+    @Test
+    public void changesDropSnapshot() {
+        MetaDataRepository repos = newRepository(true);
+        ClassMetaData meta = repos.getMetaData(Item.class, null, true);
+        Assert.assertSame(meta, repos.getMetaData(Item.class, null, true));
+        Assert.assertTrue(repos.removeMetaData(Item.class));
+
+        ClassMetaData reloaded = repos.getMetaData(Item.class, null, true);
+        Assert.assertNotSame(meta, reloaded);
+        Assert.assertSame(reloaded, repos.getMetaData(Item.class, null, true));
+    }
+
+    @Test
+    public void reentrantLookupsAreNotPublished() throws Exception {
+        final ExecutorService exec = Executors.newSingleThreadExecutor();
+        final Future<?>[] concurrent = new Future<?>[1];
+        MetaDataRepository repos = newRepository(true, MetaDataModes.MODE_META,
+            (r, meta) -> {
+                if (meta.getDescribedType() != Item.class)
+                    return;
+                // Other is buffered behind Item, so is returned unresolved
+                ClassMetaData other = r.getMetaData(Other.class, null, true);
+                Assert.assertEquals(0, other.getResolve() & MetaDataModes.MODE_META);
+
+                // another thread must wait for the resolution instead of
+                // finding the unresolved metadata in the snapshot
+                concurrent[0] = exec.submit(() -> r.getMetaData(Other.class, null, true).getResolve());
+                try {
+                    concurrent[0].get(200, TimeUnit.MILLISECONDS);
+                } catch (TimeoutException te) {
+                    // expected while this thread holds the repository lock
+                } catch (Exception e) {
+                    throw new RuntimeException(e);
+                }
+            });
+        try {
+            ClassMetaData item = repos.getMetaData(Item.class, null, true);
+            Assert.assertNotEquals(0, item.getResolve() & MetaDataModes.MODE_META);
+            Assert.assertNotEquals(0, (Integer) concurrent[0].get(5, TimeUnit.SECONDS)
+                & MetaDataModes.MODE_META);
+
+            // once resolved, the metadata is published
+            ClassMetaData other = repos.getMetaData(Other.class, null, true);
+            Assert.assertNotEquals(0, other.getResolve() & MetaDataModes.MODE_META);
+            Assert.assertSame(other, repos.getMetaData(Other.class, null, true));
+        } finally {
+            exec.shutdown();
+        }
+    }
+
+    static MetaDataRepository newRepository(boolean snapshotLookups) {
+        return newRepository(snapshotLookups, MetaDataModes.MODE_NONE, null);
+    }
+
+    /**
+     * Create a repository whose factory adds default metadata for any class
+     * it is asked to load, resolving metadata in the given mode and calling
+     * the given hook, if any, as each metadata resolves.
+     */
+    static MetaDataRepository newRepository(boolean snapshotLookups, int resolve,
+        BiConsumer<MetaDataRepository, ClassMetaData> onResolve) {
+        final OpenJPAConfiguration conf = (OpenJPAConfiguration)
+            Proxy.newProxyInstance(SnapshotLookupsTest.class.getClassLoader(),
+                new Class<?>[] { OpenJPAConfiguration.class },
+                (proxy, method, args) -> {
+                    switch (method.getName()) {
+                        case "getLog":
+                            return NoneLogFactory.NoneLog.getInstance();
+                        case "getCompatibilityInstance":
+                            return new Compatibility();
+                        case "supportedOptions":
+                            return Collections.singleton(OpenJPAConfiguration.OPTION_ID_DATASTORE);
+                        default:
+                            return defaultValue(method.getReturnType());
+                    }
+                });
+        final MetaDataRepository repos = new MetaDataRepository() {
+            private static final long serialVersionUID = 1L;
+
+            @Override
+            public OpenJPAConfiguration getConfiguration() {
+                return conf;
+            }
+
+            @Override
+            protected ClassMetaData newClassMetaData(Class<?> type) {
+                final MetaDataRepository repos = this;
+                return new ClassMetaData(type, this) {
+                    private static final long serialVersionUID = 1L;
+
+                    @Override
+                    protected void resolveMeta(boolean runtime) {
+                        if (onResolve != null)
+                            onResolve.accept(repos, this);
+                        super.resolveMeta(runtime);
+                    }
+                };
+            }
+        };
+        repos.setConfiguration(conf);
+        repos.setResolve(resolve);
+        repos.setSnapshotLookups(snapshotLookups);
+
+        final MetaDataDefaults defaults = (MetaDataDefaults)
+            Proxy.newProxyInstance(SnapshotLookupsTest.class.getClassLoader(),
+                new Class<?>[] { MetaDataDefaults.class },
+                (proxy, method, args) -> defaultValue(method.getReturnType()));
+        repos.setMetaDataFactory((MetaDataFactory) Proxy.newProxyInstance(
+            SnapshotLookupsTest.class.getClassLoader(),
+            new Class<?>[] { MetaDataFactory.class },
+            (proxy, method, args) -> {
+                switch (method.getName()) {
+                    case "getDefaults":
+                        return defaults;
+                    case "load":
+                        ClassMetaData meta = repos.addMetaData((Class<?>) args[0]);
+                        meta.setSourceMode(MetaDataModes.MODE_META);
+                        meta.setDataCacheTimeout(-1);
+                        return null;
+                    default:
+                        return defaultValue(method.getReturnType());
+                }
+            }));
+        return repos;
+    }
+
+    private static Object defaultValue(Class<?> type) {
+        if (type == boolean.class)
+            return false;
+        if (type == int.class)
+            return 0;
+        if (type == long.class)
+            return 0L;
+        return null;
+    }
+
+    private static class Item {
+    }
+
+    private static class Other {
+    }
+}
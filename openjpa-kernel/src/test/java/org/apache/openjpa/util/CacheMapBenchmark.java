@@ -0,0 +1,97 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.util.concurrent.ThreadLocalRandom;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.runner.Runner;
+import org.openjdk.jmh.runner.RunnerException;
+import org.openjdk.jmh.runner.options.Options;
+import org.openjdk.jmh.runner.options.OptionsBuilder;
+
+/**
+ * Compares the throughput of {@link CacheMap} and {@link StripedCacheMap}
+ * under a read-mostly data cache workload. Run {@link #main} to execute the
+ * benchmark with 1 to 64 threads.
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.Throughput)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+@Warmup(iterations = 3, time = 2)
+@Measurement(iterations = 5, time = 2)
+@Fork(1)
+public class CacheMapBenchmark {
+
+    private static final int KEYS = 10000;
+
+    @Param({ "1", "16", "64" })
+    public int stripes;
+
+    @Param({ "false", "true" })
+    public boolean lru;
+
+    private CacheMap map;
+
+    @Setup
+    public void setUp() {
+        map = (stripes > 1) ? new StripedCacheMap(lru, KEYS, stripes)
+            : new CacheMap(lru, KEYS);
+        for (int i = 0; i < KEYS; i++)
+            map.put(i, "value" + i);
+    }
+
+    @Benchmark
+    public Object get() {
+        return map.get(ThreadLocalRandom.current().nextInt(KEYS));
+    }
+
+    /**
+     * Nine reads for every write, roughly the mix of a warm L2 cache.
+     */
+    @Benchmark
+    public Object readMostly() {
+        ThreadLocalRandom rnd = ThreadLocalRandom.current();
+        Integer key = rnd.nextInt(KEYS);
+        if (rnd.nextInt(10) == 0)
+            return map.put(key, "value" + key);
+        return map.get(key);
+    }
+
+    public static void main(String[] args) throws RunnerException {
+        for (int threads = 1; threads <= 64; threads *= 2) {
+            Options opts = new OptionsBuilder()
+                .include(CacheMapBenchmark.class.getSimpleName())
+                .threads(threads)
+                .build();
+            new Runner(opts).run();
+        }
+    }
+}
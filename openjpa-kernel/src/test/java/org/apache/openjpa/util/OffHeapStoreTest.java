@@ -0,0 +1,67 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.util.ArrayList;
+import java.util.Collection;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link OffHeapStore}
+ */
+public class OffHeapStoreTest {
+
+    @Test
+    public void valuesRoundTrip() {
+        OffHeapStore store = new OffHeapStore(1024, 256);
+        store.put("a", new byte[] { 1, 2, 3 });
+        store.put("b", new byte[] { 4, 5 });
+        store.put("a", new byte[] { 6 });
+
+        Assert.assertEquals(2, store.size());
+        Assert.assertEquals(3, store.getByteCount());
+        Assert.assertArrayEquals(new byte[] { 6 }, store.take("a"));
+        Assert.assertNull(store.get("a"));
+        Assert.assertArrayEquals(new byte[] { 4, 5 }, store.get("b"));
+        Assert.assertTrue(store.remove("b"));
+        Assert.assertEquals(0, store.getByteCount());
+    }
+
+    @Test
+    public void oldestSlabIsRecycled() {
+        OffHeapStore store = new OffHeapStore(300, 100);
+        List<Object> dropped = new ArrayList<>();
+        for (int i = 0; i < 20; i++)
+            dropped.addAll(store.put("k" + i, new byte[30]));
+
+        // three slabs of three values each, minus the slab being filled
+        Assert.assertTrue(store.size() <= 9);
+        Assert.assertEquals(20, store.size() + dropped.size());
+        Assert.assertTrue(dropped.contains("k0"));
+        Assert.assertTrue(store.containsKey("k19"));
+        Assert.assertTrue(store.getByteCount() <= store.getCapacity());
+
+        Collection<Object> tooBig = store.put("big", new byte[101]);
+        Assert.assertTrue(tooBig.contains("big"));
+        Assert.assertFalse(store.containsKey("big"));
+    }
+}
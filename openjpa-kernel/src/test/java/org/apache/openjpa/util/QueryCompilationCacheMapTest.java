@@ -0,0 +1,95 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.util.Map;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.openjpa.conf.QueryCompilationCacheValue;
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link QueryCompilationCacheMap}
+ */
+public class QueryCompilationCacheMapTest {
+
+    @Test
+    public void countsHitsAndMisses() {
+        QueryCompilationCacheMap map = new QueryCompilationCacheMap(100, 4);
+        Assert.assertNull(map.get("q1"));
+        map.put("q1", "c1");
+        Assert.assertEquals("c1", map.get("q1"));
+        Assert.assertEquals("c1", map.get("q1"));
+        Assert.assertEquals(2, map.getHitCount());
+        Assert.assertEquals(1, map.getMissCount());
+        Assert.assertEquals(2 / 3d, map.getHitRatio(), 1e-9);
+
+        map.resetStatistics();
+        Assert.assertEquals(0, map.getHitCount());
+        Assert.assertEquals(0, map.getMissCount());
+        Assert.assertEquals(0, map.getHitRatio(), 0);
+    }
+
+    @Test
+    public void staysBounded() {
+        QueryCompilationCacheMap map = new QueryCompilationCacheMap(64, 4);
+        for (int i = 0; i < 10000; i++)
+            map.put("select " + i, i);
+        Assert.assertTrue(map.size() <= 64);
+        Assert.assertEquals(10000 - map.size(), map.getEvictionCount());
+    }
+
+    @Test
+    public void putIfAbsentKeepsFirst() throws Exception {
+        final QueryCompilationCacheMap map = new QueryCompilationCacheMap();
+        final CountDownLatch start = new CountDownLatch(1);
+        final AtomicInteger winners = new AtomicInteger();
+        Thread[] threads = new Thread[8];
+        for (int i = 0; i < threads.length; i++) {
+            final Integer value = i;
+            threads[i] = new Thread(() -> {
+                try {
+                    start.await();
+                } catch (InterruptedException ie) {
+                    return;
+                }
+                if (map.putIfAbsent("q", value) == null)
+                    winners.incrementAndGet();
+            });
+            threads[i].start();
+        }
+        start.countDown();
+        for (Thread thread : threads)
+            thread.join();
+        Assert.assertEquals(1, winners.get());
+        Assert.assertEquals(1, map.size());
+    }
+
+    @Test
+    public void boundedAlias() {
+        QueryCompilationCacheValue value =
+            new QueryCompilationCacheValue("QueryCompilationCache");
+        value.setString("bounded(CacheSize=500)");
+        Map map = (Map) value.instantiate(Map.class, null);
+        Assert.assertTrue(map instanceof QueryCompilationCacheMap);
+        Assert.assertEquals(500, ((QueryCompilationCacheMap) map).getCacheSize());
+    }
+}
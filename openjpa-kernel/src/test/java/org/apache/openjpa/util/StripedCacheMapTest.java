@@ -0,0 +1,94 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link StripedCacheMap}
+ */
+public class StripedCacheMapTest {
+
+    @Test
+    public void stripeCountIsPowerOfTwo() {
+        Assert.assertEquals(8, new StripedCacheMap(false, 100, 5).getStripeCount());
+        Assert.assertEquals(1, new StripedCacheMap(false, 100, 0).getStripeCount());
+    }
+
+    @Test
+    public void putGetRemove() {
+        StripedCacheMap map = new StripedCacheMap(true, 1000, 4);
+        for (int i = 0; i < 100; i++)
+            map.put(i, "v" + i);
+        Assert.assertEquals(100, map.size());
+        Assert.assertEquals("v42", map.get(42));
+        Assert.assertTrue(map.containsKey(42));
+        Assert.assertTrue(map.containsValue("v42"));
+        Assert.assertEquals("v42", map.remove(42));
+        Assert.assertNull(map.get(42));
+        Assert.assertEquals(99, map.keySet().size());
+    }
+
+    @Test
+    public void evictsPerStripe() {
+        final List<Object> removed = new ArrayList<>();
+        StripedCacheMap map = new StripedCacheMap(false, 40, 4) {
+            @Override
+            protected void entryRemoved(Object key, Object value, boolean expired) {
+                if (expired)
+                    removed.add(key);
+            }
+        };
+        map.setSoftReferenceSize(0);
+        for (int i = 0; i < 400; i++)
+            map.put(i, i);
+        Assert.assertEquals(40, map.getCacheSize());
+        Assert.assertTrue(map.size() <= 40);
+        Assert.assertEquals(400 - map.size(), removed.size());
+    }
+
+    @Test
+    public void pinnedEntriesSurviveEviction() {
+        StripedCacheMap map = new StripedCacheMap(false, 8, 2);
+        map.setSoftReferenceSize(0);
+        map.put("pinned", "value");
+        Assert.assertTrue(map.pin("pinned"));
+        for (int i = 0; i < 100; i++)
+            map.put(i, i);
+        Assert.assertEquals("value", map.get("pinned"));
+        Assert.assertTrue(map.getPinnedKeys().contains("pinned"));
+        Assert.assertTrue(map.unpin("pinned"));
+        Assert.assertFalse(map.getPinnedKeys().contains("pinned"));
+    }
+
+    @Test
+    public void clearRemovesEverything() {
+        StripedCacheMap map = new StripedCacheMap(false, 100, 4);
+        for (int i = 0; i < 50; i++)
+            map.put(i, i);
+        map.pin(3);
+        map.clear();
+        Assert.assertTrue(map.isEmpty());
+        Assert.assertTrue(map.getPinnedKeys().isEmpty());
+    }
+}
@@ -0,0 +1,155 @@
+/*
+ * Licensed to the Apache Software Foundation (ASF) under one
+ * or more contributor license agreements.  See the NOTICE file
+ * distributed with this work for additional information
+ * regarding copyright ownership.  The ASF licenses this file
+ * to you under the Apache License, Version 2.0 (the
+ * "License"); you may not use this file except in compliance
+ * with the License.  You may obtain a copy of the License at
+ *
+ * http://www.apache.org/licenses/LICENSE-2.0
+ *
+ * Unless required by applicable law or agreed to in writing,
+ * software distributed under the License is distributed on an
+ * "AS IS" BASIS, WITHOUT WARRANTIES OR CONDITIONS OF ANY
+ * KIND, either express or implied.  See the License for the
+ * specific language governing permissions and limitations
+ * under the License.
+ */
+package org.apache.openjpa.util;
+
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+
+import org.junit.Assert;
+import org.junit.Test;
+
+/**
+ * Unit test of {@link TinyLFUEvictionPolicy}
+ */
+public class TinyLFUEvictionPolicyTest {
+
+    @Test
+    public void frequentKeysAreAdmitted() {
+        TinyLFUEvictionPolicy policy = new TinyLFUEvictionPolicy();
+        policy.setMaximumSize(100);
+        for (int i = 0; i < 5; i++)
+            policy.recordAccess("hot");
+        policy.recordAccess("cold");
+        Assert.assertTrue(policy.frequency("hot") >= 5);
+        Assert.assertTrue(policy.admit("hot", "cold"));
+        Assert.assertFalse(policy.admit("cold", "hot"));
+    }
+
+    @Test
+    public void scanDoesNotFlushHotEntries() {
+        CacheMap lru = new CacheMap(true, 100);
+        CacheMap lfu = new CacheMap(true, 100);
+        lru.setSoftReferenceSize(0);
+        lfu.setSoftReferenceSize(0);
+        lfu.setEvictionPolicy(new TinyLFUEvictionPolicy());
+
+        for (int round = 0; round < 5; round++) {
+            for (int i = 0; i < 50; i++) {
+                access(lru, "hot" + i);
+                access(lfu, "hot" + i);
+            }
+        }
+        // a long scan while the hot keys keep being used
+        for (int i = 0; i < 2000; i++) {
+            access(lru, "scan" + i);
+            access(lfu, "scan" + i);
+            if (i % 2 == 0) {
+                access(lru, "hot" + (i / 2) % 50);
+                access(lfu, "hot" + (i / 2) % 50);
+            }
+        }
+
+        int lruHot = 0;
+        int lfuHot = 0;
+        for (int i = 0; i < 50; i++) {
+            if (lru.containsKey("hot" + i))
+                lruHot++;
+            if (lfu.containsKey("hot" + i))
+                lfuHot++;
+        }
+        Assert.assertTrue(lruHot < 50);
+        Assert.assertEquals(50, lfuHot);
+        Assert.assertTrue(lfu.size() <= 100);
+    }
+
+    @Test
+    public void resizeWhileRecordingAccesses() throws Exception {
+        final TinyLFUEvictionPolicy policy = new TinyLFUEvictionPolicy();
+        final AtomicBoolean done = new AtomicBoolean();
+        ExecutorService exec = Executors.newFixedThreadPool(2);
+        try {
+            Future<?> reader = exec.submit(() -> {
+                for (int i = 0; !done.get(); i++) {
+                    policy.recordAccess("key" + i);
+                    policy.admit("key" + i, "key" + (i + 1));
+                }
+            });
+            Future<?> resizer = exec.submit(() -> {
+                for (int i = 0; i < 2000; i++)
+                    policy.setMaximumSize((i % 2 == 0) ? 16 : 1 << 16);
+            });
+            resizer.get(30, TimeUnit.SECONDS);
+            done.set(true);
+            reader.get(30, TimeUnit.SECONDS);
+        } finally {
+            done.set(true);
+            exec.shutdown();
+        }
+    }
+
+    @Test
+    public void eachLookupIsRecordedOnce() {
+        CountingPolicy policy = new CountingPolicy();
+        CacheMap map = new CacheMap(true, 1, 10, .75F, 16);
+        map.setEvictionPolicy(policy);
+
+        // a miss followed by a put
+        access(map, "a");
+        Assert.assertEquals(1, policy.accesses);
+
+        // a hit on the hard references
+        access(map, "a");
+        Assert.assertEquals(2, policy.accesses);
+
+        // a hit on the soft references, which moves the entry back
+        map.put("b", "b");
+        Assert.assertEquals(3, policy.accesses);
+        Assert.assertEquals("a", map.get("a"));
+        Assert.assertEquals(4, policy.accesses);
+    }
+
+    private static void access(CacheMap map, Object key) {
+        if (map.get(key) == null)
+            map.put(key, key);
+    }
+
+    /**
+     * Counts accesses and admits every candidate.
+     */
+    private static class CountingPolicy implements CacheEvictionPolicy {
+        private int accesses;
+
+        @Override
+        public void setMaximumSize(int size) {
+        }
+
+        @Override
+        public void recordAccess(Object key) {
+            accesses++;
+        }
+
+        @Override
+        public boolean admit(Object candidate, Object victim) {
+            return true;
+        }
+    }
+}
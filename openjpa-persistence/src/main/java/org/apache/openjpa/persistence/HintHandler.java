@@ -175,6 +175,14 @@ public class HintHandler  {
         } else if (QueryHints.HINT_IGNORE_PREPARED_QUERY.equals(key)) {
             plan.setHint(key, Filters.convert(value, Boolean.class));
             owner.ignorePreparedQuery();
+        } else if (QueryHints.HINT_STREAM_RESULTS.equals(key)) {
+            plan.setHint(key, Filters.convert(value, Boolean.class));
+        } else if (QueryHints.HINT_STREAM_DETACH_BATCH_SIZE.equals(key)) {
+            int v = (Integer) Filters.convert(value, Integer.class);
+            if (v < 0) {
+                throw new IllegalArgumentException(_loc.get("bad-query-hint-value", key, value).toString());
+            }
+            plan.setHint(key, v);
         } else if (QueryHints.HINT_USE_LITERAL_IN_SQL.equals(key)) {
             Boolean convertedValue = (Boolean)Filters.convert(value, Boolean.class);
             plan.setHint(key, convertedValue);
@@ -23,6 +23,7 @@ import java.util.Collection;
 import java.util.Date;
 import java.util.Map;
 import java.util.Set;
+import java.util.stream.Stream;
 
 import javax.persistence.FlushModeType;
 import javax.persistence.Query;
@@ -48,6 +49,32 @@ public interface OpenJPAQuery<X> extends TypedQuery<X> {
      */
     String HINT_RESULT_COUNT = QueryHints.HINT_RESULT_COUNT;
 
+    /**
+     * Hint key for streaming the results forward-only, without retaining
+     * the results already returned.
+     *
+     * @since 3.2.1
+     */
+    String HINT_STREAM_RESULTS = QueryHints.HINT_STREAM_RESULTS;
+
+    /**
+     * Hint key for the number of streamed results after which the managed
+     * instances returned so far are detached.
+     *
+     * @since 3.2.1
+     */
+    String HINT_STREAM_DETACH_BATCH_SIZE =
+        QueryHints.HINT_STREAM_DETACH_BATCH_SIZE;
+
+    /**
+     * Hint key for the keyset pagination token of the last result of the
+     * previous page.
+     *
+     * @see #setKeysetAfter
+     * @since 3.2.1
+     */
+    String HINT_KEYSET_AFTER = QueryHints.HINT_KEYSET_AFTER;
+
     /**
      * The owning entity manager.
      */
@@ -212,6 +239,44 @@ public interface OpenJPAQuery<X> extends TypedQuery<X> {
      */
     boolean getRelaxBindParameterTypeChecking();
 
+    /**
+     * Execute the query and stream its results. The results are read
+     * forward-only from the datastore as the stream is consumed and are not
+     * retained by the query, so any number of results can be streamed in
+     * constant memory. Set the {@link #HINT_STREAM_DETACH_BATCH_SIZE} hint
+     * to also detach the returned instances in batches. Close the stream to
+     * release its datastore resources early.
+     *
+     * @since 3.2.1
+     */
+    @Override
+    Stream<X> getResultStream();
+
+    /**
+     * Return only the results ordered after the result the given keyset
+     * pagination token was made of, so that the next page of an ordered
+     * query is found by seeking on the ordering columns instead of
+     * skipping all the previous results. Combine with
+     * {@link #setMaxResults} and a first result of 0. The last ordering
+     * clause should be unique, such as the identity, for pages not to skip
+     * or repeat results with the same ordering values.
+     *
+     * @param token the token of the last result of the previous page, or
+     * null for the first page
+     * @since 3.2.1
+     */
+    OpenJPAQuery<X> setKeysetAfter(String token);
+
+    /**
+     * Return the opaque keyset pagination token of the given result of this
+     * query, typically the last result of a page, which is made of its
+     * values for the ordering clauses of the query.
+     *
+     * @see #setKeysetAfter
+     * @since 3.2.1
+     */
+    String getKeysetToken(Object result);
+
 
     @Override OpenJPAQuery<X> setFlushMode(FlushModeType flushMode);
 
@@ -142,9 +142,12 @@ public class PersistenceProductDerivation
         _hints.add(QueryHints.HINT_IGNORE_PREPARED_QUERY);
         _hints.add(QueryHints.HINT_INVALIDATE_FINDER);
         _hints.add(QueryHints.HINT_INVALIDATE_PREPARED_QUERY);
+        _hints.add(QueryHints.HINT_KEYSET_AFTER);
         _hints.add(QueryHints.HINT_PARAM_MARKER_IN_QUERY);
         _hints.add(QueryHints.HINT_RECACHE_FINDER);
         _hints.add(QueryHints.HINT_RESULT_COUNT);
+        _hints.add(QueryHints.HINT_STREAM_DETACH_BATCH_SIZE);
+        _hints.add(QueryHints.HINT_STREAM_RESULTS);
         _hints.add(QueryHints.HINT_SUBCLASSES);
         _hints.add(QueryHints.HINT_RELAX_BIND_PARAM_TYPE_CHECK);
         _hints.add(QueryHints.HINT_USE_LITERAL_IN_SQL);
@@ -26,7 +26,11 @@ import java.util.Collections;
 import java.util.List;
 import java.util.Map;
 import java.util.Set;
+import java.util.Spliterator;
+import java.util.Spliterators;
 import java.util.concurrent.locks.ReentrantLock;
+import java.util.stream.Stream;
+import java.util.stream.StreamSupport;
 
 import javax.persistence.FlushModeType;
 import javax.persistence.LockModeType;
@@ -331,6 +335,52 @@ public class QueryImpl<X> extends AbstractQuery<X> implements Serializable {
 		}
 	}
 
+	@Override
+    public Stream<X> getResultStream() {
+		_em.assertNotCloseInvoked();
+		FetchConfiguration fetch = _query.getFetchConfiguration();
+		Object hint = fetch.getHint(QueryHints.HINT_STREAM_RESULTS);
+		List<X> list;
+		boolean queryFetchPlanUsed = pushQueryFetchPlan();
+		fetch.setHint(QueryHints.HINT_STREAM_RESULTS, Boolean.TRUE);
+		try {
+		    Object ob = execute();
+		    if (ob instanceof ResultList)
+		        list = new DelegatingResultList((ResultList) ob,
+		            PersistenceExceptions.getRollbackTranslator(_em));
+		    else if (ob instanceof List)
+		        list = (List<X>) ob;
+		    else
+		        list = Collections.singletonList((X) ob);
+		} finally {
+		    fetch.setHint(QueryHints.HINT_STREAM_RESULTS, hint);
+		    popQueryFetchPlan(queryFetchPlanUsed);
+		}
+		Stream<X> stream = StreamSupport.stream(Spliterators.spliteratorUnknownSize(
+		    list.iterator(), Spliterator.ORDERED), false);
+		// duplicates are dropped as the results are streamed rather than
+		// by copying all of them into a DistinctResultList up front
+		if (_query.isDistinct())
+		    stream = stream.distinct();
+		if (list instanceof ResultList)
+		    stream = stream.onClose(((ResultList) list)::close);
+		return stream;
+	}
+
+	@Override
+    public OpenJPAQuery<X> setKeysetAfter(String token) {
+		return setHint(QueryHints.HINT_KEYSET_AFTER, token);
+	}
+
+	@Override
+    public String getKeysetToken(Object result) {
+		_em.assertNotCloseInvoked();
+		// the ordering values are extracted by the parsed query
+		if (LANG_PREPARED_SQL.equals(getLanguage()))
+		    ignorePreparedQuery();
+		return _query.getKeysetToken(result).encode();
+	}
+
 	/**
 	 * Execute a query that returns a single result.
 	 */
@@ -572,6 +622,14 @@ public class QueryImpl<X> extends AbstractQuery<X> implements Serializable {
             return false;
         }
 
+        // keyset pages add a seek condition to the SQL of the query
+        if (fetch.getHint(QueryHints.HINT_KEYSET_AFTER) != null) {
+            if (cache.get(_id) != null) {
+                ignorePreparedQuery();
+            }
+            return false;
+        }
+
         // Determine if the query has NULL parameters.  If so, then do not use a PreparedQuery from the cache
         for (Object val : params.values()) {
             if (val == null) {